@@ -38,13 +38,21 @@ import net.holmes.core.business.media.dao.icecast.IcecastDao;
 import net.holmes.core.business.media.dao.icecast.IcecastDaoImpl;
 import net.holmes.core.business.media.dao.index.MediaIndexDao;
 import net.holmes.core.business.media.dao.index.MediaIndexDaoImpl;
+import net.holmes.core.business.media.dao.podcast.PodcastDao;
+import net.holmes.core.business.media.dao.podcast.PodcastDaoImpl;
+import net.holmes.core.business.media.metadata.MetadataManager;
+import net.holmes.core.business.media.metadata.MetadataManagerImpl;
+import net.holmes.core.business.media.seek.SeekIndexManager;
+import net.holmes.core.business.media.seek.SeekIndexManagerImpl;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
+import net.holmes.core.business.media.thumbnail.ThumbnailManagerImpl;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.business.mimetype.MimeTypeManagerImpl;
 import net.holmes.core.business.streaming.StreamingManager;
 import net.holmes.core.business.streaming.StreamingManagerImpl;
 import net.holmes.core.business.streaming.airplay.AirplayStreamerImpl;
-import net.holmes.core.business.streaming.airplay.controlpoint.AsyncSocketControlPoint;
 import net.holmes.core.business.streaming.airplay.controlpoint.ControlPoint;
+import net.holmes.core.business.streaming.airplay.controlpoint.NettyControlPoint;
 import net.holmes.core.business.streaming.device.DeviceDao;
 import net.holmes.core.business.streaming.device.DeviceDaoImpl;
 import net.holmes.core.business.streaming.device.DeviceStreamer;
@@ -59,19 +67,23 @@ import net.holmes.core.common.EventBusListener;
 import net.holmes.core.common.exception.HolmesRuntimeException;
 import net.holmes.core.service.Service;
 import net.holmes.core.service.airplay.AirplayServer;
+import net.holmes.core.service.http.HttpContentResolver;
+import net.holmes.core.service.http.HttpFileContentCache;
+import net.holmes.core.service.http.HttpProxyCache;
+import net.holmes.core.service.http.HttpStreamRelayManager;
 import net.holmes.core.service.http.HttpFileRequestDecoder;
 import net.holmes.core.service.http.HttpFileRequestHandler;
 import net.holmes.core.service.http.HttpServer;
 import net.holmes.core.service.scheduled.CacheCleanerService;
 import net.holmes.core.service.scheduled.HolmesSchedulerService;
 import net.holmes.core.service.scheduled.IcecastDownloadService;
+import net.holmes.core.service.scheduled.PodcastRefreshService;
 import net.holmes.core.service.scheduled.ReleaseCheckService;
 import net.holmes.core.service.systray.SystrayService;
 import net.holmes.core.service.upnp.UpnpServer;
 import net.holmes.core.service.upnp.UpnpServiceProvider;
 import org.fourthline.cling.UpnpService;
 
-import javax.net.SocketFactory;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -96,7 +108,6 @@ public final class HolmesServerModule extends AbstractModule {
     private final String localHolmesDataDir;
     private final String uiDirectory;
     private final InetAddress localAddress;
-    private final SocketFactory socketFactory;
 
     /**
      * Default constructor.
@@ -106,7 +117,6 @@ public final class HolmesServerModule extends AbstractModule {
         resourceBundle = ResourceBundle.getBundle("message");
         localHolmesDataDir = getLocalHolmesDataDir();
         uiDirectory = getUiDirectory();
-        socketFactory = SocketFactory.getDefault();
         try {
             localAddress = getLocalAddress();
         } catch (IOException e) {
@@ -127,7 +137,6 @@ public final class HolmesServerModule extends AbstractModule {
 
         // Bind utils
         bind(ResourceBundle.class).toInstance(resourceBundle);
-        bind(SocketFactory.class).toInstance(socketFactory);
 
         // Bind event bus
         bind(EventBus.class).toInstance(eventBus);
@@ -138,6 +147,7 @@ public final class HolmesServerModule extends AbstractModule {
         bind(MediaDao.class).to(MediaDaoImpl.class).in(Singleton.class);
         bind(IcecastDao.class).to(IcecastDaoImpl.class).in(Singleton.class);
         bind(MediaIndexDao.class).to(MediaIndexDaoImpl.class).in(Singleton.class);
+        bind(PodcastDao.class).to(PodcastDaoImpl.class).in(Singleton.class);
         bind(DeviceDao.class).to(DeviceDaoImpl.class).in(Singleton.class);
         bind(SessionDao.class).to(SessionDaoImpl.class).in(Singleton.class);
         bind(ReleaseDao.class).to(ReleaseDaoImpl.class).in(Singleton.class);
@@ -147,6 +157,9 @@ public final class HolmesServerModule extends AbstractModule {
         bind(MediaManager.class).to(MediaManagerImpl.class).in(Singleton.class);
         bind(StreamingManager.class).to(StreamingManagerImpl.class).in(Singleton.class);
         bind(VersionManager.class).to(VersionManagerImpl.class).in(Singleton.class);
+        bind(SeekIndexManager.class).to(SeekIndexManagerImpl.class).in(Singleton.class);
+        bind(ThumbnailManager.class).to(ThumbnailManagerImpl.class).in(Singleton.class);
+        bind(MetadataManager.class).to(MetadataManagerImpl.class).in(Singleton.class);
 
         // Bind services
         bind(Service.class).annotatedWith(named("http")).to(HttpServer.class).in(Singleton.class);
@@ -158,6 +171,7 @@ public final class HolmesServerModule extends AbstractModule {
         // Bind scheduled services
         bind(AbstractScheduledService.class).annotatedWith(named("cacheCleaner")).to(CacheCleanerService.class);
         bind(AbstractScheduledService.class).annotatedWith(named("icecast")).to(IcecastDownloadService.class);
+        bind(AbstractScheduledService.class).annotatedWith(named("podcast")).to(PodcastRefreshService.class);
         bind(AbstractScheduledService.class).annotatedWith(named("release")).to(ReleaseCheckService.class);
 
         // Bind backend
@@ -167,13 +181,17 @@ public final class HolmesServerModule extends AbstractModule {
         bind(UpnpService.class).toProvider(UpnpServiceProvider.class).in(Singleton.class);
 
         // Bind Http handlers
+        bind(HttpContentResolver.class).in(Singleton.class);
+        bind(HttpFileContentCache.class).in(Singleton.class);
+        bind(HttpProxyCache.class).in(Singleton.class);
+        bind(HttpStreamRelayManager.class).in(Singleton.class);
         bind(HttpFileRequestDecoder.class);
         bind(HttpFileRequestHandler.class);
 
         // Bind streaming utils
         bind(DeviceStreamer.class).annotatedWith(named("upnp")).to(UpnpStreamerImpl.class).in(Singleton.class);
         bind(DeviceStreamer.class).annotatedWith(named("airplay")).to(AirplayStreamerImpl.class).in(Singleton.class);
-        bind(ControlPoint.class).to(AsyncSocketControlPoint.class);
+        bind(ControlPoint.class).to(NettyControlPoint.class).in(Singleton.class);
 
         // Bind Rest handlers
         bind(AudioFoldersHandler.class);
@@ -17,6 +17,7 @@
 
 package net.holmes.core.backend.handler;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import net.holmes.core.backend.response.DeviceBrowseResult;
 import net.holmes.core.backend.response.PlaybackDevice;
@@ -107,6 +108,64 @@ public class StreamingHandler {
         return null;
     }
 
+    /**
+     * Queue content, played once current content is over.
+     *
+     * @return error message or null
+     */
+    @GET
+    @Path("/enqueue/{deviceId}/{contentId}")
+    @Produces(TEXT_PLAIN)
+    public String enqueue(@PathParam("deviceId") String deviceId, @PathParam("contentId") String contentId) {
+        AbstractNode contentNode = mediaManager.getNode(contentId);
+        String url = mediaManager.getNodeUrl(contentNode);
+        try {
+            streamingManager.enqueue(deviceId, url, contentNode);
+        } catch (UnknownDeviceException e) {
+            LOGGER.error(e.getMessage(), e);
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Play content in sync on several devices.
+     *
+     * @return error message or null
+     */
+    @GET
+    @Path("/play-group/{contentId}/{deviceIds}")
+    @Produces(TEXT_PLAIN)
+    public String playGroup(@PathParam("contentId") String contentId, @PathParam("deviceIds") String deviceIds) {
+        AbstractNode contentNode = mediaManager.getNode(contentId);
+        String url = mediaManager.getNodeUrl(contentNode);
+        try {
+            streamingManager.playGroup(Lists.newArrayList(Splitter.on(',').trimResults().omitEmptyStrings().split(deviceIds)), url, contentNode);
+        } catch (UnknownDeviceException e) {
+            LOGGER.error(e.getMessage(), e);
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Skip to next queued content.
+     *
+     * @return error message or null
+     */
+    @GET
+    @Path("/next/{deviceId}")
+    @Produces(TEXT_PLAIN)
+    public String next(@PathParam("deviceId") String deviceId) {
+        try {
+            streamingManager.next(deviceId);
+        } catch (UnknownDeviceException e) {
+            LOGGER.error(e.getMessage(), e);
+            return e.getMessage();
+        }
+        return null;
+    }
+
     /**
      * Pause content playback.
      *
@@ -175,7 +234,7 @@ public class StreamingHandler {
             StreamingSession session = streamingManager.getSession(deviceId);
             status.setContentName(session.getContentName());
             status.setDuration(session.getDuration());
-            status.setPosition(session.getPosition());
+            status.setPosition(session.getPredictedPosition());
         } catch (UnknownSessionException e) {
             LOGGER.error(e.getMessage(), e);
             status.setErrorMessage(e.getMessage());
@@ -41,6 +41,30 @@ public interface MediaManager {
      */
     String getNodeUrl(AbstractNode node);
 
+    /**
+     * Get node thumbnail URL.
+     *
+     * @param node node
+     * @return node thumbnail URL
+     */
+    String getNodeThumbnailUrl(AbstractNode node);
+
+    /**
+     * Get node URL through HTTP server caching proxy.
+     *
+     * @param node node
+     * @return node proxy URL
+     */
+    String getNodeProxyUrl(AbstractNode node);
+
+    /**
+     * Get node URL through HTTP server stream relay.
+     *
+     * @param node node
+     * @return node relay URL
+     */
+    String getNodeRelayUrl(AbstractNode node);
+
     /**
      * Search child nodes.
      *
@@ -42,6 +42,9 @@ import static net.holmes.core.business.media.model.RootNode.*;
 import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PORT;
 import static net.holmes.core.common.Constants.HTTP_CONTENT_ID;
 import static net.holmes.core.common.Constants.HTTP_CONTENT_REQUEST_PATH;
+import static net.holmes.core.common.Constants.HTTP_PROXY_REQUEST_PATH;
+import static net.holmes.core.common.Constants.HTTP_RELAY_REQUEST_PATH;
+import static net.holmes.core.common.Constants.HTTP_THUMBNAIL_REQUEST_PATH;
 import static net.holmes.core.common.event.MediaEvent.MediaEventType.SCAN_NODE;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -100,6 +103,33 @@ public final class MediaManagerImpl implements MediaManager {
                 HTTP_CONTENT_REQUEST_PATH + "?" + HTTP_CONTENT_ID + "=" + node.getId();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNodeThumbnailUrl(AbstractNode node) {
+        return "http://" + localAddress.getHostAddress() + ":" + httpServerPort +
+                HTTP_THUMBNAIL_REQUEST_PATH + "?" + HTTP_CONTENT_ID + "=" + node.getId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNodeProxyUrl(AbstractNode node) {
+        return "http://" + localAddress.getHostAddress() + ":" + httpServerPort +
+                HTTP_PROXY_REQUEST_PATH + "?" + HTTP_CONTENT_ID + "=" + node.getId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNodeRelayUrl(AbstractNode node) {
+        return "http://" + localAddress.getHostAddress() + ":" + httpServerPort +
+                HTTP_RELAY_REQUEST_PATH + "?" + HTTP_CONTENT_ID + "=" + node.getId();
+    }
+
     /**
      * {@inheritDoc}
      */
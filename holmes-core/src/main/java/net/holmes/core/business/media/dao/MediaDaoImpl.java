@@ -17,9 +17,10 @@
 
 package net.holmes.core.business.media.dao;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.configuration.ConfigurationNode;
 import net.holmes.core.business.media.dao.icecast.IcecastDao;
@@ -27,30 +28,31 @@ import net.holmes.core.business.media.dao.icecast.IcecastEntry;
 import net.holmes.core.business.media.dao.icecast.IcecastGenre;
 import net.holmes.core.business.media.dao.index.MediaIndexDao;
 import net.holmes.core.business.media.dao.index.MediaIndexElement;
+import net.holmes.core.business.media.dao.podcast.PodcastDao;
 import net.holmes.core.business.media.model.*;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.common.MediaType;
 import net.holmes.core.common.MimeType;
-import net.holmes.core.common.exception.HolmesException;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.Locale;
+import java.util.Map;
 
 import static net.holmes.core.business.media.dao.index.MediaIndexElementFactory.buildConfigMediaIndexElement;
 import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_ICECAST_ENTRY;
 import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_UNKNOWN;
 import static net.holmes.core.business.media.model.RootNode.ICECAST;
 import static net.holmes.core.business.media.model.RootNode.PODCAST;
-import static net.holmes.core.common.ConfigurationParameter.PODCAST_CACHE_EXPIRE_HOURS;
-import static net.holmes.core.common.ConfigurationParameter.PODCAST_CACHE_MAX_ELEMENTS;
 import static net.holmes.core.common.FileUtils.*;
+import static com.google.common.io.Files.getFileExtension;
+import static com.google.common.io.Files.getNameWithoutExtension;
 import static net.holmes.core.common.MediaType.TYPE_RAW_URL;
+import static net.holmes.core.common.MediaType.TYPE_VIDEO;
+import static net.holmes.core.common.MimeType.MIME_TYPE_SUBTITLE;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -58,11 +60,12 @@ import static org.slf4j.LoggerFactory.getLogger;
  */
 public class MediaDaoImpl implements MediaDao {
     private static final Logger LOGGER = getLogger(MediaDaoImpl.class);
+    private static final String SUBTITLE_EXTENSION = "srt";
     private final ConfigurationDao configurationDao;
     private final MimeTypeManager mimeTypeManager;
     private final MediaIndexDao mediaIndexDao;
     private final IcecastDao icecastDao;
-    private final Cache<String, List<AbstractNode>> podcastCache;
+    private final PodcastDao podcastDao;
 
     /**
      * Instantiates a new media dao implementation.
@@ -71,18 +74,16 @@ public class MediaDaoImpl implements MediaDao {
      * @param mimeTypeManager  mime type manager
      * @param mediaIndexDao    media index dao
      * @param icecastDao       Icecast dao
+     * @param podcastDao       podcast dao
      */
     @Inject
     public MediaDaoImpl(final ConfigurationDao configurationDao, final MimeTypeManager mimeTypeManager, final MediaIndexDao mediaIndexDao,
-                        final IcecastDao icecastDao) {
+                        final IcecastDao icecastDao, final PodcastDao podcastDao) {
         this.configurationDao = configurationDao;
         this.mimeTypeManager = mimeTypeManager;
         this.mediaIndexDao = mediaIndexDao;
         this.icecastDao = icecastDao;
-        this.podcastCache = CacheBuilder.newBuilder()
-                .maximumSize(configurationDao.getParameter(PODCAST_CACHE_MAX_ELEMENTS))
-                .expireAfterWrite(configurationDao.getParameter(PODCAST_CACHE_EXPIRE_HOURS), TimeUnit.HOURS)
-                .build();
+        this.podcastDao = podcastDao;
     }
 
     /**
@@ -134,7 +135,7 @@ public class MediaDaoImpl implements MediaDao {
             switch (mediaType) {
                 case TYPE_PODCAST:
                     // Get podcast entries
-                    childNodes.addAll(getPodcastEntries(parentNodeId, indexElement.getPath()));
+                    childNodes.addAll(podcastDao.getPodcastEntries(parentNodeId, indexElement.getPath()));
                     break;
                 case TYPE_ICECAST_GENRE:
                     // Get Icecast entries
@@ -192,7 +193,6 @@ public class MediaDaoImpl implements MediaDao {
      */
     @Override
     public void cleanUpCache() {
-        podcastCache.cleanUp();
         mediaIndexDao.clean();
     }
     /**
@@ -222,6 +222,7 @@ public class MediaDaoImpl implements MediaDao {
 
     /**
      * Get children of a folder node.
+     * Subtitle files are not returned as child nodes: they are paired with the video having the same base name.
      *
      * @param parentId   parent node id
      * @param folderPath folder path
@@ -230,6 +231,8 @@ public class MediaDaoImpl implements MediaDao {
      */
     private List<AbstractNode> getFolderChildNodes(final String parentId, final String folderPath, final MediaType mediaType) {
         List<AbstractNode> nodes = Lists.newArrayList();
+        Map<File, MimeType> contentFiles = Maps.newLinkedHashMap();
+        ListMultimap<String, File> subtitleIndex = ArrayListMultimap.create();
         for (File file : listChildren(folderPath, true)) {
             // Add node to mediaIndex
             if (file.isDirectory()) {
@@ -237,28 +240,39 @@ public class MediaDaoImpl implements MediaDao {
                 String nodeId = mediaIndexDao.add(new MediaIndexElement(parentId, mediaType.getValue(), null, file.getAbsolutePath(), null, true, false));
                 nodes.add(new FolderNode(nodeId, parentId, file.getName(), file));
             } else {
-                // Add content node
-                addContentNode(nodes, parentId, file, mediaType);
+                MimeType mimeType = mimeTypeManager.getMimeType(file.getName());
+                if (mimeType != null && mimeType.isSubTitle()) {
+                    // Index subtitle on its base name, only SubRip subtitles are advertised to renderers
+                    if (SUBTITLE_EXTENSION.equals(getFileExtension(file.getName()).toLowerCase(Locale.ROOT))) {
+                        indexSubtitle(subtitleIndex, file);
+                    }
+                } else if (mimeType != null) {
+                    contentFiles.put(file, mimeType);
+                }
             }
         }
+
+        // Add content nodes with their subtitles
+        for (Map.Entry<File, MimeType> contentFile : contentFiles.entrySet()) {
+            addContentNode(nodes, parentId, contentFile.getKey(), mediaType, contentFile.getValue(), subtitleIndex);
+        }
         return nodes;
     }
 
     /**
-     * Gets pod-cast entries. A pod-cast is a RSS.
+     * Index a subtitle file on its base name, and on its base name without language suffix (i.e. movie.en.srt is
+     * indexed as movie.en and movie).
      *
-     * @param podcastId  podcast id
-     * @param podcastUrl podcast url
-     * @return entries parsed from pod-cast RSS feed
+     * @param subtitleIndex subtitle index
+     * @param file          subtitle file
      */
-    @SuppressWarnings("unchecked")
-    private List<AbstractNode> getPodcastEntries(final String podcastId, final String podcastUrl) {
-        try {
-            return podcastCache.get(podcastUrl, new PodcastCacheCallable(podcastId, podcastUrl));
-        } catch (ExecutionException e) {
-            LOGGER.error(e.getMessage(), e);
+    private void indexSubtitle(final ListMultimap<String, File> subtitleIndex, final File file) {
+        String baseName = getNameWithoutExtension(file.getName()).toLowerCase(Locale.ROOT);
+        subtitleIndex.put(baseName, file);
+        String languageSuffix = getFileExtension(baseName);
+        if (languageSuffix.length() == 2 || languageSuffix.length() == 3) {
+            subtitleIndex.put(getNameWithoutExtension(baseName), file);
         }
-        return Lists.newArrayListWithCapacity(0);
     }
 
     /**
@@ -270,8 +284,9 @@ public class MediaDaoImpl implements MediaDao {
     private Collection<AbstractNode> getIcecastEntries(final String parentNodeId, final String genre) {
         Collection<AbstractNode> result = Lists.newArrayList();
         for (IcecastEntry entry : icecastDao.getEntriesByGenre(genre)) {
-            // Add entry to media index
-            String nodeId = mediaIndexDao.add(new MediaIndexElement(parentNodeId, TYPE_RAW_URL.getValue(), entry.getType(), entry.getUrl(), entry.getName(), false, false));
+            // Add entry to media index, entry id is kept across Icecast directory reloads
+            String nodeId = entry.getId(parentNodeId);
+            mediaIndexDao.put(nodeId, new MediaIndexElement(parentNodeId, TYPE_RAW_URL.getValue(), entry.getType(), entry.getUrl(), entry.getName(), false, false));
             // Add Raw Url to result
             result.add(new RawUrlNode(TYPE_ICECAST_ENTRY, nodeId, parentNodeId, entry.getName(), MimeType.valueOf(entry.getType()), entry.getUrl(), null));
         }
@@ -281,20 +296,27 @@ public class MediaDaoImpl implements MediaDao {
     /**
      * Add content node to node list.
      *
-     * @param nodes     node list
-     * @param parentId  parent id
-     * @param file      file
-     * @param mediaType media type
+     * @param nodes         node list
+     * @param parentId      parent id
+     * @param file          file
+     * @param mediaType     media type
+     * @param mimeType      file mime type
+     * @param subtitleIndex subtitles of the folder, indexed by base name
      */
-    private void addContentNode(final List<AbstractNode> nodes, final String parentId, final File file, final MediaType mediaType) {
-        MimeType mimeType = mimeTypeManager.getMimeType(file.getName());
-        if (mimeType != null) {
+    private void addContentNode(final List<AbstractNode> nodes, final String parentId, final File file, final MediaType mediaType,
+                                final MimeType mimeType, final ListMultimap<String, File> subtitleIndex) {
+        if (mimeType.getType() == mediaType) {
             // Add file node
             String nodeId = mediaIndexDao.add(new MediaIndexElement(parentId, mediaType.getValue(), mimeType.getMimeType(), file.getAbsolutePath(), null, true, false));
-            ContentNode node = buildContentNode(nodeId, parentId, file, mediaType, mimeType);
-            if (node != null) {
-                nodes.add(node);
+            ContentNode node = new ContentNode(nodeId, parentId, file.getName(), file, mimeType);
+            if (mimeType.getType() == TYPE_VIDEO) {
+                // Pair subtitles
+                for (File subtitleFile : subtitleIndex.get(getNameWithoutExtension(file.getName()).toLowerCase(Locale.ROOT))) {
+                    String subtitleId = mediaIndexDao.add(new MediaIndexElement(nodeId, mediaType.getValue(), MIME_TYPE_SUBTITLE.getMimeType(), subtitleFile.getAbsolutePath(), null, true, false));
+                    node.addSubtitle(new ContentNode(subtitleId, nodeId, subtitleFile.getName(), subtitleFile, MIME_TYPE_SUBTITLE));
+                }
             }
+            nodes.add(node);
         }
     }
 
@@ -311,45 +333,4 @@ public class MediaDaoImpl implements MediaDao {
         // Check mime type
         return mimeType.getType() == mediaType || mimeType.isSubTitle() ? new ContentNode(nodeId, parentId, file.getName(), file, mimeType) : null;
     }
-
-    /**
-     * Podcast cache callable
-     */
-    private class PodcastCacheCallable implements Callable<List<AbstractNode>> {
-        private final String podcastId;
-        private final String podcastUrl;
-
-        /**
-         * Instantiates a new podcast cache callable.
-         *
-         * @param podcastId  podcast id
-         * @param podcastUrl podcast URL
-         */
-        PodcastCacheCallable(final String podcastId, final String podcastUrl) {
-            this.podcastId = podcastId;
-            this.podcastUrl = podcastUrl;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public List<AbstractNode> call() throws HolmesException {
-            // No entries in cache, read them from RSS feed
-            // First remove children from media index
-            mediaIndexDao.removeChildren(podcastId);
-
-            // Then parse podcast
-            return new PodcastParser() {
-                /**
-                 * {@inheritDoc}
-                 */
-                @Override
-                public String addMediaIndexElement(MediaIndexElement mediaIndexElement) {
-                    // Add element to media index
-                    return mediaIndexDao.add(mediaIndexElement);
-                }
-            }.parse(podcastUrl, podcastId);
-        }
-    }
 }
@@ -18,36 +18,40 @@
 package net.holmes.core.business.media.dao.icecast;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.XStreamException;
-import com.thoughtworks.xstream.io.xml.Xpp3Driver;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.dao.index.MediaIndexDao;
 import net.holmes.core.common.event.ConfigurationEvent;
+import net.holmes.core.common.exception.HolmesException;
 import net.holmes.core.common.exception.HolmesRuntimeException;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.zip.GZIPInputStream;
 
 import static java.lang.Math.max;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.Calendar.HOUR;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.holmes.core.common.ConfigurationParameter.*;
 import static net.holmes.core.common.event.ConfigurationEvent.EventType.SAVE_SETTINGS;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -58,20 +62,34 @@ import static org.slf4j.LoggerFactory.getLogger;
 public final class IcecastDaoImpl implements IcecastDao {
     private static final Logger LOGGER = getLogger(IcecastDaoImpl.class);
     private static final String ICECAST_FILE_NAME = "icecast.xml";
+    private static final String ICECAST_VALIDATORS_FILE_NAME = "icecast.properties";
+    private static final String TEMP_SUFFIX = ".tmp";
     private static final String DATA_DIR = "data";
     private static final String ICECAST_GENRE_ID_ROOT = "IceCastGenre_";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final long RETRY_DELAY_MILLIS = 5000L;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000L;
 
     private final ConfigurationDao configurationDao;
     private final String localHolmesDataDir;
     private final MediaIndexDao mediaIndexDao;
     private final List<IcecastGenre> genres;
     private final int maxDownloadRetry;
+    private final IcecastYellowPageParser parser;
+    private final long retryDelayMillis;
+    private final ScheduledExecutorService retryExecutor;
 
     private final Object directoryLock = new Object();
     private final Object settingsLock = new Object();
+    private final Object retryLock = new Object();
+    private final Object downloadLock = new Object();
 
     private boolean icecastEnabled;
-    private IcecastDirectory directory;
+    private volatile IcecastDirectory directory;
+    private ScheduledFuture<?> pendingRetry;
 
     /**
      * Instantiates a new Icecast Dao implementation.
@@ -82,11 +100,27 @@ public final class IcecastDaoImpl implements IcecastDao {
      */
     @Inject
     public IcecastDaoImpl(final ConfigurationDao configurationDao, @Named("localHolmesDataDir") final String localHolmesDataDir, final MediaIndexDao mediaIndexDao) {
+        this(configurationDao, localHolmesDataDir, mediaIndexDao, RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Instantiates a new Icecast Dao implementation.
+     *
+     * @param configurationDao   configuration dao
+     * @param localHolmesDataDir local Holmes data directory
+     * @param mediaIndexDao      media index dao
+     * @param retryDelayMillis   delay before first download retry
+     */
+    @VisibleForTesting
+    IcecastDaoImpl(final ConfigurationDao configurationDao, final String localHolmesDataDir, final MediaIndexDao mediaIndexDao, final long retryDelayMillis) {
         this.configurationDao = configurationDao;
         this.localHolmesDataDir = localHolmesDataDir;
         this.mediaIndexDao = mediaIndexDao;
         this.icecastEnabled = configurationDao.getParameter(ICECAST_ENABLE);
         this.maxDownloadRetry = max(configurationDao.getParameter(ICECAST_MAX_DOWNLOAD_RETRY), 1);
+        this.parser = new IcecastYellowPageParser();
+        this.retryDelayMillis = retryDelayMillis;
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("icecast-%d").setDaemon(true).build());
 
         List<String> genreList = configurationDao.getParameter(ICECAST_GENRE_LIST);
         this.genres = Lists.newArrayListWithCapacity(genreList.size());
@@ -100,21 +134,14 @@ public final class IcecastDaoImpl implements IcecastDao {
      */
     @Override
     public void checkYellowPage() {
-        if (icecastEnabled) {
-            boolean result = false;
-            int retry = 0;
-            while (!result && retry < maxDownloadRetry) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("checkYellowPage {} / {}", retry + 1, maxDownloadRetry);
-                }
-                try {
-                    result = (!needsYellowPageDownload() || downloadYellowPage()) && parseYellowPage();
-                } catch (IOException e) {
-                    LOGGER.error(e.getMessage(), e);
-                }
-                retry++;
+        synchronized (retryLock) {
+            // This check supersedes any pending retry
+            if (pendingRetry != null) {
+                pendingRetry.cancel(false);
+                pendingRetry = null;
             }
         }
+        checkYellowPage(1);
     }
 
     /**
@@ -122,13 +149,13 @@ public final class IcecastDaoImpl implements IcecastDao {
      */
     @Override
     public Collection<IcecastEntry> getEntriesByGenre(final String genre) {
-        synchronized (directoryLock) {
-            if (directory != null && directory.getEntries() != null) {
-                return Collections2.filter(directory.getEntries(), new IcecastEntryGenreFilter(genre));
-            }
-
-            return Lists.newArrayList();
+        // Directory is immutable once loaded, read path does not need directory lock
+        IcecastDirectory currentDirectory = directory;
+        if (currentDirectory != null) {
+            return currentDirectory.getEntriesByGenre(genre);
         }
+
+        return Lists.newArrayList();
     }
 
     /**
@@ -173,12 +200,72 @@ public final class IcecastDaoImpl implements IcecastDao {
         }
     }
 
+    /**
+     * Update yellow page: yellow page is downloaded when it is outdated and parsed only when it changed
+     * or when Icecast directory is not loaded yet.
+     *
+     * @return true on update success
+     * @throws IOException
+     */
+    private boolean updateYellowPage() throws IOException {
+        if (needsYellowPageDownload() && downloadYellowPage()) {
+            return parseYellowPage();
+        }
+        return isLoaded() || parseYellowPage();
+    }
+
+    /**
+     * Check yellow page, next attempt is scheduled on failure.
+     *
+     * @param attempt attempt number
+     */
+    private void checkYellowPage(final int attempt) {
+        if (icecastEnabled) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("checkYellowPage {} / {}", attempt, maxDownloadRetry);
+            }
+            // A retry may run on retry thread while caller thread checks yellow page
+            synchronized (downloadLock) {
+                try {
+                    if (updateYellowPage()) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    LOGGER.error(e.getMessage(), e);
+                }
+            }
+            if (attempt < maxDownloadRetry) {
+                scheduleRetry(attempt);
+            }
+        }
+    }
+
+    /**
+     * Schedule next download attempt, delay is doubled after each failed attempt.
+     * Retry is scheduled rather than waited for, so that caller thread (scheduler or event bus) is not blocked.
+     *
+     * @param attempt failed attempt number
+     */
+    private void scheduleRetry(final int attempt) {
+        long delay = Math.min(retryDelayMillis << (attempt - 1), MAX_RETRY_DELAY_MILLIS);
+        synchronized (retryLock) {
+            pendingRetry = retryExecutor.schedule(new Runnable() {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run() {
+                    checkYellowPage(attempt + 1);
+                }
+            }, delay, MILLISECONDS);
+        }
+    }
+
     /**
      * Parse yellow page.
      *
      * @return true on parsing success
      */
-
     private boolean parseYellowPage() {
         Path ypPath = getIcecastXmlFile();
         return Files.exists(ypPath) && parseYellowPage(ypPath.toFile());
@@ -209,39 +296,119 @@ public final class IcecastDaoImpl implements IcecastDao {
     }
 
     /**
-     * Get Icecast local file.
+     * Get Icecast local temp file.
      *
-     * @return Icecast local file
+     * @return Icecast local temp file
      */
     private Path getIcecastXmlTempFile() {
-        return Paths.get(getDataPath().toString(), ICECAST_FILE_NAME + ".tmp");
+        return Paths.get(getDataPath().toString(), ICECAST_FILE_NAME + TEMP_SUFFIX);
+    }
+
+    /**
+     * Get Icecast local file HTTP validators (ETag and Last-Modified).
+     *
+     * @return Icecast local file HTTP validators
+     */
+    private Path getIcecastValidatorsFile() {
+        return Paths.get(getDataPath().toString(), ICECAST_VALIDATORS_FILE_NAME);
     }
 
     /**
      * Download Icecast yellow page.
+     * A conditional request is sent when yellow page was already downloaded, content is requested with gzip encoding.
      *
-     * @return true on download success
+     * @return true if a new yellow page is downloaded, false if yellow page is not modified
      * @throws IOException
      */
     private boolean downloadYellowPage() throws IOException {
         LOGGER.info("Downloading Icecast Yellow page");
-        URL icecastYellowPage = new URL(configurationDao.getParameter(ICECAST_YELLOW_PAGE_URL));
-        File tempFile = getIcecastXmlTempFile().toFile();
-        try (ReadableByteChannel in = Channels.newChannel(icecastYellowPage.openStream());
-             FileOutputStream out = new FileOutputStream(tempFile)) {
-
-            // Download Icecast yellow page to temp file.
-            out.getChannel().transferFrom(in, 0, Long.MAX_VALUE);
+        Path xmlFile = getIcecastXmlFile();
+        Properties validators = loadValidators(xmlFile);
+        URLConnection connection = new URL(configurationDao.getParameter(ICECAST_YELLOW_PAGE_URL)).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (connection instanceof HttpURLConnection) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (validators.getProperty(ETAG) != null) {
+                connection.setRequestProperty("If-None-Match", validators.getProperty(ETAG));
+            }
+            if (validators.getProperty(LAST_MODIFIED) != null) {
+                connection.setRequestProperty("If-Modified-Since", validators.getProperty(LAST_MODIFIED));
+            }
+            int responseCode = ((HttpURLConnection) connection).getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && Files.exists(xmlFile)) {
+                LOGGER.info("Icecast Yellow page not modified");
+                ((HttpURLConnection) connection).disconnect();
+                // Local yellow page is up to date until next download delay
+                Files.setLastModifiedTime(xmlFile, FileTime.fromMillis(System.currentTimeMillis()));
+                return false;
+            } else if (responseCode != HttpURLConnection.HTTP_OK) {
+                ((HttpURLConnection) connection).disconnect();
+                throw new IOException("Failed to download Icecast Yellow page: HTTP " + responseCode);
+            }
+        }
 
-            LOGGER.info("Icecast Yellow page downloaded");
+        // Download Icecast yellow page to temp file, then rename temp file once download is complete
+        Path tempFile = getIcecastXmlTempFile();
+        try (InputStream in = getInputStream(connection)) {
+            Files.copy(in, tempFile, REPLACE_EXISTING);
         }
-        Path xmlFile = getIcecastXmlFile();
+        Files.move(tempFile, xmlFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        saveValidators(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        LOGGER.info("Icecast Yellow page downloaded");
+        return true;
+    }
+
+    /**
+     * Get connection input stream, decoding gzip content.
+     *
+     * @param connection connection
+     * @return input stream
+     * @throws IOException
+     */
+    private InputStream getInputStream(final URLConnection connection) throws IOException {
+        InputStream in = new BufferedInputStream(connection.getInputStream());
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(in) : in;
+    }
 
-        // Delete previous XML file
-        Files.deleteIfExists(xmlFile);
+    /**
+     * Load HTTP validators of local yellow page.
+     *
+     * @param xmlFile local yellow page
+     * @return HTTP validators, empty when local yellow page does not exist
+     */
+    private Properties loadValidators(final Path xmlFile) {
+        Properties validators = new Properties();
+        Path validatorsFile = getIcecastValidatorsFile();
+        if (Files.exists(xmlFile) && Files.exists(validatorsFile)) {
+            try (InputStream in = Files.newInputStream(validatorsFile)) {
+                validators.load(in);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to load Icecast Yellow page validators: {}", e.getMessage());
+            }
+        }
+        return validators;
+    }
 
-        // Rename temp file once download is complete
-        return tempFile.renameTo(xmlFile.toFile());
+    /**
+     * Save HTTP validators of local yellow page.
+     *
+     * @param etag         ETag header (may be null)
+     * @param lastModified Last-Modified header (may be null)
+     */
+    private void saveValidators(final String etag, final String lastModified) {
+        Properties validators = new Properties();
+        if (etag != null) {
+            validators.setProperty(ETAG, etag);
+        }
+        if (lastModified != null) {
+            validators.setProperty(LAST_MODIFIED, lastModified);
+        }
+        try (OutputStream out = Files.newOutputStream(getIcecastValidatorsFile())) {
+            validators.store(out, null);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save Icecast Yellow page validators: {}", e.getMessage());
+        }
     }
 
     /**
@@ -254,7 +421,7 @@ public final class IcecastDaoImpl implements IcecastDao {
         cal.add(HOUR, -(configurationDao.getParameter(ICECAST_YELLOW_PAGE_DOWNLOAD_DELAY_HOURS)));
 
         Path xmlFile = getIcecastXmlFile();
-        return !Files.exists(xmlFile) || Files.getLastModifiedTime(xmlFile).toMillis() < cal.getTimeInMillis();
+        return !Files.exists(xmlFile) || Files.getLastModifiedTime(xmlFile).toMillis() <= cal.getTimeInMillis();
 
     }
 
@@ -264,29 +431,14 @@ public final class IcecastDaoImpl implements IcecastDao {
             LOGGER.debug("parse Yellow page");
         }
         boolean result = true;
-
-        // Configure XStream
-        XStream xstream = new XStream(new Xpp3Driver());
-        xstream.alias("directory", IcecastDirectory.class);
-        xstream.alias("entry", IcecastEntry.class);
-        xstream.addImplicitCollection(IcecastDirectory.class, "entries");
-        xstream.aliasField("server_name", IcecastEntry.class, "name");
-        xstream.aliasField("listen_url", IcecastEntry.class, "url");
-        xstream.aliasField("server_type", IcecastEntry.class, "type");
-        xstream.ignoreUnknownElements();
-
-        // Parse Xml file using object input stream
-        try (InputStream in = new FileInputStream(ypFile);
-             ObjectInputStream ois = xstream.createObjectInputStream(in)) {
-
-            Set<IcecastEntry> entries = getIcecastEntries(ois);
+        try {
+            IcecastDirectory newDirectory = parser.parse(ypFile);
 
             // Set new Icecast directory
-            if (!entries.isEmpty()) {
-                loadDirectory(new IcecastDirectory(entries));
+            if (!newDirectory.getEntries().isEmpty()) {
+                loadDirectory(newDirectory);
             }
-
-        } catch (IOException | XStreamException | ClassNotFoundException e) {
+        } catch (HolmesException e) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(e.getMessage(), e);
             }
@@ -301,72 +453,42 @@ public final class IcecastDaoImpl implements IcecastDao {
         return result;
     }
 
-    /**
-     * Get Icecast entries.
-     *
-     * @param ois object input stream
-     * @return Icecast entries
-     * @throws IOException
-     * @throws ClassNotFoundException
-     */
-    private Set<IcecastEntry> getIcecastEntries(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        Set<IcecastEntry> entries = Sets.newHashSet();
-        try {
-            Object object = ois.readObject();
-            while (object != null) {
-                if (object instanceof IcecastEntry) {
-                    entries.add((IcecastEntry) object);
-                }
-
-                object = ois.readObject();
-            }
-        } catch (EOFException e) {
-            // End of file reached. Ignore
-        }
-        return entries;
-    }
-
     @VisibleForTesting
     IcecastDirectory getDirectory() {
         return directory;
     }
 
     /**
-     * Load Icecast directory
+     * Load Icecast directory.
+     * Media index is updated with the difference between previous and new directory: entries are keyed by listen url,
+     * removed and updated entries are removed from media index, unchanged entries keep their ids.
      *
      * @param directory IceCast directory
      */
     @VisibleForTesting
     void loadDirectory(IcecastDirectory directory) {
+        IcecastDirectory previousDirectory;
         synchronized (directoryLock) {
+            previousDirectory = this.directory;
             this.directory = directory;
             if (directory != null) {
-                LOGGER.info("Icecast directory contains {} entries", this.directory.getEntries().size());
+                LOGGER.info("Icecast directory contains {} entries", directory.getEntries().size());
             }
         }
 
-        // Remove previous Icecast elements from media index
-        for (IcecastGenre genre : genres) {
-            mediaIndexDao.removeChildren(genre.getId());
-        }
-    }
-
-    /**
-     * Filter Icecast entries by genre.
-     */
-    private static final class IcecastEntryGenreFilter implements Predicate<IcecastEntry> {
-        private final String genre;
-
-        IcecastEntryGenreFilter(final String genre) {
-            this.genre = genre;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public boolean apply(final IcecastEntry entry) {
-            return entry != null && entry.getGenre().contains(genre);
+        if (previousDirectory != null) {
+            // Remove previous Icecast elements that are not in new directory from media index
+            int removedCount = 0;
+            for (IcecastGenre genre : genres) {
+                for (IcecastEntry previousEntry : previousDirectory.getEntriesByGenre(genre.getName())) {
+                    IcecastEntry entry = directory != null ? directory.getEntryByUrl(previousEntry.getUrl()) : null;
+                    if (!previousEntry.equals(entry)) {
+                        mediaIndexDao.remove(previousEntry.getId(genre.getId()));
+                        removedCount++;
+                    }
+                }
+            }
+            LOGGER.debug("Removed {} Icecast entries from media index", removedCount);
         }
     }
-}
\ No newline at end of file
+}
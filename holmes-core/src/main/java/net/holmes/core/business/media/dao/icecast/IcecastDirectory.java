@@ -17,13 +17,35 @@
 
 package net.holmes.core.business.media.dao.icecast;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 
 /**
  * Icecast directory.
+ * Directory is indexed on load: each token of an entry genre field maps to the sorted array of matching entry positions,
+ * so that entries of a genre are found without scanning the whole directory.
  */
 public class IcecastDirectory {
+    private static final Splitter GENRE_SPLITTER = Splitter.on(CharMatcher.JAVA_LETTER_OR_DIGIT.negate()).omitEmptyStrings();
+    private static final int[] NO_ENTRY = new int[0];
+
     private final Set<IcecastEntry> entries;
+    private final IcecastEntry[] indexedEntries;
+    private final Map<String, int[]> genreIndex;
+    private final Map<String, IcecastEntry> entriesByUrl;
 
     /**
      * Instantiates a new Icecast directory.
@@ -31,10 +53,214 @@ public class IcecastDirectory {
      * @param entries Icecast entries
      */
     public IcecastDirectory(Set<IcecastEntry> entries) {
+        Builder builder = new Builder();
+        for (IcecastEntry entry : entries) {
+            builder.add(entry);
+        }
         this.entries = entries;
+        this.indexedEntries = builder.getIndexedEntries();
+        this.genreIndex = builder.getGenreIndex();
+        this.entriesByUrl = builder.entriesByUrl;
+    }
+
+    /**
+     * Instantiates a new Icecast directory from a builder.
+     *
+     * @param builder directory builder
+     */
+    private IcecastDirectory(Builder builder) {
+        this.entries = builder.entries;
+        this.indexedEntries = builder.getIndexedEntries();
+        this.genreIndex = builder.getGenreIndex();
+        this.entriesByUrl = builder.entriesByUrl;
     }
 
     public Set<IcecastEntry> getEntries() {
         return entries;
     }
+
+    /**
+     * Get entry by listen url.
+     *
+     * @param url listen url
+     * @return Icecast entry or null
+     */
+    public IcecastEntry getEntryByUrl(final String url) {
+        return entriesByUrl.get(url);
+    }
+
+    /**
+     * Get entries whose genre field contains all tokens of a genre.
+     *
+     * @param genre genre
+     * @return Icecast entries
+     */
+    public Collection<IcecastEntry> getEntriesByGenre(final String genre) {
+        Set<String> tokens = tokenize(genre);
+        if (tokens.isEmpty()) {
+            return new IndexedEntries(indexedEntries, NO_ENTRY);
+        }
+
+        // Start from the shortest posting array, then keep positions present in every other array
+        List<int[]> postings = Lists.newArrayListWithCapacity(tokens.size());
+        int[] shortest = null;
+        for (String token : tokens) {
+            int[] positions = genreIndex.get(token);
+            if (positions == null) {
+                return new IndexedEntries(indexedEntries, NO_ENTRY);
+            }
+            postings.add(positions);
+            if (shortest == null || positions.length < shortest.length) {
+                shortest = positions;
+            }
+        }
+        if (postings.size() == 1) {
+            return new IndexedEntries(indexedEntries, shortest);
+        }
+        int[] result = new int[shortest.length];
+        int count = 0;
+        for (int position : shortest) {
+            if (containsPosition(postings, position)) {
+                result[count++] = position;
+            }
+        }
+        return new IndexedEntries(indexedEntries, Arrays.copyOf(result, count));
+    }
+
+    /**
+     * Split genre field into lower case tokens.
+     *
+     * @param genre genre field
+     * @return genre tokens
+     */
+    private static Set<String> tokenize(final String genre) {
+        Set<String> tokens = Sets.newLinkedHashSet();
+        if (genre != null) {
+            for (String token : GENRE_SPLITTER.split(genre)) {
+                tokens.add(token.toLowerCase(Locale.ROOT));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Whether an entry position is in all posting arrays.
+     *
+     * @param postings posting arrays
+     * @param position entry position
+     * @return true if position is in all posting arrays
+     */
+    private static boolean containsPosition(final List<int[]> postings, final int position) {
+        for (int[] positions : postings) {
+            if (Arrays.binarySearch(positions, position) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Icecast directory builder: entries are indexed as they are added, so that a directory is built in one pass.
+     */
+    public static final class Builder {
+        private final Set<IcecastEntry> entries = Sets.newHashSet();
+        private final List<IcecastEntry> indexedEntries = Lists.newArrayList();
+        private final Map<String, Postings> postings = Maps.newHashMap();
+        private final Map<String, IcecastEntry> entriesByUrl = Maps.newHashMap();
+
+        /**
+         * Add entry to directory.
+         *
+         * @param entry Icecast entry
+         * @return true if entry was added, false for a duplicate entry
+         */
+        public boolean add(final IcecastEntry entry) {
+            if (!entries.add(entry)) {
+                return false;
+            }
+            int position = indexedEntries.size();
+            indexedEntries.add(entry);
+            if (!entriesByUrl.containsKey(entry.getUrl())) {
+                entriesByUrl.put(entry.getUrl(), entry);
+            }
+            for (String token : tokenize(entry.getGenre())) {
+                Postings tokenPostings = postings.get(token);
+                if (tokenPostings == null) {
+                    tokenPostings = new Postings();
+                    postings.put(token, tokenPostings);
+                }
+                tokenPostings.add(position);
+            }
+            return true;
+        }
+
+        /**
+         * Build Icecast directory.
+         *
+         * @return Icecast directory
+         */
+        public IcecastDirectory build() {
+            return new IcecastDirectory(this);
+        }
+
+        private IcecastEntry[] getIndexedEntries() {
+            return indexedEntries.toArray(new IcecastEntry[indexedEntries.size()]);
+        }
+
+        private Map<String, int[]> getGenreIndex() {
+            ImmutableMap.Builder<String, int[]> builder = ImmutableMap.builder();
+            for (Map.Entry<String, Postings> posting : postings.entrySet()) {
+                builder.put(posting.getKey(), posting.getValue().toArray());
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Growable array of entry positions.
+     */
+    private static final class Postings {
+        private int[] positions = new int[4];
+        private int size;
+
+        void add(final int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(positions, size);
+        }
+    }
+
+    /**
+     * Read only view of indexed entries at given positions.
+     */
+    private static final class IndexedEntries extends AbstractList<IcecastEntry> implements RandomAccess {
+        private final IcecastEntry[] entries;
+        private final int[] positions;
+
+        IndexedEntries(final IcecastEntry[] entries, final int[] positions) {
+            this.entries = entries;
+            this.positions = positions;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IcecastEntry get(final int index) {
+            return entries[positions[index]];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return positions.length;
+        }
+    }
 }
@@ -18,11 +18,16 @@
 package net.holmes.core.business.media.dao.icecast;
 
 import com.google.common.base.Objects;
+import com.google.common.hash.Hashing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Icecast entry.
  */
 public class IcecastEntry {
+    private static final String ICECAST_ENTRY_ID_ROOT = "IcecastEntry_";
+
     private final String name;
     private final String url;
     private final String type;
@@ -59,6 +64,16 @@ public class IcecastEntry {
         return genre;
     }
 
+    /**
+     * Get entry id in a genre. Id is derived from genre id and listen url, so that it is kept across directory reloads.
+     *
+     * @param genreId genre id
+     * @return entry id
+     */
+    public String getId(final String genreId) {
+        return ICECAST_ENTRY_ID_ROOT + Hashing.sha1().hashString(genreId + ":" + url, UTF_8).toString();
+    }
+
     /**
      * {@inheritDoc}
      */
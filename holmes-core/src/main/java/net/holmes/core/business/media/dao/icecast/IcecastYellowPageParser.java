@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.icecast;
+
+import net.holmes.core.common.exception.HolmesException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Icecast yellow page parser.
+ * Yellow page is read in one pass with a StAX reader, only the elements of Icecast entries are extracted
+ * and entries are indexed as they are read.
+ */
+final class IcecastYellowPageParser {
+    private static final String ENTRY_ELEMENT = "entry";
+
+    private final XMLInputFactory xmlInputFactory;
+
+    /**
+     * Instantiates a new Icecast yellow page parser.
+     */
+    IcecastYellowPageParser() {
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Parse yellow page.
+     *
+     * @param ypFile yellow page file
+     * @return Icecast directory
+     * @throws HolmesException
+     */
+    public IcecastDirectory parse(final File ypFile) throws HolmesException {
+        IcecastDirectory.Builder builder = new IcecastDirectory.Builder();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(ypFile))) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == START_ELEMENT && ENTRY_ELEMENT.equals(reader.getLocalName())) {
+                        IcecastEntry entry = parseEntry(reader);
+                        if (entry != null) {
+                            builder.add(entry);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new HolmesException(e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parse entry, reader is positioned on entry start element. Reader is positioned on entry end element on return.
+     *
+     * @param reader XML reader
+     * @return Icecast entry or null if entry has no listen url
+     * @throws XMLStreamException
+     */
+    private IcecastEntry parseEntry(final XMLStreamReader reader) throws XMLStreamException {
+        String name = null;
+        String url = null;
+        String type = null;
+        String genre = null;
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                if (depth == 1) {
+                    switch (reader.getLocalName()) {
+                        case "server_name":
+                            name = reader.getElementText().trim();
+                            continue;
+                        case "listen_url":
+                            url = reader.getElementText().trim();
+                            continue;
+                        case "server_type":
+                            type = reader.getElementText().trim();
+                            continue;
+                        case "genre":
+                            genre = reader.getElementText().trim();
+                            continue;
+                        default:
+                            break;
+                    }
+                }
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+        return url != null && !url.isEmpty() ? new IcecastEntry(name, url, type, genre) : null;
+    }
+}
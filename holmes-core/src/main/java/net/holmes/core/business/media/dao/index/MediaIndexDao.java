@@ -46,6 +46,13 @@ public interface MediaIndexDao {
      */
     void put(String uuid, MediaIndexElement element);
 
+    /**
+     * Removes media index element.
+     *
+     * @param uuid element uuid
+     */
+    void remove(String uuid);
+
     /**
      * Removes child media index elements.
      *
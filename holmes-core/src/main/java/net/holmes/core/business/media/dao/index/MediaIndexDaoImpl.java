@@ -82,6 +82,14 @@ public class MediaIndexDaoImpl implements MediaIndexDao {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(final String uuid) {
+        elements.remove(uuid);
+    }
+
     /**
      * {@inheritDoc}
      */
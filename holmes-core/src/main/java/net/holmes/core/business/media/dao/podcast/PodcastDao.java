@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import net.holmes.core.business.media.model.AbstractNode;
+
+import java.util.List;
+
+/**
+ * Dao for podcast entries.
+ */
+public interface PodcastDao {
+
+    /**
+     * Get podcast entries from last successful refresh.
+     * This method never downloads the podcast: when podcast has not been refreshed yet, a refresh is requested and an empty list is returned.
+     *
+     * @param podcastId  podcast id
+     * @param podcastUrl podcast URL
+     * @return podcast entries
+     */
+    List<AbstractNode> getPodcastEntries(String podcastId, String podcastUrl);
+
+    /**
+     * Refresh all configured podcasts in background.
+     */
+    void refreshPodcasts();
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.configuration.ConfigurationNode;
+import net.holmes.core.business.media.dao.index.MediaIndexDao;
+import net.holmes.core.business.media.dao.index.MediaIndexElement;
+import net.holmes.core.business.media.model.AbstractNode;
+import net.holmes.core.business.media.model.RawUrlNode;
+import net.holmes.core.common.MimeType;
+import net.holmes.core.common.exception.HolmesException;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.lang.Math.max;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.business.media.dao.index.MediaIndexElementFactory.buildConfigMediaIndexElement;
+import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_PODCAST_ENTRY;
+import static net.holmes.core.business.media.model.RootNode.PODCAST;
+import static net.holmes.core.common.ConfigurationParameter.PODCAST_MAX_ENTRIES;
+import static net.holmes.core.common.ConfigurationParameter.PODCAST_REFRESH_STAGGER_SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.PODCAST_REFRESH_THREADS;
+import static net.holmes.core.common.MediaType.TYPE_RAW_URL;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Podcast dao implementation.
+ * Podcasts are downloaded and parsed in background, browse requests are served with the entries of the last successful refresh.
+ * Podcast feeds are stored on disk, so entries are available right after a restart and unchanged feeds are not downloaded again.
+ * Entries are put again in media index on each refresh and browse request, as media index cleaning may drop them.
+ */
+public final class PodcastDaoImpl implements PodcastDao {
+    private static final Logger LOGGER = getLogger(PodcastDaoImpl.class);
+    private static final String PODCAST_DIR = "podcasts";
+    private static final String PODCAST_ENTRY_ID_ROOT = "PodcastEntry_";
+
+    private final ConfigurationDao configurationDao;
+    private final MediaIndexDao mediaIndexDao;
+    private final PodcastFetcher podcastFetcher;
+    private final ConcurrentMap<String, PodcastFeed> podcastFeeds;
+    private final ConcurrentMap<String, List<AbstractNode>> podcastEntries;
+    private final ConcurrentMap<String, Map<String, MediaIndexElement>> podcastIndexElements;
+    private final Set<String> pendingRefreshes;
+    private final ScheduledExecutorService refreshExecutor;
+    private final int refreshStaggerSeconds;
+
+    /**
+     * Instantiates a new podcast dao implementation.
+     *
+     * @param configurationDao   configuration dao
+     * @param mediaIndexDao      media index dao
+     * @param localHolmesDataDir local Holmes data directory
+     */
+    @Inject
+    public PodcastDaoImpl(final ConfigurationDao configurationDao, final MediaIndexDao mediaIndexDao, @Named("localHolmesDataDir") final String localHolmesDataDir) {
+        this.configurationDao = configurationDao;
+        this.mediaIndexDao = mediaIndexDao;
+        this.podcastFetcher = new PodcastFetcher(Paths.get(localHolmesDataDir, PODCAST_DIR), max(configurationDao.getParameter(PODCAST_MAX_ENTRIES), 0));
+        this.podcastFeeds = Maps.newConcurrentMap();
+        this.podcastEntries = Maps.newConcurrentMap();
+        this.podcastIndexElements = Maps.newConcurrentMap();
+        this.pendingRefreshes = Sets.newConcurrentHashSet();
+        this.refreshStaggerSeconds = max(configurationDao.getParameter(PODCAST_REFRESH_STAGGER_SECONDS), 0);
+        this.refreshExecutor = Executors.newScheduledThreadPool(max(configurationDao.getParameter(PODCAST_REFRESH_THREADS), 1),
+                new ThreadFactoryBuilder().setNameFormat("podcast-%d").setDaemon(true).build());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AbstractNode> getPodcastEntries(final String podcastId, final String podcastUrl) {
+        List<AbstractNode> entries = podcastEntries.get(podcastUrl);
+        if (entries == null) {
+            // Podcast not refreshed yet
+            scheduleRefresh(podcastId, podcastUrl, 0);
+            return Lists.newArrayListWithCapacity(0);
+        }
+        indexEntries(podcastUrl);
+        return entries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refreshPodcasts() {
+        Set<String> podcastUrls = Sets.newHashSet();
+        long delay = 0;
+        for (ConfigurationNode podcast : configurationDao.getNodes(PODCAST)) {
+            podcastUrls.add(podcast.getPath());
+            // Index podcast before its entries, so that entries are not cleaned from media index
+            mediaIndexDao.put(podcast.getId(), buildConfigMediaIndexElement(PODCAST, podcast));
+            // Stagger refreshes so that podcasts are not all downloaded at the same time
+            scheduleRefresh(podcast.getId(), podcast.getPath(), delay);
+            delay += refreshStaggerSeconds;
+        }
+
+        // Forget podcasts removed from configuration
+        podcastFeeds.keySet().retainAll(podcastUrls);
+        podcastEntries.keySet().retainAll(podcastUrls);
+        podcastIndexElements.keySet().retainAll(podcastUrls);
+        podcastFetcher.retainFeeds(podcastUrls);
+    }
+
+    /**
+     * Schedule podcast refresh, unless a refresh of this podcast is already pending.
+     *
+     * @param podcastId    podcast id
+     * @param podcastUrl   podcast URL
+     * @param delaySeconds delay before refresh
+     */
+    private void scheduleRefresh(final String podcastId, final String podcastUrl, final long delaySeconds) {
+        if (pendingRefreshes.add(podcastUrl)) {
+            try {
+                refreshExecutor.schedule(new Runnable() {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void run() {
+                        try {
+                            refreshPodcast(podcastId, podcastUrl);
+                        } finally {
+                            pendingRefreshes.remove(podcastUrl);
+                        }
+                    }
+                }, delaySeconds, SECONDS);
+            } catch (RejectedExecutionException e) {
+                pendingRefreshes.remove(podcastUrl);
+                LOGGER.warn("[scheduleRefresh] Podcast refresh rejected: {}", podcastUrl);
+            }
+        }
+    }
+
+    /**
+     * Refresh podcast: send a conditional request for the podcast feed, then replace its entries if feed has changed.
+     * On failure, entries from last successful refresh are kept.
+     *
+     * @param podcastId  podcast id
+     * @param podcastUrl podcast URL
+     */
+    @VisibleForTesting
+    void refreshPodcast(final String podcastId, final String podcastUrl) {
+        PodcastFeed cachedFeed = podcastFeeds.get(podcastUrl);
+        if (cachedFeed == null) {
+            // Serve stored entries while podcast is fetched
+            cachedFeed = podcastFetcher.loadFeed(podcastUrl);
+            if (cachedFeed != null) {
+                loadFeed(podcastId, cachedFeed);
+            }
+        }
+
+        try {
+            PodcastFeed feed = podcastFetcher.fetchFeed(podcastUrl, cachedFeed);
+            if (feed != cachedFeed) {
+                loadFeed(podcastId, feed);
+            } else {
+                indexEntries(podcastUrl);
+            }
+        } catch (HolmesException e) {
+            LOGGER.warn("[refreshPodcast] Failed to refresh podcast {}: {}", podcastUrl, e.getMessage());
+            indexEntries(podcastUrl);
+        }
+    }
+
+    /**
+     * Load podcast feed entries and replace previous entries.
+     * Entry ids are derived from entry guid (or enclosure url), so that they are stable across refreshes.
+     * Changes are applied as a diff to media index: removed and updated entries are retired first, then unchanged entries are kept
+     * (and put again if they were cleaned) and new entries are added.
+     *
+     * @param podcastId podcast id
+     * @param feed      podcast feed
+     */
+    @VisibleForTesting
+    void loadFeed(final String podcastId, final PodcastFeed feed) {
+        // Index previous entries by id
+        Map<String, PodcastEntry> previousEntries = Maps.newHashMap();
+        PodcastFeed previousFeed = podcastFeeds.get(feed.getUrl());
+        if (previousFeed != null) {
+            for (PodcastEntry previousEntry : previousFeed.getEntries()) {
+                previousEntries.put(getEntryId(podcastId, previousEntry), previousEntry);
+            }
+        }
+        Map<String, AbstractNode> previousNodes = Maps.newHashMap();
+        List<AbstractNode> previousNodeList = podcastEntries.get(feed.getUrl());
+        if (previousNodeList != null) {
+            for (AbstractNode previousNode : previousNodeList) {
+                previousNodes.put(previousNode.getId(), previousNode);
+            }
+        }
+
+        int changes = 0;
+        Set<String> entryIds = Sets.newHashSetWithExpectedSize(feed.getEntries().size());
+        Set<String> entryUrls = Sets.newHashSetWithExpectedSize(feed.getEntries().size());
+        List<AbstractNode> entries = Lists.newArrayListWithCapacity(feed.getEntries().size());
+        Map<String, MediaIndexElement> indexElements = Maps.newHashMapWithExpectedSize(feed.getEntries().size());
+        Set<String> removedEntryIds = Sets.newHashSet();
+        for (PodcastEntry entry : feed.getEntries()) {
+            String entryId = getEntryId(podcastId, entry);
+            if (!entryIds.add(entryId) || !entryUrls.add(entry.getUrl())) {
+                // Skip duplicate entry
+                continue;
+            }
+
+            PodcastEntry previousEntry = previousEntries.remove(entryId);
+            AbstractNode entryNode = previousNodes.remove(entryId);
+            if (entryNode == null || !entry.equals(previousEntry)) {
+                // New or updated entry
+                if (previousEntry != null) {
+                    removedEntryIds.add(entryId);
+                }
+                entryNode = buildEntryNode(podcastId, entryId, entry);
+                changes++;
+            }
+            indexElements.put(entryId, new MediaIndexElement(podcastId, TYPE_RAW_URL.getValue(), entry.getMimeType(), entry.getUrl(), entry.getTitle(), false, false));
+            entries.add(entryNode);
+        }
+
+        // Retire updated entries and entries that are no longer in podcast before indexing new ones:
+        // an entry whose guid changed gets a new id for the same index element, which media index only holds once
+        removedEntryIds.addAll(previousEntries.keySet());
+        changes += previousEntries.size();
+        for (String removedEntryId : removedEntryIds) {
+            mediaIndexDao.remove(removedEntryId);
+        }
+        for (Map.Entry<String, MediaIndexElement> indexElement : indexElements.entrySet()) {
+            mediaIndexDao.put(indexElement.getKey(), indexElement.getValue());
+        }
+
+        podcastFeeds.put(feed.getUrl(), feed);
+        podcastEntries.put(feed.getUrl(), entries);
+        podcastIndexElements.put(feed.getUrl(), indexElements);
+        LOGGER.debug("[loadFeed] {} entries in podcast {}, {} changes", entries.size(), feed.getUrl(), changes);
+    }
+
+    /**
+     * Put podcast entries in media index again, unless they are still there.
+     *
+     * @param podcastUrl podcast URL
+     */
+    private void indexEntries(final String podcastUrl) {
+        Map<String, MediaIndexElement> indexElements = podcastIndexElements.get(podcastUrl);
+        if (indexElements != null) {
+            for (Map.Entry<String, MediaIndexElement> indexElement : indexElements.entrySet()) {
+                mediaIndexDao.put(indexElement.getKey(), indexElement.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get podcast entry id, derived from entry guid or enclosure url.
+     *
+     * @param podcastId podcast id
+     * @param entry     podcast entry
+     * @return entry id
+     */
+    private String getEntryId(final String podcastId, final PodcastEntry entry) {
+        String entryKey = entry.getGuid() != null ? entry.getGuid() : entry.getUrl();
+        return PODCAST_ENTRY_ID_ROOT + Hashing.sha1().hashString(podcastId + ":" + entryKey, UTF_8).toString();
+    }
+
+    /**
+     * Build podcast entry node.
+     *
+     * @param podcastId podcast id
+     * @param entryId   entry id
+     * @param entry     podcast entry
+     * @return podcast entry node
+     */
+    private RawUrlNode buildEntryNode(final String podcastId, final String entryId, final PodcastEntry entry) {
+        RawUrlNode entryNode = new RawUrlNode(TYPE_PODCAST_ENTRY, entryId, podcastId, entry.getTitle(), MimeType.valueOf(entry.getMimeType()), entry.getUrl(), entry.getDuration());
+        entryNode.setIconUrl(entry.getIconUrl());
+        entryNode.setModifiedDate(entry.getPublishedDate());
+        return entryNode;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import com.google.common.base.Objects;
+
+/**
+ * Podcast entry, parsed from a RSS item enclosure.
+ */
+public final class PodcastEntry {
+    private final String guid;
+    private final String title;
+    private final String url;
+    private final String mimeType;
+    private final String duration;
+    private final String iconUrl;
+    private final Long publishedDate;
+
+    /**
+     * Instantiates a new podcast entry.
+     *
+     * @param guid          entry guid (may be null)
+     * @param title         entry title
+     * @param url           enclosure url
+     * @param mimeType      enclosure mime type
+     * @param duration      entry duration
+     * @param iconUrl       entry icon url
+     * @param publishedDate entry published date
+     */
+    public PodcastEntry(final String guid, final String title, final String url, final String mimeType, final String duration, final String iconUrl, final Long publishedDate) {
+        this.guid = guid;
+        this.title = title;
+        this.url = url;
+        this.mimeType = mimeType;
+        this.duration = duration;
+        this.iconUrl = iconUrl;
+        this.publishedDate = publishedDate;
+    }
+
+    public String getGuid() {
+        return guid;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public String getIconUrl() {
+        return iconUrl;
+    }
+
+    public Long getPublishedDate() {
+        return publishedDate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(guid, title, url, mimeType, duration, iconUrl, publishedDate);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final PodcastEntry other = (PodcastEntry) obj;
+        return Objects.equal(this.guid, other.guid)
+                && Objects.equal(this.title, other.title)
+                && Objects.equal(this.url, other.url)
+                && Objects.equal(this.mimeType, other.mimeType)
+                && Objects.equal(this.duration, other.duration)
+                && Objects.equal(this.iconUrl, other.iconUrl)
+                && Objects.equal(this.publishedDate, other.publishedDate);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("guid", guid)
+                .add("title", title)
+                .add("url", url)
+                .add("mimeType", mimeType)
+                .add("duration", duration)
+                .add("iconUrl", iconUrl)
+                .add("publishedDate", publishedDate)
+                .toString();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import java.util.List;
+
+/**
+ * Podcast feed: parsed entries and the HTTP validators of the feed they were parsed from.
+ */
+public final class PodcastFeed {
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final List<PodcastEntry> entries;
+
+    /**
+     * Instantiates a new podcast feed.
+     *
+     * @param url          podcast url
+     * @param etag         feed ETag header (may be null)
+     * @param lastModified feed Last-Modified header (may be null)
+     * @param entries      podcast entries
+     */
+    public PodcastFeed(final String url, final String etag, final String lastModified, final List<PodcastEntry> entries) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.entries = entries;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public List<PodcastEntry> getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.io.xml.Xpp3Driver;
+import net.holmes.core.common.exception.HolmesException;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Podcast fetcher.
+ * Raw feeds and parsed entries are stored on disk with their HTTP validators (ETag and Last-Modified),
+ * so that unchanged feeds are neither downloaded nor parsed again, even after a restart.
+ */
+final class PodcastFetcher {
+    private static final Logger LOGGER = getLogger(PodcastFetcher.class);
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final String RAW_FEED_SUFFIX = ".rss";
+    private static final String FEED_SUFFIX = ".xml";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path podcastDir;
+    private final PodcastParser parser;
+    private final XStream xstream;
+
+    /**
+     * Instantiates a new podcast fetcher.
+     *
+     * @param podcastDir directory where podcast feeds are stored
+     * @param maxEntries max number of items parsed in a feed, 0 for no limit
+     */
+    PodcastFetcher(final Path podcastDir, final int maxEntries) {
+        this.podcastDir = podcastDir;
+        this.parser = new PodcastParser(maxEntries);
+        this.xstream = new XStream(new Xpp3Driver());
+        this.xstream.alias("podcast", PodcastFeed.class);
+        this.xstream.alias("entry", PodcastEntry.class);
+    }
+
+    /**
+     * Load podcast feed stored on disk.
+     *
+     * @param podcastUrl podcast url
+     * @return stored podcast feed or null
+     */
+    PodcastFeed loadFeed(final String podcastUrl) {
+        Path feedFile = getFeedFile(podcastUrl, FEED_SUFFIX);
+        if (Files.exists(feedFile)) {
+            try (Reader reader = Files.newBufferedReader(feedFile, UTF_8)) {
+                PodcastFeed feed = (PodcastFeed) xstream.fromXML(reader);
+                if (podcastUrl.equals(feed.getUrl())) {
+                    return feed;
+                }
+            } catch (IOException | XStreamException | ClassCastException e) {
+                LOGGER.warn("[loadFeed] Failed to load stored podcast {}: {}", podcastUrl, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fetch podcast feed. A conditional request is sent when a cached feed is available.
+     *
+     * @param podcastUrl podcast url
+     * @param cachedFeed cached podcast feed (may be null)
+     * @return cached feed when podcast is not modified, else the new podcast feed
+     * @throws HolmesException
+     */
+    PodcastFeed fetchFeed(final String podcastUrl, final PodcastFeed cachedFeed) throws HolmesException {
+        try {
+            URLConnection connection = new URL(podcastUrl).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            if (connection instanceof HttpURLConnection) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+                if (cachedFeed != null && cachedFeed.getEtag() != null) {
+                    connection.setRequestProperty("If-None-Match", cachedFeed.getEtag());
+                }
+                if (cachedFeed != null && cachedFeed.getLastModified() != null) {
+                    connection.setRequestProperty("If-Modified-Since", cachedFeed.getLastModified());
+                }
+                int responseCode = ((HttpURLConnection) connection).getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedFeed != null) {
+                    LOGGER.debug("[fetchFeed] Podcast not modified: {}", podcastUrl);
+                    ((HttpURLConnection) connection).disconnect();
+                    return cachedFeed;
+                } else if (responseCode != HttpURLConnection.HTTP_OK) {
+                    ((HttpURLConnection) connection).disconnect();
+                    throw new IOException("HTTP " + responseCode);
+                }
+            }
+
+            // Download raw feed, then parse it
+            Path rawFeedFile = download(podcastUrl, connection);
+            PodcastFeed feed = new PodcastFeed(podcastUrl, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), parser.parse(rawFeedFile.toFile()));
+            saveFeed(feed);
+            return feed;
+        } catch (IOException e) {
+            throw new HolmesException(e);
+        }
+    }
+
+    /**
+     * Remove stored feeds of podcasts that are not in the podcast list.
+     *
+     * @param podcastUrls podcast urls to keep
+     */
+    void retainFeeds(final Collection<String> podcastUrls) {
+        if (Files.isDirectory(podcastDir)) {
+            Set<String> keep = Sets.newHashSet();
+            for (String podcastUrl : podcastUrls) {
+                keep.add(getFeedFile(podcastUrl, RAW_FEED_SUFFIX).getFileName().toString());
+                keep.add(getFeedFile(podcastUrl, FEED_SUFFIX).getFileName().toString());
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(podcastDir)) {
+                for (Path file : files) {
+                    if (!keep.contains(file.getFileName().toString())) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("[retainFeeds] Failed to clean podcast directory: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Download raw feed to disk.
+     *
+     * @param podcastUrl podcast url
+     * @param connection open connection
+     * @return raw feed file
+     * @throws IOException
+     */
+    private Path download(final String podcastUrl, final URLConnection connection) throws IOException {
+        Files.createDirectories(podcastDir);
+        Path rawFeedFile = getFeedFile(podcastUrl, RAW_FEED_SUFFIX);
+        Path tempFile = getFeedFile(podcastUrl, RAW_FEED_SUFFIX + TEMP_SUFFIX);
+        try (InputStream in = getInputStream(connection)) {
+            Files.copy(in, tempFile, REPLACE_EXISTING);
+        }
+        Files.move(tempFile, rawFeedFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        return rawFeedFile;
+    }
+
+    /**
+     * Get connection input stream, decoding gzip content.
+     *
+     * @param connection connection
+     * @return input stream
+     * @throws IOException
+     */
+    private InputStream getInputStream(final URLConnection connection) throws IOException {
+        InputStream in = new BufferedInputStream(connection.getInputStream());
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(in) : in;
+    }
+
+    /**
+     * Store parsed podcast feed on disk.
+     *
+     * @param feed podcast feed
+     */
+    private void saveFeed(final PodcastFeed feed) {
+        Path feedFile = getFeedFile(feed.getUrl(), FEED_SUFFIX);
+        Path tempFile = getFeedFile(feed.getUrl(), FEED_SUFFIX + TEMP_SUFFIX);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, UTF_8)) {
+                xstream.toXML(feed, writer);
+            }
+            Files.move(tempFile, feedFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException | XStreamException e) {
+            LOGGER.warn("[saveFeed] Failed to store podcast {}: {}", feed.getUrl(), e.getMessage());
+        }
+    }
+
+    /**
+     * Get podcast feed file.
+     *
+     * @param podcastUrl podcast url
+     * @param suffix     file suffix
+     * @return feed file
+     */
+    private Path getFeedFile(final String podcastUrl, final String suffix) {
+        return podcastDir.resolve(Hashing.sha1().hashString(podcastUrl, UTF_8).toString() + suffix);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import com.google.common.collect.Lists;
+import com.sun.syndication.feed.module.itunes.types.Duration;
+import net.holmes.core.common.MimeType;
+import net.holmes.core.common.exception.HolmesException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+
+import static com.sun.syndication.feed.module.RssModule.ITUNES_URI;
+import static com.sun.syndication.feed.module.RssModule.MEDIA_RSS_URI;
+import static com.sun.syndication.io.impl.DateParser.parseDate;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Podcast parser.
+ * RSS and Atom feeds are read in one pass with a StAX reader, only the elements needed to build podcast entries are extracted.
+ */
+class PodcastParser {
+    private static final String RSS_1_NAMESPACE = "http://purl.org/rss/1.0/";
+    private static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+    private static final String DUBLIN_CORE_NAMESPACE = "http://purl.org/dc/elements/1.1/";
+
+    private final XMLInputFactory xmlInputFactory;
+    private final int maxEntries;
+
+    /**
+     * Instantiates a new podcast parser.
+     *
+     * @param maxEntries max number of feed items to parse, 0 for no limit. As feeds list newest items first, only newest items are parsed
+     */
+    PodcastParser(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Parse podcast feed.
+     *
+     * @param feedFile podcast feed file
+     * @return list of podcast entries
+     * @throws HolmesException
+     */
+    public List<PodcastEntry> parse(File feedFile) throws HolmesException {
+        List<PodcastEntry> podcastEntries = Lists.newArrayList();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(feedFile))) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                int itemCount = 0;
+                while (reader.hasNext() && (maxEntries <= 0 || itemCount < maxEntries)) {
+                    if (reader.next() == START_ELEMENT && isItem(reader)) {
+                        parseItem(reader, podcastEntries);
+                        itemCount++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new HolmesException(e);
+        }
+        return podcastEntries;
+    }
+
+    /**
+     * Parse feed item, reader is positioned on item start element. Reader is positioned on item end element on return.
+     *
+     * @param reader         XML reader
+     * @param podcastEntries list of podcast entries
+     * @throws XMLStreamException
+     */
+    private void parseItem(XMLStreamReader reader, List<PodcastEntry> podcastEntries) throws XMLStreamException {
+        FeedItem item = new FeedItem();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                if (depth == 1 && readItemElement(reader, item)) {
+                    // Element text has been read, reader is on element end
+                    continue;
+                }
+                if (item.thumbnailUrl == null && MEDIA_RSS_URI.equals(reader.getNamespaceURI()) && "thumbnail".equals(reader.getLocalName())) {
+                    item.thumbnailUrl = reader.getAttributeValue(null, "url");
+                }
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+
+        // Add an entry for each media enclosure
+        for (int i = 0; i < item.enclosureUrls.size(); i++) {
+            String type = item.enclosureTypes.get(i);
+            MimeType mimeType = type != null ? MimeType.valueOf(type) : null;
+            if (mimeType != null && mimeType.isMedia()) {
+                String guid = item.guid != null && i > 0 ? item.guid + "#" + i : item.guid;
+                podcastEntries.add(new PodcastEntry(guid, item.title, item.enclosureUrls.get(i), mimeType.getMimeType(), item.duration, item.thumbnailUrl,
+                        item.publishedDate));
+            }
+        }
+    }
+
+    /**
+     * Read item child element.
+     *
+     * @param reader XML reader, positioned on element start
+     * @param item   feed item
+     * @return true if element text has been read
+     * @throws XMLStreamException
+     */
+    private boolean readItemElement(XMLStreamReader reader, FeedItem item) throws XMLStreamException {
+        String namespace = reader.getNamespaceURI();
+        String name = reader.getLocalName();
+        boolean textRead = false;
+        if (ITUNES_URI.equals(namespace)) {
+            if ("duration".equals(name)) {
+                item.duration = new Duration(reader.getElementText().trim()).toString();
+                textRead = true;
+            }
+        } else if (DUBLIN_CORE_NAMESPACE.equals(namespace)) {
+            if ("date".equals(name) && item.publishedDate == null) {
+                item.publishedDate = getDate(reader.getElementText());
+                textRead = true;
+            }
+        } else if (isFeedNamespace(namespace)) {
+            switch (name) {
+                case "title":
+                    if (!"xhtml".equals(reader.getAttributeValue(null, "type"))) {
+                        item.title = reader.getElementText().trim();
+                        textRead = true;
+                    }
+                    break;
+                case "guid":
+                case "id":
+                    item.guid = reader.getElementText().trim();
+                    textRead = true;
+                    break;
+                case "pubDate":
+                case "published":
+                    item.publishedDate = getDate(reader.getElementText());
+                    textRead = true;
+                    break;
+                case "updated":
+                    if (item.publishedDate == null) {
+                        item.publishedDate = getDate(reader.getElementText());
+                        textRead = true;
+                    }
+                    break;
+                case "enclosure":
+                    // RSS enclosure
+                    item.addEnclosure(reader.getAttributeValue(null, "url"), reader.getAttributeValue(null, "type"));
+                    break;
+                case "link":
+                    // Atom enclosure
+                    if ("enclosure".equals(reader.getAttributeValue(null, "rel"))) {
+                        item.addEnclosure(reader.getAttributeValue(null, "href"), reader.getAttributeValue(null, "type"));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return textRead;
+    }
+
+    /**
+     * Whether reader is positioned on a RSS item or an Atom entry.
+     *
+     * @param reader XML reader
+     * @return true if reader is positioned on an item
+     */
+    private boolean isItem(XMLStreamReader reader) {
+        return isFeedNamespace(reader.getNamespaceURI()) && ("item".equals(reader.getLocalName()) || "entry".equals(reader.getLocalName()));
+    }
+
+    /**
+     * Whether namespace is a RSS or Atom namespace.
+     *
+     * @param namespace namespace URI
+     * @return true for RSS and Atom namespaces
+     */
+    private boolean isFeedNamespace(String namespace) {
+        return namespace == null || namespace.isEmpty() || RSS_1_NAMESPACE.equals(namespace) || ATOM_NAMESPACE.equals(namespace);
+    }
+
+    /**
+     * Parse RFC 822 or W3C date.
+     *
+     * @param date date
+     * @return time or null
+     */
+    private Long getDate(String date) {
+        Date parsedDate = parseDate(date.trim());
+        return parsedDate != null ? parsedDate.getTime() : null;
+    }
+
+    /**
+     * Feed item elements.
+     */
+    private static final class FeedItem {
+        private final List<String> enclosureUrls = Lists.newArrayList();
+        private final List<String> enclosureTypes = Lists.newArrayList();
+        private String guid;
+        private String title;
+        private Long publishedDate;
+        private String duration;
+        private String thumbnailUrl;
+
+        /**
+         * Add item enclosure.
+         *
+         * @param url  enclosure url
+         * @param type enclosure type
+         */
+        void addEnclosure(String url, String type) {
+            if (url != null) {
+                enclosureUrls.add(url);
+                enclosureTypes.add(type);
+            }
+        }
+    }
+}
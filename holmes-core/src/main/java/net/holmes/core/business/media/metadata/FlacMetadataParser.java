@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static net.holmes.core.business.media.metadata.Mp3MetadataParser.getId3TagSize;
+
+/**
+ * FLAC metadata parser: audio format and duration are read from STREAMINFO metadata block.
+ */
+final class FlacMetadataParser implements MetadataParser {
+    private static final int STREAM_INFO_SIZE = 4 + 4 + 34;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MediaMetadata parse(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            // FLAC stream may be preceded by an ID3v2 tag
+            ByteBuffer buffer = ByteBuffer.allocate(STREAM_INFO_SIZE);
+            long position = getId3TagSize(channel);
+            int read;
+            do {
+                read = channel.read(buffer, position + buffer.position());
+            } while (read > 0 && buffer.hasRemaining());
+            buffer.flip();
+            return parseStreamInfo(buffer);
+        }
+    }
+
+    /**
+     * Parse stream marker and STREAMINFO block, which is always the first metadata block.
+     *
+     * @param buffer stream beginning
+     * @return media metadata or null if buffer does not contain a FLAC stream marker
+     */
+    static MediaMetadata parseStreamInfo(final ByteBuffer buffer) {
+        if (buffer.limit() < STREAM_INFO_SIZE || buffer.get(0) != 'f' || buffer.get(1) != 'L' || buffer.get(2) != 'a' || buffer.get(3) != 'C'
+                || (buffer.get(4) & 0x7F) != 0) {
+            return null;
+        }
+
+        // Sample rate (20 bits), channels - 1 (3 bits), bits per sample - 1 (5 bits), total samples (36 bits)
+        long bits = buffer.getLong(8 + 10);
+        long sampleRate = bits >>> 44;
+        long channels = (bits >>> 41 & 0x07) + 1;
+        long bitsPerSample = (bits >>> 36 & 0x1F) + 1;
+        long totalSamples = bits & 0xFFFFFFFFFL;
+
+        MediaMetadata metadata = new MediaMetadata();
+        metadata.setAudioChannels(channels);
+        metadata.setBitsPerSample(bitsPerSample);
+        if (sampleRate > 0) {
+            metadata.setSampleFrequency(sampleRate);
+            if (totalSamples > 0) {
+                metadata.setDuration(totalSamples * 1000 / sampleRate);
+            }
+        }
+        return metadata;
+    }
+}
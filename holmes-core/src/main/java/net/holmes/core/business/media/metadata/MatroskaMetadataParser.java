@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Matroska (and WebM) metadata parser: segment information and track entries are read from EBML elements
+ * located before the first cluster.
+ */
+final class MatroskaMetadataParser implements MetadataParser {
+    private static final int MAX_HEADER_SIZE = 1024 * 1024;
+    private static final long ID_EBML = 0x1A45DFA3L;
+    private static final long ID_SEGMENT = 0x18538067L;
+    private static final long ID_CLUSTER = 0x1F43B675L;
+    private static final long ID_INFO = 0x1549A966L;
+    private static final long ID_TIMECODE_SCALE = 0x2AD7B1L;
+    private static final long ID_DURATION = 0x4489L;
+    private static final long ID_TRACKS = 0x1654AE6BL;
+    private static final long ID_TRACK_ENTRY = 0xAEL;
+    private static final long ID_VIDEO = 0xE0L;
+    private static final long ID_PIXEL_WIDTH = 0xB0L;
+    private static final long ID_PIXEL_HEIGHT = 0xBAL;
+    private static final long ID_AUDIO = 0xE1L;
+    private static final long ID_SAMPLING_FREQUENCY = 0xB5L;
+    private static final long ID_CHANNELS = 0x9FL;
+    private static final long ID_BIT_DEPTH = 0x6264L;
+    private static final long DEFAULT_TIMECODE_SCALE = 1000000L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MediaMetadata parse(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_HEADER_SIZE));
+            int read;
+            do {
+                read = channel.read(buffer, buffer.position());
+            } while (read > 0 && buffer.hasRemaining());
+            buffer.flip();
+            return parseHeader(buffer);
+        }
+    }
+
+    /**
+     * Parse Matroska header.
+     *
+     * @param buffer beginning of file
+     * @return media metadata or null if buffer does not start with an EBML header
+     */
+    static MediaMetadata parseHeader(final ByteBuffer buffer) {
+        Element ebml = Element.read(buffer, 0);
+        if (ebml == null || ebml.id != ID_EBML) {
+            return null;
+        }
+
+        MediaMetadata metadata = new MediaMetadata();
+        Element segment = Element.read(buffer, ebml.end);
+        if (segment != null && segment.id == ID_SEGMENT) {
+            int position = segment.start;
+            Element element = Element.read(buffer, position);
+            while (element != null && element.id != ID_CLUSTER && position < segment.end) {
+                if (element.id == ID_INFO) {
+                    parseInfo(buffer, element, metadata);
+                } else if (element.id == ID_TRACKS) {
+                    parseTracks(buffer, element, metadata);
+                }
+                position = element.end;
+                element = Element.read(buffer, position);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Parse segment information: duration is a float value in timecode scale units (nanoseconds).
+     *
+     * @param buffer   buffer
+     * @param info     segment information element
+     * @param metadata media metadata
+     */
+    private static void parseInfo(final ByteBuffer buffer, final Element info, final MediaMetadata metadata) {
+        long timecodeScale = DEFAULT_TIMECODE_SCALE;
+        double duration = -1;
+        for (Element element = Element.read(buffer, info.start); element != null && element.end <= info.end; element = Element.read(buffer, element.end)) {
+            if (element.id == ID_TIMECODE_SCALE) {
+                timecodeScale = element.getUnsigned(buffer);
+            } else if (element.id == ID_DURATION) {
+                duration = element.getFloat(buffer);
+            }
+        }
+        if (duration > 0 && timecodeScale > 0) {
+            metadata.setDuration((long) (duration * timecodeScale / 1000000d));
+        }
+    }
+
+    /**
+     * Parse tracks: first video track gives resolution and first audio track gives audio format.
+     *
+     * @param buffer   buffer
+     * @param tracks   tracks element
+     * @param metadata media metadata
+     */
+    private static void parseTracks(final ByteBuffer buffer, final Element tracks, final MediaMetadata metadata) {
+        for (Element entry = Element.read(buffer, tracks.start); entry != null && entry.end <= tracks.end; entry = Element.read(buffer, entry.end)) {
+            if (entry.id == ID_TRACK_ENTRY) {
+                for (Element element = Element.read(buffer, entry.start); element != null && element.end <= entry.end; element = Element.read(buffer, element.end)) {
+                    if (element.id == ID_VIDEO && !metadata.hasResolution()) {
+                        parseVideo(buffer, element, metadata);
+                    } else if (element.id == ID_AUDIO && metadata.getSampleFrequency() == null) {
+                        parseAudio(buffer, element, metadata);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse video track settings.
+     *
+     * @param buffer   buffer
+     * @param video    video element
+     * @param metadata media metadata
+     */
+    private static void parseVideo(final ByteBuffer buffer, final Element video, final MediaMetadata metadata) {
+        long width = 0;
+        long height = 0;
+        for (Element element = Element.read(buffer, video.start); element != null && element.end <= video.end; element = Element.read(buffer, element.end)) {
+            if (element.id == ID_PIXEL_WIDTH) {
+                width = element.getUnsigned(buffer);
+            } else if (element.id == ID_PIXEL_HEIGHT) {
+                height = element.getUnsigned(buffer);
+            }
+        }
+        if (width > 0 && height > 0) {
+            metadata.setResolution((int) width, (int) height);
+        }
+    }
+
+    /**
+     * Parse audio track settings.
+     *
+     * @param buffer   buffer
+     * @param audio    audio element
+     * @param metadata media metadata
+     */
+    private static void parseAudio(final ByteBuffer buffer, final Element audio, final MediaMetadata metadata) {
+        for (Element element = Element.read(buffer, audio.start); element != null && element.end <= audio.end; element = Element.read(buffer, element.end)) {
+            if (element.id == ID_SAMPLING_FREQUENCY) {
+                metadata.setSampleFrequency((long) element.getFloat(buffer));
+            } else if (element.id == ID_CHANNELS) {
+                metadata.setAudioChannels(element.getUnsigned(buffer));
+            } else if (element.id == ID_BIT_DEPTH) {
+                metadata.setBitsPerSample(element.getUnsigned(buffer));
+            }
+        }
+    }
+
+    /**
+     * EBML element: id and data position in buffer.
+     * Data end is truncated to buffer limit for elements with unknown size or larger than buffer.
+     */
+    private static final class Element {
+        private final long id;
+        private final int start;
+        private final int end;
+        private final int size;
+
+        private Element(final long id, final int start, final int end, final int size) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.size = size;
+        }
+
+        /**
+         * Read element header at position.
+         *
+         * @param buffer   buffer
+         * @param position element position
+         * @return element or null if element header is not valid or exceeds buffer
+         */
+        static Element read(final ByteBuffer buffer, final int position) {
+            // Element id keeps its length marker
+            int idLength = getVintLength(buffer, position);
+            if (idLength == 0 || idLength > 4 || position + idLength > buffer.limit()) {
+                return null;
+            }
+            long id = 0;
+            for (int i = 0; i < idLength; i++) {
+                id = id << 8 | buffer.get(position + i) & 0xFF;
+            }
+
+            // Element data size
+            int sizePosition = position + idLength;
+            int sizeLength = getVintLength(buffer, sizePosition);
+            if (sizeLength == 0 || sizePosition + sizeLength > buffer.limit()) {
+                return null;
+            }
+            long size = buffer.get(sizePosition) & 0xFF & (0xFF >> sizeLength);
+            boolean unknownSize = size == (0xFF >> sizeLength);
+            for (int i = 1; i < sizeLength; i++) {
+                int b = buffer.get(sizePosition + i) & 0xFF;
+                size = size << 8 | b;
+                unknownSize &= b == 0xFF;
+            }
+            int start = sizePosition + sizeLength;
+            long end = unknownSize ? buffer.limit() : Math.min(buffer.limit(), start + size);
+            return new Element(id, start, (int) end, unknownSize ? -1 : (int) Math.min(size, Integer.MAX_VALUE));
+        }
+
+        /**
+         * Get variable length integer length from its first byte.
+         *
+         * @param buffer   buffer
+         * @param position position
+         * @return length (1 to 8) or 0 if invalid
+         */
+        private static int getVintLength(final ByteBuffer buffer, final int position) {
+            if (position >= buffer.limit()) {
+                return 0;
+            }
+            int first = buffer.get(position) & 0xFF;
+            for (int length = 1; length <= 8; length++) {
+                if ((first & (0x100 >> length)) != 0) {
+                    return length;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Get unsigned integer element value.
+         *
+         * @param buffer buffer
+         * @return value
+         */
+        long getUnsigned(final ByteBuffer buffer) {
+            long value = 0;
+            for (int i = start; i < end && i < start + 8; i++) {
+                value = value << 8 | buffer.get(i) & 0xFF;
+            }
+            return value;
+        }
+
+        /**
+         * Get float element value (4 or 8 bytes).
+         *
+         * @param buffer buffer
+         * @return value
+         */
+        double getFloat(final ByteBuffer buffer) {
+            if (size == 4 && end - start == 4) {
+                return buffer.getFloat(start);
+            } else if (size == 8 && end - start == 8) {
+                return buffer.getDouble(start);
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import com.google.common.base.Objects;
+
+/**
+ * Media metadata read from media file container headers.
+ * Unknown values are null.
+ */
+public final class MediaMetadata {
+    private Long duration;
+    private Long bitrate;
+    private Integer resolutionX;
+    private Integer resolutionY;
+    private Long sampleFrequency;
+    private Long audioChannels;
+    private Long bitsPerSample;
+
+    /**
+     * Gets media duration (in milliseconds).
+     *
+     * @return media duration
+     */
+    public Long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Sets media duration.
+     *
+     * @param duration media duration (in milliseconds)
+     */
+    public void setDuration(final Long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Gets media bitrate (in bytes per second, as expected by UPnP res@bitrate attribute).
+     *
+     * @return media bitrate
+     */
+    public Long getBitrate() {
+        return bitrate;
+    }
+
+    /**
+     * Sets media bitrate.
+     *
+     * @param bitrate media bitrate (in bytes per second)
+     */
+    public void setBitrate(final Long bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public Integer getResolutionX() {
+        return resolutionX;
+    }
+
+    public Integer getResolutionY() {
+        return resolutionY;
+    }
+
+    /**
+     * Sets video resolution.
+     *
+     * @param resolutionX video width (in pixels)
+     * @param resolutionY video height (in pixels)
+     */
+    public void setResolution(final Integer resolutionX, final Integer resolutionY) {
+        this.resolutionX = resolutionX;
+        this.resolutionY = resolutionY;
+    }
+
+    public Long getSampleFrequency() {
+        return sampleFrequency;
+    }
+
+    /**
+     * Sets audio sample frequency.
+     *
+     * @param sampleFrequency audio sample frequency (in Hz)
+     */
+    public void setSampleFrequency(final Long sampleFrequency) {
+        this.sampleFrequency = sampleFrequency;
+    }
+
+    public Long getAudioChannels() {
+        return audioChannels;
+    }
+
+    /**
+     * Sets number of audio channels.
+     *
+     * @param audioChannels number of audio channels
+     */
+    public void setAudioChannels(final Long audioChannels) {
+        this.audioChannels = audioChannels;
+    }
+
+    public Long getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * Sets audio bits per sample.
+     *
+     * @param bitsPerSample audio bits per sample
+     */
+    public void setBitsPerSample(final Long bitsPerSample) {
+        this.bitsPerSample = bitsPerSample;
+    }
+
+    /**
+     * Whether media resolution is known.
+     *
+     * @return true if resolution is known
+     */
+    public boolean hasResolution() {
+        return resolutionX != null && resolutionY != null && resolutionX > 0 && resolutionY > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(duration, bitrate, resolutionX, resolutionY, sampleFrequency, audioChannels, bitsPerSample);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final MediaMetadata other = (MediaMetadata) obj;
+        return Objects.equal(this.duration, other.duration) && Objects.equal(this.bitrate, other.bitrate)
+                && Objects.equal(this.resolutionX, other.resolutionX) && Objects.equal(this.resolutionY, other.resolutionY)
+                && Objects.equal(this.sampleFrequency, other.sampleFrequency) && Objects.equal(this.audioChannels, other.audioChannels)
+                && Objects.equal(this.bitsPerSample, other.bitsPerSample);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("duration", duration)
+                .add("bitrate", bitrate)
+                .add("resolutionX", resolutionX)
+                .add("resolutionY", resolutionY)
+                .add("sampleFrequency", sampleFrequency)
+                .add("audioChannels", audioChannels)
+                .add("bitsPerSample", bitsPerSample)
+                .toString();
+    }
+}
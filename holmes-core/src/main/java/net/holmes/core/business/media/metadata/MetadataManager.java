@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.MimeType;
+
+/**
+ * Media metadata manager: provides duration, bitrate, resolution and audio format of media files.
+ */
+public interface MetadataManager {
+
+    /**
+     * Whether metadata can be read for a mime type.
+     *
+     * @param mimeType mime type
+     * @return true if metadata can be read for this mime type
+     */
+    boolean isMetadataSupported(MimeType mimeType);
+
+    /**
+     * Get metadata of a content node.
+     * This method never reads media file: if metadata is not in cache yet, metadata extraction is scheduled in background and null is returned.
+     *
+     * @param contentNode content node
+     * @return media metadata or null if metadata is not available
+     */
+    MediaMetadata getMetadata(ContentNode contentNode);
+}
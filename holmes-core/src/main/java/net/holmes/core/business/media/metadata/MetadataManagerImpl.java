@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.MimeType;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.holmes.core.common.ConfigurationParameter.MEDIA_METADATA_CACHE_MAX_ELEMENTS;
+import static net.holmes.core.common.ConfigurationParameter.MEDIA_METADATA_ENABLE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Metadata manager implementation: metadata are extracted in background, by batches, and cached by file path, size and modification date.
+ * Cache key is built from content node attributes so that cache lookups do not access file system.
+ */
+public final class MetadataManagerImpl implements MetadataManager {
+    private static final Logger LOGGER = getLogger(MetadataManagerImpl.class);
+    private static final int EXTRACTION_QUEUE_SIZE = 10000;
+    private static final int EXTRACTION_BATCH_SIZE = 100;
+
+    private final boolean enabled;
+    private final Map<String, MetadataParser> parsers;
+    private final Cache<String, Optional<MediaMetadata>> metadataCache;
+    private final Set<String> pendingKeys;
+    private final BlockingQueue<ContentNode> pendingNodes;
+    private final AtomicBoolean batchScheduled;
+    private final ExecutorService executor;
+
+    /**
+     * Instantiates a new metadata manager implementation.
+     *
+     * @param configurationDao configuration dao
+     */
+    @Inject
+    public MetadataManagerImpl(final ConfigurationDao configurationDao) {
+        this.enabled = configurationDao.getParameter(MEDIA_METADATA_ENABLE);
+        MetadataParser mp4Parser = new Mp4MetadataParser();
+        MetadataParser matroskaParser = new MatroskaMetadataParser();
+        MetadataParser mp3Parser = new Mp3MetadataParser();
+        MetadataParser flacParser = new FlacMetadataParser();
+        this.parsers = ImmutableMap.<String, MetadataParser>builder()
+                .put("video/mp4", mp4Parser)
+                .put("video/quicktime", mp4Parser)
+                .put("video/x-m4v", mp4Parser)
+                .put("audio/mp4", mp4Parser)
+                .put("audio/mp4a-latm", mp4Parser)
+                .put("audio/x-m4a", mp4Parser)
+                .put("video/x-matroska", matroskaParser)
+                .put("audio/x-matroska", matroskaParser)
+                .put("video/webm", matroskaParser)
+                .put("audio/webm", matroskaParser)
+                .put("audio/mpeg", mp3Parser)
+                .put("audio/mp3", mp3Parser)
+                .put("audio/flac", flacParser)
+                .put("audio/x-flac", flacParser)
+                .build();
+        this.metadataCache = CacheBuilder.newBuilder()
+                .maximumSize(configurationDao.getParameter(MEDIA_METADATA_CACHE_MAX_ELEMENTS))
+                .build();
+        this.pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.pendingNodes = new LinkedBlockingQueue<>(EXTRACTION_QUEUE_SIZE);
+        this.batchScheduled = new AtomicBoolean(false);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("metadata-%d").setDaemon(true)
+                .setPriority(Thread.MIN_PRIORITY).build());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isMetadataSupported(final MimeType mimeType) {
+        return enabled && mimeType != null && getParser(mimeType) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MediaMetadata getMetadata(final ContentNode contentNode) {
+        if (!isMetadataSupported(contentNode.getMimeType())) {
+            return null;
+        }
+
+        String key = getKey(contentNode);
+        Optional<MediaMetadata> metadata = metadataCache.getIfPresent(key);
+        if (metadata != null) {
+            return metadata.orNull();
+        }
+
+        // Queue content node for extraction
+        if (pendingKeys.add(key)) {
+            if (pendingNodes.offer(contentNode)) {
+                scheduleBatch();
+            } else {
+                // Extraction queue is full, metadata will be requested again later
+                pendingKeys.remove(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schedule a batch extraction if none is scheduled.
+     */
+    private void scheduleBatch() {
+        if (batchScheduled.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Extract metadata of pending content nodes.
+     */
+    private void runBatch() {
+        List<ContentNode> batch = Lists.newArrayListWithCapacity(EXTRACTION_BATCH_SIZE);
+        pendingNodes.drainTo(batch, EXTRACTION_BATCH_SIZE);
+        try {
+            for (ContentNode contentNode : batch) {
+                String key = getKey(contentNode);
+                metadataCache.put(key, Optional.fromNullable(extractMetadata(contentNode)));
+                pendingKeys.remove(key);
+            }
+        } finally {
+            batchScheduled.set(false);
+            if (!pendingNodes.isEmpty()) {
+                scheduleBatch();
+            }
+        }
+    }
+
+    /**
+     * Extract metadata from media file.
+     *
+     * @param contentNode content node
+     * @return media metadata or null
+     */
+    private MediaMetadata extractMetadata(final ContentNode contentNode) {
+        try {
+            MediaMetadata metadata = getParser(contentNode.getMimeType()).parse(new File(contentNode.getPath()));
+            if (metadata != null && metadata.getBitrate() == null && metadata.getDuration() != null && metadata.getDuration() > 0) {
+                // Average bitrate (in bytes per second)
+                metadata.setBitrate(contentNode.getSize() * 1000 / metadata.getDuration());
+            }
+            LOGGER.debug("Metadata extracted for {}: {}", contentNode.getPath(), metadata);
+            return metadata;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to extract metadata from {}: {}", contentNode.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get cache key: key changes when file is modified.
+     *
+     * @param contentNode content node
+     * @return cache key
+     */
+    private String getKey(final ContentNode contentNode) {
+        return contentNode.getPath() + ":" + contentNode.getSize() + ":" + contentNode.getModifiedDate();
+    }
+
+    /**
+     * Get metadata parser for a mime type.
+     *
+     * @param mimeType mime type
+     * @return metadata parser or null
+     */
+    private MetadataParser getParser(final MimeType mimeType) {
+        return parsers.get(mimeType.getMimeType().toLowerCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * MP3 metadata parser: audio format is read from first MPEG audio frame header.
+ * Duration is computed from Xing/Info or VBRI header frame count for VBR files, or from audio size and bitrate for CBR files.
+ */
+final class Mp3MetadataParser implements MetadataParser {
+    private static final int ID3_HEADER_SIZE = 10;
+    private static final int ID3_FOOTER_SIZE = 10;
+    private static final int ID3_FLAG_FOOTER = 0x10;
+    private static final int MAX_SYNC_SEARCH_SIZE = 64 * 1024;
+    private static final int VERSION_1 = 3;
+    private static final int VERSION_2 = 2;
+    private static final int VERSION_2_5 = 0;
+    private static final int LAYER_1 = 3;
+    private static final int LAYER_3 = 1;
+    private static final int CHANNEL_MODE_MONO = 3;
+    private static final int XING_FLAG_FRAMES = 0x01;
+    private static final int[][] BITRATES = {
+            // MPEG 1 layer 1, 2, 3
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG 2 and 2.5 layer 1, 2 and 3
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MediaMetadata parse(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            long audioStart = getId3TagSize(channel);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_SYNC_SEARCH_SIZE, Math.max(0, channel.size() - audioStart)));
+            int read;
+            do {
+                read = channel.read(buffer, audioStart + buffer.position());
+            } while (read > 0 && buffer.hasRemaining());
+            buffer.flip();
+            return parseAudio(buffer, channel.size() - audioStart);
+        }
+    }
+
+    /**
+     * Get size of ID3v2 tag at the beginning of file.
+     *
+     * @param channel file channel
+     * @return ID3v2 tag size or 0 if file does not start with an ID3v2 tag
+     * @throws IOException
+     */
+    static long getId3TagSize(final FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ID3_HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.position() < ID3_HEADER_SIZE || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return 0;
+        }
+        long size = (header.get(6) & 0x7F) << 21 | (header.get(7) & 0x7F) << 14 | (header.get(8) & 0x7F) << 7 | header.get(9) & 0x7F;
+        if ((header.get(5) & ID3_FLAG_FOOTER) != 0) {
+            size += ID3_FOOTER_SIZE;
+        }
+        return ID3_HEADER_SIZE + size;
+    }
+
+    /**
+     * Parse audio data.
+     *
+     * @param buffer    beginning of audio data
+     * @param audioSize audio data size
+     * @return media metadata or null if no MPEG audio frame is found
+     */
+    static MediaMetadata parseAudio(final ByteBuffer buffer, final long audioSize) {
+        for (int position = 0; position + 4 <= buffer.limit(); position++) {
+            FrameHeader frame = FrameHeader.read(buffer, position);
+            // A valid frame header must be followed by another frame header
+            if (frame != null && (position + frame.length + 4 > buffer.limit() || FrameHeader.read(buffer, position + frame.length) != null)) {
+                return getMetadata(buffer, position, frame, audioSize - position);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get media metadata from first frame.
+     *
+     * @param buffer    buffer
+     * @param position  first frame position
+     * @param frame     first frame header
+     * @param audioSize audio data size, from first frame
+     * @return media metadata
+     */
+    private static MediaMetadata getMetadata(final ByteBuffer buffer, final int position, final FrameHeader frame, final long audioSize) {
+        MediaMetadata metadata = new MediaMetadata();
+        metadata.setSampleFrequency((long) frame.sampleRate);
+        metadata.setAudioChannels((long) frame.channels);
+
+        long frameCount = getVbrFrameCount(buffer, position, frame);
+        if (frameCount > 0) {
+            // VBR file: duration from frame count, bitrate is computed from file size
+            metadata.setDuration(frameCount * frame.samplesPerFrame * 1000L / frame.sampleRate);
+        } else {
+            // CBR file
+            metadata.setDuration(audioSize * 8L / frame.bitrate);
+            metadata.setBitrate(frame.bitrate * 1000L / 8L);
+        }
+        return metadata;
+    }
+
+    /**
+     * Get frame count from Xing/Info header (after side information) or VBRI header (32 bytes after frame header).
+     *
+     * @param buffer   buffer
+     * @param position first frame position
+     * @param frame    first frame header
+     * @return frame count or 0 if frame does not contain any VBR header
+     */
+    private static long getVbrFrameCount(final ByteBuffer buffer, final int position, final FrameHeader frame) {
+        int sideInfoSize;
+        if (frame.version == VERSION_1) {
+            sideInfoSize = frame.channels == 1 ? 17 : 32;
+        } else {
+            sideInfoSize = frame.channels == 1 ? 9 : 17;
+        }
+        int xing = position + 4 + sideInfoSize;
+        if (xing + 12 <= buffer.limit()) {
+            String tag = getTag(buffer, xing);
+            if (("Xing".equals(tag) || "Info".equals(tag)) && (buffer.getInt(xing + 4) & XING_FLAG_FRAMES) != 0) {
+                return buffer.getInt(xing + 8) & 0xFFFFFFFFL;
+            }
+        }
+        int vbri = position + 4 + 32;
+        if (vbri + 18 <= buffer.limit() && "VBRI".equals(getTag(buffer, vbri))) {
+            return buffer.getInt(vbri + 14) & 0xFFFFFFFFL;
+        }
+        return 0;
+    }
+
+    /**
+     * Get four character tag at position.
+     *
+     * @param buffer   buffer
+     * @param position position
+     * @return tag
+     */
+    private static String getTag(final ByteBuffer buffer, final int position) {
+        byte[] tag = new byte[4];
+        for (int i = 0; i < tag.length; i++) {
+            tag[i] = buffer.get(position + i);
+        }
+        return new String(tag, US_ASCII);
+    }
+
+    /**
+     * MPEG audio frame header.
+     */
+    private static final class FrameHeader {
+        private final int version;
+        private final int bitrate;
+        private final int sampleRate;
+        private final int channels;
+        private final int samplesPerFrame;
+        private final int length;
+
+        private FrameHeader(final int version, final int layer, final int bitrate, final int sampleRate, final int channels, final boolean padding) {
+            this.version = version;
+            this.bitrate = bitrate;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            if (layer == LAYER_1) {
+                this.samplesPerFrame = 384;
+                this.length = (12 * bitrate * 1000 / sampleRate + (padding ? 1 : 0)) * 4;
+            } else {
+                this.samplesPerFrame = layer == LAYER_3 && version != VERSION_1 ? 576 : 1152;
+                this.length = samplesPerFrame / 8 * bitrate * 1000 / sampleRate + (padding ? 1 : 0);
+            }
+        }
+
+        /**
+         * Read frame header at position.
+         *
+         * @param buffer   buffer
+         * @param position position
+         * @return frame header or null if there is no valid frame header at this position
+         */
+        static FrameHeader read(final ByteBuffer buffer, final int position) {
+            if (position < 0 || position + 4 > buffer.limit()) {
+                return null;
+            }
+            int header = buffer.getInt(position);
+            if ((header & 0xFFE00000) != 0xFFE00000) {
+                return null;
+            }
+            int version = header >> 19 & 0x03;
+            int layer = header >> 17 & 0x03;
+            int bitrateIndex = header >> 12 & 0x0F;
+            int sampleRateIndex = header >> 10 & 0x03;
+            if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+                return null;
+            }
+
+            int bitrateTable;
+            if (version == VERSION_1) {
+                bitrateTable = LAYER_1 - layer;
+            } else {
+                bitrateTable = layer == LAYER_1 ? 3 : 4;
+            }
+            int sampleRate = SAMPLE_RATES[sampleRateIndex];
+            if (version == VERSION_2) {
+                sampleRate /= 2;
+            } else if (version == VERSION_2_5) {
+                sampleRate /= 4;
+            }
+            int channels = (header >> 6 & 0x03) == CHANNEL_MODE_MONO ? 1 : 2;
+            boolean padding = (header >> 9 & 0x01) != 0;
+            return new FrameHeader(version, layer, BITRATES[bitrateTable][bitrateIndex], sampleRate, channels, padding);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static net.holmes.core.common.Mp4Utils.*;
+
+/**
+ * MP4 (ISO base media file format) metadata parser: duration is read from movie header,
+ * resolution from video track header and audio format from audio sample description.
+ */
+final class Mp4MetadataParser implements MetadataParser {
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+    private static final String HANDLER_VIDEO = "vide";
+    private static final String HANDLER_SOUND = "soun";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MediaMetadata parse(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            ByteBuffer moov = readMoovBox(channel, MAX_MOOV_SIZE);
+            return moov != null ? parseMoov(moov) : null;
+        }
+    }
+
+    /**
+     * Parse moov box content.
+     *
+     * @param moov moov box content
+     * @return media metadata
+     */
+    static MediaMetadata parseMoov(final ByteBuffer moov) {
+        MediaMetadata metadata = new MediaMetadata();
+
+        // Movie duration
+        ByteBuffer mvhd = getChild(moov, "mvhd");
+        if (mvhd != null && mvhd.limit() >= 32) {
+            boolean version1 = mvhd.get(0) == 1;
+            long timeScale = mvhd.getInt(version1 ? 20 : 12) & 0xFFFFFFFFL;
+            long duration = version1 ? mvhd.getLong(24) : mvhd.getInt(16) & 0xFFFFFFFFL;
+            if (timeScale > 0) {
+                metadata.setDuration(duration * 1000 / timeScale);
+            }
+        }
+
+        // Track formats
+        for (ByteBuffer trak : getChildren(moov, "trak")) {
+            ByteBuffer mdia = getChild(trak, "mdia");
+            ByteBuffer hdlr = getChild(mdia, "hdlr");
+            String handler = hdlr != null && hdlr.limit() >= 12 ? getType(hdlr, 8) : null;
+            if (HANDLER_VIDEO.equals(handler) && !metadata.hasResolution()) {
+                parseVideoTrack(getChild(trak, "tkhd"), metadata);
+            } else if (HANDLER_SOUND.equals(handler) && metadata.getSampleFrequency() == null) {
+                parseAudioTrack(getChild(mdia, "mdhd"), getChild(getChild(getChild(mdia, "minf"), "stbl"), "stsd"), metadata);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Parse video track header: width and height are stored as 16.16 fixed point values.
+     *
+     * @param tkhd     track header box content
+     * @param metadata media metadata
+     */
+    private static void parseVideoTrack(final ByteBuffer tkhd, final MediaMetadata metadata) {
+        if (tkhd != null && tkhd.limit() > 0) {
+            int position = tkhd.get(0) == 1 ? 88 : 76;
+            if (tkhd.limit() >= position + 8) {
+                metadata.setResolution(tkhd.getInt(position) >>> 16, tkhd.getInt(position + 4) >>> 16);
+            }
+        }
+    }
+
+    /**
+     * Parse audio track: channel count, sample size and sample rate are read from first audio sample entry.
+     * Media time scale is used as sample rate when sample entry rate does not fit in 16 bits.
+     *
+     * @param mdhd     media header box content
+     * @param stsd     sample description box content
+     * @param metadata media metadata
+     */
+    private static void parseAudioTrack(final ByteBuffer mdhd, final ByteBuffer stsd, final MediaMetadata metadata) {
+        long sampleRate = 0;
+        if (stsd != null && stsd.limit() >= 44) {
+            metadata.setAudioChannels((long) (stsd.getShort(32) & 0xFFFF));
+            metadata.setBitsPerSample((long) (stsd.getShort(34) & 0xFFFF));
+            sampleRate = stsd.getInt(40) >>> 16;
+        }
+        if (sampleRate == 0 && mdhd != null && mdhd.limit() > 0) {
+            int position = mdhd.get(0) == 1 ? 20 : 12;
+            if (mdhd.limit() >= position + 4) {
+                sampleRate = mdhd.getInt(position) & 0xFFFFFFFFL;
+            }
+        }
+        if (sampleRate > 0) {
+            metadata.setSampleFrequency(sampleRate);
+        }
+    }
+}
@@ -18,9 +18,11 @@
 package net.holmes.core.business.media.model;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
 import net.holmes.core.common.MimeType;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * Content node represents a content stored on file system.
@@ -29,6 +31,7 @@ public final class ContentNode extends MimeTypeNode {
 
     private final Long size;
     private final String path;
+    private final List<ContentNode> subtitles = Lists.newArrayListWithCapacity(0);
 
     /**
      * Instantiates a new content node.
@@ -64,6 +67,24 @@ public final class ContentNode extends MimeTypeNode {
         return path;
     }
 
+    /**
+     * Gets the subtitles paired with this content node.
+     *
+     * @return the subtitle nodes
+     */
+    public List<ContentNode> getSubtitles() {
+        return subtitles;
+    }
+
+    /**
+     * Pairs a subtitle with this content node.
+     *
+     * @param subtitle subtitle node
+     */
+    public void addSubtitle(final ContentNode subtitle) {
+        subtitles.add(subtitle);
+    }
+
     /**
      * {@inheritDoc}
      */
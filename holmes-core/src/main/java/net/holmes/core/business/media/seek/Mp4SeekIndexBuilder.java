@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static net.holmes.core.common.Mp4Utils.*;
+
+/**
+ * MP4 (ISO base media file format) seek index builder: index is built from sync samples of video track (or audio track)
+ * described in moov box sample tables.
+ */
+final class Mp4SeekIndexBuilder implements SeekIndexBuilder {
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+    private static final long MIN_ENTRY_INTERVAL = 250L;
+    private static final String HANDLER_VIDEO = "vide";
+    private static final String HANDLER_SOUND = "soun";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SeekIndex build(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            // Read moov box
+            ByteBuffer moov = readMoovBox(channel, MAX_MOOV_SIZE);
+            if (moov == null) {
+                return null;
+            }
+
+            // Select video track, or audio track if file does not contain any video
+            ByteBuffer track = null;
+            for (ByteBuffer trak : getChildren(moov, "trak")) {
+                String handler = getHandlerType(trak);
+                if (HANDLER_VIDEO.equals(handler)) {
+                    track = trak;
+                    break;
+                } else if (HANDLER_SOUND.equals(handler) && track == null) {
+                    track = trak;
+                }
+            }
+            return track != null ? buildTrackSeekIndex(track) : null;
+        }
+    }
+
+    /**
+     * Build seek index from track sample tables.
+     *
+     * @param trak track box content
+     * @return seek index or null
+     */
+    private SeekIndex buildTrackSeekIndex(final ByteBuffer trak) {
+        ByteBuffer mdia = getChild(trak, "mdia");
+        ByteBuffer mdhd = getChild(mdia, "mdhd");
+        ByteBuffer stbl = getChild(getChild(mdia, "minf"), "stbl");
+        if (mdhd == null || stbl == null) {
+            return null;
+        }
+
+        // Get track time scale and duration
+        boolean version1 = mdhd.get(0) == 1;
+        long timeScale = mdhd.getInt(version1 ? 20 : 12) & 0xFFFFFFFFL;
+        long trackDuration = version1 ? mdhd.getLong(24) : mdhd.getInt(16) & 0xFFFFFFFFL;
+        if (timeScale == 0) {
+            return null;
+        }
+
+        // Get sample tables
+        ByteBuffer stts = getChild(stbl, "stts");
+        ByteBuffer stss = getChild(stbl, "stss");
+        ByteBuffer stsc = getChild(stbl, "stsc");
+        ByteBuffer stsz = getChild(stbl, "stsz");
+        ByteBuffer stco = getChild(stbl, "stco");
+        ByteBuffer co64 = getChild(stbl, "co64");
+        if (stts == null || stsc == null || stsz == null || stco == null && co64 == null) {
+            return null;
+        }
+
+        int sttsCount = stts.getInt(4);
+        int stssCount = stss != null ? stss.getInt(4) : 0;
+        int stscCount = stsc.getInt(4);
+        int fixedSampleSize = stsz.getInt(4);
+        int sampleCount = stsz.getInt(8);
+        int chunkCount = co64 != null ? co64.getInt(4) : stco.getInt(4);
+
+        List<Long> times = Lists.newArrayList();
+        List<Long> offsets = Lists.newArrayList();
+        int sample = 0;
+        long sampleTime = 0;
+        int sttsIndex = 0;
+        int sttsRemaining = sttsCount > 0 ? stts.getInt(8) : 0;
+        int stssIndex = 0;
+        int stscIndex = 0;
+        for (int chunk = 0; chunk < chunkCount && sample < sampleCount; chunk++) {
+            // Get number of samples in chunk (chunk numbers are 1-based in stsc box)
+            while (stscIndex + 1 < stscCount && stsc.getInt(8 + (stscIndex + 1) * 12) - 1 <= chunk) {
+                stscIndex++;
+            }
+            int samplesPerChunk = stsc.getInt(8 + stscIndex * 12 + 4);
+
+            long offset = co64 != null ? co64.getLong(8 + chunk * 8) : stco.getInt(8 + chunk * 4) & 0xFFFFFFFFL;
+            for (int i = 0; i < samplesPerChunk && sample < sampleCount; i++) {
+                // Check sync sample (sample numbers are 1-based in stss box)
+                boolean sync = stss == null;
+                if (!sync && stssIndex < stssCount && stss.getInt(8 + stssIndex * 4) == sample + 1) {
+                    sync = true;
+                    stssIndex++;
+                }
+
+                // Add sync sample to index
+                long time = sampleTime * 1000 / timeScale;
+                if (sync && (times.isEmpty() || time >= times.get(times.size() - 1) + MIN_ENTRY_INTERVAL)) {
+                    times.add(time);
+                    offsets.add(offset);
+                }
+
+                // Move to next sample
+                offset += fixedSampleSize != 0 ? fixedSampleSize : stsz.getInt(12 + sample * 4) & 0xFFFFFFFFL;
+                while (sttsRemaining == 0 && sttsIndex + 1 < sttsCount) {
+                    sttsIndex++;
+                    sttsRemaining = stts.getInt(8 + sttsIndex * 8);
+                }
+                if (sttsRemaining > 0) {
+                    sampleTime += stts.getInt(8 + sttsIndex * 8 + 4) & 0xFFFFFFFFL;
+                    sttsRemaining--;
+                }
+                sample++;
+            }
+        }
+
+        if (times.isEmpty()) {
+            return null;
+        }
+        return new SeekIndex(Longs.toArray(times), Longs.toArray(offsets), trackDuration * 1000 / timeScale, false, 1);
+    }
+
+    /**
+     * Get track handler type.
+     *
+     * @param trak track box content
+     * @return handler type or null
+     */
+    private String getHandlerType(final ByteBuffer trak) {
+        ByteBuffer hdlr = getChild(getChild(trak, "mdia"), "hdlr");
+        return hdlr != null && hdlr.limit() >= 12 ? getType(hdlr, 8) : null;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * MPEG transport stream (TS and M2TS) seek index builder: index is built by sampling program clock references (PCR)
+ * at regular byte intervals, offsets are interpolated between samples.
+ */
+final class MpegTsSeekIndexBuilder implements SeekIndexBuilder {
+    private static final int TS_PACKET_SIZE = 188;
+    private static final int M2TS_PACKET_SIZE = 192;
+    private static final byte SYNC_BYTE = 0x47;
+    private static final int SYNC_CHECK_PACKETS = 3;
+    private static final int SAMPLE_COUNT = 128;
+    private static final int READ_PACKETS = 128;
+    private static final int MAX_SCAN_PACKETS = 4096;
+    private static final long PCR_WRAP = 1L << 33;
+    private static final long PCR_CLOCK_KHZ = 90L;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SeekIndex build(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            long fileSize = channel.size();
+
+            // Detect packet size and first packet position
+            ByteBuffer header = read(channel, 0, M2TS_PACKET_SIZE * (SYNC_CHECK_PACKETS + 1));
+            int packetSize = 0;
+            int start = -1;
+            for (int size : new int[]{TS_PACKET_SIZE, M2TS_PACKET_SIZE}) {
+                start = getFirstPacketPosition(header, size);
+                if (start >= 0) {
+                    packetSize = size;
+                    break;
+                }
+            }
+            if (start < 0) {
+                return null;
+            }
+
+            // Get first and last PCR
+            Pcr first = scanPcr(channel, start, Math.min(fileSize, start + (long) MAX_SCAN_PACKETS * packetSize), packetSize, -1, false);
+            if (first == null) {
+                return null;
+            }
+            long packetCount = (fileSize - start) / packetSize;
+            long lastScanPosition = start + Math.max(0, packetCount - MAX_SCAN_PACKETS) * packetSize;
+            Pcr last = scanPcr(channel, lastScanPosition, fileSize, packetSize, first.pid, true);
+            if (last == null || last.offset <= first.offset) {
+                return null;
+            }
+
+            // Sample PCR at regular intervals
+            List<Long> times = Lists.newArrayList(0L);
+            List<Long> offsets = Lists.newArrayList((long) start);
+            for (int i = 1; i < SAMPLE_COUNT; i++) {
+                long position = start + packetCount * i / SAMPLE_COUNT * packetSize;
+                Pcr pcr = scanPcr(channel, position, Math.min(fileSize, position + (long) MAX_SCAN_PACKETS * packetSize), packetSize, first.pid, false);
+                if (pcr == null || pcr.offset >= last.offset) {
+                    break;
+                }
+                long time = getElapsedTime(first, pcr);
+                if (time > times.get(times.size() - 1)) {
+                    times.add(time);
+                    offsets.add(pcr.offset);
+                }
+            }
+            long duration = getElapsedTime(first, last);
+            if (duration > times.get(times.size() - 1)) {
+                times.add(duration);
+                offsets.add(last.offset);
+            }
+            return new SeekIndex(Longs.toArray(times), Longs.toArray(offsets), duration, true, packetSize);
+        }
+    }
+
+    /**
+     * Get first packet position: sync byte is found on several consecutive packets.
+     *
+     * @param header     file header
+     * @param packetSize packet size
+     * @return first packet position or -1
+     */
+    private int getFirstPacketPosition(final ByteBuffer header, final int packetSize) {
+        int syncOffset = packetSize - TS_PACKET_SIZE;
+        for (int start = 0; start < packetSize; start++) {
+            boolean sync = true;
+            for (int i = 0; i < SYNC_CHECK_PACKETS && sync; i++) {
+                int position = start + syncOffset + i * packetSize;
+                sync = position < header.limit() && header.get(position) == SYNC_BYTE;
+            }
+            if (sync) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scan packets for PCR.
+     *
+     * @param channel    file channel
+     * @param from       scan start position (packet aligned)
+     * @param to         scan end position
+     * @param packetSize packet size
+     * @param pid        PCR pid or -1 for any pid
+     * @param last       whether to return last PCR found (else first)
+     * @return PCR or null
+     * @throws IOException
+     */
+    private Pcr scanPcr(final FileChannel channel, final long from, final long to, final int packetSize, final int pid, final boolean last) throws IOException {
+        int syncOffset = packetSize - TS_PACKET_SIZE;
+        Pcr result = null;
+        long position = from;
+        while (position + packetSize <= to) {
+            ByteBuffer buffer = read(channel, position, (int) Math.min((long) READ_PACKETS * packetSize, to - position));
+            int packets = buffer.limit() / packetSize;
+            if (packets == 0) {
+                break;
+            }
+            for (int i = 0; i < packets; i++) {
+                Pcr pcr = getPcr(buffer, i * packetSize + syncOffset, position + i * packetSize);
+                if (pcr != null && (pid < 0 || pcr.pid == pid)) {
+                    if (!last) {
+                        return pcr;
+                    }
+                    result = pcr;
+                }
+            }
+            position += packets * packetSize;
+        }
+        return result;
+    }
+
+    /**
+     * Get PCR carried by packet adaptation field.
+     *
+     * @param buffer       buffer
+     * @param sync         sync byte position in buffer
+     * @param packetOffset packet offset in file
+     * @return PCR or null if packet does not carry PCR
+     */
+    private Pcr getPcr(final ByteBuffer buffer, final int sync, final long packetOffset) {
+        if (buffer.get(sync) != SYNC_BYTE) {
+            return null;
+        }
+        int adaptationFieldControl = (buffer.get(sync + 3) >> 4) & 0x3;
+        if ((adaptationFieldControl & 0x2) == 0 || (buffer.get(sync + 4) & 0xFF) < 7 || (buffer.get(sync + 5) & 0x10) == 0) {
+            return null;
+        }
+        int pid = ((buffer.get(sync + 1) & 0x1F) << 8) | (buffer.get(sync + 2) & 0xFF);
+        long base = ((long) (buffer.get(sync + 6) & 0xFF) << 25) | ((buffer.get(sync + 7) & 0xFF) << 17)
+                | ((buffer.get(sync + 8) & 0xFF) << 9) | ((buffer.get(sync + 9) & 0xFF) << 1) | ((buffer.get(sync + 10) & 0xFF) >> 7);
+        return new Pcr(pid, packetOffset, base);
+    }
+
+    /**
+     * Get elapsed time between two PCR.
+     *
+     * @param first first PCR
+     * @param pcr   PCR
+     * @return elapsed time (in milliseconds)
+     */
+    private long getElapsedTime(final Pcr first, final Pcr pcr) {
+        long delta = pcr.value - first.value;
+        if (delta < 0) {
+            // PCR wrap around
+            delta += PCR_WRAP;
+        }
+        return delta / PCR_CLOCK_KHZ;
+    }
+
+    /**
+     * Read file content.
+     *
+     * @param channel  file channel
+     * @param position read position
+     * @param length   length to read
+     * @return buffer, ready to be read
+     * @throws IOException
+     */
+    private ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        int read;
+        do {
+            read = channel.read(buffer, position + buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Program clock reference.
+     */
+    private static final class Pcr {
+        private final int pid;
+        private final long offset;
+        private final long value;
+
+        /**
+         * Instantiates a new PCR.
+         *
+         * @param pid    packet id
+         * @param offset packet offset in file
+         * @param value  PCR base value (90 kHz)
+         */
+        Pcr(final int pid, final long offset, final long value) {
+            this.pid = pid;
+            this.offset = offset;
+            this.value = value;
+        }
+    }
+}
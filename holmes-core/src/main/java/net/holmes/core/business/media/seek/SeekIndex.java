@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import com.google.common.base.Objects;
+
+import java.util.Arrays;
+
+/**
+ * Seek index: maps media time positions to byte offsets in a media file.
+ */
+public final class SeekIndex {
+    private final long[] times;
+    private final long[] offsets;
+    private final long duration;
+    private final boolean interpolated;
+    private final int alignment;
+
+    /**
+     * Instantiates a new seek index.
+     *
+     * @param times        indexed times (in milliseconds), ascending
+     * @param offsets      byte offsets matching indexed times
+     * @param duration     media duration (in milliseconds)
+     * @param interpolated whether offsets are interpolated between index entries (else previous entry is used)
+     * @param alignment    byte alignment of interpolated offsets
+     */
+    public SeekIndex(final long[] times, final long[] offsets, final long duration, final boolean interpolated, final int alignment) {
+        this.times = times;
+        this.offsets = offsets;
+        this.duration = duration;
+        this.interpolated = interpolated;
+        this.alignment = alignment > 0 ? alignment : 1;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get number of entries in seek index.
+     *
+     * @return index size
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Get byte offset matching a time position.
+     *
+     * @param time time position (in milliseconds)
+     * @return byte offset
+     */
+    public long getOffset(final long time) {
+        if (times.length == 0 || time <= times[0]) {
+            return times.length == 0 ? 0 : offsets[0];
+        }
+
+        // Search entry preceding time position
+        int index = Arrays.binarySearch(times, time);
+        if (index >= 0) {
+            return offsets[index];
+        }
+        int previous = -index - 2;
+        if (!interpolated || previous + 1 >= times.length) {
+            return offsets[previous];
+        }
+
+        // Interpolate offset between previous and next entries
+        long timeRange = times[previous + 1] - times[previous];
+        long offsetRange = offsets[previous + 1] - offsets[previous];
+        long offset = offsets[previous] + offsetRange * (time - times[previous]) / timeRange;
+        return offset - (offset - offsets[previous]) % alignment;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("size", times.length)
+                .add("duration", duration)
+                .add("interpolated", interpolated)
+                .add("alignment", alignment)
+                .toString();
+    }
+}
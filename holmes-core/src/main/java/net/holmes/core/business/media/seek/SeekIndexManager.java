@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import net.holmes.core.common.MimeType;
+
+import java.io.File;
+
+/**
+ * Seek index manager: provides time to byte offset mapping for media files.
+ */
+public interface SeekIndexManager {
+
+    /**
+     * Whether time based seek is supported for a mime type.
+     *
+     * @param mimeType mime type
+     * @return true if a seek index can be built for this mime type
+     */
+    boolean isTimeSeekSupported(MimeType mimeType);
+
+    /**
+     * Get seek index for a media file.
+     *
+     * @param file     media file
+     * @param mimeType media file mime type
+     * @return seek index or null if seek index is not available
+     */
+    SeekIndex getSeekIndex(File file, MimeType mimeType);
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import net.holmes.core.common.MimeType;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Seek index manager implementation: seek indexes are built on first request and cached by file path, size and modification date.
+ */
+public final class SeekIndexManagerImpl implements SeekIndexManager {
+    private static final Logger LOGGER = getLogger(SeekIndexManagerImpl.class);
+    private static final int SEEK_INDEX_CACHE_MAX_ELEMENTS = 200;
+
+    private final Map<String, SeekIndexBuilder> builders;
+    private final Cache<String, Optional<SeekIndex>> seekIndexCache;
+
+    /**
+     * Instantiates a new seek index manager implementation.
+     */
+    public SeekIndexManagerImpl() {
+        SeekIndexBuilder mp4Builder = new Mp4SeekIndexBuilder();
+        SeekIndexBuilder mpegTsBuilder = new MpegTsSeekIndexBuilder();
+        this.builders = ImmutableMap.<String, SeekIndexBuilder>builder()
+                .put("video/mp4", mp4Builder)
+                .put("video/quicktime", mp4Builder)
+                .put("video/x-m4v", mp4Builder)
+                .put("audio/mp4", mp4Builder)
+                .put("audio/mp4a-latm", mp4Builder)
+                .put("video/mp2t", mpegTsBuilder)
+                .put("video/vnd.dlna.mpeg-tts", mpegTsBuilder)
+                .build();
+        this.seekIndexCache = CacheBuilder.newBuilder()
+                .maximumSize(SEEK_INDEX_CACHE_MAX_ELEMENTS)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTimeSeekSupported(final MimeType mimeType) {
+        return getBuilder(mimeType) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SeekIndex getSeekIndex(final File file, final MimeType mimeType) {
+        final SeekIndexBuilder builder = getBuilder(mimeType);
+        if (builder == null) {
+            return null;
+        }
+
+        // Cache key changes when file is modified
+        String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        try {
+            return seekIndexCache.get(key, new Callable<Optional<SeekIndex>>() {
+                @Override
+                public Optional<SeekIndex> call() {
+                    return Optional.fromNullable(buildSeekIndex(builder, file));
+                }
+            }).orNull();
+        } catch (ExecutionException e) {
+            LOGGER.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Build seek index.
+     *
+     * @param builder seek index builder
+     * @param file    media file
+     * @return seek index or null
+     */
+    private SeekIndex buildSeekIndex(final SeekIndexBuilder builder, final File file) {
+        try {
+            SeekIndex seekIndex = builder.build(file);
+            LOGGER.debug("Seek index built for {}: {}", file, seekIndex);
+            return seekIndex;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to build seek index for {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get seek index builder for a mime type.
+     *
+     * @param mimeType mime type
+     * @return seek index builder or null
+     */
+    private SeekIndexBuilder getBuilder(final MimeType mimeType) {
+        return mimeType != null ? builders.get(mimeType.getMimeType().toLowerCase(Locale.ENGLISH)) : null;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * EXIF thumbnail extractor: extracts JPEG thumbnail stored in IFD1 of JPEG files APP1 segment.
+ */
+final class ExifThumbnailExtractor implements ThumbnailExtractor {
+    private static final int MARKER_SOI = 0xFFD8;
+    private static final int MARKER_EOI = 0xFFD9;
+    private static final int MARKER_SOS = 0xFFDA;
+    private static final int MARKER_APP1 = 0xFFE1;
+    private static final int TIFF_MAGIC = 42;
+    private static final int IFD_ENTRY_SIZE = 12;
+    private static final int TAG_JPEG_OFFSET = 0x0201;
+    private static final int TAG_JPEG_LENGTH = 0x0202;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] extract(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readUnsignedShort() != MARKER_SOI) {
+                return null;
+            }
+            // Read segments until image data
+            int marker = in.readUnsignedShort();
+            while ((marker & 0xFF00) == 0xFF00 && marker != MARKER_SOS && marker != MARKER_EOI) {
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return null;
+                }
+                if (marker == MARKER_APP1) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    byte[] thumbnail = getExifThumbnail(segment);
+                    if (thumbnail != null) {
+                        return thumbnail;
+                    }
+                } else if (in.skipBytes(length) < length) {
+                    return null;
+                }
+                marker = in.readUnsignedShort();
+            }
+            return null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get thumbnail from EXIF APP1 segment.
+     *
+     * @param segment APP1 segment content
+     * @return thumbnail data or null
+     */
+    static byte[] getExifThumbnail(final byte[] segment) {
+        if (segment.length < EXIF_HEADER.length + 8) {
+            return null;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (segment[i] != EXIF_HEADER[i]) {
+                return null;
+            }
+        }
+
+        // Read TIFF header
+        ByteBuffer tiff = ByteBuffer.wrap(segment, EXIF_HEADER.length, segment.length - EXIF_HEADER.length).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(LITTLE_ENDIAN);
+        } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+            tiff.order(BIG_ENDIAN);
+        } else {
+            return null;
+        }
+        if (tiff.getShort(2) != TIFF_MAGIC) {
+            return null;
+        }
+
+        // Thumbnail is described in IFD1, which follows IFD0
+        int ifd1 = getNextIfd(tiff, tiff.getInt(4));
+        if (ifd1 <= 0 || ifd1 + 2 > tiff.limit()) {
+            return null;
+        }
+        int entryCount = tiff.getShort(ifd1) & 0xFFFF;
+        long offset = 0;
+        long length = 0;
+        for (int i = 0; i < entryCount; i++) {
+            int entry = ifd1 + 2 + i * IFD_ENTRY_SIZE;
+            if (entry + IFD_ENTRY_SIZE > tiff.limit()) {
+                break;
+            }
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            if (tag == TAG_JPEG_OFFSET) {
+                offset = tiff.getInt(entry + 8) & 0xFFFFFFFFL;
+            } else if (tag == TAG_JPEG_LENGTH) {
+                length = tiff.getInt(entry + 8) & 0xFFFFFFFFL;
+            }
+        }
+        if (offset <= 0 || length <= 0 || offset + length > tiff.limit()) {
+            return null;
+        }
+        byte[] thumbnail = new byte[(int) length];
+        tiff.position((int) offset);
+        tiff.get(thumbnail);
+        return thumbnail;
+    }
+
+    /**
+     * Get offset of IFD following an IFD.
+     *
+     * @param tiff TIFF content
+     * @param ifd  IFD offset
+     * @return next IFD offset or 0
+     */
+    private static int getNextIfd(final ByteBuffer tiff, final int ifd) {
+        if (ifd <= 0 || ifd + 2 > tiff.limit()) {
+            return 0;
+        }
+        int next = ifd + 2 + (tiff.getShort(ifd) & 0xFFFF) * IFD_ENTRY_SIZE;
+        return next + 4 <= tiff.limit() ? tiff.getInt(next) : 0;
+    }
+}
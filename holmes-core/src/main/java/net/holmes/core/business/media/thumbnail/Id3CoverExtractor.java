@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * ID3v2 album art extractor: extracts picture stored in APIC (or PIC for ID3v2.2) frame of MP3 files.
+ * Front cover is preferred over other pictures.
+ */
+final class Id3CoverExtractor implements ThumbnailExtractor {
+    private static final int TAG_HEADER_SIZE = 10;
+    private static final int MAX_TAG_SIZE = 16 * 1024 * 1024;
+    private static final int FLAG_UNSYNCHRONISATION = 0x80;
+    private static final int FLAG_EXTENDED_HEADER = 0x40;
+    private static final int FRAME_FLAG_UNSYNCHRONISATION = 0x02;
+    private static final int FRAME_FLAG_DATA_LENGTH = 0x01;
+    private static final int PICTURE_TYPE_FRONT_COVER = 3;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] extract(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            // Read tag header
+            byte[] header = new byte[TAG_HEADER_SIZE];
+            in.readFully(header);
+            if (header[0] != 'I' || header[1] != 'D' || header[2] != '3') {
+                return null;
+            }
+            int version = header[3];
+            int flags = header[5] & 0xFF;
+            int size = getSyncSafeInt(header, 6);
+            if (version < 2 || version > 4 || size <= 0 || size > MAX_TAG_SIZE) {
+                return null;
+            }
+
+            // Read tag content
+            byte[] tag = new byte[size];
+            in.readFully(tag);
+            if ((flags & FLAG_UNSYNCHRONISATION) != 0 && version < 4) {
+                tag = removeUnsynchronisation(tag, 0, tag.length);
+            }
+            return getPicture(tag, version, (flags & FLAG_EXTENDED_HEADER) != 0);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get picture from tag content.
+     *
+     * @param tag            tag content
+     * @param version        ID3v2 major version
+     * @param extendedHeader whether tag has an extended header
+     * @return picture data or null
+     */
+    static byte[] getPicture(final byte[] tag, final int version, final boolean extendedHeader) {
+        int position = 0;
+        if (extendedHeader && version >= 3 && tag.length >= 4) {
+            position = version == 3 ? 4 + getInt(tag, 0) : getSyncSafeInt(tag, 0);
+        }
+
+        int frameHeaderSize = version == 2 ? 6 : 10;
+        byte[] picture = null;
+        while (position >= 0 && position + frameHeaderSize <= tag.length && tag[position] != 0) {
+            // Read frame header
+            String frameId;
+            int frameSize;
+            int formatFlags = 0;
+            if (version == 2) {
+                frameId = new String(tag, position, 3, US_ASCII);
+                frameSize = (tag[position + 3] & 0xFF) << 16 | (tag[position + 4] & 0xFF) << 8 | tag[position + 5] & 0xFF;
+            } else {
+                frameId = new String(tag, position, 4, US_ASCII);
+                frameSize = version == 3 ? getInt(tag, position + 4) : getSyncSafeInt(tag, position + 4);
+                formatFlags = tag[position + 9] & 0xFF;
+            }
+            int start = position + frameHeaderSize;
+            if (frameSize <= 0 || start + frameSize > tag.length) {
+                break;
+            }
+
+            if ("APIC".equals(frameId) || "PIC".equals(frameId)) {
+                // Get frame content
+                int contentStart = start;
+                if (version == 4 && (formatFlags & FRAME_FLAG_DATA_LENGTH) != 0) {
+                    contentStart += 4;
+                }
+                byte[] content = version == 4 && (formatFlags & FRAME_FLAG_UNSYNCHRONISATION) != 0
+                        ? removeUnsynchronisation(tag, contentStart, start + frameSize)
+                        : Arrays.copyOfRange(tag, contentStart, start + frameSize);
+                int pictureType = getPictureType(content, version);
+                if (pictureType >= 0 && (picture == null || pictureType == PICTURE_TYPE_FRONT_COVER)) {
+                    picture = getPictureData(content, version);
+                    if (pictureType == PICTURE_TYPE_FRONT_COVER && picture != null) {
+                        break;
+                    }
+                }
+            }
+            position = start + frameSize;
+        }
+        return picture;
+    }
+
+    /**
+     * Get picture type from picture frame content.
+     *
+     * @param content frame content
+     * @param version ID3v2 major version
+     * @return picture type or -1
+     */
+    private static int getPictureType(final byte[] content, final int version) {
+        int position = getPictureTypePosition(content, version);
+        return position >= 0 && position < content.length ? content[position] & 0xFF : -1;
+    }
+
+    /**
+     * Get picture data from picture frame content.
+     *
+     * @param content frame content
+     * @param version ID3v2 major version
+     * @return picture data or null
+     */
+    private static byte[] getPictureData(final byte[] content, final int version) {
+        int position = getPictureTypePosition(content, version);
+        if (position < 0 || position >= content.length) {
+            return null;
+        }
+        // Skip picture type and description
+        int encoding = content[0];
+        position++;
+        if (encoding == 1 || encoding == 2) {
+            // UTF-16 description ends with two zero bytes
+            while (position + 1 < content.length && (content[position] != 0 || content[position + 1] != 0)) {
+                position += 2;
+            }
+            position += 2;
+        } else {
+            while (position < content.length && content[position] != 0) {
+                position++;
+            }
+            position++;
+        }
+        return position < content.length ? Arrays.copyOfRange(content, position, content.length) : null;
+    }
+
+    /**
+     * Get position of picture type in picture frame content:
+     * picture type follows text encoding and image format (3 characters for PIC frame, zero terminated mime type for APIC frame).
+     *
+     * @param content frame content
+     * @param version ID3v2 major version
+     * @return picture type position or -1
+     */
+    private static int getPictureTypePosition(final byte[] content, final int version) {
+        if (content.length < 2) {
+            return -1;
+        }
+        if (version == 2) {
+            return 4;
+        }
+        int position = 1;
+        while (position < content.length && content[position] != 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    /**
+     * Remove unsynchronisation scheme (0xFF 0x00 sequences) from data.
+     *
+     * @param data  data
+     * @param start start position (inclusive)
+     * @param end   end position (exclusive)
+     * @return data without unsynchronisation
+     */
+    private static byte[] removeUnsynchronisation(final byte[] data, final int start, final int end) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+        for (int i = start; i < end; i++) {
+            out.write(data[i]);
+            if ((data[i] & 0xFF) == 0xFF && i + 1 < end && data[i + 1] == 0) {
+                i++;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get 32 bits integer.
+     *
+     * @param data     data
+     * @param position position
+     * @return integer value
+     */
+    private static int getInt(final byte[] data, final int position) {
+        return (data[position] & 0xFF) << 24 | (data[position + 1] & 0xFF) << 16 | (data[position + 2] & 0xFF) << 8 | data[position + 3] & 0xFF;
+    }
+
+    /**
+     * Get sync safe integer (28 bits integer stored in 4 bytes with 7 significant bits).
+     *
+     * @param data     data
+     * @param position position
+     * @return integer value
+     */
+    private static int getSyncSafeInt(final byte[] data, final int position) {
+        return (data[position] & 0x7F) << 21 | (data[position + 1] & 0x7F) << 14 | (data[position + 2] & 0x7F) << 7 | data[position + 3] & 0x7F;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static net.holmes.core.common.Mp4Utils.*;
+
+/**
+ * MP4 album art extractor: extracts picture stored in iTunes metadata cover box (moov/udta/meta/ilst/covr).
+ */
+final class Mp4CoverExtractor implements ThumbnailExtractor {
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+    private static final int DATA_HEADER_SIZE = 8;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] extract(final File file) throws IOException {
+        try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"); FileChannel channel = randomFile.getChannel()) {
+            ByteBuffer moov = readMoovBox(channel, MAX_MOOV_SIZE);
+            return moov != null ? getCover(moov) : null;
+        }
+    }
+
+    /**
+     * Get cover from moov box content.
+     *
+     * @param moov moov box content
+     * @return cover data or null
+     */
+    static byte[] getCover(final ByteBuffer moov) {
+        ByteBuffer meta = getChild(getChild(moov, "udta"), "meta");
+        if (meta == null || meta.limit() < FULL_BOX_HEADER_SIZE + 8) {
+            return null;
+        }
+        // meta is a full box in ISO files, but not in some QuickTime files
+        if (!"hdlr".equals(getType(meta, 4))) {
+            meta.position(FULL_BOX_HEADER_SIZE);
+            meta = meta.slice();
+        }
+
+        ByteBuffer data = getChild(getChild(getChild(meta, "ilst"), "covr"), "data");
+        if (data == null || data.limit() <= DATA_HEADER_SIZE) {
+            return null;
+        }
+        // Skip data type and locale
+        byte[] cover = new byte[data.limit() - DATA_HEADER_SIZE];
+        data.position(DATA_HEADER_SIZE);
+        data.get(cover);
+        return cover;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import com.google.common.collect.ImmutableMap;
+import net.holmes.core.common.MimeType;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.awt.RenderingHints.*;
+import static javax.imageio.ImageWriteParam.MODE_EXPLICIT;
+import static net.holmes.core.common.MediaType.TYPE_IMAGE;
+
+/**
+ * Thumbnail generator: thumbnail is built from image embedded in media file if any, or from image file itself.
+ * Source images are decoded with subsampling, then scaled to fit in a square and encoded to JPEG.
+ */
+final class ThumbnailGenerator {
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final int maxSize;
+    private final Map<String, ThumbnailExtractor> extractors;
+
+    /**
+     * Instantiates a new thumbnail generator.
+     *
+     * @param maxSize thumbnail max width and height
+     */
+    ThumbnailGenerator(final int maxSize) {
+        this.maxSize = maxSize;
+        ThumbnailExtractor id3Extractor = new Id3CoverExtractor();
+        ThumbnailExtractor mp4Extractor = new Mp4CoverExtractor();
+        this.extractors = ImmutableMap.<String, ThumbnailExtractor>builder()
+                .put("image/jpeg", new ExifThumbnailExtractor())
+                .put("audio/mpeg", id3Extractor)
+                .put("audio/mp3", id3Extractor)
+                .put("audio/mp4", mp4Extractor)
+                .put("audio/mp4a-latm", mp4Extractor)
+                .put("audio/x-m4a", mp4Extractor)
+                .put("video/mp4", mp4Extractor)
+                .put("video/quicktime", mp4Extractor)
+                .put("video/x-m4v", mp4Extractor)
+                .build();
+    }
+
+    /**
+     * Whether a thumbnail can be generated for a mime type.
+     *
+     * @param mimeType mime type
+     * @return true if a thumbnail can be generated
+     */
+    boolean isSupported(final MimeType mimeType) {
+        return mimeType.getType() == TYPE_IMAGE || getExtractor(mimeType) != null;
+    }
+
+    /**
+     * Generate thumbnail.
+     *
+     * @param file     media file
+     * @param mimeType media file mime type
+     * @return JPEG thumbnail or null if no thumbnail can be generated for this file
+     * @throws IOException if file cannot be read
+     */
+    byte[] generate(final File file, final MimeType mimeType) throws IOException {
+        BufferedImage image = null;
+
+        // Use embedded image first
+        ThumbnailExtractor extractor = getExtractor(mimeType);
+        if (extractor != null) {
+            byte[] embeddedImage = extractor.extract(file);
+            if (embeddedImage != null) {
+                image = readImage(ImageIO.createImageInputStream(new ByteArrayInputStream(embeddedImage)));
+            }
+        }
+
+        // Then read image file
+        if (image == null && mimeType.getType() == TYPE_IMAGE) {
+            image = readImage(ImageIO.createImageInputStream(file));
+        }
+        return image != null ? writeJpeg(scale(image)) : null;
+    }
+
+    /**
+     * Read image with subsampling: only enough pixels are decoded to scale the image smoothly.
+     *
+     * @param input image input stream
+     * @return image or null if image format is not supported
+     * @throws IOException
+     */
+    private BufferedImage readImage(final ImageInputStream input) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (maxSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Scale image to fit in thumbnail size and convert it to RGB.
+     *
+     * @param image source image
+     * @return scaled image
+     */
+    private BufferedImage scale(final BufferedImage image) {
+        double ratio = Math.min(1d, (double) maxSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(KEY_RENDERING, VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Encode image to JPEG.
+     *
+     * @param image image
+     * @return JPEG data
+     * @throws IOException
+     */
+    private byte[] writeJpeg(final BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get embedded image extractor for a mime type.
+     *
+     * @param mimeType mime type
+     * @return extractor or null
+     */
+    private ThumbnailExtractor getExtractor(final MimeType mimeType) {
+        return extractors.get(mimeType.getMimeType().toLowerCase(Locale.ENGLISH));
+    }
+}
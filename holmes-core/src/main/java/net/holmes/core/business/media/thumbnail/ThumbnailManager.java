@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.MimeType;
+
+import java.io.File;
+
+/**
+ * Thumbnail manager: provides small JPEG thumbnails (picture thumbnails, album art) for media files.
+ */
+public interface ThumbnailManager {
+
+    /**
+     * Whether thumbnails can be generated for a mime type.
+     *
+     * @param mimeType mime type
+     * @return true if thumbnails can be generated for this mime type
+     */
+    boolean isThumbnailSupported(MimeType mimeType);
+
+    /**
+     * Get thumbnail for a content node, without any file system call.
+     * If thumbnail is not in cache yet, thumbnail generation is scheduled in background and null is returned.
+     *
+     * @param node content node
+     * @return thumbnail JPEG file or null if thumbnail is not available
+     */
+    File getThumbnail(ContentNode node);
+
+    /**
+     * Get thumbnail for a media file whose size and modification date are already known, without any file system call.
+     * If thumbnail is not in cache yet, thumbnail generation is scheduled in background and null is returned.
+     *
+     * @param file         media file
+     * @param mimeType     media file mime type
+     * @param size         media file size
+     * @param modifiedDate media file modification date
+     * @return thumbnail JPEG file or null if thumbnail is not available
+     */
+    File getThumbnail(File file, MimeType mimeType, long size, long modifiedDate);
+
+    /**
+     * Clean up thumbnail cache: oldest thumbnails are removed when cache exceeds its max size.
+     */
+    void cleanUpCache();
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.MimeType;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static net.holmes.core.common.ConfigurationParameter.*;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Thumbnail manager implementation: thumbnails are generated on a bounded background pool and stored in a disk cache.
+ * Cache is content addressed: thumbnail file name is a hash of media file path, size and modification date,
+ * so a modified media file gets a new thumbnail. Cached thumbnail keys are kept in memory, so that thumbnail lookups
+ * do not hit the file system: they are updated on thumbnail generation and on cache clean up.
+ */
+public final class ThumbnailManagerImpl implements ThumbnailManager {
+    private static final Logger LOGGER = getLogger(ThumbnailManagerImpl.class);
+    private static final String THUMBNAIL_DIR = "thumbnails";
+    private static final String THUMBNAIL_EXTENSION = ".jpg";
+    private static final int THUMBNAIL_MAX_SIZE = 160;
+    private static final int GENERATION_QUEUE_SIZE = 1000;
+    private static final int FAILURE_CACHE_MAX_ELEMENTS = 10000;
+
+    private final boolean enabled;
+    private final long cacheMaxSize;
+    private final Path thumbnailPath;
+    private final ThumbnailGenerator generator;
+    private final ExecutorService executor;
+    private final Set<String> thumbnailKeys;
+    private final Set<String> pendingKeys;
+    private final Cache<String, Boolean> failedKeys;
+
+    /**
+     * Instantiates a new thumbnail manager implementation.
+     *
+     * @param configurationDao   configuration dao
+     * @param localHolmesDataDir local Holmes data directory
+     */
+    @Inject
+    public ThumbnailManagerImpl(final ConfigurationDao configurationDao, @Named("localHolmesDataDir") final String localHolmesDataDir) {
+        this.enabled = configurationDao.getParameter(THUMBNAIL_ENABLE);
+        this.cacheMaxSize = configurationDao.getParameter(THUMBNAIL_CACHE_MAX_SIZE_MB) * 1024L * 1024L;
+        this.thumbnailPath = Paths.get(localHolmesDataDir, THUMBNAIL_DIR);
+        this.generator = new ThumbnailGenerator(THUMBNAIL_MAX_SIZE);
+        int threads = Math.max(1, configurationDao.getParameter(THUMBNAIL_GENERATION_THREADS));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(GENERATION_QUEUE_SIZE),
+                new ThreadFactoryBuilder().setNameFormat("thumbnail-%d").setDaemon(true).setPriority(Thread.MIN_PRIORITY).build());
+        this.thumbnailKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.failedKeys = CacheBuilder.newBuilder().maximumSize(FAILURE_CACHE_MAX_ELEMENTS).build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isThumbnailSupported(final MimeType mimeType) {
+        return enabled && mimeType != null && generator.isSupported(mimeType);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File getThumbnail(final ContentNode node) {
+        return getThumbnail(new File(node.getPath()), node.getMimeType(), node.getSize(), node.getModifiedDate());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File getThumbnail(final File file, final MimeType mimeType, final long size, final long modifiedDate) {
+        if (!isThumbnailSupported(mimeType)) {
+            return null;
+        }
+
+        // Thumbnail key changes when file is modified
+        final String key = Hashing.sha1().hashString(file.getAbsolutePath() + ":" + size + ":" + modifiedDate, UTF_8).toString();
+        final Path thumbnail = getThumbnailPath(key);
+        if (thumbnailKeys.contains(key)) {
+            return thumbnail.toFile();
+        }
+
+        // Schedule thumbnail generation, unless thumbnail was already generated before server restart
+        if (failedKeys.getIfPresent(key) == null && pendingKeys.add(key)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (Files.isRegularFile(thumbnail) || generateThumbnail(key, file, mimeType, thumbnail)) {
+                                thumbnailKeys.add(key);
+                            }
+                        } finally {
+                            pendingKeys.remove(key);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Generation queue is full, thumbnail will be requested again later
+                pendingKeys.remove(key);
+                LOGGER.debug("Thumbnail generation queue is full, skip {}", file);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cleanUpCache() {
+        if (!Files.isDirectory(thumbnailPath)) {
+            thumbnailKeys.clear();
+            return;
+        }
+
+        // List thumbnails
+        final Map<Path, BasicFileAttributes> attributes = Maps.newHashMap();
+        try {
+            Files.walkFileTree(thumbnailPath, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) {
+                    if (path.getFileName().toString().endsWith(THUMBNAIL_EXTENSION)) {
+                        attributes.put(path, attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            return;
+        }
+
+        // Remove oldest thumbnails until cache size is below max size
+        long cacheSize = 0;
+        for (BasicFileAttributes attrs : attributes.values()) {
+            cacheSize += attrs.size();
+        }
+        List<Path> thumbnails = Lists.newArrayList(attributes.keySet());
+        Collections.sort(thumbnails, new Comparator<Path>() {
+            @Override
+            public int compare(final Path path1, final Path path2) {
+                return attributes.get(path1).lastModifiedTime().compareTo(attributes.get(path2).lastModifiedTime());
+            }
+        });
+        Set<String> keys = Sets.newHashSet();
+        for (Path path : thumbnails) {
+            if (cacheSize > cacheMaxSize) {
+                try {
+                    Files.deleteIfExists(path);
+                    cacheSize -= attributes.get(path).size();
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to remove thumbnail {}: {}", path, e.getMessage());
+                }
+            }
+            keys.add(getThumbnailKey(path));
+        }
+
+        // Known thumbnails are the remaining ones, including thumbnails generated before server restart
+        thumbnailKeys.retainAll(keys);
+        thumbnailKeys.addAll(keys);
+
+        // Allow new attempts for files whose thumbnail generation failed
+        failedKeys.invalidateAll();
+    }
+
+    /**
+     * Generate thumbnail and store it in cache.
+     *
+     * @param key       thumbnail key
+     * @param file      media file
+     * @param mimeType  media file mime type
+     * @param thumbnail thumbnail path
+     * @return true if thumbnail is generated
+     */
+    private boolean generateThumbnail(final String key, final File file, final MimeType mimeType, final Path thumbnail) {
+        Path tempFile = null;
+        try {
+            byte[] content = generator.generate(file, mimeType);
+            if (content == null) {
+                failedKeys.put(key, Boolean.TRUE);
+                return false;
+            }
+            // Write to a temporary file first so that incomplete thumbnails are never served
+            Files.createDirectories(thumbnail.getParent());
+            tempFile = Files.createTempFile(thumbnail.getParent(), key, ".tmp");
+            Files.write(tempFile, content);
+            Files.move(tempFile, thumbnail, ATOMIC_MOVE);
+            tempFile = null;
+            LOGGER.debug("Thumbnail generated for {}", file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failedKeys.put(key, Boolean.TRUE);
+            LOGGER.warn("Failed to generate thumbnail for {}: {}", file, e.getMessage());
+            return false;
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    LOGGER.warn(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get thumbnail path: thumbnails are spread across sub directories named after the first characters of their key.
+     *
+     * @param key thumbnail key
+     * @return thumbnail path
+     */
+    private Path getThumbnailPath(final String key) {
+        return thumbnailPath.resolve(key.substring(0, 2)).resolve(key + THUMBNAIL_EXTENSION);
+    }
+
+    /**
+     * Get thumbnail key from thumbnail path.
+     *
+     * @param path thumbnail path
+     * @return thumbnail key
+     */
+    private static String getThumbnailKey(final Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.substring(0, fileName.length() - THUMBNAIL_EXTENSION.length());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.media.model.AbstractNode;
+import net.holmes.core.business.media.model.ContentNode;
+import org.slf4j.Logger;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Content prefetcher: reads first bytes of next content file ahead of time,
+ * so that they are served from OS page cache when device requests next content to Http server.
+ */
+final class ContentPrefetcher {
+    private static final Logger LOGGER = getLogger(ContentPrefetcher.class);
+    private static final int PREFETCH_SIZE = 512 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExecutorService executor;
+
+    /**
+     * Instantiates a new content prefetcher.
+     */
+    ContentPrefetcher() {
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("content-prefetch-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Prefetch first bytes of node file, in background. Only content nodes (local files) are prefetched.
+     *
+     * @param node node
+     */
+    void prefetch(final AbstractNode node) {
+        if (node instanceof ContentNode) {
+            final String path = ((ContentNode) node).getPath();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    prefetch(path);
+                }
+            });
+        }
+    }
+
+    /**
+     * Read first bytes of file.
+     *
+     * @param path file path
+     * @return number of bytes read
+     */
+    static int prefetch(final String path) {
+        int total = 0;
+        try (InputStream in = new FileInputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (total < PREFETCH_SIZE && (read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to prefetch {}: {}", path, e.getMessage());
+        }
+        return total;
+    }
+}
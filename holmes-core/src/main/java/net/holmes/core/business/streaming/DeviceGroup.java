@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Group of devices playing the same content in sync.
+ * Content is first prepared on all devices, group is started once every remaining member is prepared.
+ * Then member positions are compared on each status: a member drifting from the other ones is seeked to their median position.
+ */
+final class DeviceGroup {
+    private static final long DRIFT_TOLERANCE_SECONDS = 2L;
+    private static final long CORRECTION_DELAY_MILLIS = 10000L;
+
+    private final Set<String> deviceIds;
+    private final Set<String> preparedDeviceIds;
+    private final Map<String, MemberPosition> positions;
+    private final Map<String, Long> correctionTimes;
+    private boolean started;
+
+    /**
+     * Instantiates a new device group.
+     *
+     * @param deviceIds member device ids
+     */
+    DeviceGroup(final Collection<String> deviceIds) {
+        this.deviceIds = Sets.newLinkedHashSet(deviceIds);
+        this.preparedDeviceIds = Sets.newHashSet();
+        this.positions = Maps.newHashMap();
+        this.correctionTimes = Maps.newHashMap();
+        this.started = false;
+    }
+
+    /**
+     * Get member device ids.
+     *
+     * @return member device ids
+     */
+    synchronized Collection<String> getDeviceIds() {
+        return Collections.unmodifiableList(Lists.newArrayList(deviceIds));
+    }
+
+    /**
+     * Whether group is started, i.e. content was prepared on all members.
+     *
+     * @return true if group is started
+     */
+    synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Content is prepared on a member.
+     *
+     * @param deviceId device id
+     * @return true if group should be started now
+     */
+    synchronized boolean prepared(final String deviceId) {
+        if (deviceIds.contains(deviceId)) {
+            preparedDeviceIds.add(deviceId);
+        }
+        return checkStart();
+    }
+
+    /**
+     * Remove a member from group.
+     *
+     * @param deviceId device id
+     * @return true if group should be started now, other members waiting for this one only
+     */
+    synchronized boolean remove(final String deviceId) {
+        if (!deviceIds.remove(deviceId)) {
+            return false;
+        }
+        preparedDeviceIds.remove(deviceId);
+        positions.remove(deviceId);
+        correctionTimes.remove(deviceId);
+        return checkStart();
+    }
+
+    /**
+     * Playback position of a member is received.
+     *
+     * @param deviceId device id
+     * @param position playback position (in seconds)
+     * @return position (in seconds) member should be seeked to, or null if member is in sync
+     */
+    Long statusReceived(final String deviceId, final Long position) {
+        return statusReceived(deviceId, position, System.currentTimeMillis());
+    }
+
+    /**
+     * Playback position of a member is received at given time.
+     *
+     * @param deviceId device id
+     * @param position playback position (in seconds)
+     * @param now      current time (in milliseconds)
+     * @return position (in seconds) member should be seeked to, or null if member is in sync
+     */
+    @VisibleForTesting
+    synchronized Long statusReceived(final String deviceId, final Long position, final long now) {
+        if (!started || position == null || !deviceIds.contains(deviceId)) {
+            return null;
+        }
+        positions.put(deviceId, new MemberPosition(position, now));
+
+        // Predict current position of other members
+        List<Long> otherPositions = Lists.newArrayList();
+        for (Map.Entry<String, MemberPosition> entry : positions.entrySet()) {
+            if (!entry.getKey().equals(deviceId)) {
+                otherPositions.add(entry.getValue().predict(now));
+            }
+        }
+        if (otherPositions.isEmpty()) {
+            return null;
+        }
+        Collections.sort(otherPositions);
+        long target = otherPositions.get(otherPositions.size() / 2);
+
+        Long correctionTime = correctionTimes.get(deviceId);
+        if (Math.abs(position - target) <= DRIFT_TOLERANCE_SECONDS
+                || correctionTime != null && now - correctionTime < CORRECTION_DELAY_MILLIS) {
+            return null;
+        }
+        // Member is seeked: its position is unknown until next status
+        correctionTimes.put(deviceId, now);
+        positions.remove(deviceId);
+        return target;
+    }
+
+    /**
+     * Start group once all members are prepared.
+     *
+     * @return true if group is started now
+     */
+    private boolean checkStart() {
+        if (!started && !deviceIds.isEmpty() && preparedDeviceIds.containsAll(deviceIds)) {
+            started = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Member position at a given time.
+     */
+    private static final class MemberPosition {
+        private final long position;
+        private final long time;
+
+        /**
+         * Instantiates a new member position.
+         *
+         * @param position playback position (in seconds)
+         * @param time     time (in milliseconds)
+         */
+        MemberPosition(final long position, final long time) {
+            this.position = position;
+            this.time = time;
+        }
+
+        /**
+         * Predict playback position at given time.
+         *
+         * @param now current time (in milliseconds)
+         * @return predicted position (in seconds)
+         */
+        long predict(final long now) {
+            return position + (now - time) / 1000;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Adaptive scheduler of session status requests.
+ * Each playing session has its own poll delay: status is polled fast right after playback starts,
+ * poll delay is doubled while playback position advances as expected and decreases again near the end of content.
+ * A device has at most one status request in flight: next request is scheduled once status is received.
+ * Sessions whose status is pushed by device are checked at max delay, so that polling resumes if device stops pushing status.
+ */
+final class SessionStatusScheduler {
+    private static final long POSITION_TOLERANCE_SECONDS = 1L;
+    private static final int POSITION_TOLERANCE_RATIO = 10;
+
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final long requestTimeoutMillis;
+    private final StatusPoller poller;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentMap<String, PollState> states;
+
+    /**
+     * Instantiates a new session status scheduler.
+     *
+     * @param minDelayMillis min delay between status requests (in milliseconds)
+     * @param maxDelayMillis max delay between status requests (in milliseconds), 0 to disable status polling
+     * @param poller         status poller
+     */
+    SessionStatusScheduler(final long minDelayMillis, final long maxDelayMillis, final StatusPoller poller) {
+        this.minDelayMillis = Math.min(minDelayMillis, maxDelayMillis);
+        this.maxDelayMillis = maxDelayMillis;
+        this.requestTimeoutMillis = 2 * maxDelayMillis;
+        this.poller = poller;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("session-status-%d").setDaemon(true).build());
+        this.states = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Start polling session status, or poll it fast again when playback is restarted.
+     *
+     * @param deviceId device id
+     */
+    void start(final String deviceId) {
+        if (maxDelayMillis > 0) {
+            PollState state = new PollState();
+            PollState previousState = states.put(deviceId, state);
+            if (previousState != null) {
+                previousState.cancel();
+            }
+            schedule(deviceId, state, minDelayMillis);
+        }
+    }
+
+    /**
+     * Stop polling session status.
+     *
+     * @param deviceId device id
+     */
+    void stop(final String deviceId) {
+        PollState state = states.remove(deviceId);
+        if (state != null) {
+            state.cancel();
+        }
+    }
+
+    /**
+     * Session status received: adapt poll delay and schedule next status request.
+     *
+     * @param deviceId device id
+     * @param position playback position (in seconds)
+     * @param duration content duration (in seconds)
+     */
+    void statusReceived(final String deviceId, final Long position, final Long duration) {
+        PollState state = states.get(deviceId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (!state.inFlight) {
+                // Status was not requested by scheduler
+                return;
+            }
+            state.inFlight = false;
+            long now = System.currentTimeMillis();
+            long delay = minDelayMillis;
+            if (position != null && state.position != null) {
+                // Back off while position advances as expected, else poll fast again
+                long elapsedSeconds = (now - state.positionTime) / 1000;
+                long expectedPosition = state.position + elapsedSeconds;
+                if (Math.abs(position - expectedPosition) <= POSITION_TOLERANCE_SECONDS + elapsedSeconds / POSITION_TOLERANCE_RATIO) {
+                    delay = Math.min(state.delay * 2, maxDelayMillis);
+                }
+            }
+            if (position != null && duration != null && duration > 0) {
+                // Poll faster near the end of content
+                delay = Math.min(delay, Math.max(minDelayMillis, (duration - position) * 1000 / 2));
+            }
+            state.position = position;
+            state.positionTime = now;
+            state.delay = delay;
+            state.cancel();
+        }
+        schedule(deviceId, state, state.delay);
+    }
+
+    /**
+     * Session status request failed: back off and schedule next status request.
+     *
+     * @param deviceId device id
+     */
+    void statusFailed(final String deviceId) {
+        PollState state = states.get(deviceId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (!state.inFlight) {
+                return;
+            }
+            state.inFlight = false;
+            state.delay = Math.min(state.delay * 2, maxDelayMillis);
+            state.cancel();
+        }
+        schedule(deviceId, state, state.delay);
+    }
+
+    /**
+     * Get current poll delay of a session.
+     *
+     * @param deviceId device id
+     * @return poll delay (in milliseconds) or null if session status is not polled
+     */
+    @VisibleForTesting
+    Long getDelay(final String deviceId) {
+        PollState state = states.get(deviceId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.delay;
+        }
+    }
+
+    /**
+     * Schedule next status request.
+     *
+     * @param deviceId device id
+     * @param state    poll state
+     * @param delay    delay (in milliseconds)
+     */
+    private void schedule(final String deviceId, final PollState state, final long delay) {
+        synchronized (state) {
+            if (states.get(deviceId) != state) {
+                return;
+            }
+            state.future = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poll(deviceId, state);
+                }
+            }, delay, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send status request. Next status request is scheduled when status is received,
+     * or after request timeout if status is never received.
+     *
+     * @param deviceId device id
+     * @param state    poll state
+     */
+    private void poll(final String deviceId, final PollState state) {
+        synchronized (state) {
+            if (states.get(deviceId) != state) {
+                return;
+            }
+            state.inFlight = true;
+        }
+        schedule(deviceId, state, requestTimeoutMillis);
+        switch (poller.poll(deviceId)) {
+            case NOT_PLAYING:
+                // Session is not playing anymore
+                states.remove(deviceId, state);
+                state.cancel();
+                break;
+            case PUSHED:
+                // Status is pushed by device: only check at max delay that it is still pushed
+                synchronized (state) {
+                    state.inFlight = false;
+                    state.delay = maxDelayMillis;
+                    state.cancel();
+                }
+                schedule(deviceId, state, maxDelayMillis);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Status poller.
+     */
+    interface StatusPoller {
+
+        /**
+         * Request session status.
+         *
+         * @param deviceId device id
+         * @return poll result
+         */
+        PollResult poll(String deviceId);
+    }
+
+    /**
+     * Status poll result.
+     */
+    enum PollResult {
+        /**
+         * Status is requested.
+         */
+        REQUESTED,
+        /**
+         * Status is pushed by device, session stays scheduled in case device stops pushing it.
+         */
+        PUSHED,
+        /**
+         * Session is not playing, its status does not need to be polled anymore.
+         */
+        NOT_PLAYING
+    }
+
+    /**
+     * Poll state of a session.
+     */
+    private final class PollState {
+        private long delay = minDelayMillis;
+        private boolean inFlight = false;
+        private Long position = null;
+        private long positionTime = 0L;
+        private ScheduledFuture<?> future = null;
+
+        /**
+         * Cancel scheduled status request.
+         */
+        synchronized void cancel() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+}
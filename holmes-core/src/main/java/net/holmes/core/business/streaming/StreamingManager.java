@@ -23,6 +23,7 @@ import net.holmes.core.business.streaming.device.UnknownDeviceException;
 import net.holmes.core.business.streaming.session.StreamingSession;
 import net.holmes.core.business.streaming.session.UnknownSessionException;
 
+import java.net.InetAddress;
 import java.util.Collection;
 
 /**
@@ -48,10 +49,10 @@ public interface StreamingManager {
     /**
      * Find devices.
      *
-     * @param hostAddress host address
+     * @param address device address
      * @return list of devices
      */
-    Collection<Device> findDevices(String hostAddress);
+    Collection<Device> findDevices(InetAddress address);
 
     /**
      * Get all devices.
@@ -89,6 +90,35 @@ public interface StreamingManager {
      */
     void play(String deviceId, String contentUrl, AbstractNode node) throws UnknownDeviceException;
 
+    /**
+     * Play content in sync on a group of devices.
+     * Content is prepared on all devices, then started on all of them at once.
+     *
+     * @param deviceIds  device ids
+     * @param contentUrl content url
+     * @param node       node
+     * @throws UnknownDeviceException
+     */
+    void playGroup(Collection<String> deviceIds, String contentUrl, AbstractNode node) throws UnknownDeviceException;
+
+    /**
+     * Queue content to play on device once current content is over, or play it if nothing is played on device.
+     *
+     * @param deviceId   device id
+     * @param contentUrl content url
+     * @param node       node
+     * @throws UnknownDeviceException
+     */
+    void enqueue(String deviceId, String contentUrl, AbstractNode node) throws UnknownDeviceException;
+
+    /**
+     * Skip to next queued content on device, or stop playback if no content is queued.
+     *
+     * @param deviceId device id
+     * @throws UnknownDeviceException
+     */
+    void next(String deviceId) throws UnknownDeviceException;
+
     /**
      * Stop playback on device.
      *
@@ -17,8 +17,9 @@
 
 package net.holmes.core.business.streaming;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
-import com.google.common.util.concurrent.AbstractScheduledService;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.model.AbstractNode;
 import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
@@ -27,6 +28,7 @@ import net.holmes.core.business.streaming.device.DeviceDao;
 import net.holmes.core.business.streaming.device.DeviceStreamer;
 import net.holmes.core.business.streaming.device.UnknownDeviceException;
 import net.holmes.core.business.streaming.event.StreamingEvent;
+import net.holmes.core.business.streaming.session.QueuedContent;
 import net.holmes.core.business.streaming.session.SessionDao;
 import net.holmes.core.business.streaming.session.StreamingSession;
 import net.holmes.core.business.streaming.session.UnknownSessionException;
@@ -35,24 +37,35 @@ import org.slf4j.Logger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.net.InetAddress;
 import java.util.Collection;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.PREPARE;
+import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.STATUS;
 import static net.holmes.core.business.streaming.session.SessionStatus.*;
 import static net.holmes.core.common.ConfigurationParameter.STREAMING_STATUS_UPDATE_DELAY_SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Streaming manager implementation.
+ * Each device has a play queue, held by its streaming session: once current content is over, next content is played by server,
+ * or by device itself when next content could be preloaded on it.
+ * Devices can also be grouped to play the same content in sync: any explicit command on a device removes it from its group.
  */
 public final class StreamingManagerImpl implements StreamingManager {
     private static final Logger LOGGER = getLogger(StreamingManagerImpl.class);
+    private static final long MIN_STATUS_UPDATE_DELAY_MILLIS = 1000L;
+    private static final int MAX_STATUS_UPDATE_DELAY_RATIO = 4;
 
     private final DeviceDao deviceDao;
     private final SessionDao sessionDao;
     private final DeviceStreamer upnpStreamer;
     private final DeviceStreamer airplayStreamer;
+    private final SessionStatusScheduler statusScheduler;
+    private final ContentPrefetcher contentPrefetcher;
+    private final ConcurrentMap<String, DeviceGroup> groups;
 
     /**
      * Instantiates a new streaming manager implementation.
@@ -72,8 +85,17 @@ public final class StreamingManagerImpl implements StreamingManager {
         this.upnpStreamer = upnpStreamer;
         this.airplayStreamer = airplayStreamer;
 
-        // Start session status update task
-        new UpdateSessionStatusService(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).startAsync();
+        // Session status is polled with an adaptive delay, up to several times the configured delay
+        long statusUpdateDelay = configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS) * 1000L;
+        this.statusScheduler = new SessionStatusScheduler(MIN_STATUS_UPDATE_DELAY_MILLIS, statusUpdateDelay * MAX_STATUS_UPDATE_DELAY_RATIO,
+                new SessionStatusScheduler.StatusPoller() {
+                    @Override
+                    public SessionStatusScheduler.PollResult poll(final String deviceId) {
+                        return updateStatus(deviceId);
+                    }
+                });
+        this.contentPrefetcher = new ContentPrefetcher();
+        this.groups = Maps.newConcurrentMap();
     }
 
     /**
@@ -92,6 +114,8 @@ public final class StreamingManagerImpl implements StreamingManager {
     public void removeDevice(final String deviceId) {
         if (deviceDao.removeDevice(deviceId)) {
             LOGGER.info("Remove device {}", deviceId);
+            statusScheduler.stop(deviceId);
+            leaveGroup(deviceId);
             sessionDao.removeDevice(deviceId);
         }
     }
@@ -100,8 +124,8 @@ public final class StreamingManagerImpl implements StreamingManager {
      * {@inheritDoc}
      */
     @Override
-    public Collection<Device> findDevices(final String hostAddress) {
-        return deviceDao.findDevices(hostAddress);
+    public Collection<Device> findDevices(final InetAddress address) {
+        return deviceDao.findDevices(address);
     }
 
     /**
@@ -135,10 +159,71 @@ public final class StreamingManagerImpl implements StreamingManager {
     @SuppressWarnings("unchecked")
     public void play(final String deviceId, final String contentUrl, final AbstractNode node) throws UnknownDeviceException {
         Device device = deviceDao.getDevice(deviceId);
+        leaveGroup(deviceId);
         sessionDao.initSession(deviceId, contentUrl, node.getName());
         getStreamer(device).play(device, contentUrl, node);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void playGroup(final Collection<String> deviceIds, final String contentUrl, final AbstractNode node) throws UnknownDeviceException {
+        // Check all devices before changing anything
+        List<Device> devices = Lists.newArrayListWithCapacity(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            devices.add(deviceDao.getDevice(deviceId));
+        }
+        DeviceGroup group = new DeviceGroup(deviceIds);
+        for (Device device : devices) {
+            leaveGroup(device.getId());
+            groups.put(device.getId(), group);
+            sessionDao.initSession(device.getId(), contentUrl, node.getName());
+        }
+        LOGGER.info("Play {} on device group {}", node.getName(), group.getDeviceIds());
+        // Streamer commands are queued per device: content is prepared on all devices in parallel
+        for (Device device : devices) {
+            getStreamer(device).prepare(device, contentUrl, node);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(final String deviceId, final String contentUrl, final AbstractNode node) throws UnknownDeviceException {
+        // Check device
+        deviceDao.getDevice(deviceId);
+        leaveGroup(deviceId);
+        try {
+            if (sessionDao.getSession(deviceId).getStatus() != WAITING) {
+                if (sessionDao.addNextContent(deviceId, new QueuedContent(contentUrl, node))) {
+                    // Queued content is the next one
+                    prepareNextContent(deviceId);
+                }
+                return;
+            }
+        } catch (UnknownSessionException e) {
+            LOGGER.debug(e.getMessage(), e);
+        }
+        // Nothing is played on device
+        play(deviceId, contentUrl, node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void next(final String deviceId) throws UnknownDeviceException {
+        Device device = deviceDao.getDevice(deviceId);
+        leaveGroup(deviceId);
+        if (!playNextContent(deviceId)) {
+            getStreamer(device).stop(device);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -146,7 +231,11 @@ public final class StreamingManagerImpl implements StreamingManager {
     @SuppressWarnings("unchecked")
     public void stop(final String deviceId) throws UnknownDeviceException {
         Device device = deviceDao.getDevice(deviceId);
-        getStreamer(device).stop(device);
+        DeviceStreamer streamer = getStreamer(device);
+        leaveGroup(deviceId);
+        // Playback is stopped by user, queued contents are dropped
+        sessionDao.clearNextContents(deviceId);
+        streamer.stop(device);
     }
 
     /**
@@ -156,6 +245,7 @@ public final class StreamingManagerImpl implements StreamingManager {
     @SuppressWarnings("unchecked")
     public void pause(final String deviceId) throws UnknownDeviceException {
         Device device = deviceDao.getDevice(deviceId);
+        leaveGroup(deviceId);
         getStreamer(device).pause(device);
     }
 
@@ -166,6 +256,7 @@ public final class StreamingManagerImpl implements StreamingManager {
     @SuppressWarnings("unchecked")
     public void resume(final String deviceId) throws UnknownDeviceException {
         Device device = deviceDao.getDevice(deviceId);
+        leaveGroup(deviceId);
         getStreamer(device).resume(device);
     }
 
@@ -184,23 +275,61 @@ public final class StreamingManagerImpl implements StreamingManager {
                 // Update streaming session
                 switch (event.getType()) {
                     case PLAY:
+                        sessionDao.updateSessionStatus(event.getDeviceId(), PLAYING);
+                        statusScheduler.start(event.getDeviceId());
+                        prepareNextContent(event.getDeviceId());
+                        break;
                     case RESUME:
                         sessionDao.updateSessionStatus(event.getDeviceId(), PLAYING);
+                        statusScheduler.start(event.getDeviceId());
+                        break;
+                    case NEXT:
+                        // Device moved to preloaded next content by itself
+                        if (sessionDao.nextContent(event.getDeviceId()) != null) {
+                            sessionDao.updateSessionStatus(event.getDeviceId(), PLAYING);
+                            statusScheduler.start(event.getDeviceId());
+                            prepareNextContent(event.getDeviceId());
+                        }
+                        break;
+                    case PREPARE:
+                        // Start group once content is prepared on all its devices
+                        DeviceGroup preparedGroup = groups.get(event.getDeviceId());
+                        if (preparedGroup != null && preparedGroup.prepared(event.getDeviceId())) {
+                            startGroup(preparedGroup);
+                        }
                         break;
                     case STOP:
-                        sessionDao.updateSessionStatus(event.getDeviceId(), WAITING);
+                        // Devices are stopped while content is prepared, only leave group once it is started
+                        DeviceGroup stoppedGroup = groups.get(event.getDeviceId());
+                        if (stoppedGroup != null && stoppedGroup.isStarted()) {
+                            leaveGroup(event.getDeviceId());
+                        }
+                        // Content is over: play next queued content if any
+                        if (!playNextContent(event.getDeviceId())) {
+                            sessionDao.updateSessionStatus(event.getDeviceId(), WAITING);
+                            statusScheduler.stop(event.getDeviceId());
+                        }
                         break;
                     case PAUSE:
                         sessionDao.updateSessionStatus(event.getDeviceId(), PAUSED);
+                        statusScheduler.stop(event.getDeviceId());
                         break;
                     case STATUS:
                         sessionDao.updateSessionPosition(event.getDeviceId(), event.getPosition(), event.getDuration());
+                        statusScheduler.statusReceived(event.getDeviceId(), event.getPosition(), event.getDuration());
+                        correctDrift(event.getDeviceId(), event.getPosition());
                         break;
                     default:
                         break;
                 }
             } else {
                 LOGGER.error("Type: {} - Device: {} - Error: {}", event.getType(), event.getDeviceId(), event.getErrorMessage());
+                if (event.getType() == STATUS) {
+                    statusScheduler.statusFailed(event.getDeviceId());
+                } else if (event.getType() == PREPARE) {
+                    // Do not wait for this device to start group
+                    leaveGroup(event.getDeviceId());
+                }
             }
 
         } catch (UnknownSessionException e) {
@@ -209,57 +338,139 @@ public final class StreamingManagerImpl implements StreamingManager {
     }
 
     /**
-     * Get streamer associated to device
+     * Request playback status of a playing session, unless status is pushed by device.
+     * Status of group members is always requested: pushed status does not carry playback position, which is needed to correct drift.
      *
-     * @param device device
-     * @return streamer
+     * @param deviceId device id
+     * @return poll result
      */
-    private DeviceStreamer getStreamer(final Device device) {
-        if (device instanceof UpnpDevice) {
-            return upnpStreamer;
-        } else if (device instanceof AirplayDevice) {
-            return airplayStreamer;
+    @SuppressWarnings("unchecked")
+    private SessionStatusScheduler.PollResult updateStatus(final String deviceId) {
+        try {
+            if (sessionDao.getSession(deviceId).getStatus() == PLAYING) {
+                Device device = deviceDao.getDevice(deviceId);
+                DeviceStreamer streamer = getStreamer(device);
+                if (groups.containsKey(deviceId) || !streamer.isStatusPushed(device)) {
+                    streamer.updateStatus(device);
+                    return SessionStatusScheduler.PollResult.REQUESTED;
+                }
+                return SessionStatusScheduler.PollResult.PUSHED;
+            }
+        } catch (UnknownSessionException | UnknownDeviceException e) {
+            LOGGER.debug(e.getMessage(), e);
+        }
+        return SessionStatusScheduler.PollResult.NOT_PLAYING;
+    }
+
+    /**
+     * Preload next content of session on device, if device supports it, and prefetch next content file.
+     *
+     * @param deviceId device id
+     */
+    @SuppressWarnings("unchecked")
+    private void prepareNextContent(final String deviceId) {
+        try {
+            QueuedContent nextContent = sessionDao.getNextContent(deviceId);
+            if (nextContent != null) {
+                contentPrefetcher.prefetch(nextContent.getNode());
+                Device device = deviceDao.getDevice(deviceId);
+                DeviceStreamer streamer = getStreamer(device);
+                if (streamer.isNextContentSupported(device)) {
+                    streamer.setNextContent(device, nextContent.getContentUrl(), nextContent.getNode());
+                }
+            }
+        } catch (UnknownSessionException | UnknownDeviceException e) {
+            LOGGER.debug(e.getMessage(), e);
         }
-        throw new IllegalArgumentException("Unknown device type " + device);
     }
 
     /**
-     * Scheduled task to update session status.
+     * Move session to next content and play it on device.
+     *
+     * @param deviceId device id
+     * @return true if next content is played, false if no content is queued
      */
-    private class UpdateSessionStatusService extends AbstractScheduledService {
-        private final int updateStatusDelay;
+    @SuppressWarnings("unchecked")
+    private boolean playNextContent(final String deviceId) {
+        try {
+            QueuedContent nextContent = sessionDao.nextContent(deviceId);
+            if (nextContent != null) {
+                Device device = deviceDao.getDevice(deviceId);
+                getStreamer(device).play(device, nextContent.getContentUrl(), nextContent.getNode());
+                return true;
+            }
+        } catch (UnknownSessionException | UnknownDeviceException e) {
+            LOGGER.debug(e.getMessage(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Remove device from its group, other devices of group are started if they were only waiting for this one.
+     *
+     * @param deviceId device id
+     */
+    private void leaveGroup(final String deviceId) {
+        DeviceGroup group = groups.remove(deviceId);
+        if (group != null && group.remove(deviceId)) {
+            startGroup(group);
+        }
+    }
 
-        /**
-         * Instantiates a new update session status service.
-         *
-         * @param updateStatusDelay update delay.
-         */
-        public UpdateSessionStatusService(final int updateStatusDelay) {
-            this.updateStatusDelay = updateStatusDelay;
+    /**
+     * Start content prepared on all devices of group.
+     * Start commands are only queued on each device, so devices are started concurrently.
+     *
+     * @param group device group
+     */
+    @SuppressWarnings("unchecked")
+    private void startGroup(final DeviceGroup group) {
+        LOGGER.info("Start device group {}", group.getDeviceIds());
+        for (String deviceId : group.getDeviceIds()) {
+            try {
+                Device device = deviceDao.getDevice(deviceId);
+                getStreamer(device).start(device);
+            } catch (UnknownDeviceException e) {
+                LOGGER.debug(e.getMessage(), e);
+            }
         }
+    }
 
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        @SuppressWarnings("unchecked")
-        protected void runOneIteration() throws Exception {
-            Map<String, StreamingSession> sessions = sessionDao.getSessions();
-            for (Map.Entry<String, StreamingSession> session : sessions.entrySet()) {
-                if (session.getValue().getStatus() == PLAYING) {
-                    // Update device status
-                    Device device = deviceDao.getDevice(session.getKey());
-                    getStreamer(device).updateStatus(device);
+    /**
+     * Seek device to the position of the other devices of its group, if it drifted from them.
+     *
+     * @param deviceId device id
+     * @param position playback position (in seconds)
+     */
+    @SuppressWarnings("unchecked")
+    private void correctDrift(final String deviceId, final Long position) {
+        DeviceGroup group = groups.get(deviceId);
+        if (group != null) {
+            Long target = group.statusReceived(deviceId, position);
+            if (target != null) {
+                LOGGER.info("Device {} drifted from its group: seek from {} to {}", deviceId, position, target);
+                try {
+                    Device device = deviceDao.getDevice(deviceId);
+                    getStreamer(device).seek(device, target);
+                } catch (UnknownDeviceException e) {
+                    LOGGER.debug(e.getMessage(), e);
                 }
             }
         }
+    }
 
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        protected Scheduler scheduler() {
-            return updateStatusDelay > 0 ? Scheduler.newFixedDelaySchedule(updateStatusDelay, updateStatusDelay, SECONDS) : null;
+    /**
+     * Get streamer associated to device
+     *
+     * @param device device
+     * @return streamer
+     */
+    private DeviceStreamer getStreamer(final Device device) {
+        if (device instanceof UpnpDevice) {
+            return upnpStreamer;
+        } else if (device instanceof AirplayDevice) {
+            return airplayStreamer;
         }
+        throw new IllegalArgumentException("Unknown device type " + device);
     }
 }
@@ -22,6 +22,7 @@ import net.holmes.core.business.media.model.AbstractNode;
 import net.holmes.core.business.streaming.airplay.command.PlayCommand;
 import net.holmes.core.business.streaming.airplay.command.PlayStatusCommand;
 import net.holmes.core.business.streaming.airplay.command.RateCommand;
+import net.holmes.core.business.streaming.airplay.command.SeekCommand;
 import net.holmes.core.business.streaming.airplay.command.StopCommand;
 import net.holmes.core.business.streaming.airplay.controlpoint.ControlPoint;
 import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
@@ -56,10 +57,15 @@ public class AirplayStreamerImpl extends DeviceStreamer<AirplayDevice> {
      */
     @Override
     public void play(final AirplayDevice device, final String contentUrl, final AbstractNode node) {
-        controlPoint.execute(device, new PlayCommand(contentUrl, 0d, newCommandFailureHandler(PLAY, device)) {
+        submit(new StreamerCommand(PLAY, device) {
             @Override
-            public void success(Map<String, String> contentParameters) {
-                sendSuccess(PLAY, device.getId());
+            public void execute() {
+                controlPoint.execute(device, new PlayCommand(contentUrl, 0d, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
             }
         });
     }
@@ -69,10 +75,15 @@ public class AirplayStreamerImpl extends DeviceStreamer<AirplayDevice> {
      */
     @Override
     public void stop(final AirplayDevice device) {
-        controlPoint.execute(device, new StopCommand(newCommandFailureHandler(STOP, device)) {
+        submit(new StreamerCommand(STOP, device) {
             @Override
-            public void success(Map<String, String> contentParameters) {
-                sendSuccess(STOP, device.getId());
+            public void execute() {
+                controlPoint.execute(device, new StopCommand(getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
             }
         });
     }
@@ -82,10 +93,15 @@ public class AirplayStreamerImpl extends DeviceStreamer<AirplayDevice> {
      */
     @Override
     public void pause(final AirplayDevice device) {
-        controlPoint.execute(device, new RateCommand(0d, newCommandFailureHandler(PAUSE, device)) {
+        submit(new StreamerCommand(PAUSE, device) {
             @Override
-            public void success(Map<String, String> contentParameters) {
-                sendSuccess(PAUSE, device.getId());
+            public void execute() {
+                controlPoint.execute(device, new RateCommand(0d, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
             }
         });
     }
@@ -95,10 +111,15 @@ public class AirplayStreamerImpl extends DeviceStreamer<AirplayDevice> {
      */
     @Override
     public void resume(final AirplayDevice device) {
-        controlPoint.execute(device, new RateCommand(1d, newCommandFailureHandler(RESUME, device)) {
+        submit(new StreamerCommand(RESUME, device) {
             @Override
-            public void success(Map<String, String> contentParameters) {
-                sendSuccess(RESUME, device.getId());
+            public void execute() {
+                controlPoint.execute(device, new RateCommand(1d, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
             }
         });
     }
@@ -107,20 +128,88 @@ public class AirplayStreamerImpl extends DeviceStreamer<AirplayDevice> {
      * {@inheritDoc}
      */
     @Override
-    public void updateStatus(final AirplayDevice device) {
-        controlPoint.execute(device, new PlayStatusCommand(newCommandFailureHandler(STATUS, device)) {
+    public void prepare(final AirplayDevice device, final String contentUrl, final AbstractNode node) {
+        submit(new StreamerCommand(PREPARE, device) {
+            @Override
+            public void execute() {
+                // Airplay device starts playback on play command, which body only holds content location and start position:
+                // pause command is pipelined right behind play command instead of waiting for its response.
+                // Device handles both requests in order, so that content is not played for a round trip.
+                controlPoint.execute(device, new PlayCommand(contentUrl, 0d, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        // Command completes on pause response
+                    }
+                });
+                controlPoint.execute(device, new RateCommand(0d, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start(final AirplayDevice device) {
+        submit(new StreamerCommand(PLAY, device) {
+            @Override
+            public void execute() {
+                controlPoint.execute(device, new RateCommand(1d, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(final AirplayDevice device, final long position) {
+        submit(new StreamerCommand(SEEK, device) {
             @Override
-            public void success(Map<String, String> contentParameters) {
-                if (contentParameters != null && !contentParameters.isEmpty()) {
-                    Long duration = getContentParameterValue(CONTENT_PARAMETER_DURATION, contentParameters);
-                    Long position = getContentParameterValue(CONTENT_PARAMETER_POSITION, contentParameters);
-                    sendSuccess(STATUS, device.getId(), duration, position);
+            public void execute() {
+                controlPoint.execute(device, new SeekCommand((double) position, getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        succeeded();
+                    }
+                });
+            }
+        });
+    }
 
-                    if (duration > 0 && position >= duration) {
-                        // End of streaming is reached, send stop command
-                        stop(device);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateStatus(final AirplayDevice device) {
+        submit(new StreamerCommand(STATUS, device) {
+            @Override
+            public void execute() {
+                controlPoint.execute(device, new PlayStatusCommand(getFailureHandler()) {
+                    @Override
+                    public void success(Map<String, String> contentParameters) {
+                        if (contentParameters != null && !contentParameters.isEmpty()) {
+                            Long duration = getContentParameterValue(CONTENT_PARAMETER_DURATION, contentParameters);
+                            Long position = getContentParameterValue(CONTENT_PARAMETER_POSITION, contentParameters);
+                            if (succeeded(duration, position) && duration > 0 && position >= duration) {
+                                // End of streaming is reached, send stop command
+                                stop(device);
+                            }
+                        } else {
+                            complete();
+                        }
                     }
-                }
+                });
             }
         });
     }
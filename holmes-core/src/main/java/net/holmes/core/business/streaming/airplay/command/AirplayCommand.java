@@ -18,6 +18,10 @@
 package net.holmes.core.business.streaming.airplay.command;
 
 import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpMethod;
 import net.holmes.core.business.streaming.device.CommandFailureHandler;
 
@@ -28,6 +32,7 @@ import static io.netty.handler.codec.http.HttpHeaders.Names.USER_AGENT;
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpMethod.POST;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Airplay command.
@@ -101,6 +106,20 @@ public abstract class AirplayCommand {
         return sbCommand.toString();
     }
 
+    /**
+     * Get Http request as a Netty HTTP message.
+     *
+     * @return Http request
+     */
+    public FullHttpRequest getHttpRequest() {
+        String requestContent = getRequestContent();
+        ByteBuf content = requestContent == null ? Unpooled.EMPTY_BUFFER : Unpooled.copiedBuffer(requestContent, UTF_8);
+        FullHttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, type.getMethod(), getRequestUrl(), content);
+        request.headers().set(CONTENT_LENGTH, content.readableBytes());
+        request.headers().set(USER_AGENT, AIRPLAY_USER_AGENT);
+        return request;
+    }
+
     /**
      * Command failure.
      *
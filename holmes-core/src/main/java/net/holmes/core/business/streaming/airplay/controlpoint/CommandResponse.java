@@ -25,6 +25,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import io.netty.handler.codec.http.FullHttpResponse;
 
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import java.util.regex.Pattern;
 
 import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_LENGTH;
 import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Command response.
@@ -40,6 +42,7 @@ import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
 public final class CommandResponse {
     private static final String EOL = "\n";
     private static final char PARAMETER_SEPARATOR = ':';
+    private static final String CONTENT_TYPE_PARAMETERS = "text/parameters";
     private static final Pattern HTTP_RESPONSE_PATTERN = Pattern.compile("^(.*)\\s(\\d+)\\s(.*)$");
 
     private int code;
@@ -97,6 +100,23 @@ public final class CommandResponse {
         }
     }
 
+    /**
+     * Decode Http response message, with its content parameters.
+     *
+     * @param httpResponse Http response
+     */
+    public void decodeHttpResponse(final FullHttpResponse httpResponse) {
+        code = httpResponse.getStatus().code();
+        message = httpResponse.getStatus().reasonPhrase();
+        for (Map.Entry<String, String> header : httpResponse.headers()) {
+            httpHeaders.put(header.getKey(), header.getValue());
+        }
+        // Http header names are case insensitive
+        if (CONTENT_TYPE_PARAMETERS.equals(httpResponse.headers().get(CONTENT_TYPE))) {
+            decodeContentParameters(httpResponse.content().toString(UTF_8));
+        }
+    }
+
     /**
      * Decode content parameters.
      *
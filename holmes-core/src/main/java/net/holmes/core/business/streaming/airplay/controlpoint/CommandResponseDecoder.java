@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.airplay.controlpoint;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.http.FullHttpResponse;
+
+import java.util.List;
+
+/**
+ * Decode Http responses of Airplay device to command responses.
+ */
+final class CommandResponseDecoder extends MessageToMessageDecoder<FullHttpResponse> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void decode(final ChannelHandlerContext context, final FullHttpResponse httpResponse, final List<Object> out) {
+        CommandResponse response = new CommandResponse();
+        response.decodeHttpResponse(httpResponse);
+        out.add(response);
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.airplay.controlpoint;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import net.holmes.core.business.streaming.airplay.command.AirplayCommand;
+import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
+import net.holmes.core.business.streaming.device.Device;
+import net.holmes.core.business.streaming.device.DeviceDao;
+import net.holmes.core.business.streaming.device.DeviceListener;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Airplay control point based on Netty: commands are sent on one persistent channel per device, without blocking any thread.
+ * Channels are opened on first command and reopened when device closed them, requests are pipelined and
+ * responses are matched to commands in request order. A command without response after timeout closes its channel.
+ * Device channel is closed and released when device is removed.
+ */
+public final class NettyControlPoint implements ControlPoint {
+    private static final Logger LOGGER = getLogger(NettyControlPoint.class);
+    private static final int EVENT_LOOP_THREADS = 2;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long REQUEST_TIMEOUT_MILLIS = 10000L;
+    private static final int IDLE_TIMEOUT_SECONDS = 300;
+    private static final int MAX_CONTENT_LENGTH = 65536;
+
+    private final Bootstrap bootstrap;
+    private final ConcurrentMap<InetSocketAddress, DeviceChannel> channels;
+
+    /**
+     * Instantiates a new Netty control point.
+     *
+     * @param deviceDao device dao
+     */
+    @Inject
+    public NettyControlPoint(final DeviceDao deviceDao) {
+        this.channels = Maps.newConcurrentMap();
+        this.bootstrap = new Bootstrap()
+                .group(new NioEventLoopGroup(EVENT_LOOP_THREADS, new ThreadFactoryBuilder().setNameFormat("airplay-%d").setDaemon(true).build()))
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast("idle", new IdleStateHandler(0, 0, IDLE_TIMEOUT_SECONDS))
+                                .addLast("codec", new HttpClientCodec())
+                                .addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH))
+                                .addLast("decoder", new CommandResponseDecoder())
+                                .addLast("handler", new CommandResponseHandler());
+                    }
+                });
+
+        // Close device channel when device is removed
+        deviceDao.addDeviceListener(new DeviceListener() {
+            @Override
+            public void deviceAdded(final Device device) {
+                // Channel is opened on first command
+            }
+
+            @Override
+            public void deviceRemoved(final Device device) {
+                if (device instanceof AirplayDevice) {
+                    DeviceChannel deviceChannel = channels.remove(getAddress((AirplayDevice) device));
+                    if (deviceChannel != null) {
+                        deviceChannel.close();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final AirplayDevice device, final AirplayCommand command) {
+        InetSocketAddress address = getAddress(device);
+        DeviceChannel deviceChannel = channels.get(address);
+        if (deviceChannel == null) {
+            DeviceChannel newChannel = new DeviceChannel(address);
+            deviceChannel = channels.putIfAbsent(address, newChannel);
+            if (deviceChannel == null) {
+                deviceChannel = newChannel;
+            }
+        }
+        deviceChannel.send(command);
+    }
+
+    /**
+     * Get device socket address.
+     *
+     * @param device Airplay device
+     * @return device socket address
+     */
+    private static InetSocketAddress getAddress(final AirplayDevice device) {
+        return new InetSocketAddress(device.getAddress(), device.getPort());
+    }
+
+    /**
+     * Persistent channel to a device, reconnected when closed.
+     */
+    private final class DeviceChannel {
+        private final InetSocketAddress address;
+        private ChannelFuture connectFuture;
+
+        /**
+         * Instantiates a new device channel.
+         *
+         * @param address device address
+         */
+        DeviceChannel(final InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Send command on device channel, connecting first if needed.
+         *
+         * @param command command
+         */
+        void send(final AirplayCommand command) {
+            ChannelFuture future;
+            synchronized (this) {
+                if (connectFuture == null || connectFuture.isDone() && !connectFuture.channel().isActive()) {
+                    connectFuture = bootstrap.connect(address);
+                }
+                future = connectFuture;
+            }
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture channelFuture) {
+                    if (channelFuture.isSuccess()) {
+                        write(channelFuture.channel(), command);
+                    } else {
+                        LOGGER.error("Failed to connect to {}: {}", address, channelFuture.cause().getMessage());
+                        command.failure(channelFuture.cause().getMessage());
+                    }
+                }
+            });
+        }
+
+        /**
+         * Close device channel, pending commands are failed.
+         */
+        synchronized void close() {
+            if (connectFuture != null) {
+                connectFuture.channel().close();
+            }
+        }
+
+        /**
+         * Write command request on channel. Called on channel event loop.
+         *
+         * @param channel channel
+         * @param command command
+         */
+        private void write(final Channel channel, final AirplayCommand command) {
+            final CommandResponseHandler handler = channel.pipeline().get(CommandResponseHandler.class);
+            if (handler == null || !channel.isActive()) {
+                command.failure("Connection closed");
+                return;
+            }
+            handler.addPendingCommand(command);
+            channel.writeAndFlush(command.getHttpRequest()).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            channel.eventLoop().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    handler.checkTimeout(command);
+                }
+            }, REQUEST_TIMEOUT_MILLIS, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Dispatch command responses to pending commands, in request order.
+     * All handler methods are called on channel event loop.
+     */
+    private static final class CommandResponseHandler extends SimpleChannelInboundHandler<CommandResponse> {
+        private final Queue<AirplayCommand> pendingCommands = new ArrayDeque<>();
+        private ChannelHandlerContext context;
+        private String closeReason = "Connection closed";
+
+        /**
+         * Add a command waiting for its response.
+         *
+         * @param command command
+         */
+        void addPendingCommand(final AirplayCommand command) {
+            pendingCommands.add(command);
+        }
+
+        /**
+         * Close channel if command is still waiting for its response: as requests are pipelined, following responses can not be matched anymore.
+         *
+         * @param command command
+         */
+        void checkTimeout(final AirplayCommand command) {
+            if (pendingCommands.contains(command)) {
+                close("Request timeout");
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handlerAdded(final ChannelHandlerContext context) {
+            this.context = context;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void channelRead0(final ChannelHandlerContext context, final CommandResponse response) {
+            AirplayCommand command = pendingCommands.poll();
+            if (command == null) {
+                LOGGER.warn("Unexpected response from {}: {}", context.channel().remoteAddress(), response);
+            } else if (response.getCode() == OK.code()) {
+                command.success(response.getContentParameters());
+            } else {
+                command.failure(response.getMessage());
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void channelInactive(final ChannelHandlerContext context) throws Exception {
+            // Fail commands still waiting for their response
+            AirplayCommand command;
+            while ((command = pendingCommands.poll()) != null) {
+                command.failure(closeReason);
+            }
+            super.channelInactive(context);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void userEventTriggered(final ChannelHandlerContext context, final Object event) throws Exception {
+            if (event instanceof IdleStateEvent && pendingCommands.isEmpty()) {
+                // Release idle connection, it is reopened on next command
+                close("Idle connection closed");
+            } else {
+                super.userEventTriggered(context, event);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext context, final Throwable cause) {
+            LOGGER.error(cause.getMessage(), cause);
+            close(cause.getMessage());
+        }
+
+        /**
+         * Close channel.
+         *
+         * @param reason close reason, reported to pending commands
+         */
+        private void close(final String reason) {
+            closeReason = reason;
+            context.close();
+        }
+    }
+}
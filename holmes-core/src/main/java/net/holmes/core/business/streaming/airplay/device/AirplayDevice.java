@@ -19,25 +19,16 @@ package net.holmes.core.business.streaming.airplay.device;
 
 import com.google.common.base.Objects;
 import net.holmes.core.business.streaming.device.Device;
-import org.slf4j.Logger;
 
-import javax.net.SocketFactory;
-import java.io.IOException;
 import java.net.InetAddress;
-import java.net.Socket;
-
-import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Airplay streaming device.
  */
 public class AirplayDevice extends Device {
-    private static final Logger LOGGER = getLogger(AirplayDevice.class);
-
     private static final String AIRPLAY_DEVICE_TYPE = "Airplay";
     private final int port;
     private final AirplayDeviceFeatures features;
-    private Socket socket = null;
 
     /**
      * Instantiates a new Airplay device
@@ -54,6 +45,10 @@ public class AirplayDevice extends Device {
         this.features = features;
     }
 
+    public int getPort() {
+        return port;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -99,28 +94,7 @@ public class AirplayDevice extends Device {
      */
     @Override
     public void close() {
-        if (socket != null) {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                LOGGER.error(e.getMessage(), e);
-            }
-        }
-    }
-
-    /**
-     * Get device connection.
-     *
-     * @param socketFactory socket factory
-     * @return device socket
-     * @throws IOException
-     */
-    public Socket getConnection(final SocketFactory socketFactory) throws IOException {
-        if (socket == null || socket.isClosed()) {
-            socket = socketFactory.createSocket(getAddress(), port);
-        }
-
-        return socket;
+        // Device connection is held by control point, which releases it when device is removed
     }
 
     /**
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.device;
+
+import net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.PLAY;
+import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.STATUS;
+
+/**
+ * Device command, executed by a {@link DeviceCommandQueue}.
+ * A command may chain several requests to device: it must call {@link #complete()} once it is done,
+ * so that next command queued for the device can be executed.
+ */
+public abstract class DeviceCommand {
+    private static final long PLAY_TIMEOUT_MILLIS = 30000L;
+    private static final long STATUS_TIMEOUT_MILLIS = 5000L;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10000L;
+
+    private final StreamingEventType type;
+    private final String deviceId;
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private volatile long submitTime;
+    private volatile Runnable completionListener;
+
+    /**
+     * Instantiates a new device command.
+     *
+     * @param type     command type
+     * @param deviceId device id
+     */
+    public DeviceCommand(final StreamingEventType type, final String deviceId) {
+        this.type = type;
+        this.deviceId = deviceId;
+    }
+
+    public StreamingEventType getType() {
+        return type;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Whether this command only requests playback status.
+     *
+     * @return true for status commands
+     */
+    public boolean isStatusCommand() {
+        return type == STATUS;
+    }
+
+    /**
+     * Get command timeout: command fails if it is not completed within this delay.
+     *
+     * @return timeout (in milliseconds)
+     */
+    public long getTimeoutMillis() {
+        if (type == PLAY) {
+            // Play command sends several requests to device
+            return PLAY_TIMEOUT_MILLIS;
+        }
+        return type == STATUS ? STATUS_TIMEOUT_MILLIS : DEFAULT_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * Execute command.
+     */
+    public abstract void execute();
+
+    /**
+     * Command failure callback. Called once, after command is completed.
+     *
+     * @param errorMessage error message
+     */
+    protected abstract void failed(String errorMessage);
+
+    /**
+     * Complete command.
+     *
+     * @return true if command was not already completed, false if command result comes too late (after a timeout) and should be ignored
+     */
+    public final boolean complete() {
+        if (completed.compareAndSet(false, true)) {
+            Runnable listener = completionListener;
+            if (listener != null) {
+                listener.run();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Complete command on failure.
+     *
+     * @param errorMessage error message
+     */
+    public final void fail(final String errorMessage) {
+        if (complete()) {
+            failed(errorMessage);
+        }
+    }
+
+    /**
+     * Get a failure handler completing this command.
+     *
+     * @return failure handler
+     */
+    public final CommandFailureHandler getFailureHandler() {
+        return new CommandFailureHandler() {
+            @Override
+            public void handle(final String errorMessage) {
+                fail(errorMessage);
+            }
+        };
+    }
+
+    long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * Command is submitted to queue.
+     *
+     * @param completionListener listener called when command is completed
+     */
+    void submitted(final Runnable completionListener) {
+        this.submitTime = System.currentTimeMillis();
+        this.completionListener = completionListener;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.device;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Per-device command queue.
+ * Commands sent to a device are executed one at a time, in submission order: a command is executed once previous one is completed or timed out.
+ * Commands completing asynchronously are followed by next command on queue executor thread.
+ * Status commands are coalesced: a status command is dropped if another one is already waiting,
+ * or if it waited longer than its timeout, or if a control command (play, stop...) is submitted after it.
+ */
+public final class DeviceCommandQueue {
+    private static final Logger LOGGER = getLogger(DeviceCommandQueue.class);
+    private static final String TIMEOUT_MESSAGE = "Command timeout";
+
+    private final ConcurrentMap<String, DeviceQueue> queues;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Instantiates a new device command queue.
+     */
+    public DeviceCommandQueue() {
+        this.queues = Maps.newConcurrentMap();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("device-command-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Submit command. Command is executed right away, on caller thread, if no other command is running on device.
+     *
+     * @param command command
+     */
+    public void submit(final DeviceCommand command) {
+        DeviceQueue queue;
+        while (true) {
+            queue = queues.get(command.getDeviceId());
+            if (queue == null) {
+                DeviceQueue newQueue = new DeviceQueue(command.getDeviceId());
+                queue = queues.putIfAbsent(command.getDeviceId(), newQueue);
+                if (queue == null) {
+                    queue = newQueue;
+                }
+            }
+            if (queue.add(command)) {
+                break;
+            }
+            // Queue was released meanwhile, retry with a new one
+        }
+        queue.executeNext();
+    }
+
+    /**
+     * Get number of commands waiting or running on device.
+     *
+     * @param deviceId device id
+     * @return number of commands
+     */
+    int size(final String deviceId) {
+        DeviceQueue queue = queues.get(deviceId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Commands queue of a device.
+     */
+    private final class DeviceQueue {
+        private final String deviceId;
+        private final Queue<DeviceCommand> pendingCommands = new ArrayDeque<>();
+        private DeviceCommand currentCommand = null;
+        private ScheduledFuture<?> timeoutFuture = null;
+        private boolean executing = false;
+        private boolean released = false;
+
+        /**
+         * Instantiates a new device queue.
+         *
+         * @param deviceId device id
+         */
+        DeviceQueue(final String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        /**
+         * Add command to queue.
+         *
+         * @param command command
+         * @return false if queue is released and can not accept commands anymore
+         */
+        synchronized boolean add(final DeviceCommand command) {
+            if (released) {
+                return false;
+            }
+            if (command.isStatusCommand()) {
+                for (DeviceCommand pendingCommand : pendingCommands) {
+                    if (pendingCommand.isStatusCommand()) {
+                        // Redundant status command
+                        LOGGER.debug("Status command on device {} coalesced", deviceId);
+                        return true;
+                    }
+                }
+            } else {
+                // Status commands submitted before a control command are stale
+                Iterator<DeviceCommand> it = pendingCommands.iterator();
+                while (it.hasNext()) {
+                    if (it.next().isStatusCommand()) {
+                        it.remove();
+                    }
+                }
+            }
+            command.submitted(new Runnable() {
+                @Override
+                public void run() {
+                    completed(command);
+                }
+            });
+            pendingCommands.add(command);
+            return true;
+        }
+
+        /**
+         * Get number of commands waiting or running.
+         *
+         * @return number of commands
+         */
+        synchronized int size() {
+            return pendingCommands.size() + (currentCommand != null ? 1 : 0);
+        }
+
+        /**
+         * Execute next commands, as long as they complete synchronously.
+         * Commands completing asynchronously resume execution from their completion thread.
+         */
+        void executeNext() {
+            while (true) {
+                final DeviceCommand command;
+                synchronized (this) {
+                    if (executing || currentCommand != null) {
+                        return;
+                    }
+                    command = pollCommand();
+                    if (command == null) {
+                        // Nothing left to execute, release queue
+                        released = true;
+                        queues.remove(deviceId, this);
+                        return;
+                    }
+                    currentCommand = command;
+                    executing = true;
+                    timeoutFuture = executor.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            LOGGER.warn("{} command on device {} timed out", command.getType(), deviceId);
+                            command.fail(TIMEOUT_MESSAGE);
+                        }
+                    }, command.getTimeoutMillis(), MILLISECONDS);
+                }
+
+                try {
+                    command.execute();
+                } catch (RuntimeException e) {
+                    LOGGER.error(e.getMessage(), e);
+                    command.fail(e.getMessage());
+                }
+
+                synchronized (this) {
+                    executing = false;
+                }
+            }
+        }
+
+        /**
+         * Poll next command, dropping stale status commands.
+         *
+         * @return next command or null
+         */
+        private DeviceCommand pollCommand() {
+            DeviceCommand command;
+            while ((command = pendingCommands.poll()) != null) {
+                if (!command.isStatusCommand() || System.currentTimeMillis() - command.getSubmitTime() <= command.getTimeoutMillis()) {
+                    return command;
+                }
+                LOGGER.debug("Stale status command on device {} dropped", deviceId);
+            }
+            return null;
+        }
+
+        /**
+         * Command is completed: execute next command.
+         *
+         * @param command completed command
+         */
+        private void completed(final DeviceCommand command) {
+            synchronized (this) {
+                if (currentCommand != command) {
+                    return;
+                }
+                currentCommand = null;
+                if (timeoutFuture != null) {
+                    timeoutFuture.cancel(false);
+                    timeoutFuture = null;
+                }
+                if (executing) {
+                    // Completed synchronously, next command is executed by executing thread
+                    return;
+                }
+            }
+            // Completed asynchronously: execute next command once completion callback has returned
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    executeNext();
+                }
+            });
+        }
+    }
+}
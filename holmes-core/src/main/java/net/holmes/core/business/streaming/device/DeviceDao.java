@@ -17,6 +17,7 @@
 
 package net.holmes.core.business.streaming.device;
 
+import java.net.InetAddress;
 import java.util.Collection;
 
 /**
@@ -59,8 +60,15 @@ public interface DeviceDao {
     /**
      * Find devices.
      *
-     * @param hostAddress host address
+     * @param address device address
      * @return list of devices
      */
-    Collection<Device> findDevices(final String hostAddress);
+    Collection<Device> findDevices(final InetAddress address);
+
+    /**
+     * Add device listener.
+     *
+     * @param listener device listener
+     */
+    void addDeviceListener(DeviceListener listener);
 }
@@ -17,24 +17,36 @@
 
 package net.holmes.core.business.streaming.device;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.slf4j.Logger;
 
+import java.net.InetAddress;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 /**
  * Device dao implementation.
+ * Devices are added and removed from UPnP and Airplay discovery threads, and read on every browse request:
+ * reads use an immutable snapshot of devices, indexed by id and by address, which is replaced on each change.
  */
 public final class DeviceDaoImpl implements DeviceDao {
-    private final Map<String, Device> devices;
+    private static final Logger LOGGER = getLogger(DeviceDaoImpl.class);
+
+    private final List<DeviceListener> listeners;
+    private volatile Snapshot snapshot;
 
     /**
      * Instantiates a new device dao implementation.
      */
     public DeviceDaoImpl() {
-        this.devices = Maps.newHashMap();
+        this.listeners = Lists.newCopyOnWriteArrayList();
+        this.snapshot = new Snapshot(ImmutableMap.<String, Device>of(), ImmutableListMultimap.<InetAddress, Device>of());
     }
 
     /**
@@ -42,7 +54,12 @@ public final class DeviceDaoImpl implements DeviceDao {
      */
     @Override
     public void addDevice(final Device device) {
-        devices.put(device.getId(), device);
+        synchronized (this) {
+            snapshot = snapshot.withDevice(device);
+        }
+        for (DeviceListener listener : listeners) {
+            notifyListener(listener, device, true);
+        }
     }
 
     /**
@@ -50,13 +67,19 @@ public final class DeviceDaoImpl implements DeviceDao {
      */
     @Override
     public boolean removeDevice(final String deviceId) {
-        Device device = devices.get(deviceId);
-        if (device != null) {
-            device.close();
-            devices.remove(deviceId);
-            return true;
+        Device device;
+        synchronized (this) {
+            device = snapshot.devicesById.get(deviceId);
+            if (device == null) {
+                return false;
+            }
+            snapshot = snapshot.withoutDevice(deviceId, device);
+        }
+        device.close();
+        for (DeviceListener listener : listeners) {
+            notifyListener(listener, device, false);
         }
-        return false;
+        return true;
     }
 
     /**
@@ -64,7 +87,7 @@ public final class DeviceDaoImpl implements DeviceDao {
      */
     @Override
     public Device getDevice(final String deviceId) throws UnknownDeviceException {
-        Device device = devices.get(deviceId);
+        Device device = snapshot.devicesById.get(deviceId);
         if (device == null) {
             throw new UnknownDeviceException(deviceId);
         }
@@ -76,22 +99,106 @@ public final class DeviceDaoImpl implements DeviceDao {
      */
     @Override
     public Collection<Device> getDevices() {
-        return devices.values();
+        return snapshot.devicesById.values();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Collection<Device> findDevices(final String hostAddress) {
-        return Collections2.filter(devices.values(), new Predicate<Device>() {
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public boolean apply(Device input) {
-                return input.getAddress().getHostAddress().equals(hostAddress);
+    public Collection<Device> findDevices(final InetAddress address) {
+        return snapshot.devicesByAddress.get(address);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addDeviceListener(final DeviceListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Notify listener of device change, a failing listener does not prevent others to be notified.
+     *
+     * @param listener listener
+     * @param device   device
+     * @param added    true if device is added, false if it is removed
+     */
+    private void notifyListener(final DeviceListener listener, final Device device, final boolean added) {
+        try {
+            if (added) {
+                listener.deviceAdded(device);
+            } else {
+                listener.deviceRemoved(device);
             }
-        });
+        } catch (RuntimeException e) {
+            LOGGER.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Immutable snapshot of devices.
+     */
+    private static final class Snapshot {
+        private final ImmutableMap<String, Device> devicesById;
+        private final ImmutableListMultimap<InetAddress, Device> devicesByAddress;
+
+        /**
+         * Instantiates a new snapshot.
+         *
+         * @param devicesById      devices by id
+         * @param devicesByAddress devices by address
+         */
+        Snapshot(final ImmutableMap<String, Device> devicesById, final ImmutableListMultimap<InetAddress, Device> devicesByAddress) {
+            this.devicesById = devicesById;
+            this.devicesByAddress = devicesByAddress;
+        }
+
+        /**
+         * Get a copy of this snapshot with an added device, replacing device with same id.
+         *
+         * @param device added device
+         * @return new snapshot
+         */
+        Snapshot withDevice(final Device device) {
+            Map<String, Device> devices = Maps.newLinkedHashMap(devicesById);
+            Device previousDevice = devices.put(device.getId(), device);
+            ImmutableListMultimap.Builder<InetAddress, Device> builder = copyAddresses(previousDevice);
+            InetAddress address = device.getAddress();
+            if (address != null) {
+                builder.put(address, device);
+            }
+            return new Snapshot(ImmutableMap.copyOf(devices), builder.build());
+        }
+
+        /**
+         * Get a copy of this snapshot without a device.
+         *
+         * @param deviceId removed device id
+         * @param device   removed device
+         * @return new snapshot
+         */
+        Snapshot withoutDevice(final String deviceId, final Device device) {
+            Map<String, Device> devices = Maps.newLinkedHashMap(devicesById);
+            devices.remove(deviceId);
+            return new Snapshot(ImmutableMap.copyOf(devices), copyAddresses(device).build());
+        }
+
+        /**
+         * Copy address index, except one device.
+         *
+         * @param excludedDevice excluded device (may be null)
+         * @return address index builder
+         */
+        private ImmutableListMultimap.Builder<InetAddress, Device> copyAddresses(final Device excludedDevice) {
+            ImmutableListMultimap.Builder<InetAddress, Device> builder = ImmutableListMultimap.builder();
+            for (Map.Entry<InetAddress, Device> entry : devicesByAddress.entries()) {
+                if (entry.getValue() != excludedDevice) {
+                    builder.put(entry);
+                }
+            }
+            return builder;
+        }
     }
 }
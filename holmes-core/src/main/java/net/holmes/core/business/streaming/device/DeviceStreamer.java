@@ -22,12 +22,16 @@ import net.holmes.core.business.media.model.AbstractNode;
 import net.holmes.core.business.streaming.event.StreamingEvent;
 import net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType;
 
+import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.SET_NEXT;
+
 
 /**
  * Device streamer.
+ * Commands sent to a device are queued and executed one at a time, see {@link DeviceCommandQueue}.
  */
 public abstract class DeviceStreamer<T extends Device> {
     private final EventBus eventBus;
+    private final DeviceCommandQueue commandQueue;
 
     /**
      * Instantiates a new device streamer.
@@ -36,6 +40,7 @@ public abstract class DeviceStreamer<T extends Device> {
      */
     public DeviceStreamer(final EventBus eventBus) {
         this.eventBus = eventBus;
+        this.commandQueue = new DeviceCommandQueue();
     }
 
     /**
@@ -68,6 +73,30 @@ public abstract class DeviceStreamer<T extends Device> {
      */
     public abstract void resume(T device);
 
+    /**
+     * Load content on device without playing it: content is started later by {@link #start(Device)}.
+     *
+     * @param device     device
+     * @param contentUrl content url
+     * @param node       node
+     */
+    public abstract void prepare(T device, String contentUrl, AbstractNode node);
+
+    /**
+     * Start playback of content loaded on device.
+     *
+     * @param device device
+     */
+    public abstract void start(T device);
+
+    /**
+     * Seek content playback on device.
+     *
+     * @param device   device
+     * @param position position (in seconds)
+     */
+    public abstract void seek(T device, long position);
+
     /**
      * Update content playback status on device.
      *
@@ -75,6 +104,37 @@ public abstract class DeviceStreamer<T extends Device> {
      */
     public abstract void updateStatus(T device);
 
+    /**
+     * Whether next content can be preloaded on device, so that device moves to it without gap once current content is over.
+     *
+     * @param device device
+     * @return true if device supports next content
+     */
+    public boolean isNextContentSupported(final T device) {
+        return false;
+    }
+
+    /**
+     * Preload next content on device, to be played after current content.
+     *
+     * @param device     device
+     * @param contentUrl next content url
+     * @param node       next node
+     */
+    public void setNextContent(final T device, final String contentUrl, final AbstractNode node) {
+        sendFailure(SET_NEXT, device.getId(), "Next content is not supported by device");
+    }
+
+    /**
+     * Whether content playback status is pushed by device: status of such devices does not need to be polled.
+     *
+     * @param device device
+     * @return true if playback status is pushed by device
+     */
+    public boolean isStatusPushed(final T device) {
+        return false;
+    }
+
     /**
      * Post error streaming event.
      *
@@ -109,42 +169,73 @@ public abstract class DeviceStreamer<T extends Device> {
     }
 
     /**
-     * Constructs a new Command!failureHandler.
+     * Submit command to device command queue: commands are executed one at a time on each device.
      *
-     * @param eventType event type
-     * @param device    device
-     * @return a new Command!failureHandler
+     * @param command command
      */
-    protected CommandFailureHandler newCommandFailureHandler(StreamingEventType eventType, T device) {
-        return new DeviceStreamerCommandFailureHandler<>(eventType, device);
+    protected void submit(final DeviceCommand command) {
+        commandQueue.submit(command);
     }
 
     /**
-     * Device streamer command failure handler
+     * Device streamer command, posting streaming events on completion.
      */
-    private class DeviceStreamerCommandFailureHandler<U extends Device> extends CommandFailureHandler {
-        final StreamingEventType eventType;
-        final U device;
+    protected abstract class StreamerCommand extends DeviceCommand {
+
+        /**
+         * Instantiates a new device streamer command.
+         *
+         * @param type   command type, used as event type
+         * @param device device
+         */
+        protected StreamerCommand(final StreamingEventType type, final T device) {
+            super(type, device.getId());
+        }
+
+        /**
+         * Complete command and post success streaming event.
+         *
+         * @return true if command was not already completed
+         */
+        public boolean succeeded() {
+            return succeeded(getType());
+        }
 
         /**
-         * Constructs a new device streamer command failure handler.
+         * Complete command and post success streaming event.
          *
          * @param eventType event type
-         * @param device    device
+         * @return true if command was not already completed
          */
-        DeviceStreamerCommandFailureHandler(StreamingEventType eventType, U device) {
-            this.eventType = eventType;
-            this.device = device;
+        public boolean succeeded(final StreamingEventType eventType) {
+            if (complete()) {
+                sendSuccess(eventType, getDeviceId());
+                return true;
+            }
+            return false;
         }
 
         /**
-         * Handle failure for streamer command.
+         * Complete command and post success streaming event.
          *
-         * @param errorMessage error message
+         * @param duration content duration
+         * @param position playback position
+         * @return true if command was not already completed
+         */
+        public boolean succeeded(final Long duration, final Long position) {
+            if (complete()) {
+                sendSuccess(getType(), getDeviceId(), duration, position);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
          */
         @Override
-        public void handle(String errorMessage) {
-            sendFailure(eventType, device.getId(), errorMessage);
+        protected void failed(final String errorMessage) {
+            sendFailure(getType(), getDeviceId(), errorMessage);
         }
     }
 }
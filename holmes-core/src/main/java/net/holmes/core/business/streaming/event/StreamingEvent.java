@@ -104,8 +104,10 @@ public final class StreamingEvent {
 
     /**
      * Streaming event type.
+     * SET_NEXT: next content is preloaded on device, NEXT: device moved to preloaded content by itself.
+     * PREPARE: content is loaded on device, ready to be started.
      */
     public static enum StreamingEventType {
-        PLAY, STOP, PAUSE, RESUME, STATUS, UNKNOWN
+        PLAY, STOP, PAUSE, RESUME, STATUS, SET_NEXT, NEXT, PREPARE, SEEK, UNKNOWN
     }
 }
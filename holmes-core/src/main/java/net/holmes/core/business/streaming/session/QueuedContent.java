@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.session;
+
+import com.google.common.base.Objects;
+import net.holmes.core.business.media.model.AbstractNode;
+
+/**
+ * Content queued in a streaming session, played once current content is over.
+ */
+public final class QueuedContent {
+    private final String contentUrl;
+    private final AbstractNode node;
+
+    /**
+     * Instantiates a new queued content.
+     *
+     * @param contentUrl content url
+     * @param node       content node
+     */
+    public QueuedContent(final String contentUrl, final AbstractNode node) {
+        this.contentUrl = contentUrl;
+        this.node = node;
+    }
+
+    public String getContentUrl() {
+        return contentUrl;
+    }
+
+    public AbstractNode getNode() {
+        return node;
+    }
+
+    public String getContentName() {
+        return node.getName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("contentUrl", contentUrl)
+                .add("node", node)
+                .toString();
+    }
+}
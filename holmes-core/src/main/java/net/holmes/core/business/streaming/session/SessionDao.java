@@ -52,6 +52,41 @@ public interface SessionDao {
      */
     void updateSessionPosition(String deviceId, Long position, Long duration) throws UnknownSessionException;
 
+    /**
+     * Add content to play after current content of session.
+     *
+     * @param deviceId device Id
+     * @param content  content
+     * @return true if content is the next one to be played
+     * @throws UnknownSessionException
+     */
+    boolean addNextContent(String deviceId, QueuedContent content) throws UnknownSessionException;
+
+    /**
+     * Get next content to be played in session.
+     *
+     * @param deviceId device Id
+     * @return next content or null
+     * @throws UnknownSessionException
+     */
+    QueuedContent getNextContent(String deviceId) throws UnknownSessionException;
+
+    /**
+     * Move session to next content.
+     *
+     * @param deviceId device Id
+     * @return new current content or null if no content is queued
+     * @throws UnknownSessionException
+     */
+    QueuedContent nextContent(String deviceId) throws UnknownSessionException;
+
+    /**
+     * Remove contents queued in session, if any.
+     *
+     * @param deviceId device Id
+     */
+    void clearNextContents(String deviceId);
+
     /**
      * Remove device.
      *
@@ -69,6 +69,41 @@ public final class SessionDaoImpl implements SessionDao {
         session.setDuration(duration);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addNextContent(final String deviceId, final QueuedContent content) throws UnknownSessionException {
+        return getSession(deviceId).addNextContent(content);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueuedContent getNextContent(final String deviceId) throws UnknownSessionException {
+        return getSession(deviceId).getNextContent();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueuedContent nextContent(final String deviceId) throws UnknownSessionException {
+        return getSession(deviceId).nextContent();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearNextContents(final String deviceId) {
+        StreamingSession session = sessions.get(deviceId);
+        if (session != null) {
+            session.clearNextContents();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
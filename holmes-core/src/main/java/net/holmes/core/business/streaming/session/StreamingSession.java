@@ -19,15 +19,21 @@ package net.holmes.core.business.streaming.session;
 
 import com.google.common.base.Objects;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
+
 /**
- * Streaming session
+ * Streaming session.
+ * Session plays current content, then contents queued after it.
  */
 public final class StreamingSession {
-    private final String contentName;
-    private final String contentUrl;
+    private final Queue<QueuedContent> nextContents = new ArrayDeque<>();
+    private String contentName;
+    private String contentUrl;
     private SessionStatus status = SessionStatus.WAITING;
     private Long duration = 0L;
     private Long position = 0L;
+    private long positionTime = System.currentTimeMillis();
 
     /**
      * Instantiates a new streaming session
@@ -40,49 +46,123 @@ public final class StreamingSession {
         this.contentUrl = contentUrl;
     }
 
-    public SessionStatus getStatus() {
+    public synchronized SessionStatus getStatus() {
         return status;
     }
 
-    public void setStatus(SessionStatus status) {
+    public synchronized void setStatus(SessionStatus status) {
+        if (this.status != status) {
+            // Position prediction starts or stops with playback
+            this.position = getPredictedPosition();
+            this.positionTime = System.currentTimeMillis();
+        }
         this.status = status;
     }
 
-    public String getContentUrl() {
+    public synchronized String getContentUrl() {
         return contentUrl;
     }
 
-    public String getContentName() {
+    public synchronized String getContentName() {
         return contentName;
     }
 
-    public Long getDuration() {
+    public synchronized Long getDuration() {
         return duration;
     }
 
-    public void setDuration(Long duration) {
+    public synchronized void setDuration(Long duration) {
         this.duration = duration;
     }
 
-    public Long getPosition() {
+    public synchronized Long getPosition() {
         return position;
     }
 
-    public void setPosition(Long position) {
+    public synchronized void setPosition(Long position) {
         this.position = position;
+        this.positionTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Get playback position predicted from last known position: while content is playing, position advances with time
+     * until content duration is reached.
+     *
+     * @return predicted playback position
+     */
+    public synchronized Long getPredictedPosition() {
+        if (status != SessionStatus.PLAYING || position == null) {
+            return position;
+        }
+        long predictedPosition = position + (System.currentTimeMillis() - positionTime) / 1000;
+        return duration != null && duration > 0 ? Math.min(predictedPosition, duration) : predictedPosition;
+    }
+
+    /**
+     * Add content to play after current content and already queued contents.
+     *
+     * @param content content
+     * @return true if content is the next one to be played
+     */
+    public synchronized boolean addNextContent(final QueuedContent content) {
+        nextContents.add(content);
+        return nextContents.size() == 1;
+    }
+
+    /**
+     * Get next content to be played.
+     *
+     * @return next content or null if queue is empty
+     */
+    public synchronized QueuedContent getNextContent() {
+        return nextContents.peek();
+    }
+
+    /**
+     * Get number of queued contents.
+     *
+     * @return number of queued contents
+     */
+    public synchronized int getNextContentCount() {
+        return nextContents.size();
+    }
+
+    /**
+     * Move session to next content: next content becomes current content, position is reset.
+     *
+     * @return new current content or null if queue is empty
+     */
+    public synchronized QueuedContent nextContent() {
+        QueuedContent content = nextContents.poll();
+        if (content != null) {
+            this.contentUrl = content.getContentUrl();
+            this.contentName = content.getContentName();
+            this.duration = 0L;
+            this.position = 0L;
+            this.positionTime = System.currentTimeMillis();
+        }
+        return content;
+    }
+
+    /**
+     * Remove all queued contents.
+     */
+    public synchronized void clearNextContents() {
+        nextContents.clear();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return Objects.toStringHelper(this)
                 .add("status", status)
                 .add("contentUrl", contentUrl)
                 .add("contentName", contentName)
                 .add("duration", duration)
                 .add("position", position)
+                .add("nextContents", nextContents.size())
                 .toString();
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.upnp;
+
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Track content loading on devices.
+ * Devices report a stopped transport state while new content is loaded (current content is stopped, new AV transport URI is set):
+ * such states are not an end of content. As LastChange events are moderated and pushed asynchronously,
+ * a device is still considered loading for a short settle delay after load command completion, until it reports playback.
+ */
+final class ContentLoadTracker {
+    private final long settleDelayMillis;
+    private final ConcurrentMap<String, Long> loadEndTimes;
+
+    /**
+     * Instantiates a new content load tracker.
+     *
+     * @param settleDelayMillis delay after load command completion during which device is still considered loading (in milliseconds)
+     */
+    ContentLoadTracker(final long settleDelayMillis) {
+        this.settleDelayMillis = settleDelayMillis;
+        this.loadEndTimes = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Content load command is started on device.
+     *
+     * @param deviceId device id
+     */
+    void loadStarted(final String deviceId) {
+        loadEndTimes.put(deviceId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Content load command is completed on device.
+     *
+     * @param deviceId device id
+     */
+    void loadEnded(final String deviceId) {
+        Long loadEndTime = loadEndTimes.get(deviceId);
+        if (loadEndTime != null) {
+            loadEndTimes.replace(deviceId, loadEndTime, System.currentTimeMillis() + settleDelayMillis);
+        }
+    }
+
+    /**
+     * Device reported playback or was explicitly stopped: content is no longer loading.
+     *
+     * @param deviceId device id
+     */
+    void reset(final String deviceId) {
+        loadEndTimes.remove(deviceId);
+    }
+
+    /**
+     * Whether content is being loaded on device.
+     *
+     * @param deviceId device id
+     * @return true if content is loading
+     */
+    boolean isLoading(final String deviceId) {
+        Long loadEndTime = loadEndTimes.get(deviceId);
+        if (loadEndTime == null) {
+            return false;
+        } else if (System.currentTimeMillis() < loadEndTime) {
+            return true;
+        }
+        loadEndTimes.remove(deviceId, loadEndTime);
+        return false;
+    }
+}
@@ -17,11 +17,14 @@
 
 package net.holmes.core.business.streaming.upnp;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
 import net.holmes.core.business.media.model.AbstractNode;
 import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.streaming.device.DeviceStreamer;
+import net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType;
 import net.holmes.core.business.streaming.upnp.command.*;
 import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
 import net.holmes.core.common.exception.HolmesException;
@@ -35,18 +38,29 @@ import org.fourthline.cling.support.model.item.MusicTrack;
 import org.fourthline.cling.support.model.item.Photo;
 import org.slf4j.Logger;
 
-import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
 import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.*;
 import static net.holmes.core.common.UpnpUtils.getUpnpMimeType;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Manage streaming on Upnp device.
+ * Once content is played, streamer subscribes to device AV transport LastChange event so that playback status is pushed by device,
+ * status of devices rejecting subscriptions is polled. Subscriptions failing for another reason are retried on next playback.
+ * Next content is preloaded on devices supporting SetNextAVTransportURI: device reports track change when it moves to next content.
+ * Stopped states pushed while content is loaded on device are not reported as end of content.
  */
 public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
     private static final Logger LOGGER = getLogger(UpnpStreamerImpl.class);
     private static final String NOT_IMPLEMENTED = "NOT_IMPLEMENTED";
+    private static final long LOAD_SETTLE_DELAY_MILLIS = 2000L;
     private final ControlPoint controlPoint;
+    private final ConcurrentMap<String, LastChangeSubscription> subscriptions;
+    private final Set<String> unsubscribableDevices;
+    private final ConcurrentMap<String, String> nextContentUrls;
+    private final ContentLoadTracker contentLoadTracker;
 
     /**
      * Instantiates a new Upnp streaming implementation.
@@ -58,6 +72,10 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
     public UpnpStreamerImpl(final UpnpService upnpService, final EventBus eventBus) {
         super(eventBus);
         this.controlPoint = upnpService.getControlPoint();
+        this.subscriptions = Maps.newConcurrentMap();
+        this.unsubscribableDevices = Sets.newConcurrentHashSet();
+        this.nextContentUrls = Maps.newConcurrentMap();
+        this.contentLoadTracker = new ContentLoadTracker(LOAD_SETTLE_DELAY_MILLIS);
     }
 
     /**
@@ -65,21 +83,27 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      */
     @Override
     public void play(final UpnpDevice device, final String contentUrl, final AbstractNode node) {
-        // Get media info
-        controlPoint.execute(new GetMediaInfoCommand(device, newCommandFailureHandler(PLAY, device)) {
+        submit(new LoadContentCommand(PLAY, device) {
             @Override
-            public void received(MediaInfo mediaInfo) {
-                String currentUrl = mediaInfo.getCurrentURI();
-                if (currentUrl == null) {
-                    // No url set on device, set Url and play
-                    setUrlAndPlay(device, contentUrl, node, PLAY);
-                } else if (currentUrl.equals(contentUrl)) {
-                    // Current Url already set, play
-                    play(device, PLAY);
-                } else {
-                    // Another Url is already set
-                    getInfoSetUrlAndPlay(device, contentUrl, node);
-                }
+            protected void load() {
+                // Get media info
+                final StreamerCommand command = this;
+                controlPoint.execute(new GetMediaInfoCommand(device, getFailureHandler()) {
+                    @Override
+                    public void received(MediaInfo mediaInfo) {
+                        String currentUrl = mediaInfo.getCurrentURI();
+                        if (currentUrl == null) {
+                            // No url set on device, set Url and play
+                            setUrlAndPlay(device, contentUrl, node, command);
+                        } else if (currentUrl.equals(contentUrl)) {
+                            // Current Url already set, play
+                            play(device, command);
+                        } else {
+                            // Another Url is already set
+                            getInfoSetUrlAndPlay(device, contentUrl, node, command);
+                        }
+                    }
+                });
             }
         });
     }
@@ -89,11 +113,18 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      */
     @Override
     public void stop(final UpnpDevice device) {
-        // Stop content playback
-        controlPoint.execute(new StopCommand(device, newCommandFailureHandler(STOP, device)) {
+        submit(new StreamerCommand(STOP, device) {
             @Override
-            public void success() {
-                sendSuccess(STOP, device.getId());
+            public void execute() {
+                // Stop content playback
+                nextContentUrls.remove(getDeviceId());
+                contentLoadTracker.reset(getDeviceId());
+                controlPoint.execute(new StopCommand(device, getFailureHandler()) {
+                    @Override
+                    public void success() {
+                        succeeded();
+                    }
+                });
             }
         });
     }
@@ -103,11 +134,16 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      */
     @Override
     public void pause(final UpnpDevice device) {
-        // Pause content playback
-        controlPoint.execute(new PauseCommand(device, newCommandFailureHandler(PAUSE, device)) {
+        submit(new StreamerCommand(PAUSE, device) {
             @Override
-            public void success() {
-                sendSuccess(PAUSE, device.getId());
+            public void execute() {
+                // Pause content playback
+                controlPoint.execute(new PauseCommand(device, getFailureHandler()) {
+                    @Override
+                    public void success() {
+                        succeeded();
+                    }
+                });
             }
         });
     }
@@ -117,8 +153,58 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      */
     @Override
     public void resume(final UpnpDevice device) {
-        // Resume content playback
-        play(device, RESUME);
+        submit(new StreamerCommand(RESUME, device) {
+            @Override
+            public void execute() {
+                // Resume content playback
+                play(device, this);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prepare(final UpnpDevice device, final String contentUrl, final AbstractNode node) {
+        submit(new LoadContentCommand(PREPARE, device) {
+            @Override
+            protected void load() {
+                // Set content Url without playing it, stopping current playback if any
+                getInfoSetUrlAndPlay(device, contentUrl, node, this);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start(final UpnpDevice device) {
+        submit(new StreamerCommand(PLAY, device) {
+            @Override
+            public void execute() {
+                play(device, this);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(final UpnpDevice device, final long position) {
+        submit(new StreamerCommand(SEEK, device) {
+            @Override
+            public void execute() {
+                controlPoint.execute(new SeekCommand(device, position, getFailureHandler()) {
+                    @Override
+                    public void success() {
+                        succeeded();
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -126,77 +212,224 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      */
     @Override
     public void updateStatus(final UpnpDevice device) {
-        // Get transport info
-        controlPoint.execute(new GetTransportInfoCommand(device, newCommandFailureHandler(STATUS, device)) {
+        submit(new StreamerCommand(STATUS, device) {
             @Override
-            public void received(TransportInfo transportInfo) {
-                switch (transportInfo.getCurrentTransportState()) {
-                    case PLAYING:
-                    case PAUSED_PLAYBACK:
-                        updatePlayPosition(device);
-                        break;
-                    case TRANSITIONING:
-                        // Content playback transition, do nothing
-                        break;
-                    default:
-                        // No playback, send stop event
-                        sendSuccess(STOP, device.getId());
+            public void execute() {
+                // Get transport info
+                final StreamerCommand command = this;
+                controlPoint.execute(new GetTransportInfoCommand(device, getFailureHandler()) {
+                    @Override
+                    public void received(TransportInfo transportInfo) {
+                        switch (transportInfo.getCurrentTransportState()) {
+                            case PLAYING:
+                            case PAUSED_PLAYBACK:
+                                updatePlayPosition(device, command);
+                                break;
+                            case TRANSITIONING:
+                                // Content playback transition, do nothing
+                                complete();
+                                break;
+                            default:
+                                // No playback, send stop event
+                                succeeded(STOP);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isNextContentSupported(final UpnpDevice device) {
+        return device.isNextContentSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNextContent(final UpnpDevice device, final String contentUrl, final AbstractNode node) {
+        submit(new StreamerCommand(SET_NEXT, device) {
+            @Override
+            public void execute() {
+                try {
+                    controlPoint.execute(new SetNextContentUrlCommand(device, contentUrl, getNodeMetadata(node, contentUrl), getFailureHandler()) {
+                        @Override
+                        public void success() {
+                            nextContentUrls.put(getDeviceId(), contentUrl);
+                            succeeded();
+                        }
+                    });
+                } catch (HolmesException e) {
+                    LOGGER.error(e.getMessage(), e);
+                    fail(e.getMessage());
                 }
             }
         });
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStatusPushed(final UpnpDevice device) {
+        LastChangeSubscription subscription = subscriptions.get(device.getId());
+        return subscription != null && subscription.isEstablished();
+    }
+
     /**
      * Play content on device.
      *
-     * @param device    device
-     * @param eventType event type
+     * @param device  device
+     * @param command streamer command
      */
-    private void play(final UpnpDevice device, final StreamingEventType eventType) {
-        controlPoint.execute(new PlayCommand(device, newCommandFailureHandler(eventType, device)) {
+    private void play(final UpnpDevice device, final StreamerCommand command) {
+        controlPoint.execute(new PlayCommand(device, command.getFailureHandler()) {
             @Override
             public void success() {
-                sendSuccess(eventType, device.getId());
+                command.succeeded();
+                subscribe(device);
             }
         });
     }
 
     /**
-     * Update play position on device
+     * Subscribe to AV transport LastChange event on device, unless device is already subscribed or rejects subscriptions.
      *
      * @param device device
      */
-    private void updatePlayPosition(final UpnpDevice device) {
+    private void subscribe(final UpnpDevice device) {
+        final String deviceId = device.getId();
+        if (unsubscribableDevices.contains(deviceId) || subscriptions.containsKey(deviceId)) {
+            return;
+        }
+
+        LastChangeSubscription subscription = new LastChangeSubscription(device) {
+            @Override
+            public void received(TransportState transportState) {
+                updateStatus(device, transportState);
+            }
+
+            @Override
+            public void trackChanged(String trackUri) {
+                checkNextContent(device, trackUri);
+            }
+
+            @Override
+            public void failed(String errorMessage, boolean rejected) {
+                if (rejected) {
+                    // Device rejects subscriptions, its status is polled
+                    LOGGER.info("Device {} rejected AV transport subscription, status will be polled: {}", deviceId, errorMessage);
+                    unsubscribableDevices.add(deviceId);
+                } else {
+                    // Transient failure, subscription is retried on next playback and status is polled meanwhile
+                    LOGGER.warn("Failed to subscribe to device {} AV transport: {}", deviceId, errorMessage);
+                }
+                subscriptions.remove(deviceId, this);
+            }
+
+            @Override
+            public void ended() {
+                // Subscription is renewed on next playback, status is polled meanwhile
+                subscriptions.remove(deviceId, this);
+            }
+        };
+        if (subscriptions.putIfAbsent(deviceId, subscription) == null) {
+            controlPoint.execute(subscription);
+        }
+    }
+
+    /**
+     * Update playback status with transport state pushed by device.
+     *
+     * @param device         device
+     * @param transportState transport state
+     */
+    private void updateStatus(final UpnpDevice device, final TransportState transportState) {
+        switch (transportState) {
+            case PLAYING:
+                // Playback started or resumed on device, get position info once
+                contentLoadTracker.reset(device.getId());
+                sendSuccess(RESUME, device.getId());
+                submit(new StreamerCommand(STATUS, device) {
+                    @Override
+                    public void execute() {
+                        updatePlayPosition(device, this);
+                    }
+                });
+                break;
+            case PAUSED_PLAYBACK:
+                contentLoadTracker.reset(device.getId());
+                sendSuccess(PAUSE, device.getId());
+                break;
+            case TRANSITIONING:
+                // Content playback transition, do nothing
+                break;
+            default:
+                if (contentLoadTracker.isLoading(device.getId())) {
+                    // Content is loaded on device: previous content is stopped, new content is not started yet
+                    LOGGER.debug("Ignore {} transport state pushed by device {} while content is loaded", transportState, device.getId());
+                } else {
+                    // No playback, send stop event
+                    sendSuccess(STOP, device.getId());
+                }
+        }
+    }
+
+    /**
+     * Update play position on device
+     *
+     * @param device  device
+     * @param command status command
+     */
+    private void updatePlayPosition(final UpnpDevice device, final StreamerCommand command) {
         // Content is currently playing on device, get position info
-        controlPoint.execute(new GetPositionInfoCommand(device, newCommandFailureHandler(STATUS, device)) {
+        controlPoint.execute(new GetPositionInfoCommand(device, command.getFailureHandler()) {
             @Override
             public void received(PositionInfo positionInfo) {
-                sendSuccess(STATUS, device.getId(), positionInfo.getTrackDurationSeconds(), positionInfo.getTrackElapsedSeconds());
+                checkNextContent(device, positionInfo.getTrackURI());
+                command.succeeded(positionInfo.getTrackDurationSeconds(), positionInfo.getTrackElapsedSeconds());
             }
         });
     }
 
+    /**
+     * Check whether device moved to preloaded next content, and post next event if so.
+     *
+     * @param device   device
+     * @param trackUri current track URI on device
+     */
+    private void checkNextContent(final UpnpDevice device, final String trackUri) {
+        if (trackUri != null && nextContentUrls.remove(device.getId(), trackUri)) {
+            sendSuccess(NEXT, device.getId());
+        }
+    }
+
     /**
      * Get transport info on device, set content URL and play content
      *
      * @param device     device
      * @param contentUrl content url
      * @param node       node
+     * @param command    play or prepare command
      */
-    private void getInfoSetUrlAndPlay(final UpnpDevice device, final String contentUrl, final AbstractNode node) {
+    private void getInfoSetUrlAndPlay(final UpnpDevice device, final String contentUrl, final AbstractNode node, final StreamerCommand command) {
         // Another Url is already set on device, get transport info
-        controlPoint.execute(new GetTransportInfoCommand(device, newCommandFailureHandler(PLAY, device)) {
+        controlPoint.execute(new GetTransportInfoCommand(device, command.getFailureHandler()) {
             @Override
             public void received(TransportInfo transportInfo) {
                 switch (transportInfo.getCurrentTransportState()) {
                     case PLAYING:
                     case PAUSED_PLAYBACK:
                         // Another content is currently playing on device, stop then set Url and play
-                        stopSetUrlAndPlay(device, contentUrl, node, PLAY);
+                        stopSetUrlAndPlay(device, contentUrl, node, command);
                         break;
                     default:
                         // No playback, set Url and play
-                        setUrlAndPlay(device, contentUrl, node, PLAY);
+                        setUrlAndPlay(device, contentUrl, node, command);
                         break;
                 }
             }
@@ -209,15 +442,15 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      * @param device     device
      * @param contentUrl content Url
      * @param node       node
-     * @param eventType  event type
+     * @param command    play or prepare command
      */
-    private void stopSetUrlAndPlay(final UpnpDevice device, final String contentUrl, final AbstractNode node, final StreamingEventType eventType) {
+    private void stopSetUrlAndPlay(final UpnpDevice device, final String contentUrl, final AbstractNode node, final StreamerCommand command) {
         // Stop content playback
-        controlPoint.execute(new StopCommand(device, newCommandFailureHandler(eventType, device)) {
+        controlPoint.execute(new StopCommand(device, command.getFailureHandler()) {
             @Override
             public void success() {
                 // Set Url and play
-                setUrlAndPlay(device, contentUrl, node, eventType);
+                setUrlAndPlay(device, contentUrl, node, command);
             }
         });
     }
@@ -228,21 +461,26 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
      * @param device     device
      * @param contentUrl content url
      * @param node       node
-     * @param eventType  event type
+     * @param command    play or prepare command
      */
-    private void setUrlAndPlay(final UpnpDevice device, final String contentUrl, final AbstractNode node, final StreamingEventType eventType) {
+    private void setUrlAndPlay(final UpnpDevice device, final String contentUrl, final AbstractNode node, final StreamerCommand command) {
         try {
             // Set content Url
-            controlPoint.execute(new SetContentUrlCommand(device, contentUrl, getNodeMetadata(node, contentUrl), newCommandFailureHandler(eventType, device)) {
+            controlPoint.execute(new SetContentUrlCommand(device, contentUrl, getNodeMetadata(node, contentUrl), command.getFailureHandler()) {
                 @Override
                 public void success() {
-                    // Play content
-                    play(device, eventType);
+                    if (command.getType() == PREPARE) {
+                        // Content is only loaded, it is started later
+                        command.succeeded();
+                    } else {
+                        // Play content
+                        play(device, command);
+                    }
                 }
             });
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
-            sendFailure(PLAY, device.getId(), e.getMessage());
+            command.fail(e.getMessage());
         }
     }
 
@@ -294,4 +532,53 @@ public final class UpnpStreamerImpl extends DeviceStreamer<UpnpDevice> {
             throw new HolmesException(e);
         }
     }
+
+    /**
+     * Command loading new content on device, replacing next content preloaded on device.
+     */
+    private abstract class LoadContentCommand extends StreamerCommand {
+
+        /**
+         * Instantiates a new load content command.
+         *
+         * @param type   command type
+         * @param device device
+         */
+        LoadContentCommand(final StreamingEventType type, final UpnpDevice device) {
+            super(type, device);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public final void execute() {
+            nextContentUrls.remove(getDeviceId());
+            contentLoadTracker.loadStarted(getDeviceId());
+            load();
+        }
+
+        /**
+         * Load content on device.
+         */
+        protected abstract void load();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean succeeded(final StreamingEventType eventType) {
+            contentLoadTracker.loadEnded(getDeviceId());
+            return super.succeeded(eventType);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void failed(final String errorMessage) {
+            contentLoadTracker.loadEnded(getDeviceId());
+            super.failed(errorMessage);
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.upnp.command;
+
+import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
+import org.fourthline.cling.controlpoint.SubscriptionCallback;
+import org.fourthline.cling.model.gena.CancelReason;
+import org.fourthline.cling.model.gena.GENASubscription;
+import org.fourthline.cling.model.message.UpnpResponse;
+import org.fourthline.cling.model.state.StateVariableValue;
+import org.fourthline.cling.support.avtransport.lastchange.AVTransportLastChangeParser;
+import org.fourthline.cling.support.avtransport.lastchange.AVTransportVariable;
+import org.fourthline.cling.support.lastchange.LastChange;
+import org.fourthline.cling.support.model.TransportState;
+import org.slf4j.Logger;
+
+import java.util.Map;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Subscription to AV transport LastChange event on device: transport state and current track changes are pushed by device.
+ */
+public abstract class LastChangeSubscription extends SubscriptionCallback {
+    private static final Logger LOGGER = getLogger(LastChangeSubscription.class);
+    private static final int SUBSCRIPTION_DURATION_SECONDS = 1800;
+    private static final String LAST_CHANGE = "LastChange";
+    private static final int INSTANCE_ID = 0;
+
+    private volatile boolean established = false;
+
+    /**
+     * Instantiates a new LastChange subscription.
+     *
+     * @param device device
+     */
+    public LastChangeSubscription(UpnpDevice device) {
+        super(device.getAvTransportService(), SUBSCRIPTION_DURATION_SECONDS);
+    }
+
+    /**
+     * Whether subscription is established.
+     *
+     * @return true if subscription is established
+     */
+    public boolean isEstablished() {
+        return established;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected final void failed(GENASubscription subscription, UpnpResponse responseStatus, Exception exception, String defaultMsg) {
+        established = false;
+        // Device answered with an error response: it rejects subscriptions, else failure is transient
+        failed(defaultMsg, responseStatus != null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected final void established(GENASubscription subscription) {
+        established = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected final void ended(GENASubscription subscription, CancelReason reason, UpnpResponse responseStatus) {
+        established = false;
+        ended();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected final void eventReceived(GENASubscription subscription) {
+        Map<String, StateVariableValue> values = subscription.getCurrentValues();
+        StateVariableValue lastChangeValue = values.get(LAST_CHANGE);
+        if (lastChangeValue != null && lastChangeValue.getValue() != null) {
+            try {
+                LastChange lastChange = new LastChange(new AVTransportLastChangeParser(), lastChangeValue.toString());
+                AVTransportVariable.TransportState transportState = lastChange.getEventedValue(INSTANCE_ID, AVTransportVariable.TransportState.class);
+                if (transportState != null && transportState.getValue() != null) {
+                    received(transportState.getValue());
+                }
+                AVTransportVariable.CurrentTrackURI currentTrackUri = lastChange.getEventedValue(INSTANCE_ID, AVTransportVariable.CurrentTrackURI.class);
+                if (currentTrackUri != null && currentTrackUri.getValue() != null) {
+                    trackChanged(currentTrackUri.getValue().toString());
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to parse LastChange event: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected final void eventsMissed(GENASubscription subscription, int numberOfMissedEvents) {
+        LOGGER.debug("Missed {} LastChange events", numberOfMissedEvents);
+    }
+
+    /**
+     * Transport state change received callback.
+     *
+     * @param transportState new transport state
+     */
+    public abstract void received(TransportState transportState);
+
+    /**
+     * Current track change received callback.
+     *
+     * @param trackUri new current track URI
+     */
+    public abstract void trackChanged(String trackUri);
+
+    /**
+     * Subscription failure callback.
+     *
+     * @param errorMessage error message
+     * @param rejected     whether device explicitly rejected subscription with an error response,
+     *                     false if subscription failed for any other reason (network error, timeout)
+     */
+    public abstract void failed(String errorMessage, boolean rejected);
+
+    /**
+     * Subscription end callback: subscription expired, was cancelled or device is gone.
+     */
+    public abstract void ended();
+}
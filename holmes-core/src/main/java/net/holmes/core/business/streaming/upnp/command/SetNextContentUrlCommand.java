@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.upnp.command;
+
+import net.holmes.core.business.streaming.device.CommandFailureHandler;
+import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
+import org.fourthline.cling.controlpoint.ActionCallback;
+import org.fourthline.cling.model.action.ActionInvocation;
+import org.fourthline.cling.model.message.UpnpResponse;
+import org.fourthline.cling.model.types.UnsignedIntegerFourBytes;
+
+import static net.holmes.core.business.streaming.upnp.device.UpnpDevice.SET_NEXT_AV_TRANSPORT_URI;
+
+/**
+ * Set next content url on device: device plays next content without gap once current content is over.
+ */
+public abstract class SetNextContentUrlCommand extends ActionCallback {
+    private static final long INSTANCE_ID = 0L;
+    private final CommandFailureHandler failureHandler;
+
+    /**
+     * Instantiates a new set next content url command
+     *
+     * @param device         device
+     * @param contentUrl     next content Url
+     * @param metadata       next content metadata
+     * @param failureHandler failure handler
+     */
+    @SuppressWarnings("unchecked")
+    public SetNextContentUrlCommand(UpnpDevice device, String contentUrl, String metadata, CommandFailureHandler failureHandler) {
+        super(new ActionInvocation(device.getAvTransportService().getAction(SET_NEXT_AV_TRANSPORT_URI)));
+        getActionInvocation().setInput("InstanceID", new UnsignedIntegerFourBytes(INSTANCE_ID));
+        getActionInvocation().setInput("NextURI", contentUrl);
+        getActionInvocation().setInput("NextURIMetaData", metadata);
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void failure(ActionInvocation invocation, UpnpResponse response, String defaultMsg) {
+        failureHandler.handle(defaultMsg);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void success(ActionInvocation invocation) {
+        success();
+    }
+
+    /**
+     * Success callback.
+     */
+    public abstract void success();
+}
@@ -29,6 +29,7 @@ import java.util.Collection;
  * Upnp streaming device.
  */
 public class UpnpDevice extends Device {
+    public static final String SET_NEXT_AV_TRANSPORT_URI = "SetNextAVTransportURI";
     private static final String UPNP_DEVICE_TYPE = "DLNA Upnp";
     private final RemoteService avTransportService;
     private boolean videoSupported = false;
@@ -75,6 +76,15 @@ public class UpnpDevice extends Device {
         return avTransportService;
     }
 
+    /**
+     * Whether next content can be set on device (optional SetNextAVTransportURI action of AV transport service).
+     *
+     * @return true if next content is supported
+     */
+    public boolean isNextContentSupported() {
+        return avTransportService != null && avTransportService.getAction(SET_NEXT_AV_TRANSPORT_URI) != null;
+    }
+
     /**
      * {@inheritDoc}
      */
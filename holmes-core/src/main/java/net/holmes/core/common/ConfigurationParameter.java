@@ -44,7 +44,7 @@ public abstract class ConfigurationParameter<T> {
      */
     public static final ConfigurationIntParameter RELEASE_CHECK_DELAY_HOURS = new ConfigurationIntParameter("release_check_delay_hours", 30);
     /**
-     * Delay between streaming status updates (in seconds)
+     * Delay between streaming status updates (in seconds), adapted per session up to 4 times this delay
      */
     public static final ConfigurationIntParameter STREAMING_STATUS_UPDATE_DELAY_SECONDS = new ConfigurationIntParameter("streaming_status_update_delay_seconds", 3);
 
@@ -59,6 +59,46 @@ public abstract class ConfigurationParameter<T> {
      * Duration for Http caching header (in seconds)
      */
     public static final ConfigurationIntParameter HTTP_SERVER_CACHE_SECOND = new ConfigurationIntParameter("http_server_cache_second", 60);
+    /**
+     * Number of Http server I/O threads (0 to use Netty default)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_WORKER_THREADS = new ConfigurationIntParameter("http_server_worker_threads", 0);
+    /**
+     * Number of Http server threads dedicated to file streaming
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_STREAMING_THREADS = new ConfigurationIntParameter("http_server_streaming_threads", 8);
+    /**
+     * Number of Http server threads dedicated to backend (REST) requests
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_BACKEND_THREADS = new ConfigurationIntParameter("http_server_backend_threads", 4);
+    /**
+     * Max size of files served from Http server memory cache (in KB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB = new ConfigurationIntParameter("http_server_memory_cache_file_max_size_kb", 256);
+    /**
+     * Http server memory cache size (in KB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_MEMORY_CACHE_SIZE_KB = new ConfigurationIntParameter("http_server_memory_cache_size_kb", 32768);
+    /**
+     * Max size of files served with zero-copy transfer, larger files are streamed by chunks (in MB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB = new ConfigurationIntParameter("http_server_zero_copy_file_max_size_mb", 1024);
+    /**
+     * Enable Http server caching proxy for podcast enclosures
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_PROXY_ENABLE = new ConfigurationBooleanParameter("enable_http_server_proxy", false);
+    /**
+     * Http server caching proxy disk cache size (in MB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB = new ConfigurationIntParameter("http_server_proxy_cache_max_size_mb", 2048);
+    /**
+     * Enable Http server relay for Icecast live streams
+     */
+    public static final ConfigurationBooleanParameter HTTP_SERVER_RELAY_ENABLE = new ConfigurationBooleanParameter("enable_http_server_relay", false);
+    /**
+     * Http server relay buffer size (in KB)
+     */
+    public static final ConfigurationIntParameter HTTP_SERVER_RELAY_BUFFER_KB = new ConfigurationIntParameter("http_server_relay_buffer_kb", 512);
 
     /**
      * Icecast directory support parameters
@@ -84,17 +124,37 @@ public abstract class ConfigurationParameter<T> {
      */
     public static final ConfigurationStringParameter ICECAST_YELLOW_PAGE_URL = new ConfigurationStringParameter("icecast_yellow_page_url", "http://dir.xiph.org/yp.xml");
 
+    /**
+     * Media metadata parameters
+     */
+    /**
+     * Enable media metadata extraction (duration, bitrate, resolution..)
+     */
+    public static final ConfigurationBooleanParameter MEDIA_METADATA_ENABLE = new ConfigurationBooleanParameter("enable_media_metadata", true);
+    /**
+     * Max number of elements in media metadata cache
+     */
+    public static final ConfigurationIntParameter MEDIA_METADATA_CACHE_MAX_ELEMENTS = new ConfigurationIntParameter("media_metadata_cache_max_elements", 10000);
+
     /**
      * Podcast management parameters
      */
     /**
-     * TTL for podcasts in cache
+     * Delay between two background refreshes of podcasts
      */
     public static final ConfigurationIntParameter PODCAST_CACHE_EXPIRE_HOURS = new ConfigurationIntParameter("podcast_cache_expire_hours", 2);
     /**
-     * Max number of elements in podcast cache
+     * Number of podcasts refreshed concurrently
+     */
+    public static final ConfigurationIntParameter PODCAST_REFRESH_THREADS = new ConfigurationIntParameter("podcast_refresh_threads", 2);
+    /**
+     * Delay between the start of two podcast refreshes
+     */
+    public static final ConfigurationIntParameter PODCAST_REFRESH_STAGGER_SECONDS = new ConfigurationIntParameter("podcast_refresh_stagger_seconds", 5);
+    /**
+     * Max number of entries parsed in a podcast (newest entries are parsed first), 0 for no limit
      */
-    public static final ConfigurationIntParameter PODCAST_CACHE_MAX_ELEMENTS = new ConfigurationIntParameter("podcast_cache_max_elements", 50);
+    public static final ConfigurationIntParameter PODCAST_MAX_ENTRIES = new ConfigurationIntParameter("podcast_max_entries", 0);
     /**
      * Whether to add podcast item number to podcast element name (prevent Upnp server to sort elements by name)
      */
@@ -108,6 +168,22 @@ public abstract class ConfigurationParameter<T> {
      */
     public static final ConfigurationBooleanParameter SYSTRAY_ENABLE = new ConfigurationBooleanParameter("enable_systray", true);
 
+    /**
+     * Thumbnail parameters
+     */
+    /**
+     * Enable thumbnails and album art for media files
+     */
+    public static final ConfigurationBooleanParameter THUMBNAIL_ENABLE = new ConfigurationBooleanParameter("enable_thumbnails", true);
+    /**
+     * Number of threads used to generate thumbnails
+     */
+    public static final ConfigurationIntParameter THUMBNAIL_GENERATION_THREADS = new ConfigurationIntParameter("thumbnail_generation_threads", 2);
+    /**
+     * Max size of thumbnail disk cache (in MB)
+     */
+    public static final ConfigurationIntParameter THUMBNAIL_CACHE_MAX_SIZE_MB = new ConfigurationIntParameter("thumbnail_cache_max_size_mb", 64);
+
     /**
      * UPnp parameters
      */
@@ -124,7 +200,7 @@ public abstract class ConfigurationParameter<T> {
      */
     public static final ConfigurationBooleanParameter SYSTRAY_ICONS_IN_MENU = new ConfigurationBooleanParameter("icons_in_systray_menu", true);
     /**
-     * Whether to add subtitle files (srt..) to Upnp server
+     * Whether to add subtitle files (srt..) paired with videos to Upnp server items
      */
     public static final ConfigurationBooleanParameter UPNP_ADD_SUBTITLE = new ConfigurationBooleanParameter("upnp_add_subtitle", true);
     /**
@@ -136,18 +212,35 @@ public abstract class ConfigurationParameter<T> {
             CACHE_CLEAN_DELAY_MINUTES,
             HTTP_SERVER_PORT,
             HTTP_SERVER_CACHE_SECOND,
+            HTTP_SERVER_WORKER_THREADS,
+            HTTP_SERVER_STREAMING_THREADS,
+            HTTP_SERVER_BACKEND_THREADS,
+            HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB,
+            HTTP_SERVER_MEMORY_CACHE_SIZE_KB,
+            HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB,
+            HTTP_SERVER_PROXY_ENABLE,
+            HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB,
+            HTTP_SERVER_RELAY_ENABLE,
+            HTTP_SERVER_RELAY_BUFFER_KB,
             ICECAST_ENABLE,
             ICECAST_GENRE_LIST,
             ICECAST_MAX_DOWNLOAD_RETRY,
             ICECAST_YELLOW_PAGE_DOWNLOAD_DELAY_HOURS,
             ICECAST_YELLOW_PAGE_URL,
+            MEDIA_METADATA_ENABLE,
+            MEDIA_METADATA_CACHE_MAX_ELEMENTS,
             PODCAST_CACHE_EXPIRE_HOURS,
-            PODCAST_CACHE_MAX_ELEMENTS,
+            PODCAST_REFRESH_THREADS,
+            PODCAST_REFRESH_STAGGER_SECONDS,
+            PODCAST_MAX_ENTRIES,
             PODCAST_PREPEND_ENTRY_NAME,
             RELEASE_CHECK_DELAY_HOURS,
             STREAMING_STATUS_UPDATE_DELAY_SECONDS,
             SYSTRAY_ENABLE,
             SYSTRAY_ICONS_IN_MENU,
+            THUMBNAIL_ENABLE,
+            THUMBNAIL_GENERATION_THREADS,
+            THUMBNAIL_CACHE_MAX_SIZE_MB,
             UPNP_ADD_SUBTITLE,
             UPNP_SERVER_ENABLE,
             UPNP_SERVER_NAME,
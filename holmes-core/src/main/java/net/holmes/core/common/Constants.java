@@ -28,7 +28,10 @@ public enum Constants {
     HOLMES_HTTP_SERVER_NAME("Holmes HTTP Server"),
     HOLMES_GITHUB_RELEASE_API_URL("https://api.github.com/repos/ccheneau/Holmes/releases"),
     HTTP_CONTENT_REQUEST_PATH("/content"),
-    HTTP_CONTENT_ID("id");
+    HTTP_CONTENT_ID("id"),
+    HTTP_THUMBNAIL_REQUEST_PATH("/thumbnail"),
+    HTTP_PROXY_REQUEST_PATH("/proxy"),
+    HTTP_RELAY_REQUEST_PATH("/relay");
 
     /**
      * Constant value.
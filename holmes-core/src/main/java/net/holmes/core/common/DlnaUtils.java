@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.common;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static net.holmes.core.common.MediaType.TYPE_IMAGE;
+
+/**
+ * DLNA utils.
+ */
+public final class DlnaUtils {
+    public static final String HEADER_CONTENT_FEATURES = "contentFeatures.dlna.org";
+    public static final String HEADER_GET_CONTENT_FEATURES = "getcontentFeatures.dlna.org";
+    public static final String HEADER_TRANSFER_MODE = "transferMode.dlna.org";
+    public static final String HEADER_TIME_SEEK_RANGE = "TimeSeekRange.dlna.org";
+    public static final String TRANSFER_MODE_STREAMING = "Streaming";
+    public static final String TRANSFER_MODE_INTERACTIVE = "Interactive";
+    public static final String TRANSFER_MODE_BACKGROUND = "Background";
+
+    private static final String DLNA_OP_RANGE = "01";
+    private static final String DLNA_OP_TIME_SEEK_RANGE = "11";
+    private static final String DLNA_FLAGS_STREAMING = "01700000000000000000000000000000";
+    private static final String DLNA_FLAGS_INTERACTIVE = "00F00000000000000000000000000000";
+    private static final Pattern PATTERN_NPT_RANGE = Pattern.compile("^\\s*npt\\s*=\\s*([0-9:.]+)\\s*-\\s*([0-9:.]*).*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_NPT_HHMMSS = Pattern.compile("^(\\d+):(\\d{1,2}):(\\d{1,2})(?:\\.(\\d{1,3}))?$");
+    private static final Pattern PATTERN_NPT_SEC = Pattern.compile("^(\\d+)(?:\\.(\\d{1,3}))?$");
+
+    /**
+     * Private constructor
+     */
+    private DlnaUtils() {
+        // Nothing
+    }
+
+    /**
+     * Get DLNA content features (4th field of protocol info).
+     *
+     * @param mimeType          mime type
+     * @param timeSeekSupported whether time based seek is supported
+     * @return DLNA content features
+     */
+    public static String getContentFeatures(final MimeType mimeType, final boolean timeSeekSupported) {
+        return "DLNA.ORG_OP=" + (timeSeekSupported ? DLNA_OP_TIME_SEEK_RANGE : DLNA_OP_RANGE)
+                + ";DLNA.ORG_CI=0;DLNA.ORG_FLAGS=" + (TYPE_IMAGE == mimeType.getType() ? DLNA_FLAGS_INTERACTIVE : DLNA_FLAGS_STREAMING);
+    }
+
+    /**
+     * Get DLNA transfer mode: requested transfer mode if valid, else default transfer mode for mime type.
+     *
+     * @param mimeType      mime type
+     * @param requestedMode transfer mode requested by client (may be null)
+     * @return DLNA transfer mode
+     */
+    public static String getTransferMode(final MimeType mimeType, final String requestedMode) {
+        if (requestedMode != null) {
+            for (String mode : new String[]{TRANSFER_MODE_STREAMING, TRANSFER_MODE_INTERACTIVE, TRANSFER_MODE_BACKGROUND}) {
+                if (mode.equalsIgnoreCase(requestedMode.trim())) {
+                    return mode;
+                }
+            }
+        }
+        return TYPE_IMAGE == mimeType.getType() ? TRANSFER_MODE_INTERACTIVE : TRANSFER_MODE_STREAMING;
+    }
+
+    /**
+     * Parse start time of a DLNA time seek range (e.g. "npt=10.5-" or "npt=0:01:30.000-0:02:00").
+     *
+     * @param timeSeekRange time seek range
+     * @return start time (in milliseconds)
+     * @throws IllegalArgumentException if time seek range is not valid
+     */
+    public static long parseTimeSeekRangeStart(final String timeSeekRange) {
+        Matcher matcher = PATTERN_NPT_RANGE.matcher(timeSeekRange);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid time seek range: " + timeSeekRange);
+        }
+        return parseNptTime(matcher.group(1));
+    }
+
+    /**
+     * Parse NPT time (either "hh:mm:ss[.fff]" or "sss[.fff]").
+     *
+     * @param nptTime NPT time
+     * @return time (in milliseconds)
+     * @throws IllegalArgumentException if NPT time is not valid
+     */
+    public static long parseNptTime(final String nptTime) {
+        Matcher matcher = PATTERN_NPT_HHMMSS.matcher(nptTime);
+        if (matcher.matches()) {
+            return ((Long.parseLong(matcher.group(1)) * 60 + Long.parseLong(matcher.group(2))) * 60 + Long.parseLong(matcher.group(3))) * 1000
+                    + parseMillis(matcher.group(4));
+        }
+        matcher = PATTERN_NPT_SEC.matcher(nptTime);
+        if (matcher.matches()) {
+            return Long.parseLong(matcher.group(1)) * 1000 + parseMillis(matcher.group(2));
+        }
+        throw new IllegalArgumentException("Invalid NPT time: " + nptTime);
+    }
+
+    /**
+     * Format NPT time ("h:mm:ss.fff").
+     *
+     * @param time time (in milliseconds)
+     * @return NPT time
+     */
+    public static String formatNptTime(final long time) {
+        return String.format(Locale.ENGLISH, "%d:%02d:%02d.%03d", time / 3600000, time / 60000 % 60, time / 1000 % 60, time % 1000);
+    }
+
+    /**
+     * Parse NPT fraction of seconds.
+     *
+     * @param fraction fraction (1 to 3 digits, may be null)
+     * @return milliseconds
+     */
+    private static long parseMillis(final String fraction) {
+        if (fraction == null) {
+            return 0;
+        }
+        long millis = Long.parseLong(fraction);
+        for (int i = fraction.length(); i < 3; i++) {
+            millis *= 10;
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.common;
+
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * MP4 (ISO base media file format) utils.
+ */
+public final class Mp4Utils {
+    private static final int BOX_HEADER_SIZE = 8;
+    private static final int BOX_LARGE_HEADER_SIZE = 16;
+
+    /**
+     * Private constructor
+     */
+    private Mp4Utils() {
+        // Nothing
+    }
+
+    /**
+     * Read moov box content.
+     *
+     * @param channel file channel
+     * @param maxSize max moov box content size
+     * @return moov box content or null if moov box is not found
+     * @throws IOException
+     */
+    public static ByteBuffer readMoovBox(final FileChannel channel, final int maxSize) throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(BOX_LARGE_HEADER_SIZE);
+        while (position + BOX_HEADER_SIZE <= fileSize) {
+            // Read box header
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            if (header.remaining() < BOX_HEADER_SIZE) {
+                return null;
+            }
+            long boxSize = header.getInt() & 0xFFFFFFFFL;
+            String boxType = getType(header, BOX_HEADER_SIZE - 4);
+            int headerSize = BOX_HEADER_SIZE;
+            if (boxSize == 1 && header.limit() >= BOX_LARGE_HEADER_SIZE) {
+                boxSize = header.getLong(BOX_HEADER_SIZE);
+                headerSize = BOX_LARGE_HEADER_SIZE;
+            } else if (boxSize == 0) {
+                boxSize = fileSize - position;
+            }
+            if (boxSize < headerSize) {
+                return null;
+            }
+
+            if ("moov".equals(boxType)) {
+                // Read moov content
+                long contentSize = boxSize - headerSize;
+                if (contentSize > maxSize || position + boxSize > fileSize) {
+                    return null;
+                }
+                ByteBuffer moov = ByteBuffer.allocate((int) contentSize);
+                int read;
+                do {
+                    read = channel.read(moov, position + headerSize + moov.position());
+                } while (read > 0 && moov.hasRemaining());
+                moov.flip();
+                return moov;
+            }
+            position += boxSize;
+        }
+        return null;
+    }
+
+    /**
+     * Get first child box content.
+     *
+     * @param parent parent box content
+     * @param type   child box type
+     * @return child box content or null
+     */
+    public static ByteBuffer getChild(final ByteBuffer parent, final String type) {
+        if (parent != null) {
+            List<ByteBuffer> children = getChildren(parent, type);
+            if (!children.isEmpty()) {
+                return children.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get child boxes content.
+     *
+     * @param parent parent box content
+     * @param type   child box type
+     * @return child boxes content
+     */
+    public static List<ByteBuffer> getChildren(final ByteBuffer parent, final String type) {
+        List<ByteBuffer> children = Lists.newArrayList();
+        int position = 0;
+        while (position + BOX_HEADER_SIZE <= parent.limit()) {
+            long boxSize = parent.getInt(position) & 0xFFFFFFFFL;
+            int headerSize = BOX_HEADER_SIZE;
+            if (boxSize == 1 && position + BOX_LARGE_HEADER_SIZE <= parent.limit()) {
+                boxSize = parent.getLong(position + BOX_HEADER_SIZE);
+                headerSize = BOX_LARGE_HEADER_SIZE;
+            } else if (boxSize == 0) {
+                boxSize = parent.limit() - position;
+            }
+            if (boxSize < headerSize || position + boxSize > parent.limit()) {
+                break;
+            }
+            if (type.equals(getType(parent, position + 4))) {
+                ByteBuffer child = parent.duplicate();
+                child.limit(position + (int) boxSize).position(position + headerSize);
+                children.add(child.slice());
+            }
+            position += boxSize;
+        }
+        return children;
+    }
+
+    /**
+     * Get four character code (box type, handler type) at absolute position.
+     *
+     * @param buffer   buffer
+     * @param position position
+     * @return four character code
+     */
+    public static String getType(final ByteBuffer buffer, final int position) {
+        byte[] type = new byte[4];
+        for (int i = 0; i < type.length; i++) {
+            type[i] = buffer.get(position + i);
+        }
+        return new String(type, US_ASCII);
+    }
+}
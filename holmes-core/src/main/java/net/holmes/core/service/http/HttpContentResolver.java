@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.Subscribe;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.AbstractNode;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.event.ConfigurationEvent;
+
+import javax.inject.Inject;
+import java.io.File;
+
+/**
+ * Resolves HTTP content ids to content files.
+ * Resolved contents are cached: a cached content is revalidated with a single file system call
+ * when it has not been checked for a while, media model is only requested on cache miss.
+ */
+public final class HttpContentResolver {
+    private static final int CONTENT_CACHE_MAX_ELEMENTS = 1000;
+    private static final long REVALIDATION_DELAY_MILLIS = 2000L;
+
+    private final MediaManager mediaManager;
+    private final Cache<String, ResolvedContent> contentCache;
+
+    /**
+     * Instantiates a new HTTP content resolver.
+     *
+     * @param mediaManager media manager
+     */
+    @Inject
+    public HttpContentResolver(final MediaManager mediaManager) {
+        this.mediaManager = mediaManager;
+        this.contentCache = CacheBuilder.newBuilder()
+                .maximumSize(CONTENT_CACHE_MAX_ELEMENTS)
+                .build();
+    }
+
+    /**
+     * Resolve content.
+     *
+     * @param contentId content id
+     * @return resolved content or null if content id does not match a content file
+     */
+    public ResolvedContent resolve(final String contentId) {
+        long now = System.currentTimeMillis();
+        ResolvedContent content = contentCache.getIfPresent(contentId);
+        if (content != null) {
+            if (now - content.getCheckedAt() < REVALIDATION_DELAY_MILLIS) {
+                return content;
+            }
+
+            // Revalidate cached content, file size is only read again when file is modified
+            long lastModified = content.getFile().lastModified();
+            if (lastModified != 0L) {
+                long size = lastModified == content.getLastModified() ? content.getSize() : content.getFile().length();
+                content = new ResolvedContent(content.getFile(), content.getMimeType(), size, lastModified, now);
+                contentCache.put(contentId, content);
+                return content;
+            }
+            contentCache.invalidate(contentId);
+        }
+
+        // Resolve content from media model
+        AbstractNode node = mediaManager.getNode(contentId);
+        if (node instanceof ContentNode) {
+            ContentNode contentNode = (ContentNode) node;
+            content = new ResolvedContent(new File(contentNode.getPath()), contentNode.getMimeType(), contentNode.getSize(), contentNode.getModifiedDate(), now);
+            contentCache.put(contentId, content);
+            return content;
+        }
+        return null;
+    }
+
+    /**
+     * Handle configuration event: media folders may have been removed, resolved contents are cleared.
+     *
+     * @param configurationEvent configuration event
+     */
+    @Subscribe
+    public void handleConfigEvent(final ConfigurationEvent configurationEvent) {
+        contentCache.invalidateAll();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import net.holmes.core.business.configuration.ConfigurationDao;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static java.nio.file.Files.readAllBytes;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_MEMORY_CACHE_SIZE_KB;
+
+/**
+ * Memory cache for small files served by Http server (pictures, subtitles, UI resources).
+ * Cache is bounded by total content size, least recently used files are evicted first.
+ */
+public final class HttpFileContentCache {
+    private final long fileMaxSize;
+    private final Cache<String, byte[]> contentCache;
+
+    /**
+     * Instantiates a new Http file content cache.
+     *
+     * @param configurationDao configuration dao
+     */
+    @Inject
+    public HttpFileContentCache(final ConfigurationDao configurationDao) {
+        this.fileMaxSize = configurationDao.getParameter(HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB) * 1024L;
+        this.contentCache = CacheBuilder.newBuilder()
+                .maximumWeight(configurationDao.getParameter(HTTP_SERVER_MEMORY_CACHE_SIZE_KB) * 1024L)
+                .weigher(new Weigher<String, byte[]>() {
+                    @Override
+                    public int weigh(final String key, final byte[] content) {
+                        return content.length;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Get file content from cache, file is loaded in cache if needed.
+     *
+     * @param file         file
+     * @param fileLength   file length
+     * @param lastModified file last modification date
+     * @return file content or null if file is too large to be cached
+     * @throws IOException if file cannot be read
+     */
+    public byte[] getContent(final File file, final long fileLength, final long lastModified) throws IOException {
+        if (fileLength > fileMaxSize) {
+            return null;
+        }
+
+        // Cache key changes when file is modified
+        String key = file.getAbsolutePath() + ":" + fileLength + ":" + lastModified;
+        try {
+            byte[] content = contentCache.get(key, new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    return readAllBytes(file.toPath());
+                }
+            });
+            if (content.length != fileLength) {
+                // File was modified while being loaded
+                contentCache.invalidate(key);
+                return null;
+            }
+            return content;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -30,6 +30,9 @@ public final class HttpFileRequest {
     private final File file;
     private final MimeType mimeType;
     private final boolean staticFile;
+    private final Long fileLength;
+    private final Long lastModified;
+    private final HttpProxyDownload download;
 
     /**
      * Instantiates a new HttpFileRequest.
@@ -44,6 +47,42 @@ public final class HttpFileRequest {
         this.file = file;
         this.mimeType = mimeType;
         this.staticFile = staticFile;
+        this.fileLength = null;
+        this.lastModified = null;
+        this.download = null;
+    }
+
+    /**
+     * Instantiates a new HttpFileRequest for a resolved content: file metadata are already known.
+     *
+     * @param httpRequest HTTP request
+     * @param content     resolved content
+     */
+    public HttpFileRequest(final FullHttpRequest httpRequest, final ResolvedContent content) {
+        this.httpRequest = httpRequest;
+        this.file = content.getFile();
+        this.mimeType = content.getMimeType();
+        this.staticFile = false;
+        this.fileLength = content.getSize();
+        this.lastModified = content.getLastModified();
+        this.download = null;
+    }
+
+    /**
+     * Instantiates a new HttpFileRequest for a running proxy download: content is served while it is downloaded.
+     *
+     * @param httpRequest HTTP request
+     * @param download    proxy download
+     * @param mimeType    mime type
+     */
+    public HttpFileRequest(final FullHttpRequest httpRequest, final HttpProxyDownload download, final MimeType mimeType) {
+        this.httpRequest = httpRequest;
+        this.file = download.getFile().toFile();
+        this.mimeType = mimeType;
+        this.staticFile = false;
+        this.fileLength = download.getLength();
+        this.lastModified = System.currentTimeMillis();
+        this.download = download;
     }
 
     public File getFile() {
@@ -61,4 +100,31 @@ public final class HttpFileRequest {
     public boolean isStaticFile() {
         return staticFile;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the file length, if already known.
+     *
+     * @return the file length or null
+     */
+    public Long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * Gets the file last modification date, if already known.
+     *
+     * @return the file last modification date or null
+     */
+    public Long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the running proxy download serving this request, if any.
+     *
+     * @return the proxy download or null
+     */
+    public HttpProxyDownload getDownload() {
+        return download;
+    }
+}
@@ -22,9 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.QueryStringDecoder;
-import net.holmes.core.business.media.MediaManager;
-import net.holmes.core.business.media.model.AbstractNode;
-import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.common.MimeType;
 
@@ -34,8 +32,10 @@ import java.io.File;
 import java.util.List;
 
 import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
 import static net.holmes.core.common.Constants.HTTP_CONTENT_ID;
 import static net.holmes.core.common.Constants.HTTP_CONTENT_REQUEST_PATH;
+import static net.holmes.core.common.Constants.HTTP_THUMBNAIL_REQUEST_PATH;
 
 /**
  * Decode FullHttpRequest to HttpFileRequest
@@ -43,20 +43,25 @@ import static net.holmes.core.common.Constants.HTTP_CONTENT_REQUEST_PATH;
 public final class HttpFileRequestDecoder extends MessageToMessageDecoder<FullHttpRequest> {
     private static final String DEFAULT_WELCOME_FILE = "index.html";
     private static final List<String> WELCOME_APPLICATIONS = Lists.newArrayList("", "/admin", "/play");
-    private final MediaManager mediaManager;
+    private static final MimeType MIME_TYPE_THUMBNAIL = MimeType.valueOf("image/jpeg");
+    private final HttpContentResolver contentResolver;
+    private final ThumbnailManager thumbnailManager;
     private final MimeTypeManager mimeTypeManager;
     private final String uiDirectory;
 
     /**
      * Instantiates a new HTTP file request decoder.
      *
-     * @param mediaManager    media manager
-     * @param mimeTypeManager mime type manager
-     * @param uiDirectory     UI base directory
+     * @param contentResolver  content resolver
+     * @param thumbnailManager thumbnail manager
+     * @param mimeTypeManager  mime type manager
+     * @param uiDirectory      UI base directory
      */
     @Inject
-    public HttpFileRequestDecoder(final MediaManager mediaManager, final MimeTypeManager mimeTypeManager, @Named("uiDirectory") final String uiDirectory) {
-        this.mediaManager = mediaManager;
+    public HttpFileRequestDecoder(final HttpContentResolver contentResolver, final ThumbnailManager thumbnailManager, final MimeTypeManager mimeTypeManager,
+                                  @Named("uiDirectory") final String uiDirectory) {
+        this.contentResolver = contentResolver;
+        this.thumbnailManager = thumbnailManager;
         this.mimeTypeManager = mimeTypeManager;
         this.uiDirectory = uiDirectory;
     }
@@ -67,14 +72,20 @@ public final class HttpFileRequestDecoder extends MessageToMessageDecoder<FullHt
     @Override
     protected void decode(ChannelHandlerContext context, FullHttpRequest request, List<Object> out) {
         HttpFileRequest fileRequest = null;
-        if (request.getMethod().equals(GET)) {
+        if (request.getMethod().equals(GET) || request.getMethod().equals(HEAD)) {
             QueryStringDecoder decoder = new QueryStringDecoder(request.getUri());
             if (decoder.path().startsWith(HTTP_CONTENT_REQUEST_PATH.toString()) && decoder.parameters().get(HTTP_CONTENT_ID.toString()) != null) {
-                // Request for a content file is valid if content is found in media index
-                AbstractNode node = mediaManager.getNode(decoder.parameters().get(HTTP_CONTENT_ID.toString()).get(0));
-                if (node instanceof ContentNode) {
-                    ContentNode contentNode = (ContentNode) node;
-                    fileRequest = new HttpFileRequest(request, new File(contentNode.getPath()), contentNode.getMimeType(), false);
+                // Request for a content file is valid if content is resolved
+                ResolvedContent content = contentResolver.resolve(decoder.parameters().get(HTTP_CONTENT_ID.toString()).get(0));
+                if (content != null) {
+                    fileRequest = new HttpFileRequest(request, content);
+                }
+            } else if (decoder.path().startsWith(HTTP_THUMBNAIL_REQUEST_PATH.toString()) && decoder.parameters().get(HTTP_CONTENT_ID.toString()) != null) {
+                // Request for a thumbnail is valid if thumbnail is available in cache
+                ResolvedContent content = contentResolver.resolve(decoder.parameters().get(HTTP_CONTENT_ID.toString()).get(0));
+                File thumbnail = content != null ? thumbnailManager.getThumbnail(content.getFile(), content.getMimeType(), content.getSize(), content.getLastModified()) : null;
+                if (thumbnail != null) {
+                    fileRequest = new HttpFileRequest(request, thumbnail, MIME_TYPE_THUMBNAIL, true);
                 }
             } else {
                 // Request for UI static file is valid if requested file name has a correct mime type
@@ -21,17 +21,23 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.util.CharsetUtil;
 import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.seek.SeekIndex;
+import net.holmes.core.business.media.seek.SeekIndexManager;
 import net.holmes.core.common.MimeType;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.NoSuchFileException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -45,11 +51,14 @@ import static io.netty.handler.codec.http.HttpHeaders.Values.BYTES;
 import static io.netty.handler.codec.http.HttpHeaders.Values.KEEP_ALIVE;
 import static io.netty.handler.codec.http.HttpHeaders.isKeepAlive;
 import static io.netty.handler.codec.http.HttpHeaders.setContentLength;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static io.netty.handler.codec.http.LastHttpContent.EMPTY_LAST_CONTENT;
 import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CACHE_SECOND;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB;
 import static net.holmes.core.common.Constants.HOLMES_HTTP_SERVER_NAME;
+import static net.holmes.core.common.DlnaUtils.*;
 import static net.holmes.core.common.FileUtils.isValidFile;
 
 /**
@@ -61,15 +70,23 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
     private static final String HTTP_DATE_GMT_TIMEZONE = "GMT";
     private static final int CHUNK_SIZE = 8192;
     private final int httpCacheSecond;
+    private final long zeroCopyFileMaxSize;
+    private final SeekIndexManager seekIndexManager;
+    private final HttpFileContentCache fileContentCache;
 
     /**
      * Instantiates a new Http file request handler.
      *
      * @param configurationDao configuration DAO
+     * @param seekIndexManager seek index manager
+     * @param fileContentCache file content cache
      */
     @Inject
-    public HttpFileRequestHandler(ConfigurationDao configurationDao) {
-        httpCacheSecond = configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND);
+    public HttpFileRequestHandler(final ConfigurationDao configurationDao, final SeekIndexManager seekIndexManager, final HttpFileContentCache fileContentCache) {
+        this.httpCacheSecond = configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND);
+        this.zeroCopyFileMaxSize = configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB) * 1024L * 1024L;
+        this.seekIndexManager = seekIndexManager;
+        this.fileContentCache = fileContentCache;
     }
 
     /**
@@ -77,35 +94,59 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
      */
     @Override
     protected void channelRead0(final ChannelHandlerContext context, final HttpFileRequest request) throws HttpFileRequestException, IOException {
-        // Check file
+        // Check file, unless file metadata are already known
         File file = request.getFile();
-        if (!isValidFile(file)) {
+        if (request.getFileLength() == null && !isValidFile(file)) {
             throw new HttpFileRequestException(file.getPath(), NOT_FOUND);
         }
 
-        // Get file descriptor
-        RandomAccessFile randomFile = new RandomAccessFile(file, "r");
-        long fileLength = randomFile.length();
+        // Get file length, file is opened only when content is sent
+        long fileLength = request.getFileLength() != null ? request.getFileLength() : file.length();
 
-        // Get start offset
-        long startOffset = getStartOffset(request.getHttpRequest());
-
-        // Build response
-        HttpResponse response = buildHttpResponse(startOffset, fileLength);
+        // Get start offset and build response, either from DLNA time seek range or from byte range
+        long startOffset;
+        HttpResponse response;
+        String timeSeekRange = request.getHttpRequest().headers().get(HEADER_TIME_SEEK_RANGE);
+        if (timeSeekRange != null && !request.isStaticFile() && request.getDownload() == null) {
+            SeekIndex seekIndex = getSeekIndex(request, timeSeekRange);
+            long startTime = getStartTime(timeSeekRange, seekIndex);
+            startOffset = seekIndex.getOffset(startTime);
+            response = buildTimeSeekResponse(startTime, seekIndex.getDuration(), startOffset, fileLength);
+        } else {
+            startOffset = getStartOffset(request.getHttpRequest());
+            response = buildHttpResponse(startOffset, fileLength);
+        }
 
         // Add HTTP headers to response
         addContentHeaders(response, fileLength - startOffset, request.getMimeType());
-        addDateHeader(response, file, request.isStaticFile());
+        addDlnaHeaders(response, request);
+        long lastModified = request.getLastModified() != null ? request.getLastModified() : file.lastModified();
+        addDateHeader(response, lastModified, request.isStaticFile());
         boolean keepAlive = addKeepAliveHeader(response, request.getHttpRequest());
 
+        // Get content to write, HEAD requests only get headers
+        Object content = null;
+        if (!HEAD.equals(request.getHttpRequest().getMethod())) {
+            if (request.getDownload() != null) {
+                content = getProxyContent(context, request.getDownload(), startOffset);
+            } else {
+                content = getContent(file, startOffset, fileLength, lastModified);
+            }
+        }
+
         // Write the response
         context.write(response);
 
-        // Write the content
-        context.write(new ChunkedFile(randomFile, startOffset, fileLength - startOffset, CHUNK_SIZE));
-
-        // Write the end marker
-        ChannelFuture lastContentFuture = context.writeAndFlush(EMPTY_LAST_CONTENT);
+        // Write the content and the end marker
+        ChannelFuture lastContentFuture;
+        if (content instanceof ByteBuf) {
+            lastContentFuture = context.writeAndFlush(new DefaultLastHttpContent((ByteBuf) content));
+        } else {
+            if (content != null) {
+                context.write(content);
+            }
+            lastContentFuture = context.writeAndFlush(EMPTY_LAST_CONTENT);
+        }
 
         // Decide whether to close the connection or not when the whole content is written out.
         if (!keepAlive) {
@@ -128,6 +169,53 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
         }
     }
 
+    /**
+     * Get content to write, depending on file size: small files are served from memory cache,
+     * mid-size files are transferred with zero-copy and huge files are streamed by chunks.
+     *
+     * @param file         requested file
+     * @param startOffset  start offset
+     * @param fileLength   file length
+     * @param lastModified file last modification date
+     * @return content: ByteBuf, FileRegion or ChunkedFile
+     * @throws HttpFileRequestException
+     * @throws IOException
+     */
+    private Object getContent(final File file, final long startOffset, final long fileLength, final long lastModified) throws HttpFileRequestException, IOException {
+        try {
+            byte[] cachedContent = fileContentCache.getContent(file, fileLength, lastModified);
+            if (cachedContent != null) {
+                return Unpooled.wrappedBuffer(cachedContent, (int) startOffset, (int) (fileLength - startOffset));
+            }
+
+            RandomAccessFile randomFile = new RandomAccessFile(file, "r");
+            if (fileLength <= zeroCopyFileMaxSize) {
+                return new DefaultFileRegion(randomFile.getChannel(), startOffset, fileLength - startOffset);
+            }
+            return new ChunkedFile(randomFile, startOffset, fileLength - startOffset, CHUNK_SIZE);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new HttpFileRequestException(file.getPath(), NOT_FOUND);
+        }
+    }
+
+    /**
+     * Get content of a running proxy download: content is streamed by chunks as soon as it is downloaded.
+     *
+     * @param context     channel context
+     * @param download    proxy download
+     * @param startOffset start offset
+     * @return content: HttpProxyChunkedInput
+     * @throws HttpFileRequestException
+     * @throws IOException
+     */
+    private Object getProxyContent(final ChannelHandlerContext context, final HttpProxyDownload download, final long startOffset) throws HttpFileRequestException, IOException {
+        try {
+            return new HttpProxyChunkedInput(download, startOffset, CHUNK_SIZE, context.pipeline().get(ChunkedWriteHandler.class));
+        } catch (FileNotFoundException e) {
+            throw new HttpFileRequestException(download.getUrl(), NOT_FOUND);
+        }
+    }
+
     /**
      * Build HTTP response.
      *
@@ -157,6 +245,70 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
         return response;
     }
 
+    /**
+     * Build HTTP response to a DLNA time seek request.
+     *
+     * @param startTime   start time (in milliseconds)
+     * @param duration    media duration (in milliseconds)
+     * @param startOffset start offset
+     * @param fileLength  file length
+     * @return HTTP response
+     * @throws HttpFileRequestException
+     */
+    private HttpResponse buildTimeSeekResponse(final long startTime, final long duration, final long startOffset, final long fileLength) throws HttpFileRequestException {
+        if (startOffset >= fileLength) {
+            throw new HttpFileRequestException("Invalid start time", REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        // Instantiates a new response with time seek range
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+        response.headers().set(ACCEPT_RANGES, BYTES);
+        response.headers().set(HEADER_TIME_SEEK_RANGE, "npt=" + formatNptTime(startTime) + "-" + formatNptTime(duration) + "/" + formatNptTime(duration)
+                + " bytes=" + startOffset + "-" + (fileLength - 1) + "/" + fileLength);
+
+        // Add server header
+        response.headers().set(SERVER, HOLMES_HTTP_SERVER_NAME.toString());
+
+        return response;
+    }
+
+    /**
+     * Get seek index of requested file.
+     *
+     * @param request       file request
+     * @param timeSeekRange requested time seek range
+     * @return seek index
+     * @throws HttpFileRequestException if time seek is not supported for requested file
+     */
+    private SeekIndex getSeekIndex(final HttpFileRequest request, final String timeSeekRange) throws HttpFileRequestException {
+        SeekIndex seekIndex = seekIndexManager.getSeekIndex(request.getFile(), request.getMimeType());
+        if (seekIndex == null) {
+            throw new HttpFileRequestException(timeSeekRange, NOT_ACCEPTABLE);
+        }
+        return seekIndex;
+    }
+
+    /**
+     * Get start time from DLNA time seek range.
+     *
+     * @param timeSeekRange time seek range
+     * @param seekIndex     seek index
+     * @return start time (in milliseconds)
+     * @throws HttpFileRequestException
+     */
+    private long getStartTime(final String timeSeekRange, final SeekIndex seekIndex) throws HttpFileRequestException {
+        long startTime;
+        try {
+            startTime = parseTimeSeekRangeStart(timeSeekRange);
+        } catch (IllegalArgumentException e) {
+            throw new HttpFileRequestException(timeSeekRange, BAD_REQUEST);
+        }
+        if (startTime > seekIndex.getDuration()) {
+            throw new HttpFileRequestException(timeSeekRange, REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+        return startTime;
+    }
+
     /**
      * Get start offset from Http request.
      *
@@ -190,21 +342,36 @@ public final class HttpFileRequestHandler extends SimpleChannelInboundHandler<Ht
         response.headers().set(CONTENT_TYPE, mimeType.getMimeType());
     }
 
+    /**
+     * Add DLNA transfer mode and content features headers for media files.
+     *
+     * @param response HTTP response
+     * @param request  file request
+     */
+    private void addDlnaHeaders(final HttpResponse response, final HttpFileRequest request) {
+        MimeType mimeType = request.getMimeType();
+        if (!request.isStaticFile() && mimeType.isMedia()) {
+            response.headers().set(HEADER_TRANSFER_MODE, getTransferMode(mimeType, request.getHttpRequest().headers().get(HEADER_TRANSFER_MODE)));
+            response.headers().set(HEADER_CONTENT_FEATURES, getContentFeatures(mimeType,
+                    request.getDownload() == null && seekIndexManager.isTimeSeekSupported(mimeType)));
+        }
+    }
+
     /**
      * Add date header.
      *
-     * @param response   HTTP response
-     * @param file       requested file
-     * @param staticFile whether file is a static resource
+     * @param response     HTTP response
+     * @param lastModified requested file last modification date
+     * @param staticFile   whether file is a static resource
      */
-    private void addDateHeader(final HttpResponse response, final File file, final boolean staticFile) {
+    private void addDateHeader(final HttpResponse response, final long lastModified, final boolean staticFile) {
         SimpleDateFormat dateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT);
         dateFormatter.setTimeZone(TimeZone.getTimeZone(HTTP_DATE_GMT_TIMEZONE));
         Calendar time = Calendar.getInstance();
 
         // Add date header
         response.headers().set(DATE, dateFormatter.format(time.getTime()));
-        response.headers().set(LAST_MODIFIED, dateFormatter.format(new Date(file.lastModified())));
+        response.headers().set(LAST_MODIFIED, dateFormatter.format(new Date(lastModified)));
 
         // Add cache header for static resources
         if (staticFile && httpCacheSecond > 0) {
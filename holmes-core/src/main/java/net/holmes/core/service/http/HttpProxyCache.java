@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_ENABLE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Read-through caching proxy for remote contents.
+ * A remote content is downloaded once in background into a size bounded disk cache, least recently used contents are evicted first.
+ * Clients are served from the downloaded file while the download is still running.
+ */
+public final class HttpProxyCache {
+    private static final Logger LOGGER = getLogger(HttpProxyCache.class);
+    private static final String PROXY_DIR = "proxy";
+    private static final String CACHE_EXTENSION = ".cache";
+    private static final String PART_EXTENSION = ".part";
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final boolean enabled;
+    private final long cacheMaxSize;
+    private final Path proxyPath;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, HttpProxyDownload> downloads;
+    private final LinkedHashMap<Path, Long> cachedFiles;
+    private long cacheSize;
+    private boolean cacheIndexed;
+
+    /**
+     * Instantiates a new HTTP proxy cache.
+     *
+     * @param configurationDao   configuration dao
+     * @param localHolmesDataDir local Holmes data directory
+     */
+    @Inject
+    public HttpProxyCache(final ConfigurationDao configurationDao, @Named("localHolmesDataDir") final String localHolmesDataDir) {
+        this.enabled = configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE);
+        this.cacheMaxSize = configurationDao.getParameter(HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB) * 1024L * 1024L;
+        this.proxyPath = Paths.get(localHolmesDataDir, PROXY_DIR);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("proxy-%d").setDaemon(true).build());
+        this.downloads = new ConcurrentHashMap<>();
+        // Cached files in access order, eldest entry is the least recently used
+        this.cachedFiles = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Whether caching proxy is enabled.
+     *
+     * @return true if caching proxy is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get download of a remote content. Content is downloaded in background when it is neither cached nor already being downloaded.
+     * This method does not wait for remote content: returned download may not be started yet, see {@link HttpProxyDownload#addStartListener}.
+     *
+     * @param url remote content url
+     * @return download, or null if caching proxy is disabled
+     */
+    public HttpProxyDownload getDownload(final String url) {
+        if (!enabled) {
+            return null;
+        }
+
+        // Look up cache
+        final String key = Hashing.sha1().hashString(url, UTF_8).toString();
+        final Path cachedFile = proxyPath.resolve(key + CACHE_EXTENSION);
+        synchronized (cachedFiles) {
+            indexCache();
+            Long length = cachedFiles.get(cachedFile);
+            if (length != null) {
+                if (Files.isRegularFile(cachedFile)) {
+                    touch(cachedFile);
+                    return new HttpProxyDownload(url, cachedFile, length);
+                }
+                cachedFiles.remove(cachedFile);
+                cacheSize -= length;
+            }
+        }
+
+        // Join running download or start a new one
+        HttpProxyDownload download = downloads.get(key);
+        if (download == null) {
+            final HttpProxyDownload newDownload = new HttpProxyDownload(url, proxyPath.resolve(key + PART_EXTENSION));
+            download = downloads.putIfAbsent(key, newDownload);
+            if (download == null) {
+                download = newDownload;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            download(newDownload, cachedFile);
+                        } finally {
+                            downloads.remove(key);
+                        }
+                    }
+                });
+            }
+        }
+        return download;
+    }
+
+    /**
+     * Get cache size.
+     *
+     * @return size of cached files
+     */
+    @VisibleForTesting
+    long getCacheSize() {
+        synchronized (cachedFiles) {
+            return cacheSize;
+        }
+    }
+
+    /**
+     * Download remote content, then add it to cache.
+     * Remote contents without length (live streams) are not proxied.
+     *
+     * @param download   download
+     * @param cachedFile cached file
+     */
+    private void download(final HttpProxyDownload download, final Path cachedFile) {
+        try {
+            URLConnection connection = new URL(download.getUrl()).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            if (connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_OK) {
+                LOGGER.warn("Failed to download {}: HTTP {}", download.getUrl(), ((HttpURLConnection) connection).getResponseCode());
+                download.fail();
+                return;
+            }
+            long length = connection.getContentLengthLong();
+            if (length < 0) {
+                LOGGER.debug("Unknown content length, {} is not proxied", download.getUrl());
+                download.fail();
+                return;
+            }
+
+            Files.createDirectories(proxyPath);
+            try (InputStream in = connection.getInputStream();
+                 OutputStream out = Files.newOutputStream(download.getFile())) {
+                download.start(length);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long written = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    written += read;
+                    download.progress(written);
+                }
+                if (written != length) {
+                    throw new IOException("Incomplete download: " + written + "/" + length);
+                }
+            }
+            download.complete(cachedFile);
+            addToCache(cachedFile, length);
+            LOGGER.debug("Downloaded {} to proxy cache", download.getUrl());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to download {}: {}", download.getUrl(), e.getMessage());
+            download.fail();
+            try {
+                Files.deleteIfExists(download.getFile());
+            } catch (IOException e1) {
+                LOGGER.warn(e1.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Add a downloaded file to cache, then remove least recently used files until cache size is below max size.
+     *
+     * @param cachedFile cached file
+     * @param length     cached file length
+     */
+    private void addToCache(final Path cachedFile, final long length) {
+        synchronized (cachedFiles) {
+            cachedFiles.put(cachedFile, length);
+            cacheSize += length;
+            Iterator<Map.Entry<Path, Long>> iterator = cachedFiles.entrySet().iterator();
+            while (cacheSize > cacheMaxSize && iterator.hasNext()) {
+                Map.Entry<Path, Long> entry = iterator.next();
+                if (!entry.getKey().equals(cachedFile)) {
+                    try {
+                        Files.deleteIfExists(entry.getKey());
+                    } catch (IOException e) {
+                        LOGGER.warn("Failed to remove {} from proxy cache: {}", entry.getKey(), e.getMessage());
+                    }
+                    cacheSize -= entry.getValue();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Index files already in cache directory, in last access order. Incomplete downloads are removed.
+     * Called with cache lock held.
+     */
+    private void indexCache() {
+        if (cacheIndexed) {
+            return;
+        }
+        cacheIndexed = true;
+        if (!Files.isDirectory(proxyPath)) {
+            return;
+        }
+
+        final Map<Path, FileTime> accessTimes = Maps.newHashMap();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(proxyPath)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(CACHE_EXTENSION)) {
+                    accessTimes.put(path, Files.getLastModifiedTime(path));
+                } else if (fileName.endsWith(PART_EXTENSION)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+            List<Path> paths = Lists.newArrayList(accessTimes.keySet());
+            Collections.sort(paths, new Comparator<Path>() {
+                @Override
+                public int compare(final Path path1, final Path path2) {
+                    return accessTimes.get(path1).compareTo(accessTimes.get(path2));
+                }
+            });
+            for (Path path : paths) {
+                long length = Files.size(path);
+                cachedFiles.put(path, length);
+                cacheSize += length;
+            }
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Update cached file modification date, so that access order survives restarts.
+     *
+     * @param cachedFile cached file
+     */
+    private void touch(final Path cachedFile) {
+        try {
+            Files.setLastModifiedTime(cachedFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOGGER.debug(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Chunked input reading a proxy download while it is running.
+ * When no more downloaded content is available, no chunk is returned and transfer is resumed by the download listener.
+ */
+final class HttpProxyChunkedInput implements ChunkedInput<ByteBuf> {
+    private final HttpProxyDownload download;
+    private final RandomAccessFile file;
+    private final int chunkSize;
+    private final Runnable listener;
+    private long offset;
+
+    /**
+     * Instantiates a new HTTP proxy chunked input.
+     *
+     * @param download      proxy download
+     * @param startOffset   start offset
+     * @param chunkSize     chunk size
+     * @param chunkedWriter chunked write handler to resume when more content is downloaded
+     * @throws IOException
+     */
+    HttpProxyChunkedInput(final HttpProxyDownload download, final long startOffset, final int chunkSize, final ChunkedWriteHandler chunkedWriter)
+            throws IOException {
+        this.download = download;
+        this.file = download.open();
+        this.chunkSize = chunkSize;
+        this.offset = startOffset;
+        this.listener = new Runnable() {
+            @Override
+            public void run() {
+                chunkedWriter.resumeTransfer();
+            }
+        };
+        download.addListener(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEndOfInput() {
+        return offset >= download.getLength();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        download.removeListener(listener);
+        file.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuf readChunk(final ChannelHandlerContext context) throws IOException {
+        if (isEndOfInput()) {
+            return null;
+        }
+        if (download.isFailed()) {
+            throw new IOException("Failed to download " + download.getUrl());
+        }
+
+        // Wait for more downloaded content
+        long available = download.getAvailable();
+        if (available <= offset) {
+            return null;
+        }
+
+        int length = (int) Math.min(chunkSize, available - offset);
+        ByteBuf buffer = context.alloc().heapBuffer(length);
+        boolean release = true;
+        try {
+            file.seek(offset);
+            file.readFully(buffer.array(), buffer.arrayOffset(), length);
+            buffer.writerIndex(length);
+            offset += length;
+            release = false;
+            return buffer;
+        } finally {
+            if (release) {
+                buffer.release();
+            }
+        }
+    }
+}
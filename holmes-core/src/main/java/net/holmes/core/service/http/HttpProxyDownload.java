@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.base.Objects;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Download of a remote content into the proxy cache.
+ * Clients may read a download while it is running: listeners are notified each time more content is available.
+ * Start listeners are notified once content length is known or download failed, so that clients do not block while remote content is requested.
+ */
+public final class HttpProxyDownload {
+    private final String url;
+    private final CountDownLatch started;
+    private final List<Runnable> listeners;
+    private final List<Runnable> startListeners;
+    private volatile Path file;
+    private volatile long length;
+    private volatile long available;
+    private volatile boolean completed;
+    private volatile boolean failed;
+
+    /**
+     * Instantiates a new pending download.
+     *
+     * @param url  remote content url
+     * @param file file receiving downloaded content
+     */
+    public HttpProxyDownload(final String url, final Path file) {
+        this.url = url;
+        this.file = file;
+        this.started = new CountDownLatch(1);
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.startListeners = new CopyOnWriteArrayList<>();
+        this.length = -1L;
+    }
+
+    /**
+     * Instantiates a new completed download, for a content already in cache.
+     *
+     * @param url    remote content url
+     * @param file   cached file
+     * @param length content length
+     */
+    public HttpProxyDownload(final String url, final Path file, final long length) {
+        this(url, file);
+        this.length = length;
+        this.available = length;
+        this.completed = true;
+        this.started.countDown();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Whether download is started or failed, i.e. whether content length is known if content can be proxied.
+     *
+     * @return true if download is started or failed
+     */
+    public boolean isStarted() {
+        return started.getCount() == 0;
+    }
+
+    /**
+     * Whether content can be served from download: download is started and content length is known.
+     *
+     * @return true if content can be served from download
+     */
+    public boolean hasLength() {
+        return isStarted() && !failed && length >= 0;
+    }
+
+    /**
+     * Wait until content length is known.
+     *
+     * @param timeoutMillis timeout (in milliseconds)
+     * @return true if download is started and content length is known
+     */
+    public boolean awaitLength(final long timeoutMillis) {
+        try {
+            return started.await(timeoutMillis, MILLISECONDS) && hasLength();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Open downloaded file for reading.
+     *
+     * @return random access file
+     * @throws FileNotFoundException
+     */
+    public synchronized RandomAccessFile open() throws FileNotFoundException {
+        return new RandomAccessFile(file.toFile(), "r");
+    }
+
+    /**
+     * Add a listener notified when more content is available, or when download ends.
+     *
+     * @param listener listener
+     */
+    public void addListener(final Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Add a listener notified once, when download is started or failed. Listener is run right away if download is already started.
+     *
+     * @param listener start listener
+     */
+    public void addStartListener(final Runnable listener) {
+        startListeners.add(listener);
+        if (isStarted() && startListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Remove listener.
+     *
+     * @param listener listener
+     */
+    public void removeListener(final Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Download is started, content length is known.
+     *
+     * @param length content length
+     */
+    void start(final long length) {
+        this.length = length;
+        started.countDown();
+        notifyStartListeners();
+    }
+
+    /**
+     * More content is available.
+     *
+     * @param available downloaded length
+     */
+    void progress(final long available) {
+        this.available = available;
+        notifyListeners();
+    }
+
+    /**
+     * Download is completed, downloaded file is moved to its cache location.
+     *
+     * @param cachedFile cached file
+     * @throws IOException
+     */
+    void complete(final Path cachedFile) throws IOException {
+        synchronized (this) {
+            Files.move(file, cachedFile, ATOMIC_MOVE);
+            file = cachedFile;
+        }
+        completed = true;
+        notifyListeners();
+    }
+
+    /**
+     * Download failed.
+     */
+    void fail() {
+        failed = true;
+        started.countDown();
+        notifyStartListeners();
+        notifyListeners();
+    }
+
+    /**
+     * Notify start listeners, each one is notified once.
+     */
+    private void notifyStartListeners() {
+        for (Runnable listener : startListeners) {
+            if (startListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Notify listeners.
+     */
+    private void notifyListeners() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("url", url)
+                .add("file", file)
+                .add("length", length)
+                .add("available", available)
+                .add("completed", completed)
+                .add("failed", failed)
+                .toString();
+    }
+}
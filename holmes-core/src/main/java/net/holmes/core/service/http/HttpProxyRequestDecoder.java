@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.AbstractNode;
+import net.holmes.core.business.media.model.RawUrlNode;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.netty.channel.ChannelFutureListener.CLOSE;
+import static io.netty.handler.codec.http.HttpHeaders.Names.LOCATION;
+import static io.netty.handler.codec.http.HttpHeaders.setContentLength;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static io.netty.handler.codec.http.HttpResponseStatus.FOUND;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.holmes.core.common.Constants.HTTP_CONTENT_ID;
+import static net.holmes.core.common.Constants.HTTP_PROXY_REQUEST_PATH;
+
+/**
+ * Decode proxy requests for remote contents to HttpFileRequest served from proxy cache.
+ * Clients are redirected to remote content when it can not be proxied.
+ * Decoder does not block while remote content is requested: file request is forwarded to pipeline from channel executor once download is started.
+ */
+public final class HttpProxyRequestDecoder extends MessageToMessageDecoder<FullHttpRequest> {
+    private static final long START_TIMEOUT_MILLIS = 10000L;
+    private final MediaManager mediaManager;
+    private final HttpProxyCache proxyCache;
+
+    /**
+     * Instantiates a new HTTP proxy request decoder.
+     *
+     * @param mediaManager media manager
+     * @param proxyCache   proxy cache
+     */
+    @Inject
+    public HttpProxyRequestDecoder(final MediaManager mediaManager, final HttpProxyCache proxyCache) {
+        this.mediaManager = mediaManager;
+        this.proxyCache = proxyCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void decode(ChannelHandlerContext context, FullHttpRequest request, List<Object> out) {
+        if (proxyCache.isEnabled() && (request.getMethod().equals(GET) || request.getMethod().equals(HEAD))) {
+            QueryStringDecoder decoder = new QueryStringDecoder(request.getUri());
+            if (decoder.path().startsWith(HTTP_PROXY_REQUEST_PATH.toString()) && decoder.parameters().get(HTTP_CONTENT_ID.toString()) != null) {
+                // Only remote contents known by media model are proxied
+                AbstractNode node = mediaManager.getNode(decoder.parameters().get(HTTP_CONTENT_ID.toString()).get(0));
+                if (node instanceof RawUrlNode) {
+                    RawUrlNode rawUrlNode = (RawUrlNode) node;
+                    HttpProxyDownload download = proxyCache.getDownload(rawUrlNode.getUrl());
+                    if (download == null || download.isStarted() && !download.hasLength()) {
+                        sendRedirect(context, rawUrlNode.getUrl());
+                    } else if (download.isStarted()) {
+                        out.add(newFileRequest(request, download, rawUrlNode));
+                    } else {
+                        awaitStart(context, request, download, rawUrlNode);
+                    }
+                    return;
+                }
+            }
+        }
+
+        // Forward request to pipeline
+        request.retain();
+        out.add(request);
+    }
+
+    /**
+     * Wait for download start without blocking channel executor, then forward file request to pipeline or redirect client.
+     * Channel does not read further requests meanwhile, so that responses are sent in order.
+     *
+     * @param context    channel context
+     * @param request    HTTP request
+     * @param download   pending download
+     * @param rawUrlNode remote content node
+     */
+    private void awaitStart(final ChannelHandlerContext context, final FullHttpRequest request, final HttpProxyDownload download, final RawUrlNode rawUrlNode) {
+        final AtomicBoolean handled = new AtomicBoolean(false);
+        context.channel().config().setAutoRead(false);
+        final ScheduledFuture<?> timeout = context.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (handled.compareAndSet(false, true)) {
+                    // Remote content is too slow to answer
+                    context.channel().config().setAutoRead(true);
+                    sendRedirect(context, rawUrlNode.getUrl());
+                }
+            }
+        }, START_TIMEOUT_MILLIS, MILLISECONDS);
+        download.addStartListener(new Runnable() {
+            @Override
+            public void run() {
+                // Download thread notifies listener, request is handled on channel executor
+                context.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (handled.compareAndSet(false, true)) {
+                            timeout.cancel(false);
+                            context.channel().config().setAutoRead(true);
+                            if (download.hasLength()) {
+                                context.fireChannelRead(newFileRequest(request, download, rawUrlNode));
+                            } else {
+                                sendRedirect(context, rawUrlNode.getUrl());
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Build file request served from a started download.
+     *
+     * @param request    HTTP request
+     * @param download   started download
+     * @param rawUrlNode remote content node
+     * @return file request
+     */
+    private HttpFileRequest newFileRequest(final FullHttpRequest request, final HttpProxyDownload download, final RawUrlNode rawUrlNode) {
+        if (download.isCompleted()) {
+            return new HttpFileRequest(request, new ResolvedContent(download.getFile().toFile(), rawUrlNode.getMimeType(), download.getLength(),
+                    download.getFile().toFile().lastModified(), System.currentTimeMillis()));
+        }
+        return new HttpFileRequest(request, download, rawUrlNode.getMimeType());
+    }
+
+    /**
+     * Redirect client to remote content.
+     *
+     * @param context channel context
+     * @param url     remote content url
+     */
+    private void sendRedirect(final ChannelHandlerContext context, final String url) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, FOUND, Unpooled.EMPTY_BUFFER);
+        response.headers().set(LOCATION, url);
+        setContentLength(response, 0);
+        context.channel().writeAndFlush(response).addListener(CLOSE);
+    }
+}
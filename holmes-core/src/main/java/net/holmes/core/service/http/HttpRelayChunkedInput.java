@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.util.Arrays;
+
+/**
+ * Chunked input reading a stream relay for one subscriber.
+ * When subscriber requested ICY metadata, current relay metadata are inserted in the stream every {@link #ICY_METADATA_INTERVAL} bytes.
+ * When no relayed content is available, no chunk is returned and transfer is resumed by the relay subscriber.
+ */
+final class HttpRelayChunkedInput implements ChunkedInput<ByteBuf> {
+    static final int ICY_METADATA_INTERVAL = 16000;
+    private static final int ICY_METADATA_UNIT = 16;
+
+    private final HttpStreamRelay relay;
+    private final Runnable subscriber;
+    private final boolean icyMetadata;
+    private final byte[] buffer;
+    private long position;
+    private int bytesToMetadata;
+    private byte[] sentMetadata;
+
+    /**
+     * Instantiates a new HTTP relay chunked input.
+     *
+     * @param relay       stream relay
+     * @param subscriber  relay subscriber, removed from relay when input is closed
+     * @param icyMetadata whether ICY metadata are inserted in stream
+     * @param chunkSize   chunk size
+     */
+    HttpRelayChunkedInput(final HttpStreamRelay relay, final Runnable subscriber, final boolean icyMetadata, final int chunkSize) {
+        this.relay = relay;
+        this.subscriber = subscriber;
+        this.icyMetadata = icyMetadata;
+        this.buffer = new byte[chunkSize];
+        this.position = relay.getJoinPosition();
+        this.bytesToMetadata = ICY_METADATA_INTERVAL;
+        this.sentMetadata = new byte[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEndOfInput() {
+        return relay.isStopped() && position >= relay.getPosition();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        relay.unsubscribe(subscriber);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuf readChunk(final ChannelHandlerContext context) {
+        int length = icyMetadata ? Math.min(buffer.length, bytesToMetadata) : buffer.length;
+        int read = relay.read(position, buffer, 0, length);
+        if (read == -1) {
+            // Subscriber is too slow and content was overwritten, skip to join position
+            position = relay.getJoinPosition();
+            read = relay.read(position, buffer, 0, length);
+        }
+        if (read <= 0) {
+            // Wait for more relayed content
+            return null;
+        }
+        position += read;
+
+        if (!icyMetadata) {
+            return context.alloc().heapBuffer(read).writeBytes(buffer, 0, read);
+        }
+        bytesToMetadata -= read;
+        if (bytesToMetadata > 0) {
+            return context.alloc().heapBuffer(read).writeBytes(buffer, 0, read);
+        }
+
+        // Insert metadata block, an empty block is sent when metadata did not change
+        bytesToMetadata = ICY_METADATA_INTERVAL;
+        byte[] metadata = relay.getMetadata();
+        if (Arrays.equals(metadata, sentMetadata)) {
+            metadata = new byte[0];
+        } else {
+            sentMetadata = metadata;
+        }
+        return context.alloc().heapBuffer(read + 1 + metadata.length)
+                .writeBytes(buffer, 0, read)
+                .writeByte(metadata.length / ICY_METADATA_UNIT)
+                .writeBytes(metadata);
+    }
+}
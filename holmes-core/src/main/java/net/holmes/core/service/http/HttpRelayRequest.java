@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.handler.codec.http.FullHttpRequest;
+import net.holmes.core.common.MimeType;
+
+/**
+ * Http relay request: request for a remote live stream served through stream relay.
+ */
+public final class HttpRelayRequest {
+    private final FullHttpRequest httpRequest;
+    private final String url;
+    private final MimeType mimeType;
+
+    /**
+     * Instantiates a new HttpRelayRequest.
+     *
+     * @param httpRequest HTTP request
+     * @param url         remote stream url
+     * @param mimeType    mime type
+     */
+    public HttpRelayRequest(final FullHttpRequest httpRequest, final String url, final MimeType mimeType) {
+        this.httpRequest = httpRequest;
+        this.url = url;
+        this.mimeType = mimeType;
+    }
+
+    public FullHttpRequest getHttpRequest() {
+        return httpRequest;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public MimeType getMimeType() {
+        return mimeType;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.AbstractNode;
+import net.holmes.core.business.media.model.RawUrlNode;
+
+import javax.inject.Inject;
+import java.util.List;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_ICECAST_ENTRY;
+import static net.holmes.core.common.Constants.HTTP_CONTENT_ID;
+import static net.holmes.core.common.Constants.HTTP_RELAY_REQUEST_PATH;
+
+/**
+ * Decode relay requests for remote live streams to HttpRelayRequest.
+ */
+public final class HttpRelayRequestDecoder extends MessageToMessageDecoder<FullHttpRequest> {
+    private final MediaManager mediaManager;
+    private final HttpStreamRelayManager relayManager;
+
+    /**
+     * Instantiates a new HTTP relay request decoder.
+     *
+     * @param mediaManager media manager
+     * @param relayManager stream relay manager
+     */
+    @Inject
+    public HttpRelayRequestDecoder(final MediaManager mediaManager, final HttpStreamRelayManager relayManager) {
+        this.mediaManager = mediaManager;
+        this.relayManager = relayManager;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void decode(ChannelHandlerContext context, FullHttpRequest request, List<Object> out) {
+        if (relayManager.isEnabled() && (request.getMethod().equals(GET) || request.getMethod().equals(HEAD))) {
+            QueryStringDecoder decoder = new QueryStringDecoder(request.getUri());
+            if (decoder.path().startsWith(HTTP_RELAY_REQUEST_PATH.toString()) && decoder.parameters().get(HTTP_CONTENT_ID.toString()) != null) {
+                // Only live streams known by media model are relayed, finite remote contents are served by proxy
+                AbstractNode node = mediaManager.getNode(decoder.parameters().get(HTTP_CONTENT_ID.toString()).get(0));
+                if (node instanceof RawUrlNode && node.getType() == TYPE_ICECAST_ENTRY) {
+                    RawUrlNode rawUrlNode = (RawUrlNode) node;
+                    out.add(new HttpRelayRequest(request, rawUrlNode.getUrl(), rawUrlNode.getMimeType()));
+                    return;
+                }
+            }
+        }
+
+        // Forward request to pipeline
+        request.retain();
+        out.add(request);
+    }
+}
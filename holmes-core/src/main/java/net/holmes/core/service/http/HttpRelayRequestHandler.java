@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import net.holmes.core.common.MimeType;
+
+import javax.inject.Inject;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.netty.channel.ChannelFutureListener.CLOSE;
+import static io.netty.handler.codec.http.HttpHeaders.Names.*;
+import static io.netty.handler.codec.http.HttpHeaders.setContentLength;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static io.netty.handler.codec.http.HttpResponseStatus.FOUND;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static io.netty.handler.codec.http.LastHttpContent.EMPTY_LAST_CONTENT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.holmes.core.common.Constants.HOLMES_HTTP_SERVER_NAME;
+import static net.holmes.core.common.DlnaUtils.*;
+import static net.holmes.core.service.http.HttpRelayChunkedInput.ICY_METADATA_INTERVAL;
+
+/**
+ * Http relay request handler: remote live stream is served from its stream relay until client disconnects.
+ * Clients are redirected to remote stream when it can not be relayed. HEAD requests are answered without connecting to remote stream.
+ */
+public final class HttpRelayRequestHandler extends SimpleChannelInboundHandler<HttpRelayRequest> {
+    private static final String HEADER_ICY_METADATA = "Icy-MetaData";
+    private static final String HEADER_ICY_METAINT = "icy-metaint";
+    private static final String HEADER_ICY_NAME = "icy-name";
+    private static final int CHUNK_SIZE = 8192;
+    private static final long START_TIMEOUT_MILLIS = 10000L;
+    private final HttpStreamRelayManager relayManager;
+
+    /**
+     * Instantiates a new HTTP relay request handler.
+     *
+     * @param relayManager stream relay manager
+     */
+    @Inject
+    public HttpRelayRequestHandler(final HttpStreamRelayManager relayManager) {
+        this.relayManager = relayManager;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void channelRead0(final ChannelHandlerContext context, final HttpRelayRequest request) {
+        final boolean icyMetadata = "1".equals(request.getHttpRequest().headers().get(HEADER_ICY_METADATA));
+        if (HEAD.equals(request.getHttpRequest().getMethod())) {
+            // Answer HEAD requests from media model, without connecting to remote stream
+            context.write(buildHttpResponse(request, null, null, icyMetadata));
+            context.writeAndFlush(EMPTY_LAST_CONTENT).addListener(CLOSE);
+            return;
+        }
+
+        // Subscribe to stream relay, transfer is resumed each time more content is relayed
+        final ChunkedWriteHandler chunkedWriter = context.pipeline().get(ChunkedWriteHandler.class);
+        final Runnable subscriber = new Runnable() {
+            @Override
+            public void run() {
+                chunkedWriter.resumeTransfer();
+            }
+        };
+        final HttpStreamRelay relay = relayManager.subscribe(request.getUrl(), subscriber);
+        if (relay == null) {
+            sendRedirect(context, request.getUrl());
+        } else if (relay.isStarted()) {
+            sendRelay(context, request, relay, subscriber, icyMetadata);
+        } else {
+            awaitStart(context, request, relay, subscriber, icyMetadata);
+        }
+    }
+
+    /**
+     * Wait for relay start without blocking channel executor, then serve relayed content or redirect client.
+     *
+     * @param context     channel context
+     * @param request     relay request
+     * @param relay       starting stream relay
+     * @param subscriber  relay subscriber
+     * @param icyMetadata whether client requested ICY metadata
+     */
+    private void awaitStart(final ChannelHandlerContext context, final HttpRelayRequest request, final HttpStreamRelay relay,
+                            final Runnable subscriber, final boolean icyMetadata) {
+        final AtomicBoolean handled = new AtomicBoolean(false);
+        final ScheduledFuture<?> timeout = context.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (handled.compareAndSet(false, true)) {
+                    // Remote stream is too slow to answer
+                    relay.unsubscribe(subscriber);
+                    sendRedirect(context, request.getUrl());
+                }
+            }
+        }, START_TIMEOUT_MILLIS, MILLISECONDS);
+        relay.addStartListener(new Runnable() {
+            @Override
+            public void run() {
+                // Relay thread notifies listener, response is sent on channel executor
+                context.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (handled.compareAndSet(false, true)) {
+                            timeout.cancel(false);
+                            sendRelay(context, request, relay, subscriber, icyMetadata);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Serve relayed content from a started relay, or redirect client if relay is already stopped.
+     *
+     * @param context     channel context
+     * @param request     relay request
+     * @param relay       stream relay
+     * @param subscriber  relay subscriber
+     * @param icyMetadata whether client requested ICY metadata
+     */
+    private void sendRelay(final ChannelHandlerContext context, final HttpRelayRequest request, final HttpStreamRelay relay,
+                           final Runnable subscriber, final boolean icyMetadata) {
+        if (relay.isStopped()) {
+            relay.unsubscribe(subscriber);
+            sendRedirect(context, request.getUrl());
+            return;
+        }
+
+        // Write the response, live streams have no content length
+        context.write(buildHttpResponse(request, relay.getContentType(), relay.getName(), icyMetadata));
+
+        // Write relayed content and the end marker, connection is closed when relay stops
+        context.write(new HttpRelayChunkedInput(relay, subscriber, icyMetadata, CHUNK_SIZE));
+        context.writeAndFlush(EMPTY_LAST_CONTENT).addListener(CLOSE);
+    }
+
+    /**
+     * Build HTTP response.
+     *
+     * @param request     relay request
+     * @param contentType remote stream content type, or null if unknown
+     * @param name        remote stream name, or null if unknown
+     * @param icyMetadata whether client requested ICY metadata
+     * @return HTTP response
+     */
+    private HttpResponse buildHttpResponse(final HttpRelayRequest request, final String contentType, final String name, final boolean icyMetadata) {
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+        MimeType mimeType = request.getMimeType();
+        response.headers().set(CONTENT_TYPE, contentType != null ? contentType : mimeType.getMimeType());
+        response.headers().set(CONNECTION, HttpHeaders.Values.CLOSE);
+        response.headers().set(SERVER, HOLMES_HTTP_SERVER_NAME.toString());
+
+        // Add DLNA headers
+        if (mimeType.isMedia()) {
+            response.headers().set(HEADER_TRANSFER_MODE, getTransferMode(mimeType, request.getHttpRequest().headers().get(HEADER_TRANSFER_MODE)));
+            response.headers().set(HEADER_CONTENT_FEATURES, getContentFeatures(mimeType, false));
+        }
+
+        // Add ICY headers
+        if (icyMetadata) {
+            response.headers().set(HEADER_ICY_METAINT, ICY_METADATA_INTERVAL);
+        }
+        if (name != null) {
+            response.headers().set(HEADER_ICY_NAME, name);
+        }
+        return response;
+    }
+
+    /**
+     * Redirect client to remote stream.
+     *
+     * @param context channel context
+     * @param url     remote stream url
+     */
+    private void sendRedirect(final ChannelHandlerContext context, final String url) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, FOUND, Unpooled.EMPTY_BUFFER);
+        response.headers().set(LOCATION, url);
+        setContentLength(response, 0);
+        context.channel().writeAndFlush(response).addListener(CLOSE);
+    }
+}
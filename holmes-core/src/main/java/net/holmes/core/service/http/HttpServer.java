@@ -17,6 +17,8 @@
 
 package net.holmes.core.service.http;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Injector;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelInitializer;
@@ -29,6 +31,10 @@ import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.service.Service;
 import org.jboss.resteasy.core.SynchronousDispatcher;
@@ -42,10 +48,13 @@ import org.slf4j.Logger;
 
 import javax.inject.Inject;
 import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.Map;
 
 import static io.netty.buffer.UnpooledByteBufAllocator.DEFAULT;
 import static io.netty.channel.ChannelOption.*;
-import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PORT;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.*;
 import static org.jboss.resteasy.plugins.server.netty.RestEasyHttpRequestDecoder.Protocol.HTTP;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -60,12 +69,15 @@ public final class HttpServer implements Service {
     private static final int MAX_CHUNK_SIZE = 8192;
     private static final int BACKLOG = 128;
     private static final String RESTEASY_MAPPING_PREFIX = "/";
+    private static final long PENDING_TASKS_LOG_PERIOD_SECONDS = 60;
 
     private final Injector injector;
     private final ConfigurationDao configurationDao;
     private final EventLoopGroup bossGroup;
-    private final EventLoopGroup workerGroup;
     private final ResteasyDeployment deployment;
+    private EventLoopGroup workerGroup;
+    private EventExecutorGroup streamingGroup;
+    private EventExecutorGroup backendGroup;
 
     /**
      * Instantiates a new http server.
@@ -77,8 +89,7 @@ public final class HttpServer implements Service {
     public HttpServer(final Injector injector, final ConfigurationDao configurationDao) {
         this.injector = injector;
         this.configurationDao = configurationDao;
-        this.bossGroup = new NioEventLoopGroup();
-        this.workerGroup = new NioEventLoopGroup();
+        this.bossGroup = new NioEventLoopGroup(1);
         this.deployment = new ResteasyDeployment();
     }
 
@@ -89,6 +100,11 @@ public final class HttpServer implements Service {
     public void start() {
         LOGGER.info("Starting HTTP server");
 
+        // Create event executors: I/O loops, file streaming executors and backend executors
+        workerGroup = new NioEventLoopGroup(configurationDao.getParameter(HTTP_SERVER_WORKER_THREADS));
+        streamingGroup = new DefaultEventExecutorGroup(configurationDao.getParameter(HTTP_SERVER_STREAMING_THREADS));
+        backendGroup = new DefaultEventExecutorGroup(configurationDao.getParameter(HTTP_SERVER_BACKEND_THREADS));
+
         // Start RestEasy deployment
         deployment.start();
 
@@ -103,20 +119,23 @@ public final class HttpServer implements Service {
                     @Override
                     protected void initChannel(final SocketChannel channel) {
                         ChannelPipeline pipeline = channel.pipeline();
-                        // Add default handlers
+                        // Add default handlers (run on I/O loop)
                         pipeline.addLast("decoder", new HttpRequestDecoder(MAX_INITIAL_LINE_LENGTH, MAX_HEADER_SIZE, MAX_CHUNK_SIZE, false))
                                 .addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH))
-                                .addLast("encoder", new HttpResponseEncoder())
-                                .addLast("chunkedWriter", new ChunkedWriteHandler());
-
-                        // Add HTTP file request handlers
-                        pipeline.addLast("httpFileRequestDecoder", injector.getInstance(HttpFileRequestDecoder.class))
-                                .addLast("httpFileRequestHandler", injector.getInstance(HttpFileRequestHandler.class));
-
-                        // Add RestEasy handlers
-                        pipeline.addLast("restEasyHttpRequestDecoder", new RestEasyHttpRequestDecoder(dispatcher.getDispatcher(), RESTEASY_MAPPING_PREFIX, HTTP))
-                                .addLast("restEasyHttpResponseEncoder", new RestEasyHttpResponseEncoder(dispatcher))
-                                .addLast("restEasyRequestHandler", new RequestHandler(dispatcher));
+                                .addLast("encoder", new HttpResponseEncoder());
+
+                        // Add HTTP file request handlers (run on streaming executors)
+                        pipeline.addLast(streamingGroup, "chunkedWriter", new ChunkedWriteHandler())
+                                .addLast(streamingGroup, "httpProxyRequestDecoder", injector.getInstance(HttpProxyRequestDecoder.class))
+                                .addLast(streamingGroup, "httpRelayRequestDecoder", injector.getInstance(HttpRelayRequestDecoder.class))
+                                .addLast(streamingGroup, "httpFileRequestDecoder", injector.getInstance(HttpFileRequestDecoder.class))
+                                .addLast(streamingGroup, "httpFileRequestHandler", injector.getInstance(HttpFileRequestHandler.class))
+                                .addLast(streamingGroup, "httpRelayRequestHandler", injector.getInstance(HttpRelayRequestHandler.class));
+
+                        // Add RestEasy handlers (run on backend executors)
+                        pipeline.addLast(backendGroup, "restEasyHttpRequestDecoder", new RestEasyHttpRequestDecoder(dispatcher.getDispatcher(), RESTEASY_MAPPING_PREFIX, HTTP))
+                                .addLast(backendGroup, "restEasyHttpResponseEncoder", new RestEasyHttpResponseEncoder(dispatcher))
+                                .addLast(backendGroup, "restEasyRequestHandler", new RequestHandler(dispatcher));
                     }
                 })
                 .option(SO_BACKLOG, BACKLOG)
@@ -132,6 +151,19 @@ public final class HttpServer implements Service {
         bootstrap.bind(bindAddress).syncUninterruptibly();
 
         LOGGER.info("HTTP server bound on {}", bindAddress);
+
+        // Periodically log executor queues, so that a saturated executor group can be spotted while server is running
+        if (LOGGER.isDebugEnabled()) {
+            bossGroup.scheduleAtFixedRate(new Runnable() {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run() {
+                    LOGGER.debug("HTTP server pending tasks: {}", getPendingTasks());
+                }
+            }, PENDING_TASKS_LOG_PERIOD_SECONDS, PENDING_TASKS_LOG_PERIOD_SECONDS, SECONDS);
+        }
     }
 
     /**
@@ -144,11 +176,49 @@ public final class HttpServer implements Service {
 
         // Stop Netty event executors
         bossGroup.shutdownGracefully();
-        workerGroup.shutdownGracefully();
+        if (workerGroup != null) {
+            LOGGER.debug("HTTP server pending tasks: {}", getPendingTasks());
+            workerGroup.shutdownGracefully();
+            streamingGroup.shutdownGracefully();
+            backendGroup.shutdownGracefully();
+        }
 
         // Stop resteasy
         deployment.stop();
 
         LOGGER.info("HTTP server stopped");
     }
+
+    /**
+     * Get number of tasks waiting in each HTTP server executor queue.
+     *
+     * @return pending tasks, by executor group (worker, streaming, backend)
+     */
+    @VisibleForTesting
+    Map<String, Integer> getPendingTasks() {
+        if (workerGroup == null) {
+            return ImmutableMap.of();
+        }
+        return ImmutableMap.of("worker", getPendingTasks(workerGroup),
+                "streaming", getPendingTasks(streamingGroup),
+                "backend", getPendingTasks(backendGroup));
+    }
+
+    /**
+     * Get number of tasks waiting in executor group queues.
+     *
+     * @param group executor group
+     * @return pending tasks
+     */
+    private static int getPendingTasks(final EventExecutorGroup group) {
+        int pendingTasks = 0;
+        Iterator<EventExecutor> iterator = group.iterator();
+        while (iterator.hasNext()) {
+            EventExecutor executor = iterator.next();
+            if (executor instanceof SingleThreadEventExecutor) {
+                pendingTasks += ((SingleThreadEventExecutor) executor).pendingTasks();
+            }
+        }
+        return pendingTasks;
+    }
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.base.Objects;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Relay of a remote live stream: a single upstream connection feeds a ring buffer shared by all local subscribers.
+ * Upstream ICY metadata are removed from the byte stream and kept as the current metadata block,
+ * subscribers joining the relay start a little behind the live position so that renderers can fill their buffer at once.
+ * Start listeners are notified once upstream connection is established or relay stopped, so that clients do not block meanwhile.
+ */
+public final class HttpStreamRelay {
+    private static final Logger LOGGER = getLogger(HttpStreamRelay.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int LATE_JOIN_RATIO = 4;
+
+    private final String url;
+    private final byte[] ring;
+    private final List<Runnable> subscribers;
+    private final List<Runnable> startListeners;
+    private final CountDownLatch started;
+    private volatile URLConnection connection;
+    private volatile String contentType;
+    private volatile String name;
+    private volatile byte[] metadata;
+    private volatile boolean stopped;
+    private long written;
+
+    /**
+     * Instantiates a new HTTP stream relay.
+     *
+     * @param url        remote stream url
+     * @param bufferSize ring buffer size
+     */
+    public HttpStreamRelay(final String url, final int bufferSize) {
+        this.url = url;
+        this.ring = new byte[bufferSize];
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.startListeners = new CopyOnWriteArrayList<>();
+        this.started = new CountDownLatch(1);
+        this.metadata = new byte[0];
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Get upstream content type.
+     *
+     * @return content type or null if unknown
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Get upstream stream name (icy-name header).
+     *
+     * @return stream name or null if unknown
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get current ICY metadata block content, without its length byte.
+     *
+     * @return metadata block content, padded to a multiple of 16 bytes
+     */
+    public byte[] getMetadata() {
+        return metadata;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Get number of subscribers.
+     *
+     * @return number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Add a subscriber, notified each time more content is relayed or when relay stops.
+     *
+     * @param subscriber subscriber
+     * @return true if subscriber is added, false if relay is already stopped
+     */
+    public synchronized boolean subscribe(final Runnable subscriber) {
+        if (stopped) {
+            return false;
+        }
+        subscribers.add(subscriber);
+        return true;
+    }
+
+    /**
+     * Remove a subscriber. Relay is stopped when its last subscriber leaves.
+     *
+     * @param subscriber subscriber
+     */
+    public void unsubscribe(final Runnable subscriber) {
+        synchronized (this) {
+            subscribers.remove(subscriber);
+            if (!subscribers.isEmpty()) {
+                return;
+            }
+            stopped = true;
+        }
+        // Unblock upstream read
+        URLConnection upstream = connection;
+        if (upstream instanceof HttpURLConnection) {
+            ((HttpURLConnection) upstream).disconnect();
+        }
+        markStarted();
+    }
+
+    /**
+     * Whether relay is started or stopped, i.e. whether upstream connection attempt is over.
+     *
+     * @return true if relay is started or stopped
+     */
+    public boolean isStarted() {
+        return started.getCount() == 0;
+    }
+
+    /**
+     * Add a listener notified once, when relay is started or stopped. Listener is run right away if relay is already started.
+     *
+     * @param listener start listener
+     */
+    public void addStartListener(final Runnable listener) {
+        startListeners.add(listener);
+        if (isStarted() && startListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Wait until upstream connection is established.
+     *
+     * @param timeoutMillis timeout (in milliseconds)
+     * @return true if relay is started
+     */
+    public boolean awaitStart(final long timeoutMillis) {
+        try {
+            return started.await(timeoutMillis, MILLISECONDS) && !stopped;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Get relay position where a new subscriber starts reading: late join buffer is replayed to new subscribers.
+     *
+     * @return join position
+     */
+    public synchronized long getJoinPosition() {
+        return Math.max(0L, written - ring.length / LATE_JOIN_RATIO);
+    }
+
+    /**
+     * Get relay position of last relayed byte.
+     *
+     * @return relayed byte count
+     */
+    public synchronized long getPosition() {
+        return written;
+    }
+
+    /**
+     * Read relayed content from ring buffer.
+     *
+     * @param position relay position to read from
+     * @param buffer   target buffer
+     * @param offset   target buffer offset
+     * @param length   max length to read
+     * @return number of bytes read, 0 if no content is available yet,
+     * -1 if content at position was already overwritten because subscriber is too slow
+     */
+    public synchronized int read(final long position, final byte[] buffer, final int offset, final int length) {
+        if (position < written - ring.length) {
+            return -1;
+        }
+        int count = (int) Math.min(length, written - position);
+        int ringOffset = (int) (position % ring.length);
+        int firstPart = Math.min(count, ring.length - ringOffset);
+        System.arraycopy(ring, ringOffset, buffer, offset, firstPart);
+        System.arraycopy(ring, 0, buffer, offset + firstPart, count - firstPart);
+        return count;
+    }
+
+    /**
+     * Relay upstream stream until relay is stopped or upstream stream ends.
+     */
+    void relay() {
+        try {
+            URLConnection upstream = new URL(url).openConnection();
+            upstream.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            upstream.setReadTimeout(READ_TIMEOUT_MILLIS);
+            upstream.setRequestProperty("Icy-MetaData", "1");
+            connection = upstream;
+            if (stopped) {
+                return;
+            }
+            if (upstream instanceof HttpURLConnection && ((HttpURLConnection) upstream).getResponseCode() != HttpURLConnection.HTTP_OK) {
+                LOGGER.warn("Failed to relay {}: HTTP {}", url, ((HttpURLConnection) upstream).getResponseCode());
+                return;
+            }
+            contentType = upstream.getContentType();
+            name = upstream.getHeaderField("icy-name");
+            int metadataInterval = upstream.getHeaderFieldInt("icy-metaint", 0);
+
+            try (InputStream in = upstream.getInputStream()) {
+                markStarted();
+                LOGGER.debug("Relay {} started", url);
+                byte[] buffer = new byte[READ_BUFFER_SIZE];
+                int bytesToMetadata = metadataInterval;
+                while (!stopped) {
+                    int read = in.read(buffer, 0, metadataInterval > 0 ? Math.min(buffer.length, bytesToMetadata) : buffer.length);
+                    if (read == -1) {
+                        break;
+                    }
+                    write(buffer, read);
+                    if (metadataInterval > 0) {
+                        bytesToMetadata -= read;
+                        if (bytesToMetadata == 0) {
+                            readMetadata(in);
+                            bytesToMetadata = metadataInterval;
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!stopped) {
+                LOGGER.warn("Failed to relay {}: {}", url, e.getMessage());
+            }
+        } finally {
+            stopped = true;
+            markStarted();
+            notifySubscribers();
+            LOGGER.debug("Relay {} stopped", url);
+        }
+    }
+
+    /**
+     * Read ICY metadata block: a length byte (in 16 bytes units) followed by metadata content.
+     * Empty blocks mean metadata are unchanged.
+     *
+     * @param in upstream input stream
+     * @throws IOException
+     */
+    private void readMetadata(final InputStream in) throws IOException {
+        int length = in.read();
+        if (length == -1) {
+            throw new IOException("Unexpected end of stream");
+        }
+        if (length > 0) {
+            byte[] block = new byte[length * 16];
+            ByteStreams.readFully(in, block);
+            metadata = block;
+        }
+    }
+
+    /**
+     * Write relayed content to ring buffer, then notify subscribers.
+     *
+     * @param buffer content
+     * @param length content length
+     */
+    private void write(final byte[] buffer, final int length) {
+        synchronized (this) {
+            int ringOffset = (int) (written % ring.length);
+            int firstPart = Math.min(length, ring.length - ringOffset);
+            System.arraycopy(buffer, 0, ring, ringOffset, firstPart);
+            System.arraycopy(buffer, firstPart, ring, 0, length - firstPart);
+            written += length;
+        }
+        notifySubscribers();
+    }
+
+    /**
+     * Mark relay as started (or stopped before start), then notify start listeners, each one is notified once.
+     */
+    private void markStarted() {
+        started.countDown();
+        for (Runnable listener : startListeners) {
+            if (startListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Notify subscribers.
+     */
+    private void notifySubscribers() {
+        for (Runnable subscriber : subscribers) {
+            subscriber.run();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("url", url)
+                .add("contentType", contentType)
+                .add("name", name)
+                .add("subscribers", subscribers.size())
+                .add("stopped", stopped)
+                .toString();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.holmes.core.business.configuration.ConfigurationDao;
+
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_BUFFER_KB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_ENABLE;
+
+/**
+ * Manages relays of remote live streams: one relay, thus one upstream connection, per remote stream whatever its number of local listeners.
+ */
+public final class HttpStreamRelayManager {
+    private static final int MIN_BUFFER_SIZE = 65536;
+
+    private final boolean enabled;
+    private final int bufferSize;
+    private final ExecutorService executor;
+    private final Map<String, HttpStreamRelay> relays;
+
+    /**
+     * Instantiates a new HTTP stream relay manager.
+     *
+     * @param configurationDao configuration dao
+     */
+    @Inject
+    public HttpStreamRelayManager(final ConfigurationDao configurationDao) {
+        this.enabled = configurationDao.getParameter(HTTP_SERVER_RELAY_ENABLE);
+        this.bufferSize = Math.max(configurationDao.getParameter(HTTP_SERVER_RELAY_BUFFER_KB) * 1024, MIN_BUFFER_SIZE);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("relay-%d").setDaemon(true).build());
+        this.relays = Maps.newHashMap();
+    }
+
+    /**
+     * Whether stream relay is enabled.
+     *
+     * @return true if stream relay is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Subscribe to a remote stream. Relay is started in background on first subscription:
+     * this method does not wait for upstream connection, see {@link HttpStreamRelay#addStartListener}.
+     *
+     * @param url        remote stream url
+     * @param subscriber subscriber notified when more content is relayed
+     * @return stream relay or null if stream relay is disabled
+     */
+    public HttpStreamRelay subscribe(final String url, final Runnable subscriber) {
+        if (!enabled) {
+            return null;
+        }
+
+        HttpStreamRelay relay;
+        synchronized (relays) {
+            relay = relays.get(url);
+            if (relay == null || !relay.subscribe(subscriber)) {
+                final HttpStreamRelay newRelay = new HttpStreamRelay(url, bufferSize);
+                newRelay.subscribe(subscriber);
+                relays.put(url, newRelay);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            newRelay.relay();
+                        } finally {
+                            synchronized (relays) {
+                                if (relays.get(url) == newRelay) {
+                                    relays.remove(url);
+                                }
+                            }
+                        }
+                    }
+                });
+                relay = newRelay;
+            }
+        }
+        return relay;
+    }
+
+    /**
+     * Get number of running relays.
+     *
+     * @return number of running relays
+     */
+    @VisibleForTesting
+    int getRelayCount() {
+        synchronized (relays) {
+            return relays.size();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.base.Objects;
+import net.holmes.core.common.MimeType;
+
+import java.io.File;
+
+/**
+ * Content resolved from a content id: file, mime type and file system metadata.
+ */
+public final class ResolvedContent {
+    private final File file;
+    private final MimeType mimeType;
+    private final long size;
+    private final long lastModified;
+    private final long checkedAt;
+
+    /**
+     * Instantiates a new resolved content.
+     *
+     * @param file         content file
+     * @param mimeType     content mime type
+     * @param size         file size
+     * @param lastModified file last modification date
+     * @param checkedAt    date of last check of file metadata
+     */
+    public ResolvedContent(final File file, final MimeType mimeType, final long size, final long lastModified, final long checkedAt) {
+        this.file = file;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checkedAt = checkedAt;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public MimeType getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("file", file)
+                .add("mimeType", mimeType)
+                .add("size", size)
+                .add("lastModified", lastModified)
+                .add("checkedAt", checkedAt)
+                .toString();
+    }
+}
@@ -20,6 +20,7 @@ package net.holmes.core.service.scheduled;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
 
 import javax.inject.Inject;
 
@@ -31,17 +32,20 @@ import static net.holmes.core.common.ConfigurationParameter.CACHE_CLEAN_DELAY_MI
  */
 public class CacheCleanerService extends AbstractScheduledService {
     private final MediaManager mediaManager;
+    private final ThumbnailManager thumbnailManager;
     private final int cleanDelayMinutes;
 
     /**
      * Instantiates a new cache cleaner service.
      *
      * @param mediaManager     media manager
+     * @param thumbnailManager thumbnail manager
      * @param configurationDao configuration dao
      */
     @Inject
-    public CacheCleanerService(final MediaManager mediaManager, final ConfigurationDao configurationDao) {
+    public CacheCleanerService(final MediaManager mediaManager, final ThumbnailManager thumbnailManager, final ConfigurationDao configurationDao) {
         this.mediaManager = mediaManager;
+        this.thumbnailManager = thumbnailManager;
         this.cleanDelayMinutes = configurationDao.getParameter(CACHE_CLEAN_DELAY_MINUTES);
     }
 
@@ -51,6 +55,7 @@ public class CacheCleanerService extends AbstractScheduledService {
     @Override
     protected void runOneIteration() {
         mediaManager.cleanUpCache();
+        thumbnailManager.cleanUpCache();
     }
 
     /**
@@ -29,19 +29,25 @@ import javax.inject.Named;
 public class HolmesSchedulerService implements Service {
     private final AbstractScheduledService cacheCleanerService;
     private final AbstractScheduledService icecastDownloadService;
+    private final AbstractScheduledService podcastRefreshService;
     private final AbstractScheduledService releaseCheckService;
 
     /**
      * Instantiates a new holmes scheduler service.
      *
-     * @param cacheCleanerService cache cleaner
+     * @param cacheCleanerService    cache cleaner
+     * @param icecastDownloadService Icecast directory download
+     * @param podcastRefreshService  podcast refresh
+     * @param releaseCheckService    release check
      */
     @Inject
     public HolmesSchedulerService(@Named("cacheCleaner") final AbstractScheduledService cacheCleanerService,
                                   @Named("icecast") final AbstractScheduledService icecastDownloadService,
+                                  @Named("podcast") final AbstractScheduledService podcastRefreshService,
                                   @Named("release") final AbstractScheduledService releaseCheckService) {
         this.cacheCleanerService = cacheCleanerService;
         this.icecastDownloadService = icecastDownloadService;
+        this.podcastRefreshService = podcastRefreshService;
         this.releaseCheckService = releaseCheckService;
     }
 
@@ -52,6 +58,7 @@ public class HolmesSchedulerService implements Service {
     public void start() {
         cacheCleanerService.startAsync();
         icecastDownloadService.startAsync();
+        podcastRefreshService.startAsync();
         releaseCheckService.startAsync();
     }
 
@@ -61,6 +68,7 @@ public class HolmesSchedulerService implements Service {
     @Override
     public void stop() {
         icecastDownloadService.stopAsync();
+        podcastRefreshService.stopAsync();
         cacheCleanerService.stopAsync();
         releaseCheckService.stopAsync();
     }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.scheduled;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.dao.podcast.PodcastDao;
+
+import javax.inject.Inject;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static net.holmes.core.common.ConfigurationParameter.PODCAST_CACHE_EXPIRE_HOURS;
+
+/**
+ * Scheduled service used to refresh podcasts ahead of browse requests.
+ */
+public class PodcastRefreshService extends AbstractScheduledService {
+    private final PodcastDao podcastDao;
+    private final int refreshDelayHours;
+
+    /**
+     * Instantiates a new podcast refresh service.
+     *
+     * @param podcastDao       podcast dao
+     * @param configurationDao configuration dao
+     */
+    @Inject
+    public PodcastRefreshService(final PodcastDao podcastDao, final ConfigurationDao configurationDao) {
+        this.podcastDao = podcastDao;
+        this.refreshDelayHours = configurationDao.getParameter(PODCAST_CACHE_EXPIRE_HOURS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void runOneIteration() {
+        podcastDao.refreshPodcasts();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Scheduler scheduler() {
+        return refreshDelayHours > 0 ? Scheduler.newFixedDelaySchedule(0, refreshDelayHours, HOURS) : null;
+    }
+}
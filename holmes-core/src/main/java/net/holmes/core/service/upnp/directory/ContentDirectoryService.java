@@ -22,7 +22,9 @@ import com.google.common.collect.Lists;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.MediaManager;
 import net.holmes.core.business.media.MediaSearchRequest;
+import net.holmes.core.business.media.metadata.MetadataManager;
 import net.holmes.core.business.media.model.*;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
 import net.holmes.core.business.streaming.StreamingManager;
 import net.holmes.core.business.streaming.device.Device;
 import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
@@ -39,10 +41,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_ICECAST_ENTRY;
 import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_PODCAST_ENTRY;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_ENABLE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_ENABLE;
 import static net.holmes.core.common.ConfigurationParameter.PODCAST_PREPEND_ENTRY_NAME;
 import static net.holmes.core.common.ConfigurationParameter.UPNP_ADD_SUBTITLE;
-import static net.holmes.core.common.MimeType.MIME_TYPE_SUBTITLE;
 import static org.fourthline.cling.model.types.ErrorCode.ACTION_FAILED;
 import static org.fourthline.cling.support.contentdirectory.ContentDirectoryErrorCode.NO_SUCH_OBJECT;
 import static org.fourthline.cling.support.model.BrowseFlag.DIRECT_CHILDREN;
@@ -58,6 +62,10 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
     private MediaManager mediaManager;
     @Inject
     private StreamingManager streamingManager;
+    @Inject
+    private ThumbnailManager thumbnailManager;
+    @Inject
+    private MetadataManager metadataManager;
 
     /**
      * Instantiates a new content directory service.
@@ -126,17 +134,12 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
         // Get available mime types
         List<String> availableMimeTypes = Lists.newArrayList();
         if (remoteClientInfo.getConnection() != null) {
-            for (Device device : streamingManager.findDevices(remoteClientInfo.getRemoteAddress().getHostAddress())) {
+            for (Device device : streamingManager.findDevices(remoteClientInfo.getRemoteAddress())) {
                 if (device instanceof UpnpDevice) {
                     availableMimeTypes.addAll(device.getSupportedMimeTypes());
                 }
             }
         }
-
-        // Add subtitle
-        if (!availableMimeTypes.isEmpty() && configurationDao.getParameter(UPNP_ADD_SUBTITLE)) {
-            availableMimeTypes.add(MIME_TYPE_SUBTITLE.getMimeType());
-        }
         return availableMimeTypes;
     }
 
@@ -153,8 +156,14 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
     private void addNode(final String nodeId, final AbstractNode node, final DirectoryBrowseResult result, final long totalCount, final List<String> availableMimeTypes) throws ContentDirectoryException {
         if (result.acceptNode()) {
             if (node instanceof ContentNode) {
-                // Add item to result
-                result.addItem(nodeId, (ContentNode) node, mediaManager.getNodeUrl(node));
+                // Add item to result, with its thumbnail and metadata when available
+                ContentNode contentNode = (ContentNode) node;
+                String thumbnailUrl = null;
+                if (thumbnailManager.getThumbnail(contentNode) != null) {
+                    thumbnailUrl = mediaManager.getNodeThumbnailUrl(node);
+                }
+                result.addItem(nodeId, contentNode, mediaManager.getNodeUrl(node), thumbnailUrl, metadataManager.getMetadata(contentNode),
+                        getSubtitleUrls(contentNode));
             } else if (node instanceof FolderNode) {
                 // Get child counts
                 Collection<AbstractNode> searchResult = mediaManager.searchChildNodes(new MediaSearchRequest(node, availableMimeTypes));
@@ -167,12 +176,20 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
                 // Add raw URL to result
                 RawUrlNode rawUrlNode = (RawUrlNode) node;
                 String entryName = node.getName();
+                String url = rawUrlNode.getUrl();
                 if (rawUrlNode.getType() == TYPE_PODCAST_ENTRY) {
                     // Format podcast entry name
                     entryName = formatPodcastEntryName(result.getResultCount(), totalCount, node.getName());
+                    // Podcast entries are served through caching proxy, live streams are not
+                    if (configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE)) {
+                        url = mediaManager.getNodeProxyUrl(node);
+                    }
+                } else if (rawUrlNode.getType() == TYPE_ICECAST_ENTRY && configurationDao.getParameter(HTTP_SERVER_RELAY_ENABLE)) {
+                    // Icecast live streams are served through stream relay
+                    url = mediaManager.getNodeRelayUrl(node);
                 }
 
-                result.addUrlItem(nodeId, rawUrlNode, entryName);
+                result.addUrlItem(nodeId, rawUrlNode, entryName, url);
             } else if (node instanceof IcecastGenreNode) {
                 // Add Icecast genre to result
                 result.addContainer(nodeId, node, 1);
@@ -180,6 +197,22 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
         }
     }
 
+    /**
+     * Get urls of subtitles paired with a content node.
+     *
+     * @param contentNode content node
+     * @return subtitle urls
+     */
+    private List<String> getSubtitleUrls(final ContentNode contentNode) {
+        List<String> subtitleUrls = Lists.newArrayList();
+        if (!contentNode.getSubtitles().isEmpty() && configurationDao.getParameter(UPNP_ADD_SUBTITLE)) {
+            for (ContentNode subtitle : contentNode.getSubtitles()) {
+                subtitleUrls.add(mediaManager.getNodeUrl(subtitle));
+            }
+        }
+        return subtitleUrls;
+    }
+
     /**
      * Format post-cast entry name.
      * If prepend_podcast_entry_name configuration parameter is set to true,
@@ -216,4 +249,14 @@ public final class ContentDirectoryService extends AbstractContentDirectoryServi
     void setStreamingManager(StreamingManager streamingManager) {
         this.streamingManager = streamingManager;
     }
+
+    @VisibleForTesting
+    void setThumbnailManager(ThumbnailManager thumbnailManager) {
+        this.thumbnailManager = thumbnailManager;
+    }
+
+    @VisibleForTesting
+    void setMetadataManager(MetadataManager metadataManager) {
+        this.metadataManager = metadataManager;
+    }
 }
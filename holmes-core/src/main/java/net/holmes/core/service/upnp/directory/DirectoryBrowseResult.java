@@ -17,6 +17,8 @@
 
 package net.holmes.core.service.upnp.directory;
 
+import com.google.common.collect.Lists;
+import net.holmes.core.business.media.metadata.MediaMetadata;
 import net.holmes.core.business.media.model.AbstractNode;
 import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.media.model.RawUrlNode;
@@ -24,10 +26,14 @@ import net.holmes.core.common.MimeType;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
 import org.fourthline.cling.support.contentdirectory.DIDLParser;
 import org.fourthline.cling.support.model.BrowseResult;
+import org.fourthline.cling.support.model.DIDLAttribute;
 import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.DIDLObject;
 import org.fourthline.cling.support.model.DIDLObject.Property.DC;
+import org.fourthline.cling.support.model.DIDLObject.Property.DLNA;
+import org.fourthline.cling.support.model.DIDLObject.Property.SEC;
 import org.fourthline.cling.support.model.DIDLObject.Property.UPNP;
+import org.fourthline.cling.support.model.ProtocolInfo;
 import org.fourthline.cling.support.model.Res;
 import org.fourthline.cling.support.model.container.Container;
 import org.fourthline.cling.support.model.item.*;
@@ -35,7 +41,10 @@ import org.fourthline.cling.support.model.item.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.List;
 
+import static net.holmes.core.common.DlnaUtils.formatNptTime;
 import static net.holmes.core.common.MimeType.MIME_TYPE_OGG;
 import static net.holmes.core.common.MimeType.MIME_TYPE_SUBTITLE;
 import static net.holmes.core.common.UpnpUtils.getUpnpMimeType;
@@ -47,6 +56,12 @@ import static org.fourthline.cling.support.contentdirectory.ContentDirectoryErro
 final class DirectoryBrowseResult {
     private static final String UPNP_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
     private static final DIDLObject.Class CONTAINER_CLASS = new DIDLObject.Class("object.container");
+    private static final String THUMBNAIL_PROTOCOL_INFO = "http-get:*:image/jpeg:DLNA.ORG_PN=JPEG_TN";
+    private static final List<DIDLObject.Property<DIDLAttribute>> THUMBNAIL_ALBUM_ART_ATTRIBUTES = Collections.<DIDLObject.Property<DIDLAttribute>>singletonList(
+            new DLNA.PROFILE_ID(new DIDLAttribute(DLNA.NAMESPACE.URI, "dlna", "JPEG_TN")));
+    private static final String SUBTITLE_PROTOCOL_INFO = "http-get:*:text/srt:*";
+    private static final List<DIDLObject.Property<DIDLAttribute>> SUBTITLE_CAPTION_ATTRIBUTES = Collections.<DIDLObject.Property<DIDLAttribute>>singletonList(
+            new SEC.TYPE(new DIDLAttribute(SEC.NAMESPACE.URI, "sec", "srt")));
 
     private final DIDLContent didl;
     private final long firstResult;
@@ -118,8 +133,73 @@ final class DirectoryBrowseResult {
      * @throws ContentDirectoryException
      */
     public void addItem(final String parentNodeId, final ContentNode contentNode, final String url) throws ContentDirectoryException {
+        addItem(parentNodeId, contentNode, url, null, null, Collections.<String>emptyList());
+    }
+
+    /**
+     * Add item with thumbnail, media metadata and subtitles to result.
+     * Thumbnail is added as a DLNA JPEG_TN resource and as album art.
+     * Subtitles are added as resources and as sec:CaptionInfoEx properties.
+     *
+     * @param parentNodeId parent node id
+     * @param contentNode  content node
+     * @param url          content url
+     * @param thumbnailUrl thumbnail url (may be null)
+     * @param metadata     media metadata (may be null)
+     * @param subtitleUrls subtitle urls
+     * @throws ContentDirectoryException
+     */
+    public void addItem(final String parentNodeId, final ContentNode contentNode, final String url, final String thumbnailUrl,
+                        final MediaMetadata metadata, final List<String> subtitleUrls) throws ContentDirectoryException {
+        List<Res> resources = Lists.newArrayList();
         Res res = new Res(getUpnpMimeType(contentNode.getMimeType()), contentNode.getSize(), url);
-        addDidlItem(parentNodeId, contentNode, contentNode.getName(), contentNode.getMimeType(), res);
+        if (metadata != null) {
+            setResMetadata(res, metadata);
+        }
+        resources.add(res);
+        for (String subtitleUrl : subtitleUrls) {
+            resources.add(new Res(new ProtocolInfo(SUBTITLE_PROTOCOL_INFO), null, subtitleUrl));
+        }
+        if (thumbnailUrl != null) {
+            resources.add(new Res(new ProtocolInfo(THUMBNAIL_PROTOCOL_INFO), null, thumbnailUrl));
+        }
+
+        Item item = addDidlItem(parentNodeId, contentNode, contentNode.getName(), contentNode.getMimeType(), resources.toArray(new Res[resources.size()]));
+        if (item != null) {
+            if (thumbnailUrl != null) {
+                item.replaceFirstProperty(new UPNP.ALBUM_ART_URI(getUri(thumbnailUrl), THUMBNAIL_ALBUM_ART_ATTRIBUTES));
+            }
+            for (String subtitleUrl : subtitleUrls) {
+                item.addProperty(new SEC.CAPTIONINFOEX(getUri(subtitleUrl), SUBTITLE_CAPTION_ATTRIBUTES));
+            }
+        }
+    }
+
+    /**
+     * Set media metadata attributes on didl resource.
+     *
+     * @param res      didl resource
+     * @param metadata media metadata
+     */
+    private void setResMetadata(final Res res, final MediaMetadata metadata) {
+        if (metadata.getDuration() != null) {
+            res.setDuration(formatNptTime(metadata.getDuration()));
+        }
+        if (metadata.getBitrate() != null) {
+            res.setBitrate(metadata.getBitrate());
+        }
+        if (metadata.hasResolution()) {
+            res.setResolution(metadata.getResolutionX(), metadata.getResolutionY());
+        }
+        if (metadata.getSampleFrequency() != null) {
+            res.setSampleFrequency(metadata.getSampleFrequency());
+        }
+        if (metadata.getAudioChannels() != null) {
+            res.setNrAudioChannels(metadata.getAudioChannels());
+        }
+        if (metadata.getBitsPerSample() != null) {
+            res.setBitsPerSample(metadata.getBitsPerSample());
+        }
     }
 
     /**
@@ -128,11 +208,12 @@ final class DirectoryBrowseResult {
      * @param parentNodeId parent node id
      * @param rawUrlNode   Url node
      * @param entryName    entry name
+     * @param url          Url served to renderers: remote Url or caching proxy Url
      * @throws ContentDirectoryException
      */
-    public void addUrlItem(final String parentNodeId, final RawUrlNode rawUrlNode, final String entryName) throws ContentDirectoryException {
+    public void addUrlItem(final String parentNodeId, final RawUrlNode rawUrlNode, final String entryName, final String url) throws ContentDirectoryException {
         MimeType mimeType = rawUrlNode.getMimeType();
-        Res res = new Res(getUpnpMimeType(mimeType), null, rawUrlNode.getUrl());
+        Res res = new Res(getUpnpMimeType(mimeType), null, url);
         res.setDuration(rawUrlNode.getDuration());
 
         addDidlItem(parentNodeId, rawUrlNode, entryName, mimeType, res);
@@ -145,10 +226,11 @@ final class DirectoryBrowseResult {
      * @param node         node to add
      * @param name         node name
      * @param mimeType     node mimeType
-     * @param res          didl resource
+     * @param res          didl resources
+     * @return added item or null
      * @throws ContentDirectoryException
      */
-    private void addDidlItem(String parentNodeId, AbstractNode node, String name, MimeType mimeType, Res res) throws ContentDirectoryException {
+    private Item addDidlItem(String parentNodeId, AbstractNode node, String name, MimeType mimeType, Res... res) throws ContentDirectoryException {
         Item item;
         switch (mimeType.getType()) {
             case TYPE_VIDEO:
@@ -172,6 +254,7 @@ final class DirectoryBrowseResult {
             didl.addItem(item);
             itemCount++;
         }
+        return item;
     }
 
     /**
@@ -181,10 +264,10 @@ final class DirectoryBrowseResult {
      * @param node         node to add
      * @param name         node name
      * @param mimeType     node mimeType
-     * @param res          didl resource
+     * @param res          didl resources
      * @return DIDL item or null
      */
-    private Item getUnknownTypeItem(String parentNodeId, AbstractNode node, String name, MimeType mimeType, Res res) {
+    private Item getUnknownTypeItem(String parentNodeId, AbstractNode node, String name, MimeType mimeType, Res... res) {
         Item item = null;
         if (mimeType.equals(MIME_TYPE_SUBTITLE)) {
             // Add subtitle item
@@ -236,11 +319,22 @@ final class DirectoryBrowseResult {
         }
 
         if (node.getIconUrl() != null) {
-            try {
-                didlObject.replaceFirstProperty(new UPNP.ICON(new URI(node.getIconUrl())));
-            } catch (URISyntaxException e) {
-                throw new ContentDirectoryException(CANNOT_PROCESS.getCode(), e.getMessage(), e);
-            }
+            didlObject.replaceFirstProperty(new UPNP.ICON(getUri(node.getIconUrl())));
+        }
+    }
+
+    /**
+     * Get URI.
+     *
+     * @param url url
+     * @return URI
+     * @throws ContentDirectoryException
+     */
+    private URI getUri(final String url) throws ContentDirectoryException {
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            throw new ContentDirectoryException(CANNOT_PROCESS.getCode(), e.getMessage(), e);
         }
     }
 }
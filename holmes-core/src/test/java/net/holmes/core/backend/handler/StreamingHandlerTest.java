@@ -36,6 +36,7 @@ import net.holmes.core.common.MimeType;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -113,6 +114,73 @@ public class StreamingHandlerTest {
         verify(mediaManager, streamingManager);
     }
 
+    @Test
+    public void testEnqueueOK() throws UnknownDeviceException {
+        MediaManager mediaManager = createMock(MediaManager.class);
+        StreamingManager streamingManager = createMock(StreamingManager.class);
+
+        expect(mediaManager.getNode(eq("contentId"))).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"))).atLeastOnce();
+        expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("contentUrl").atLeastOnce();
+        streamingManager.enqueue(eq("deviceId"), eq("contentUrl"), isA(AbstractNode.class));
+        expectLastCall().atLeastOnce();
+
+        replay(mediaManager, streamingManager);
+        StreamingHandler streamingHandler = new StreamingHandler(mediaManager, streamingManager);
+        String result = streamingHandler.enqueue("deviceId", "contentId");
+        assertNull(result);
+        verify(mediaManager, streamingManager);
+    }
+
+    @Test
+    public void testPlayGroupOK() throws UnknownDeviceException {
+        MediaManager mediaManager = createMock(MediaManager.class);
+        StreamingManager streamingManager = createMock(StreamingManager.class);
+
+        expect(mediaManager.getNode(eq("contentId"))).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"))).atLeastOnce();
+        expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("contentUrl").atLeastOnce();
+        streamingManager.playGroup(eq(Arrays.asList("deviceId1", "deviceId2")), eq("contentUrl"), isA(AbstractNode.class));
+        expectLastCall().atLeastOnce();
+
+        replay(mediaManager, streamingManager);
+        StreamingHandler streamingHandler = new StreamingHandler(mediaManager, streamingManager);
+        String result = streamingHandler.playGroup("contentId", "deviceId1, deviceId2,");
+        assertNull(result);
+        verify(mediaManager, streamingManager);
+    }
+
+    @Test
+    public void testPlayGroupKO() throws UnknownDeviceException {
+        MediaManager mediaManager = createMock(MediaManager.class);
+        StreamingManager streamingManager = createMock(StreamingManager.class);
+
+        expect(mediaManager.getNode(eq("contentId"))).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"))).atLeastOnce();
+        expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("contentUrl").atLeastOnce();
+        streamingManager.playGroup(eq(Arrays.asList("deviceId1", "deviceId2")), eq("contentUrl"), isA(AbstractNode.class));
+        expectLastCall().andThrow(new UnknownDeviceException("deviceId2")).atLeastOnce();
+
+        replay(mediaManager, streamingManager);
+        StreamingHandler streamingHandler = new StreamingHandler(mediaManager, streamingManager);
+        String result = streamingHandler.playGroup("contentId", "deviceId1,deviceId2");
+        assertNotNull(result);
+        verify(mediaManager, streamingManager);
+    }
+
+    @Test
+    public void testNextKO() throws UnknownDeviceException {
+        MediaManager mediaManager = createMock(MediaManager.class);
+        StreamingManager streamingManager = createMock(StreamingManager.class);
+
+        streamingManager.next(eq("deviceId"));
+        expectLastCall().andThrow(new UnknownDeviceException("deviceId")).atLeastOnce();
+
+        replay(mediaManager, streamingManager);
+        StreamingHandler streamingHandler = new StreamingHandler(mediaManager, streamingManager);
+        String result = streamingHandler.next("deviceId");
+        assertNotNull(result);
+        assertTrue(result.contains("deviceId"));
+        verify(mediaManager, streamingManager);
+    }
+
     @Test
     public void testPauseOK() throws UnknownDeviceException {
         MediaManager mediaManager = createMock(MediaManager.class);
@@ -117,6 +117,27 @@ public class MediaManagerImplTest {
         verify(mediaDao, mimeTypeManager, localAddress);
     }
 
+    @Test
+    public void testGetNodeThumbnailUrl() {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        ResourceBundle resourceBundle = ResourceBundle.getBundle("message");
+        MediaDao mediaDao = createMock(MediaDao.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        InetAddress localAddress = createMock(InetAddress.class);
+
+        expect(localAddress.getHostAddress()).andReturn("localHost");
+
+        replay(mediaDao, mimeTypeManager, localAddress);
+
+        MediaManagerImpl mediaManager = new MediaManagerImpl(configurationDao, resourceBundle, mediaDao, mimeTypeManager, localAddress);
+        PodcastNode podcastNode = new PodcastNode("id", "parentId", "name", "url");
+        String result = mediaManager.getNodeThumbnailUrl(podcastNode);
+
+        assertEquals("http://localHost:8085/thumbnail?id=id", result);
+
+        verify(mediaDao, mimeTypeManager, localAddress);
+    }
+
     @Test
     public void testCleanupCache() {
         ConfigurationDao configurationDao = new TestConfigurationDao();
@@ -25,6 +25,7 @@ import net.holmes.core.business.media.dao.icecast.IcecastEntry;
 import net.holmes.core.business.media.dao.icecast.IcecastGenre;
 import net.holmes.core.business.media.dao.index.MediaIndexDao;
 import net.holmes.core.business.media.dao.index.MediaIndexElement;
+import net.holmes.core.business.media.dao.podcast.PodcastDao;
 import net.holmes.core.business.media.model.*;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.common.MimeType;
@@ -32,9 +33,12 @@ import net.holmes.core.common.UniqueIdGenerator;
 import net.holmes.core.test.TestConfigurationDao;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Locale;
 
 import static net.holmes.core.business.media.model.RootNode.*;
 import static net.holmes.core.common.MediaType.*;
@@ -50,16 +54,17 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(null);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNull(result);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -68,18 +73,19 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement podcastElement = new MediaIndexElement(PODCAST.getId(), TYPE_PODCAST.getValue(), null, "path", "name", PODCAST.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(podcastElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNotNull(result);
         assertEquals(result.getClass(), PodcastNode.class);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -88,18 +94,19 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement icecastGenreElement = new MediaIndexElement(ICECAST.getId(), TYPE_ICECAST_GENRE.getValue(), null, "path", "name", ICECAST.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(icecastGenreElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNotNull(result);
         assertEquals(result.getClass(), IcecastGenreNode.class);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -108,18 +115,19 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement rawUrlElement = new MediaIndexElement(VIDEO.getId(), TYPE_RAW_URL.getValue(), "video/avi", "path", "name", ICECAST.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(rawUrlElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNotNull(result);
         assertEquals(result.getClass(), RawUrlNode.class);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -128,17 +136,18 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement videoElement = new MediaIndexElement(VIDEO.getId(), TYPE_VIDEO.getValue(), "video/avi", "path", "name", VIDEO.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNull(result);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -147,20 +156,21 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
 
         MediaIndexElement videoElement = new MediaIndexElement(VIDEO.getId(), TYPE_VIDEO.getValue(), "video/avi", videoNode.getPath(), "name", VIDEO.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNotNull(result);
         assertEquals(result.getClass(), FolderNode.class);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -169,20 +179,21 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
 
         MediaIndexElement videoElement = new MediaIndexElement(VIDEO.getId(), TYPE_VIDEO.getValue(), "video/avi", videoNode.getPath(), null, VIDEO.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNotNull(result);
         assertEquals(result.getClass(), FolderNode.class);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -191,6 +202,7 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
         Path videoFilePath = Paths.get(videoNode.getPath(), "video.avi");
@@ -199,14 +211,14 @@ public class MediaDaoImplTest {
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
         expect(mimeTypeManager.getMimeType(eq("video.avi"))).andReturn(MimeType.valueOf("video/avi"));
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNotNull(result);
         assertEquals(result.getClass(), ContentNode.class);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -215,6 +227,7 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
         Path videoFilePath = Paths.get(videoNode.getPath(), "video.avi");
@@ -223,13 +236,13 @@ public class MediaDaoImplTest {
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
         expect(mimeTypeManager.getMimeType(eq("video.avi"))).andReturn(null);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         AbstractNode result = mediaDao.getNode("nodeId");
         assertNull(result);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -238,16 +251,17 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(null);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertTrue(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -256,22 +270,22 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode podcastNode = configurationDao.getNodes(PODCAST).get(0);
         MediaIndexElement podcastElement = new MediaIndexElement(PODCAST.getId(), TYPE_PODCAST.getValue(), null, podcastNode.getPath(), podcastNode.getLabel(), PODCAST.isLocalPath(), true);
 
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(podcastElement);
-        mediaIndexDao.removeChildren(eq("nodeId"));
-        expectLastCall();
-        expect(mediaIndexDao.add(isA(MediaIndexElement.class))).andReturn(UniqueIdGenerator.newUniqueId()).atLeastOnce();
+        List<AbstractNode> podcastEntries = Lists.<AbstractNode>newArrayList(new RawUrlNode(AbstractNode.NodeType.TYPE_PODCAST_ENTRY, "entryId", "nodeId", "name", MimeType.valueOf("audio/mpeg"), "url", null));
+        expect(podcastDao.getPodcastEntries(eq("nodeId"), eq(podcastNode.getPath()))).andReturn(podcastEntries);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertFalse(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -280,20 +294,20 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement podcastElement = new MediaIndexElement(PODCAST.getId(), TYPE_PODCAST.getValue(), null, "badPath", "badLabel", PODCAST.isLocalPath(), true);
 
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(podcastElement);
-        mediaIndexDao.removeChildren(eq("nodeId"));
-        expectLastCall();
+        expect(podcastDao.getPodcastEntries(eq("nodeId"), eq("badPath"))).andReturn(Lists.<AbstractNode>newArrayList());
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertTrue(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -302,19 +316,21 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement icecastElement = new MediaIndexElement(ICECAST.getId(), TYPE_ICECAST_GENRE.getValue(), null, "icecastGenre", "icecastGenre", ICECAST.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(icecastElement);
         expect(icecastDao.getEntriesByGenre(eq("icecastGenre"))).andReturn(Lists.newArrayList(new IcecastEntry("name", "url", "type", "genre")));
-        expect(mediaIndexDao.add(isA(MediaIndexElement.class))).andReturn(UniqueIdGenerator.newUniqueId()).atLeastOnce();
+        mediaIndexDao.put(eq(new IcecastEntry("name", "url", "type", "genre").getId("nodeId")), isA(MediaIndexElement.class));
+        expectLastCall().atLeastOnce();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertFalse(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -323,17 +339,18 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         MediaIndexElement rawUrlElement = new MediaIndexElement(ICECAST.getId(), TYPE_RAW_URL.getValue(), null, "rawUrl", "rawUrl", ICECAST.isLocalPath(), true);
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(rawUrlElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertTrue(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -342,6 +359,7 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
         Path videoFolderPath = Paths.get(videoNode.getPath(), "subFolder");
@@ -354,13 +372,63 @@ public class MediaDaoImplTest {
         expect(mimeTypeManager.getMimeType(eq("video.unknown"))).andReturn(null).atLeastOnce();
         expect(mimeTypeManager.getMimeType(eq("video.srt"))).andReturn(MIME_TYPE_SUBTITLE).atLeastOnce();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertFalse(result.isEmpty());
+        ContentNode videoContentNode = null;
+        for (AbstractNode node : result) {
+            if (node instanceof ContentNode) {
+                assertFalse(((ContentNode) node).getMimeType().isSubTitle());
+                videoContentNode = (ContentNode) node;
+            }
+        }
+        assertNotNull(videoContentNode);
+        assertEquals(1, videoContentNode.getSubtitles().size());
+        assertEquals("video.srt", videoContentNode.getSubtitles().get(0).getName());
+
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+    }
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+    @Test
+    public void testGetChildNodesOfVideoFolderPairsSrtSubtitlesOnly() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+        IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
+
+        Path videoFolderPath = Files.createTempDirectory("holmes");
+        Files.createFile(videoFolderPath.resolve("video.avi"));
+        Files.createFile(videoFolderPath.resolve("VIDEO.SRT"));
+        Files.createFile(videoFolderPath.resolve("video.sub"));
+
+        MediaIndexElement videoElement = new MediaIndexElement(VIDEO.getId(), TYPE_VIDEO.getValue(), null, videoFolderPath.toString(), null, VIDEO.isLocalPath(), true);
+
+        expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
+        expect(mediaIndexDao.add(isA(MediaIndexElement.class))).andReturn(UniqueIdGenerator.newUniqueId()).atLeastOnce();
+        expect(mimeTypeManager.getMimeType(eq("video.avi"))).andReturn(MimeType.valueOf("video/avi"));
+        expect(mimeTypeManager.getMimeType(eq("VIDEO.SRT"))).andReturn(MIME_TYPE_SUBTITLE);
+        expect(mimeTypeManager.getMimeType(eq("video.sub"))).andReturn(MIME_TYPE_SUBTITLE);
+
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            // Subtitle pairing does not depend on default locale (dotless i in Turkish)
+            Locale.setDefault(new Locale("tr", "TR"));
+            MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+
+            List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
+            assertEquals(1, result.size());
+            ContentNode videoContentNode = (ContentNode) result.get(0);
+            assertEquals(1, videoContentNode.getSubtitles().size());
+            assertEquals("VIDEO.SRT", videoContentNode.getSubtitles().get(0).getName());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -369,6 +437,7 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
         Path videoFolderPath = Paths.get(videoNode.getPath(), "video.avi");
@@ -377,13 +446,13 @@ public class MediaDaoImplTest {
 
         expect(mediaIndexDao.get(eq("nodeId"))).andReturn(videoElement);
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertTrue(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -392,6 +461,7 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         ConfigurationNode videoNode = configurationDao.getNodes(VIDEO).get(0);
         Path videoFolderPath = Paths.get(videoNode.getPath(), "subFolder");
@@ -404,13 +474,13 @@ public class MediaDaoImplTest {
         expect(mimeTypeManager.getMimeType(eq("video.unknown"))).andReturn(null).atLeastOnce();
         expect(mimeTypeManager.getMimeType(eq("video.srt"))).andReturn(MIME_TYPE_SUBTITLE).atLeastOnce();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getChildNodes("nodeId");
         assertFalse(result.isEmpty());
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -419,16 +489,17 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         mediaIndexDao.clean();
         expectLastCall();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         mediaDao.cleanUpCache();
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -437,17 +508,18 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         mediaIndexDao.put(isA(String.class), isA(MediaIndexElement.class));
         expectLastCall().atLeastOnce();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getRootNodeChildren(PODCAST);
         assertNotNull(result);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
     @Test
@@ -456,18 +528,19 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         expect(icecastDao.getGenres()).andReturn(Lists.newArrayList(new IcecastGenre("genreId", "genreName")));
         mediaIndexDao.put(isA(String.class), isA(MediaIndexElement.class));
         expectLastCall().atLeastOnce();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getRootNodeChildren(ICECAST);
         assertNotNull(result);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
 
@@ -477,17 +550,18 @@ public class MediaDaoImplTest {
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
         MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
         IcecastDao icecastDao = createMock(IcecastDao.class);
+        PodcastDao podcastDao = createMock(PodcastDao.class);
 
         mediaIndexDao.put(isA(String.class), isA(MediaIndexElement.class));
         expectLastCall().atLeastOnce();
 
-        replay(mimeTypeManager, mediaIndexDao, icecastDao);
-        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao);
+        replay(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
+        MediaDaoImpl mediaDao = new MediaDaoImpl(configurationDao, mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
 
         List<AbstractNode> result = mediaDao.getRootNodeChildren(VIDEO);
         assertNotNull(result);
 
-        verify(mimeTypeManager, mediaIndexDao, icecastDao);
+        verify(mimeTypeManager, mediaIndexDao, icecastDao, podcastDao);
     }
 
 }
@@ -19,17 +19,31 @@ package net.holmes.core.business.media.dao.icecast;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.dao.index.MediaIndexDao;
+import net.holmes.core.business.media.dao.index.MediaIndexDaoImpl;
+import net.holmes.core.business.media.dao.index.MediaIndexElement;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import static net.holmes.core.common.ConfigurationParameter.*;
+import static net.holmes.core.common.MediaType.TYPE_RAW_URL;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
@@ -47,12 +61,6 @@ public class IcecastDaoImplTest {
         expect(configurationDao.getParameter(ICECAST_ENABLE)).andReturn(true).atLeastOnce();
         expect(configurationDao.getParameter(ICECAST_MAX_DOWNLOAD_RETRY)).andReturn(3).atLeastOnce();
 
-        mediaIndexDao.removeChildren("IceCastGenre_genre1");
-        expectLastCall().atLeastOnce();
-
-        mediaIndexDao.removeChildren("IceCastGenre_genre2");
-        expectLastCall().atLeastOnce();
-
         replay(configurationDao, mediaIndexDao);
         try {
             IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao);
@@ -86,8 +94,6 @@ public class IcecastDaoImplTest {
         expect(configurationDao.getParameter(ICECAST_ENABLE)).andReturn(true).atLeastOnce();
         expect(configurationDao.getParameter(ICECAST_MAX_DOWNLOAD_RETRY)).andReturn(3).atLeastOnce();
         expect(directory.getEntries()).andReturn(Sets.newHashSet(new IcecastEntry("name", "url", "type", "genre"))).atLeastOnce();
-        mediaIndexDao.removeChildren(isA(String.class));
-        expectLastCall().atLeastOnce();
 
         replay(configurationDao, mediaIndexDao, directory);
         IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao);
@@ -113,8 +119,6 @@ public class IcecastDaoImplTest {
         expect(configurationDao.getParameter(ICECAST_GENRE_LIST)).andReturn(Lists.newArrayList("genre1", "genre2")).atLeastOnce();
         expect(configurationDao.getParameter(ICECAST_ENABLE)).andReturn(true).atLeastOnce();
         expect(configurationDao.getParameter(ICECAST_MAX_DOWNLOAD_RETRY)).andReturn(3).atLeastOnce();
-        mediaIndexDao.removeChildren(isA(String.class));
-        expectLastCall().atLeastOnce();
 
         replay(configurationDao, mediaIndexDao);
         IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao);
@@ -131,4 +135,181 @@ public class IcecastDaoImplTest {
         }
     }
 
+    @Test
+    public void testLoadDirectoryDiff() {
+        String localHolmesDataDir = System.getProperty("java.io.tmpdir");
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+
+        expect(configurationDao.getParameter(ICECAST_GENRE_LIST)).andReturn(Lists.newArrayList("rock")).atLeastOnce();
+        expect(configurationDao.getParameter(ICECAST_ENABLE)).andReturn(true).atLeastOnce();
+        expect(configurationDao.getParameter(ICECAST_MAX_DOWNLOAD_RETRY)).andReturn(3).atLeastOnce();
+
+        replay(configurationDao);
+        IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao);
+        String genreId = "IceCastGenre_rock";
+        IcecastEntry unchanged = new IcecastEntry("unchanged", "url1", "audio/mpeg", "rock");
+        IcecastEntry updated = new IcecastEntry("updated", "url2", "audio/mpeg", "rock");
+        IcecastEntry removed = new IcecastEntry("removed", "url3", "audio/mpeg", "rock");
+        icecastDao.loadDirectory(new IcecastDirectory(Sets.newHashSet(unchanged, updated, removed)));
+        for (IcecastEntry entry : icecastDao.getEntriesByGenre("rock")) {
+            mediaIndexDao.put(entry.getId(genreId), new MediaIndexElement(genreId, TYPE_RAW_URL.getValue(), entry.getType(), entry.getUrl(), entry.getName(), false, false));
+        }
+
+        // Reload directory: unchanged entry keeps its id, updated and removed entries are removed from media index
+        IcecastEntry newEntry = new IcecastEntry("updated name", "url2", "audio/mpeg", "rock");
+        icecastDao.loadDirectory(new IcecastDirectory(Sets.newHashSet(unchanged, newEntry)));
+        assertNotNull(mediaIndexDao.get(unchanged.getId(genreId)));
+        assertNull(mediaIndexDao.get(updated.getId(genreId)));
+        assertNull(mediaIndexDao.get(removed.getId(genreId)));
+        assertEquals(updated.getId(genreId), newEntry.getId(genreId));
+
+        // Reset directory: all entries are removed
+        icecastDao.loadDirectory(null);
+        assertNull(mediaIndexDao.get(unchanged.getId(genreId)));
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testCheckYellowPageConditionalDownload() throws Exception {
+        YellowPageHandler handler = new YellowPageHandler(200);
+        HttpServer server = startServer(handler);
+        String localHolmesDataDir = Files.createTempDirectory("holmes").toString();
+        ConfigurationDao configurationDao = createYellowPageConfigurationDao(server);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+
+        replay(configurationDao, mediaIndexDao);
+        try {
+            IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao);
+
+            // Yellow page is downloaded with gzip encoding and parsed
+            icecastDao.checkYellowPage();
+            IcecastDirectory directory = icecastDao.getDirectory();
+            assertNotNull(directory);
+            assertEquals(5, directory.getEntries().size());
+            assertEquals(1, handler.requests.get());
+            assertNull(handler.ifNoneMatch);
+
+            // Yellow page is not modified: directory is not parsed again
+            icecastDao.checkYellowPage();
+            assertEquals(2, handler.requests.get());
+            assertEquals(YellowPageHandler.ETAG, handler.ifNoneMatch);
+            assertSame(directory, icecastDao.getDirectory());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao, mediaIndexDao);
+    }
+
+    @Test
+    public void testCheckYellowPageDownloadFailure() throws Exception {
+        YellowPageHandler handler = new YellowPageHandler(500);
+        HttpServer server = startServer(handler);
+        String localHolmesDataDir = Files.createTempDirectory("holmes").toString();
+        ConfigurationDao configurationDao = createYellowPageConfigurationDao(server);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+
+        replay(configurationDao, mediaIndexDao);
+        try {
+            IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao);
+            icecastDao.checkYellowPage();
+            assertNull(icecastDao.getDirectory());
+            assertEquals(1, handler.requests.get());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao, mediaIndexDao);
+    }
+
+    @Test
+    public void testCheckYellowPageRetryIsScheduled() throws Exception {
+        YellowPageHandler handler = new YellowPageHandler(200, 2);
+        HttpServer server = startServer(handler);
+        String localHolmesDataDir = Files.createTempDirectory("holmes").toString();
+        ConfigurationDao configurationDao = createYellowPageConfigurationDao(server, 3);
+        MediaIndexDao mediaIndexDao = createMock(MediaIndexDao.class);
+
+        replay(configurationDao, mediaIndexDao);
+        try {
+            IcecastDaoImpl icecastDao = new IcecastDaoImpl(configurationDao, localHolmesDataDir, mediaIndexDao, 10L);
+
+            // First attempt fails, caller does not wait for retries
+            icecastDao.checkYellowPage();
+            assertNull(icecastDao.getDirectory());
+
+            // Yellow page is loaded by the third attempt
+            for (int i = 0; i < 500 && icecastDao.getDirectory() == null; i++) {
+                Thread.sleep(10);
+            }
+            assertNotNull(icecastDao.getDirectory());
+            assertEquals(3, handler.requests.get());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao, mediaIndexDao);
+    }
+
+    private ConfigurationDao createYellowPageConfigurationDao(final HttpServer server) {
+        return createYellowPageConfigurationDao(server, 1);
+    }
+
+    private ConfigurationDao createYellowPageConfigurationDao(final HttpServer server, final int maxDownloadRetry) {
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        expect(configurationDao.getParameter(ICECAST_GENRE_LIST)).andReturn(Lists.newArrayList("genre4test")).atLeastOnce();
+        expect(configurationDao.getParameter(ICECAST_ENABLE)).andReturn(true).atLeastOnce();
+        expect(configurationDao.getParameter(ICECAST_MAX_DOWNLOAD_RETRY)).andReturn(maxDownloadRetry).atLeastOnce();
+        expect(configurationDao.getParameter(ICECAST_YELLOW_PAGE_DOWNLOAD_DELAY_HOURS)).andReturn(0).atLeastOnce();
+        expect(configurationDao.getParameter(ICECAST_YELLOW_PAGE_URL)).andReturn("http://localhost:" + server.getAddress().getPort() + "/yp.xml").atLeastOnce();
+        return configurationDao;
+    }
+
+    private HttpServer startServer(final HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", handler);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Serves gzipped test yellow page with an ETag, not modified when ETag matches.
+     */
+    private static class YellowPageHandler implements HttpHandler {
+        private static final String ETAG = "\"yp-1\"";
+        private final int status;
+        private final int failedRequests;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile String ifNoneMatch;
+
+        YellowPageHandler(final int status) {
+            this(status, 0);
+        }
+
+        YellowPageHandler(final int status, final int failedRequests) {
+            this.status = status;
+            this.failedRequests = failedRequests;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int request = requests.incrementAndGet();
+            ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (request <= failedRequests) {
+                exchange.sendResponseHeaders(503, -1);
+            } else if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+            } else if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                assertEquals("gzip", exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody());
+                     InputStream in = getClass().getResourceAsStream("/Icecast.xml")) {
+                    ByteStreams.copy(in, out);
+                }
+            }
+            exchange.close();
+        }
+    }
 }
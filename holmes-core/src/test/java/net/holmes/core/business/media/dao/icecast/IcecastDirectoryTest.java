@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.icecast;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+public class IcecastDirectoryTest {
+
+    @Test
+    public void testGetEntriesByGenre() {
+        IcecastEntry rock = new IcecastEntry("rock", "url1", "audio/mpeg", "Rock Classic");
+        IcecastEntry hardRock = new IcecastEntry("hardRock", "url2", "audio/mpeg", "hard rock,metal");
+        IcecastEntry rockabilly = new IcecastEntry("rockabilly", "url3", "audio/mpeg", "rockabilly");
+        IcecastEntry hipHop = new IcecastEntry("hipHop", "url4", "audio/mpeg", "hip hop rap");
+        IcecastEntry noGenre = new IcecastEntry("noGenre", "url5", "audio/mpeg", null);
+        IcecastDirectory directory = new IcecastDirectory(Sets.newHashSet(rock, hardRock, rockabilly, hipHop, noGenre));
+
+        Collection<IcecastEntry> entries = directory.getEntriesByGenre("rock");
+        assertEquals(2, entries.size());
+        assertTrue(entries.contains(rock));
+        assertTrue(entries.contains(hardRock));
+
+        entries = directory.getEntriesByGenre("hip hop");
+        assertEquals(1, entries.size());
+        assertTrue(entries.contains(hipHop));
+
+        assertEquals(1, directory.getEntriesByGenre("METAL").size());
+        assertTrue(directory.getEntriesByGenre("hip rock").isEmpty());
+        assertTrue(directory.getEntriesByGenre("jazz").isEmpty());
+        assertTrue(directory.getEntriesByGenre("").isEmpty());
+    }
+}
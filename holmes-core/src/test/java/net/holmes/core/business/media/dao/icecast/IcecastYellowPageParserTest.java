@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.icecast;
+
+import net.holmes.core.common.exception.HolmesException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class IcecastYellowPageParserTest {
+
+    @Test
+    public void testParse() throws Exception {
+        IcecastYellowPageParser parser = new IcecastYellowPageParser();
+        IcecastDirectory directory = parser.parse(new File(getClass().getResource("/Icecast.xml").toURI()));
+        assertEquals(5, directory.getEntries().size());
+        assertTrue(directory.getEntries().contains(new IcecastEntry("Rainwave All", "http://stream3.gameowls.com:8000/all.mp3", "audio/mpeg",
+                "music game video genre4test")));
+        assertEquals(5, directory.getEntriesByGenre("genre4test").size());
+        assertEquals(2, directory.getEntriesByGenre("music").size());
+    }
+
+    @Test
+    public void testParseDuplicateAndInvalidEntries() throws Exception {
+        Path ypFile = Files.createTempFile("yp", ".xml");
+        try {
+            Files.write(ypFile, ("<directory>"
+                    + "<entry><server_name>name</server_name><listen_url>http://url</listen_url><server_type>audio/mpeg</server_type>"
+                    + "<genre>rock</genre><extra><genre>jazz</genre></extra></entry>"
+                    + "<entry><server_name>name</server_name><listen_url>http://url</listen_url><server_type>audio/mpeg</server_type>"
+                    + "<genre>rock</genre></entry>"
+                    + "<entry><server_name>no url</server_name><genre>rock</genre></entry>"
+                    + "</directory>").getBytes(UTF_8));
+            IcecastDirectory directory = new IcecastYellowPageParser().parse(ypFile.toFile());
+            assertEquals(1, directory.getEntries().size());
+            assertEquals(1, directory.getEntriesByGenre("rock").size());
+            assertTrue(directory.getEntriesByGenre("jazz").isEmpty());
+        } finally {
+            Files.deleteIfExists(ypFile);
+        }
+    }
+
+    @Test(expected = HolmesException.class)
+    public void testParseBadFile() throws IOException, HolmesException {
+        Path ypFile = Files.createTempFile("yp", ".xml");
+        try {
+            Files.write(ypFile, "<directory><entry>".getBytes(UTF_8));
+            new IcecastYellowPageParser().parse(ypFile.toFile());
+        } finally {
+            Files.deleteIfExists(ypFile);
+        }
+    }
+}
@@ -45,6 +45,16 @@ public class MediaIndexDaoImplTest {
         assertFalse(uuid1.equals(uuid2));
     }
 
+    @Test
+    public void testRemoveFromMediaIndex() {
+        MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
+
+        String uuid = mediaIndexDao.add(new MediaIndexElement("parentId", "mediaType", "mimeType", "path", "name", true, false));
+        assertNotNull(mediaIndexDao.get(uuid));
+        mediaIndexDao.remove(uuid);
+        assertNull(mediaIndexDao.get(uuid));
+    }
+
     @Test
     public void testRemoveChildrenMediaIndex() {
         MediaIndexDaoImpl mediaIndexDao = new MediaIndexDaoImpl();
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.configuration.ConfigurationNode;
+import net.holmes.core.business.media.dao.index.MediaIndexDao;
+import net.holmes.core.business.media.dao.index.MediaIndexDaoImpl;
+import net.holmes.core.business.media.model.AbstractNode;
+import net.holmes.core.test.TestConfigurationDao;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static net.holmes.core.business.media.model.RootNode.PODCAST;
+import static org.junit.Assert.*;
+
+public class PodcastDaoImplTest {
+
+    @Test
+    public void testRefreshPodcast() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        ConfigurationNode podcast = configurationDao.getNodes(PODCAST).get(0);
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.refreshPodcast(podcast.getId(), podcast.getPath());
+
+        List<AbstractNode> entries = podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath());
+        assertFalse(entries.isEmpty());
+        for (AbstractNode entry : entries) {
+            assertNotNull(mediaIndexDao.get(entry.getId()));
+            assertEquals(podcast.getId(), entry.getParentId());
+        }
+    }
+
+    @Test
+    public void testRefreshPodcastKeepsEntryIds() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        ConfigurationNode podcast = configurationDao.getNodes(PODCAST).get(0);
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.refreshPodcast(podcast.getId(), podcast.getPath());
+        List<AbstractNode> entries = podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath());
+        podcastDao.refreshPodcast(podcast.getId(), podcast.getPath());
+        List<AbstractNode> refreshedEntries = podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath());
+
+        assertEquals(entries.size(), refreshedEntries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getId(), refreshedEntries.get(i).getId());
+            assertNotNull(mediaIndexDao.get(refreshedEntries.get(i).getId()));
+        }
+    }
+
+    @Test
+    public void testGetPodcastEntriesNotRefreshed() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        List<AbstractNode> entries = podcastDao.getPodcastEntries("podcastId", "badUrl");
+        assertNotNull(entries);
+        assertTrue(entries.isEmpty());
+    }
+
+    @Test
+    public void testRefreshBadPodcast() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.refreshPodcast("podcastId", "badUrl");
+        assertTrue(podcastDao.getPodcastEntries("podcastId", "badUrl").isEmpty());
+    }
+
+    @Test
+    public void testRefreshPodcasts() throws IOException, InterruptedException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        ConfigurationNode podcast = configurationDao.getNodes(PODCAST).get(0);
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.refreshPodcasts();
+
+        // First podcast is refreshed without delay
+        for (int i = 0; i < 100 && podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath()).isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath()).isEmpty());
+    }
+
+    @Test
+    public void testRefreshPodcastNotModified() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        String dataDir = getDataDir();
+        PodcastHandler handler = new PodcastHandler();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/podcast", handler);
+        server.start();
+        String podcastUrl = "http://localhost:" + server.getAddress().getPort() + "/podcast";
+        try {
+            PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, dataDir);
+            podcastDao.refreshPodcast("podcastId", podcastUrl);
+            List<AbstractNode> entries = podcastDao.getPodcastEntries("podcastId", podcastUrl);
+            assertFalse(entries.isEmpty());
+            assertEquals(1, handler.fullResponses.get());
+
+            // Second refresh is a conditional request
+            podcastDao.refreshPodcast("podcastId", podcastUrl);
+            assertSame(entries, podcastDao.getPodcastEntries("podcastId", podcastUrl));
+            assertEquals(1, handler.fullResponses.get());
+            assertEquals(1, handler.notModifiedResponses.get());
+
+            // After a restart, stored feed is reused
+            PodcastDaoImpl restartedPodcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, dataDir);
+            restartedPodcastDao.refreshPodcast("podcastId", podcastUrl);
+            assertEquals(entries.size(), restartedPodcastDao.getPodcastEntries("podcastId", podcastUrl).size());
+            assertEquals(1, handler.fullResponses.get());
+            assertEquals(2, handler.notModifiedResponses.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRefreshPodcastAfterMediaIndexClean() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/podcast", new PodcastHandler());
+        server.start();
+        String podcastUrl = "http://localhost:" + server.getAddress().getPort() + "/podcast";
+        try {
+            // Podcast is refreshed before it is indexed: its entries are cleaned from media index
+            PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+            podcastDao.refreshPodcast("podcastId", podcastUrl);
+            String entryId = podcastDao.getPodcastEntries("podcastId", podcastUrl).get(0).getId();
+            mediaIndexDao.clean();
+            assertNull(mediaIndexDao.get(entryId));
+
+            // Unchanged podcast is refreshed: entries are indexed again
+            podcastDao.refreshPodcast("podcastId", podcastUrl);
+            assertNotNull(mediaIndexDao.get(entryId));
+
+            // Entries are indexed again on browse
+            mediaIndexDao.clean();
+            assertNull(mediaIndexDao.get(entryId));
+            podcastDao.getPodcastEntries("podcastId", podcastUrl);
+            assertNotNull(mediaIndexDao.get(entryId));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRefreshPodcastsIndexesPodcasts() throws IOException, InterruptedException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        ConfigurationNode podcast = configurationDao.getNodes(PODCAST).get(0);
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.refreshPodcasts();
+        assertNotNull(mediaIndexDao.get(podcast.getId()));
+        for (int i = 0; i < 100 && podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath()).isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+
+        List<AbstractNode> entries = podcastDao.getPodcastEntries(podcast.getId(), podcast.getPath());
+        assertFalse(entries.isEmpty());
+
+        // Entries are kept by media index cleaning
+        mediaIndexDao.clean();
+        assertNotNull(mediaIndexDao.get(entries.get(0).getId()));
+    }
+
+    @Test
+    public void testRefreshPodcastUnreachableAfterRestart() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        String dataDir = getDataDir();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/podcast", new PodcastHandler());
+        server.start();
+        String podcastUrl = "http://localhost:" + server.getAddress().getPort() + "/podcast";
+        try {
+            PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, dataDir);
+            podcastDao.refreshPodcast("podcastId", podcastUrl);
+            assertFalse(podcastDao.getPodcastEntries("podcastId", podcastUrl).isEmpty());
+        } finally {
+            server.stop(0);
+        }
+
+        PodcastDaoImpl restartedPodcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, dataDir);
+        restartedPodcastDao.refreshPodcast("podcastId", podcastUrl);
+        assertFalse(restartedPodcastDao.getPodcastEntries("podcastId", podcastUrl).isEmpty());
+    }
+
+    @Test
+    public void testLoadFeedWithStableIds() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        PodcastEntry entry1 = new PodcastEntry("guid1", "title1", "http://podcast/1.mp3", "audio/mpeg", null, null, 1L);
+        PodcastEntry entry2 = new PodcastEntry("guid2", "title2", "http://podcast/2.mp3", "audio/mpeg", null, null, 2L);
+        PodcastEntry entry3 = new PodcastEntry(null, "title3", "http://podcast/3.mp3", "audio/mpeg", null, null, 3L);
+        PodcastEntry updatedEntry2 = new PodcastEntry("guid2", "new title2", "http://podcast/2.mp3", "audio/mpeg", null, null, 2L);
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(entry1, entry2, entry1)));
+        List<AbstractNode> entries = podcastDao.getPodcastEntries("podcastId", "url");
+        assertEquals(2, entries.size());
+        String entry1Id = entries.get(0).getId();
+        String entry2Id = entries.get(1).getId();
+
+        // Entry 1 is kept, entry 2 is updated, entry 3 is added
+        podcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(entry3, entry1, updatedEntry2)));
+        List<AbstractNode> refreshedEntries = podcastDao.getPodcastEntries("podcastId", "url");
+        assertEquals(3, refreshedEntries.size());
+        assertSame(entries.get(0), refreshedEntries.get(1));
+        assertEquals(entry2Id, refreshedEntries.get(2).getId());
+        assertEquals("new title2", refreshedEntries.get(2).getName());
+        assertEquals("new title2", mediaIndexDao.get(entry2Id).getName());
+        assertNotNull(mediaIndexDao.get(refreshedEntries.get(0).getId()));
+
+        // Entry 1 is retired
+        podcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(entry3, updatedEntry2)));
+        assertEquals(2, podcastDao.getPodcastEntries("podcastId", "url").size());
+        assertNull(mediaIndexDao.get(entry1Id));
+        assertNotNull(mediaIndexDao.get(entry2Id));
+
+        // Entry ids do not depend on media index content
+        PodcastDaoImpl restartedPodcastDao = new PodcastDaoImpl(configurationDao, new MediaIndexDaoImpl(), getDataDir());
+        restartedPodcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(entry1)));
+        assertEquals(entry1Id, restartedPodcastDao.getPodcastEntries("podcastId", "url").get(0).getId());
+    }
+
+    @Test
+    public void testLoadFeedWithChangedGuid() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        MediaIndexDao mediaIndexDao = new MediaIndexDaoImpl();
+        PodcastEntry entry = new PodcastEntry("guid1", "title1", "http://podcast/1.mp3", "audio/mpeg", null, null, 1L);
+        PodcastEntry changedGuidEntry = new PodcastEntry("guid2", "title1", "http://podcast/1.mp3", "audio/mpeg", null, null, 1L);
+        PodcastEntry addedGuidEntry = new PodcastEntry(null, "title1", "http://podcast/1.mp3", "audio/mpeg", null, null, 1L);
+
+        PodcastDaoImpl podcastDao = new PodcastDaoImpl(configurationDao, mediaIndexDao, getDataDir());
+        podcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(addedGuidEntry)));
+        String entryId = podcastDao.getPodcastEntries("podcastId", "url").get(0).getId();
+
+        // Entry gets a guid: same index element under a new id
+        podcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(entry)));
+        List<AbstractNode> entries = podcastDao.getPodcastEntries("podcastId", "url");
+        assertEquals(1, entries.size());
+        String newEntryId = entries.get(0).getId();
+        assertNotEquals(entryId, newEntryId);
+        assertNull(mediaIndexDao.get(entryId));
+        assertNotNull(mediaIndexDao.get(newEntryId));
+
+        // Entry guid changes
+        podcastDao.loadFeed("podcastId", new PodcastFeed("url", null, null, Lists.newArrayList(changedGuidEntry)));
+        entries = podcastDao.getPodcastEntries("podcastId", "url");
+        assertEquals(1, entries.size());
+        assertNotEquals(newEntryId, entries.get(0).getId());
+        assertNull(mediaIndexDao.get(newEntryId));
+        assertNotNull(mediaIndexDao.get(entries.get(0).getId()));
+    }
+
+    private String getDataDir() throws IOException {
+        return Files.createTempDirectory("holmes").toString();
+    }
+
+    /**
+     * Serves test podcast with an ETag, gzip encoded.
+     */
+    private class PodcastHandler implements HttpHandler {
+        private final AtomicInteger fullResponses = new AtomicInteger();
+        private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                byte[] rss;
+                try (InputStream in = getClass().getResourceAsStream("/allocineFauxRaccordRss.xml")) {
+                    rss = toByteArray(in);
+                }
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                    out.write(rss);
+                }
+            }
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.dao.podcast;
+
+import net.holmes.core.common.exception.HolmesException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class PodcastParserTest {
+
+    @Test
+    public void testParseRss() throws HolmesException, URISyntaxException {
+        List<PodcastEntry> entries = new PodcastParser(0).parse(getRssFile());
+        assertEquals(50, entries.size());
+
+        PodcastEntry entry = entries.get(0);
+        assertEquals("http://www.allocine.fr/videos_allocineshow_player?callocineshow=18739529&cmedia=19389092", entry.getGuid());
+        assertEquals("Faux Raccord N\u00b068 - \"Mad Max\"", entry.getTitle());
+        assertEquals("http://h.fr.mediaplayer.allocine.fr/nmedia/18/73/95/29/19389092_faux_raccord_madmax_m_004.mp4", entry.getUrl());
+        assertEquals("video/x-m4v", entry.getMimeType());
+        assertEquals("00:00:10", entry.getDuration());
+        assertEquals("http://images.allocine.fr/medias/nmedia/18/73/95/29/19389092_faux_raccord_madmax.jpg", entry.getIconUrl());
+        assertEquals(Long.valueOf(1345644120000L), entry.getPublishedDate());
+    }
+
+    @Test
+    public void testParseRssMaxEntries() throws HolmesException, URISyntaxException {
+        List<PodcastEntry> entries = new PodcastParser(2).parse(getRssFile());
+        assertEquals(2, entries.size());
+        assertEquals("Faux Raccord N\u00b068 - \"Mad Max\"", entries.get(0).getTitle());
+    }
+
+    @Test
+    public void testParseAtom() throws HolmesException, IOException {
+        Path atomFile = Files.createTempFile("podcast", ".xml");
+        atomFile.toFile().deleteOnExit();
+        Files.write(atomFile, ("<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<feed xmlns=\"http://www.w3.org/2005/Atom\"><title>feed</title>"
+                + "<entry><title>entry</title><id>urn:entry</id><updated>2012-08-22T14:02:00Z</updated>"
+                + "<link rel=\"alternate\" href=\"http://podcast/entry.html\"/>"
+                + "<link rel=\"enclosure\" type=\"audio/mpeg\" href=\"http://podcast/entry.mp3\"/>"
+                + "<link rel=\"enclosure\" type=\"audio/ogg\" href=\"http://podcast/entry.ogg\"/></entry>"
+                + "</feed>").getBytes(UTF_8));
+
+        List<PodcastEntry> entries = new PodcastParser(0).parse(atomFile.toFile());
+        assertEquals(2, entries.size());
+        assertEquals("urn:entry", entries.get(0).getGuid());
+        assertEquals("urn:entry#1", entries.get(1).getGuid());
+        assertEquals("entry", entries.get(0).getTitle());
+        assertEquals("http://podcast/entry.mp3", entries.get(0).getUrl());
+        assertEquals(Long.valueOf(1345644120000L), entries.get(0).getPublishedDate());
+        assertNull(entries.get(0).getDuration());
+    }
+
+    @Test(expected = HolmesException.class)
+    public void testParseBadFeed() throws HolmesException, IOException {
+        Path badFile = Files.createTempFile("podcast", ".xml");
+        badFile.toFile().deleteOnExit();
+        Files.write(badFile, "<rss><channel><item>".getBytes(UTF_8));
+
+        new PodcastParser(0).parse(badFile.toFile());
+    }
+
+    private File getRssFile() throws URISyntaxException {
+        return new File(getClass().getResource("/allocineFauxRaccordRss.xml").toURI());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
+
+public class FlacMetadataParserTest {
+
+    @Test
+    public void testParse() throws IOException {
+        File file = writeFile(streamInfo(96000, 2, 24, 96000L * 300));
+
+        MediaMetadata metadata = new FlacMetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(300000), metadata.getDuration());
+        assertEquals(Long.valueOf(96000), metadata.getSampleFrequency());
+        assertEquals(Long.valueOf(2), metadata.getAudioChannels());
+        assertEquals(Long.valueOf(24), metadata.getBitsPerSample());
+    }
+
+    @Test
+    public void testParseUnknownLength() throws IOException {
+        File file = writeFile(streamInfo(44100, 1, 16, 0));
+
+        MediaMetadata metadata = new FlacMetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertNull(metadata.getDuration());
+        assertEquals(Long.valueOf(44100), metadata.getSampleFrequency());
+        assertEquals(Long.valueOf(1), metadata.getAudioChannels());
+    }
+
+    @Test
+    public void testParseNotFlac() throws IOException {
+        File file = writeFile(new byte[64]);
+        assertNull(new FlacMetadataParser().parse(file));
+    }
+
+    private static byte[] streamInfo(final long sampleRate, final long channels, final long bitsPerSample, final long totalSamples) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 34);
+        buffer.put("fLaC".getBytes(US_ASCII));
+        // Last metadata block flag, STREAMINFO type and block length
+        buffer.putInt(0x80000000 | 34);
+        buffer.putShort((short) 4096).putShort((short) 4096);
+        buffer.put(new byte[6]);
+        buffer.putLong(sampleRate << 44 | (channels - 1) << 41 | (bitsPerSample - 1) << 36 | totalSamples);
+        return buffer.array();
+    }
+
+    private static File writeFile(final byte[] content) throws IOException {
+        File file = File.createTempFile("audio", ".flac");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+            out.write(new byte[64]);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class MatroskaMetadataParserTest {
+
+    @Test
+    public void testParse() throws IOException {
+        byte[] info = element(0x1549A966, element(0x2AD7B1, uint(1000000, 3)), element(0x4489, ByteBuffer.allocate(8).putDouble(5025000d).array()));
+        byte[] video = element(0xAE, element(0x83, uint(1, 1)), element(0xE0, element(0xB0, uint(1920, 2)), element(0xBA, uint(1080, 2))));
+        byte[] audio = element(0xAE, element(0x83, uint(2, 1)),
+                element(0xE1, element(0xB5, ByteBuffer.allocate(4).putFloat(48000f).array()), element(0x9F, uint(6, 1)), element(0x6264, uint(24, 1))));
+        byte[] tracks = element(0x1654AE6B, video, audio);
+        File file = writeFile(ebmlHeader(), segment(element(0x114D9B74, new byte[20]), info, tracks, element(0x1F43B675, new byte[200])));
+
+        MediaMetadata metadata = new MatroskaMetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(5025000), metadata.getDuration());
+        assertEquals(Integer.valueOf(1920), metadata.getResolutionX());
+        assertEquals(Integer.valueOf(1080), metadata.getResolutionY());
+        assertEquals(Long.valueOf(48000), metadata.getSampleFrequency());
+        assertEquals(Long.valueOf(6), metadata.getAudioChannels());
+        assertEquals(Long.valueOf(24), metadata.getBitsPerSample());
+    }
+
+    @Test
+    public void testParseDefaultTimecodeScale() throws IOException {
+        byte[] info = element(0x1549A966, element(0x4489, ByteBuffer.allocate(4).putFloat(60000f).array()));
+        File file = writeFile(ebmlHeader(), segment(info));
+
+        MediaMetadata metadata = new MatroskaMetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(60000), metadata.getDuration());
+        assertFalse(metadata.hasResolution());
+    }
+
+    @Test
+    public void testParseNotMatroska() throws IOException {
+        File file = writeFile(new byte[]{0, 0, 0, 0x20, 'f', 't', 'y', 'p'});
+        assertNull(new MatroskaMetadataParser().parse(file));
+    }
+
+    private static byte[] ebmlHeader() throws IOException {
+        return element(0x1A45DFA3, element(0x4282, "matroska".getBytes()));
+    }
+
+    /**
+     * Build a segment with unknown size, as written by live muxers.
+     */
+    private static byte[] segment(final byte[]... children) throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        segment.write(new byte[]{0x18, 0x53, (byte) 0x80, 0x67});
+        segment.write(new byte[]{0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        for (byte[] child : children) {
+            segment.write(child);
+        }
+        return segment.toByteArray();
+    }
+
+    private static byte[] element(final int id, final byte[]... contents) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] bytes : contents) {
+            content.write(bytes);
+        }
+        ByteArrayOutputStream element = new ByteArrayOutputStream();
+        // Element id
+        boolean started = false;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int b = id >> shift & 0xFF;
+            if (started || b != 0) {
+                element.write(b);
+                started = true;
+            }
+        }
+        // Element size on 8 bytes
+        element.write(0x01);
+        element.write(ByteBuffer.allocate(8).putLong(content.size()).array(), 1, 7);
+        element.write(content.toByteArray());
+        return element.toByteArray();
+    }
+
+    private static byte[] uint(final long value, final int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (value >> (8 * (length - 1 - i)));
+        }
+        return bytes;
+    }
+
+    private static File writeFile(final byte[]... elements) throws IOException {
+        File file = File.createTempFile("video", ".mkv");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] element : elements) {
+                out.write(element);
+            }
+        }
+        return file;
+    }
+}
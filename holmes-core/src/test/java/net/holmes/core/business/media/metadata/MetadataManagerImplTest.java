@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.MimeType;
+import net.holmes.core.test.TestConfigurationDao;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static net.holmes.core.common.ConfigurationParameter.MEDIA_METADATA_ENABLE;
+import static org.junit.Assert.*;
+
+public class MetadataManagerImplTest {
+    private static final MimeType MIME_TYPE_FLAC = MimeType.valueOf("audio/flac");
+
+    @Test
+    public void testIsMetadataSupported() {
+        MetadataManager metadataManager = new MetadataManagerImpl(new TestConfigurationDao());
+        assertTrue(metadataManager.isMetadataSupported(MIME_TYPE_FLAC));
+        assertTrue(metadataManager.isMetadataSupported(MimeType.valueOf("audio/mpeg")));
+        assertTrue(metadataManager.isMetadataSupported(MimeType.valueOf("video/mp4")));
+        assertTrue(metadataManager.isMetadataSupported(MimeType.valueOf("video/x-matroska")));
+        assertFalse(metadataManager.isMetadataSupported(MimeType.valueOf("video/x-msvideo")));
+        assertFalse(metadataManager.isMetadataSupported(null));
+    }
+
+    @Test
+    public void testIsMetadataSupportedDisabled() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        configurationDao.setParameter(MEDIA_METADATA_ENABLE, false);
+        MetadataManager metadataManager = new MetadataManagerImpl(configurationDao);
+        assertFalse(metadataManager.isMetadataSupported(MIME_TYPE_FLAC));
+        assertNull(metadataManager.getMetadata(new ContentNode("id", "parentId", "name", writeFlacFile(), MIME_TYPE_FLAC)));
+    }
+
+    @Test
+    public void testGetMetadata() throws Exception {
+        File file = writeFlacFile();
+        ContentNode contentNode = new ContentNode("id", "parentId", "name", file, MIME_TYPE_FLAC);
+        MetadataManager metadataManager = new MetadataManagerImpl(new TestConfigurationDao());
+
+        // Metadata are extracted in background
+        MediaMetadata metadata = waitForMetadata(metadataManager, contentNode);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(2000), metadata.getDuration());
+        assertEquals(Long.valueOf(44100), metadata.getSampleFrequency());
+        // Bitrate is computed from file size
+        assertEquals(Long.valueOf(file.length() / 2), metadata.getBitrate());
+
+        // Metadata are now served from cache
+        assertSame(metadata, metadataManager.getMetadata(contentNode));
+    }
+
+    @Test
+    public void testGetMetadataBatch() throws Exception {
+        MetadataManager metadataManager = new MetadataManagerImpl(new TestConfigurationDao());
+        ContentNode[] contentNodes = new ContentNode[20];
+        for (int i = 0; i < contentNodes.length; i++) {
+            contentNodes[i] = new ContentNode("id" + i, "parentId", "name", writeFlacFile(), MIME_TYPE_FLAC);
+            assertNull(metadataManager.getMetadata(contentNodes[i]));
+        }
+        for (ContentNode contentNode : contentNodes) {
+            assertNotNull(waitForMetadata(metadataManager, contentNode));
+        }
+    }
+
+    @Test
+    public void testGetMetadataInvalidFile() throws Exception {
+        File file = File.createTempFile("audio", ".flac");
+        file.deleteOnExit();
+        MetadataManager metadataManager = new MetadataManagerImpl(new TestConfigurationDao());
+
+        assertNull(waitForMetadata(metadataManager, new ContentNode("id", "parentId", "name", file, MIME_TYPE_FLAC)));
+    }
+
+    private static MediaMetadata waitForMetadata(final MetadataManager metadataManager, final ContentNode contentNode) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            MediaMetadata metadata = metadataManager.getMetadata(contentNode);
+            if (metadata != null) {
+                return metadata;
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+
+    private static File writeFlacFile() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 34);
+        buffer.put("fLaC".getBytes(US_ASCII));
+        buffer.putInt(0x80000000 | 34);
+        buffer.put(new byte[10]);
+        buffer.putLong(44100L << 44 | 1L << 41 | 15L << 36 | 88200L);
+
+        File file = File.createTempFile("audio", ".flac");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array());
+            out.write(new byte[4000]);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
+
+public class Mp3MetadataParserTest {
+    // MPEG 1 layer 3, 128 kbps, 44100 Hz, stereo
+    private static final int FRAME_HEADER = 0xFFFB9000;
+    private static final int FRAME_LENGTH = 417;
+
+    @Test
+    public void testParseCbr() throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(id3Tag(100));
+        for (int i = 0; i < 20; i++) {
+            content.write(frame(null));
+        }
+        File file = writeFile(content.toByteArray());
+
+        MediaMetadata metadata = new Mp3MetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(20 * FRAME_LENGTH * 8 / 128), metadata.getDuration());
+        assertEquals(Long.valueOf(16000), metadata.getBitrate());
+        assertEquals(Long.valueOf(44100), metadata.getSampleFrequency());
+        assertEquals(Long.valueOf(2), metadata.getAudioChannels());
+    }
+
+    @Test
+    public void testParseVbr() throws IOException {
+        ByteBuffer xing = ByteBuffer.allocate(12);
+        xing.put("Xing".getBytes(US_ASCII)).putInt(1).putInt(1000);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(frame(xing.array()));
+        for (int i = 0; i < 5; i++) {
+            content.write(frame(null));
+        }
+        File file = writeFile(content.toByteArray());
+
+        MediaMetadata metadata = new Mp3MetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(1000L * 1152 * 1000 / 44100), metadata.getDuration());
+        assertNull(metadata.getBitrate());
+    }
+
+    @Test
+    public void testParseGarbageBeforeFrames() throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        // False sync followed by garbage
+        content.write(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0, 1, 2, 3});
+        for (int i = 0; i < 3; i++) {
+            content.write(frame(null));
+        }
+        File file = writeFile(content.toByteArray());
+
+        MediaMetadata metadata = new Mp3MetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(3 * FRAME_LENGTH * 8 / 128), metadata.getDuration());
+    }
+
+    @Test
+    public void testParseNoFrame() throws IOException {
+        File file = writeFile(new byte[1000]);
+        assertNull(new Mp3MetadataParser().parse(file));
+    }
+
+    private static byte[] frame(final byte[] vbrHeader) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_LENGTH);
+        frame.putInt(FRAME_HEADER);
+        if (vbrHeader != null) {
+            // Xing header follows side information (32 bytes for MPEG 1 stereo)
+            frame.position(4 + 32);
+            frame.put(vbrHeader);
+        }
+        return frame.array();
+    }
+
+    private static byte[] id3Tag(final int size) {
+        ByteBuffer tag = ByteBuffer.allocate(10 + size);
+        tag.put("ID3".getBytes(US_ASCII)).put((byte) 3).put((byte) 0).put((byte) 0);
+        tag.put((byte) (size >> 21 & 0x7F)).put((byte) (size >> 14 & 0x7F)).put((byte) (size >> 7 & 0x7F)).put((byte) (size & 0x7F));
+        return tag.array();
+    }
+
+    private static File writeFile(final byte[] content) throws IOException {
+        File file = File.createTempFile("audio", ".mp3");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.metadata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
+
+public class Mp4MetadataParserTest {
+
+    @Test
+    public void testParse() throws IOException {
+        // mvhd: version/flags, creation, modification, time scale, duration
+        byte[] mvhd = box("mvhd", ints(0, 0, 0, 600, 90000), new byte[80]);
+        // Video track: tkhd width and height (16.16) at offset 76
+        byte[] videoTkhd = box("tkhd", new byte[76], ints(1280 << 16, 720 << 16));
+        byte[] videoTrak = box("trak", videoTkhd, box("mdia", handler("vide")));
+        // Audio track: stsd with one audio sample entry
+        byte[] audioEntry = box("mp4a", new byte[8], new byte[8], shorts(2, 16, 0, 0), ints(44100 << 16));
+        byte[] stsd = box("stsd", ints(0, 1), audioEntry);
+        byte[] audioTrak = box("trak", box("mdia", box("mdhd", ints(0, 0, 0, 44100, 0)), handler("soun"), box("minf", box("stbl", stsd))));
+        File file = writeFile(box("ftyp", "isom".getBytes(US_ASCII)), box("moov", mvhd, videoTrak, audioTrak), box("mdat", new byte[64]));
+
+        MediaMetadata metadata = new Mp4MetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertEquals(Long.valueOf(150000), metadata.getDuration());
+        assertEquals(Integer.valueOf(1280), metadata.getResolutionX());
+        assertEquals(Integer.valueOf(720), metadata.getResolutionY());
+        assertEquals(Long.valueOf(44100), metadata.getSampleFrequency());
+        assertEquals(Long.valueOf(2), metadata.getAudioChannels());
+        assertEquals(Long.valueOf(16), metadata.getBitsPerSample());
+    }
+
+    @Test
+    public void testParseHighSampleRate() throws IOException {
+        // Sample entry rate is 0 when sample rate does not fit in 16 bits, media time scale is used
+        byte[] audioEntry = box("mp4a", new byte[8], new byte[8], shorts(2, 24, 0, 0), ints(0));
+        byte[] stsd = box("stsd", ints(0, 1), audioEntry);
+        byte[] audioTrak = box("trak", box("mdia", box("mdhd", ints(0, 0, 0, 96000, 0)), handler("soun"), box("minf", box("stbl", stsd))));
+        File file = writeFile(box("moov", audioTrak));
+
+        MediaMetadata metadata = new Mp4MetadataParser().parse(file);
+        assertNotNull(metadata);
+        assertNull(metadata.getDuration());
+        assertFalse(metadata.hasResolution());
+        assertEquals(Long.valueOf(96000), metadata.getSampleFrequency());
+    }
+
+    @Test
+    public void testParseNoMoov() throws IOException {
+        File file = writeFile(box("ftyp", "isom".getBytes(US_ASCII)), box("mdat", new byte[64]));
+        assertNull(new Mp4MetadataParser().parse(file));
+    }
+
+    private static byte[] handler(final String type) throws IOException {
+        return box("hdlr", ints(0, 0), type.getBytes(US_ASCII), new byte[12]);
+    }
+
+    private static byte[] box(final String type, final byte[]... contents) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] bytes : contents) {
+            content.write(bytes);
+        }
+        ByteArrayOutputStream box = new ByteArrayOutputStream();
+        box.write(ints(content.size() + 8));
+        box.write(type.getBytes(US_ASCII));
+        box.write(content.toByteArray());
+        return box.toByteArray();
+    }
+
+    private static byte[] ints(final int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] shorts(final int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 2);
+        for (int value : values) {
+            buffer.putShort((short) value);
+        }
+        return buffer.array();
+    }
+
+    private static File writeFile(final byte[]... boxes) throws IOException {
+        File file = File.createTempFile("video", ".mp4");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] box : boxes) {
+                out.write(box);
+            }
+        }
+        return file;
+    }
+}
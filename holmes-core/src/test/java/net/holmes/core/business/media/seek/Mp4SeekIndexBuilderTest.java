@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Mp4SeekIndexBuilderTest {
+
+    @Test
+    public void testBuild() throws IOException {
+        byte[] stbl = box("stbl",
+                fullBox("stts", 1, 4, 500),
+                fullBox("stss", 2, 1, 3),
+                fullBox("stsc", 1, 1, 2, 1),
+                fullBox("stsz", 0, 4, 10, 20, 30, 40),
+                fullBox("stco", 2, 1000, 2000));
+        byte[] mdia = box("mdia",
+                fullBox("mdhd", 0, 0, 1000, 2000, 0),
+                box("hdlr", ints(0, 0), "vide".getBytes(US_ASCII), new byte[12]),
+                box("minf", stbl));
+        File file = writeFile(box("ftyp", "isom".getBytes(US_ASCII)), box("moov", box("trak", mdia)), box("mdat", new byte[64]));
+
+        SeekIndex seekIndex = new Mp4SeekIndexBuilder().build(file);
+        assertEquals(2, seekIndex.size());
+        assertEquals(2000, seekIndex.getDuration());
+        assertEquals(1000, seekIndex.getOffset(0));
+        assertEquals(1000, seekIndex.getOffset(999));
+        assertEquals(2000, seekIndex.getOffset(1000));
+        assertEquals(2000, seekIndex.getOffset(1500));
+    }
+
+    @Test
+    public void testBuildNoMoov() throws IOException {
+        File file = writeFile(box("ftyp", "isom".getBytes(US_ASCII)), box("mdat", new byte[64]));
+        assertNull(new Mp4SeekIndexBuilder().build(file));
+    }
+
+    @Test
+    public void testBuildNoTrack() throws IOException {
+        File file = writeFile(box("moov", box("mvhd", new byte[100])));
+        assertNull(new Mp4SeekIndexBuilder().build(file));
+    }
+
+    /**
+     * Build a full box (version and flags set to 0) with integer fields.
+     */
+    private static byte[] fullBox(final String type, final int... values) throws IOException {
+        return box(type, ints(0), ints(values));
+    }
+
+    private static byte[] box(final String type, final byte[]... contents) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] bytes : contents) {
+            content.write(bytes);
+        }
+        ByteArrayOutputStream box = new ByteArrayOutputStream();
+        box.write(ints(content.size() + 8));
+        box.write(type.getBytes(US_ASCII));
+        box.write(content.toByteArray());
+        return box.toByteArray();
+    }
+
+    private static byte[] ints(final int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static File writeFile(final byte[]... boxes) throws IOException {
+        File file = File.createTempFile("video", ".mp4");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] box : boxes) {
+                out.write(box);
+            }
+        }
+        return file;
+    }
+}
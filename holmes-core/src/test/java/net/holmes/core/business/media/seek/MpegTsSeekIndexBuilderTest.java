@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MpegTsSeekIndexBuilderTest {
+
+    @Test
+    public void testBuildTs() throws IOException {
+        SeekIndex seekIndex = new MpegTsSeekIndexBuilder().build(writeTsFile(188, 2000));
+        assertEquals(1990, seekIndex.getDuration());
+        assertEquals(0, seekIndex.getOffset(0));
+        assertEquals(0, seekIndex.getOffset(1000) % 188);
+        assertEquals(1000, seekIndex.getOffset(1000) / 188, 10);
+        assertEquals(1990 * 188, seekIndex.getOffset(1990));
+    }
+
+    @Test
+    public void testBuildM2ts() throws IOException {
+        SeekIndex seekIndex = new MpegTsSeekIndexBuilder().build(writeTsFile(192, 2000));
+        assertEquals(1990, seekIndex.getDuration());
+        assertEquals(0, seekIndex.getOffset(500) % 192);
+        assertEquals(500, seekIndex.getOffset(500) / 192, 10);
+    }
+
+    @Test
+    public void testBuildNotTs() throws IOException {
+        File file = File.createTempFile("video", ".ts");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[4096]);
+        }
+        assertNull(new MpegTsSeekIndexBuilder().build(file));
+    }
+
+    @Test
+    public void testBuildNoPcr() throws IOException {
+        File file = writeTsFile(188, 5);
+        assertNull(new MpegTsSeekIndexBuilder().build(file));
+    }
+
+    /**
+     * Write transport stream: one packet per millisecond, PCR every 10 packets.
+     */
+    private static File writeTsFile(final int packetSize, final int packetCount) throws IOException {
+        File file = File.createTempFile("video", ".ts");
+        file.deleteOnExit();
+        int syncOffset = packetSize - 188;
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < packetCount; i++) {
+                byte[] packet = new byte[packetSize];
+                packet[syncOffset] = 0x47;
+                packet[syncOffset + 1] = 0x01;
+                packet[syncOffset + 2] = 0x00;
+                if (i % 10 == 0) {
+                    long pcr = i * 90L;
+                    packet[syncOffset + 3] = 0x30;
+                    packet[syncOffset + 4] = 7;
+                    packet[syncOffset + 5] = 0x10;
+                    packet[syncOffset + 6] = (byte) (pcr >> 25);
+                    packet[syncOffset + 7] = (byte) (pcr >> 17);
+                    packet[syncOffset + 8] = (byte) (pcr >> 9);
+                    packet[syncOffset + 9] = (byte) (pcr >> 1);
+                    packet[syncOffset + 10] = (byte) ((pcr & 0x1) << 7);
+                } else {
+                    packet[syncOffset + 3] = 0x10;
+                }
+                out.write(packet);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import net.holmes.core.common.MimeType;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SeekIndexManagerImplTest {
+
+    @Test
+    public void testIsTimeSeekSupported() {
+        SeekIndexManager seekIndexManager = new SeekIndexManagerImpl();
+        assertTrue(seekIndexManager.isTimeSeekSupported(MimeType.valueOf("video/mp4")));
+        assertTrue(seekIndexManager.isTimeSeekSupported(MimeType.valueOf("video/MP2T")));
+        assertFalse(seekIndexManager.isTimeSeekSupported(MimeType.valueOf("video/x-msvideo")));
+        assertFalse(seekIndexManager.isTimeSeekSupported(null));
+    }
+
+    @Test
+    public void testGetSeekIndex() throws IOException {
+        File file = File.createTempFile("video", ".mp4");
+        file.deleteOnExit();
+        SeekIndexManager seekIndexManager = new SeekIndexManagerImpl();
+        assertNull(seekIndexManager.getSeekIndex(file, MimeType.valueOf("video/mp4")));
+        assertNull(seekIndexManager.getSeekIndex(file, MimeType.valueOf("video/mp4")));
+        assertNull(seekIndexManager.getSeekIndex(file, MimeType.valueOf("video/x-msvideo")));
+    }
+
+    @Test
+    public void testGetSeekIndexMissingFile() {
+        SeekIndexManager seekIndexManager = new SeekIndexManagerImpl();
+        assertNull(seekIndexManager.getSeekIndex(new File("/missing/video.ts"), MimeType.valueOf("video/MP2T")));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.seek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class SeekIndexTest {
+
+    @Test
+    public void testGetOffset() {
+        SeekIndex seekIndex = new SeekIndex(new long[]{0, 1000, 2000}, new long[]{100, 500, 900}, 3000, false, 1);
+        assertEquals(3, seekIndex.size());
+        assertEquals(3000, seekIndex.getDuration());
+        assertEquals(100, seekIndex.getOffset(0));
+        assertEquals(500, seekIndex.getOffset(1000));
+        assertEquals(500, seekIndex.getOffset(1999));
+        assertEquals(900, seekIndex.getOffset(2500));
+        assertNotNull(seekIndex.toString());
+    }
+
+    @Test
+    public void testGetOffsetInterpolated() {
+        SeekIndex seekIndex = new SeekIndex(new long[]{0, 1000, 2000}, new long[]{0, 1880, 3760}, 2000, true, 188);
+        assertEquals(0, seekIndex.getOffset(0));
+        assertEquals(940 - 940 % 188, seekIndex.getOffset(500));
+        assertEquals(1880, seekIndex.getOffset(1000));
+        assertEquals(1880 + 188 * 5, seekIndex.getOffset(1500));
+        assertEquals(3760, seekIndex.getOffset(5000));
+    }
+
+    @Test
+    public void testGetOffsetEmpty() {
+        SeekIndex seekIndex = new SeekIndex(new long[0], new long[0], 0, true, 0);
+        assertEquals(0, seekIndex.getOffset(1000));
+    }
+}
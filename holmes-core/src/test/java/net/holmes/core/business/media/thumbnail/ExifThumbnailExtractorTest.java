@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExifThumbnailExtractorTest {
+    private static final byte[] THUMBNAIL = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, (byte) 0xFF, (byte) 0xD9};
+
+    @Test
+    public void testExtract() throws IOException {
+        File file = writeFile(exifSegment(THUMBNAIL));
+        assertArrayEquals(THUMBNAIL, new ExifThumbnailExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractAfterOtherSegment() throws IOException {
+        File file = writeFile(segment(0xFFE0, "JFIF".getBytes(US_ASCII)), exifSegment(THUMBNAIL));
+        assertArrayEquals(THUMBNAIL, new ExifThumbnailExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractNoExif() throws IOException {
+        File file = writeFile(segment(0xFFE0, "JFIF".getBytes(US_ASCII)));
+        assertNull(new ExifThumbnailExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractNotJpeg() throws IOException {
+        File file = File.createTempFile("image", ".png");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("not a jpeg file".getBytes(US_ASCII));
+        }
+        assertNull(new ExifThumbnailExtractor().extract(file));
+    }
+
+    @Test
+    public void testGetExifThumbnailBadOffset() {
+        ByteBuffer tiff = tiff(THUMBNAIL);
+        tiff.putInt(24, 1000);
+        assertNull(ExifThumbnailExtractor.getExifThumbnail(exifContent(tiff)));
+    }
+
+    /**
+     * Build a little endian TIFF structure with an empty IFD0 and an IFD1 pointing to thumbnail.
+     */
+    private static ByteBuffer tiff(final byte[] thumbnail) {
+        ByteBuffer tiff = ByteBuffer.allocate(44 + thumbnail.length).order(LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        // IFD0: no entry, IFD1 at offset 14
+        tiff.putShort((short) 0).putInt(14);
+        // IFD1: thumbnail offset and length
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(44);
+        tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumbnail.length);
+        tiff.putInt(0);
+        tiff.put(thumbnail);
+        return tiff;
+    }
+
+    private static byte[] exifContent(final ByteBuffer tiff) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write('E');
+        content.write('x');
+        content.write('i');
+        content.write('f');
+        content.write(0);
+        content.write(0);
+        content.write(tiff.array(), 0, tiff.capacity());
+        return content.toByteArray();
+    }
+
+    private static byte[] exifSegment(final byte[] thumbnail) {
+        return segment(0xFFE1, exifContent(tiff(thumbnail)));
+    }
+
+    private static byte[] segment(final int marker, final byte[] content) {
+        ByteBuffer segment = ByteBuffer.allocate(content.length + 4);
+        segment.putShort((short) marker).putShort((short) (content.length + 2)).put(content);
+        return segment.array();
+    }
+
+    private static File writeFile(final byte[]... segments) throws IOException {
+        File file = File.createTempFile("image", ".jpg");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+            for (byte[] segment : segments) {
+                out.write(segment);
+            }
+            out.write(new byte[]{(byte) 0xFF, (byte) 0xDA, 0, 2, (byte) 0xFF, (byte) 0xD9});
+        }
+        return file;
+    }
+}
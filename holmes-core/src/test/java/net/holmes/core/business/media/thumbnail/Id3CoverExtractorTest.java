@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class Id3CoverExtractorTest {
+    private static final byte[] COVER = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final byte[] OTHER_PICTURE = {9, 9, 9};
+
+    @Test
+    public void testExtractId3v23() throws IOException {
+        File file = writeFile(tag(3, 0, frame3("TIT2", text("\0title")), frame3("APIC", apic(4, OTHER_PICTURE)), frame3("APIC", apic(3, COVER))));
+        assertArrayEquals(COVER, new Id3CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractId3v23OtherPicture() throws IOException {
+        File file = writeFile(tag(3, 0, frame3("APIC", apic(4, OTHER_PICTURE))));
+        assertArrayEquals(OTHER_PICTURE, new Id3CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractId3v24() throws IOException {
+        File file = writeFile(tag(4, 0, frame4("APIC", apic(3, COVER))));
+        assertArrayEquals(COVER, new Id3CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractId3v22() throws IOException {
+        ByteArrayOutputStream pic = new ByteArrayOutputStream();
+        pic.write(text("\0JPG"));
+        pic.write(3);
+        pic.write(text("cover\0"));
+        pic.write(COVER);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(text("PIC"));
+        frame.write(new byte[]{0, 0, (byte) pic.size()});
+        frame.write(pic.toByteArray());
+
+        File file = writeFile(tag(2, 0, frame.toByteArray()));
+        assertArrayEquals(COVER, new Id3CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractUnsynchronisation() throws IOException {
+        byte[] cover = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0};
+        byte[] frame = frame3("APIC", apic(3, cover));
+        ByteArrayOutputStream unsynchronised = new ByteArrayOutputStream();
+        for (byte b : frame) {
+            unsynchronised.write(b);
+            if ((b & 0xFF) == 0xFF) {
+                unsynchronised.write(0);
+            }
+        }
+        File file = writeFile(tag(3, 0x80, unsynchronised.toByteArray()));
+        assertArrayEquals(cover, new Id3CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractNoPicture() throws IOException {
+        File file = writeFile(tag(3, 0, frame3("TIT2", text("\0title"))));
+        assertNull(new Id3CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractNoTag() throws IOException {
+        File file = writeFile(new byte[128]);
+        assertNull(new Id3CoverExtractor().extract(file));
+    }
+
+    private static byte[] apic(final int pictureType, final byte[] data) throws IOException {
+        ByteArrayOutputStream apic = new ByteArrayOutputStream();
+        apic.write(0);
+        apic.write(text("image/jpeg\0"));
+        apic.write(pictureType);
+        apic.write(text("description\0"));
+        apic.write(data);
+        return apic.toByteArray();
+    }
+
+    private static byte[] frame3(final String id, final byte[] content) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(text(id));
+        frame.write(ByteBuffer.allocate(4).putInt(content.length).array());
+        frame.write(new byte[2]);
+        frame.write(content);
+        return frame.toByteArray();
+    }
+
+    private static byte[] frame4(final String id, final byte[] content) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(text(id));
+        frame.write(syncSafe(content.length));
+        frame.write(new byte[2]);
+        frame.write(content);
+        return frame.toByteArray();
+    }
+
+    private static byte[] tag(final int version, final int flags, final byte[]... frames) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            content.write(frame);
+        }
+        // Padding
+        content.write(new byte[16]);
+
+        ByteArrayOutputStream tag = new ByteArrayOutputStream();
+        tag.write(text("ID3"));
+        tag.write(version);
+        tag.write(0);
+        tag.write(flags);
+        tag.write(syncSafe(content.size()));
+        tag.write(content.toByteArray());
+        return tag.toByteArray();
+    }
+
+    private static byte[] syncSafe(final int value) {
+        return new byte[]{(byte) (value >> 21 & 0x7F), (byte) (value >> 14 & 0x7F), (byte) (value >> 7 & 0x7F), (byte) (value & 0x7F)};
+    }
+
+    private static byte[] text(final String text) {
+        return text.getBytes(ISO_8859_1);
+    }
+
+    private static File writeFile(final byte[] tag) throws IOException {
+        File file = File.createTempFile("audio", ".mp3");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(tag);
+            out.write(new byte[64]);
+        }
+        return file;
+    }
+}
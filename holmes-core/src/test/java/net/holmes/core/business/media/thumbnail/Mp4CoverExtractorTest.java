@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class Mp4CoverExtractorTest {
+    private static final byte[] COVER = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Test
+    public void testExtract() throws IOException {
+        byte[] ilst = box("ilst", box("covr", box("data", ints(13, 0), COVER)));
+        byte[] meta = box("meta", ints(0), box("hdlr", ints(0, 0), "mdir".getBytes(US_ASCII), new byte[12]), ilst);
+        File file = writeFile(box("ftyp", "M4A ".getBytes(US_ASCII)), box("moov", box("mvhd", new byte[100]), box("udta", meta)), box("mdat", new byte[64]));
+
+        assertArrayEquals(COVER, new Mp4CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractQuickTimeMeta() throws IOException {
+        byte[] ilst = box("ilst", box("covr", box("data", ints(14, 0), COVER)));
+        byte[] meta = box("meta", box("hdlr", ints(0, 0), "mdir".getBytes(US_ASCII), new byte[12]), ilst);
+        File file = writeFile(box("moov", box("udta", meta)));
+
+        assertArrayEquals(COVER, new Mp4CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractNoCover() throws IOException {
+        byte[] meta = box("meta", ints(0), box("hdlr", ints(0, 0), "mdir".getBytes(US_ASCII), new byte[12]), box("ilst"));
+        File file = writeFile(box("moov", box("udta", meta)));
+
+        assertNull(new Mp4CoverExtractor().extract(file));
+    }
+
+    @Test
+    public void testExtractNoMoov() throws IOException {
+        File file = writeFile(box("ftyp", "isom".getBytes(US_ASCII)), box("mdat", new byte[64]));
+        assertNull(new Mp4CoverExtractor().extract(file));
+    }
+
+    private static byte[] box(final String type, final byte[]... contents) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] bytes : contents) {
+            content.write(bytes);
+        }
+        ByteArrayOutputStream box = new ByteArrayOutputStream();
+        box.write(ints(content.size() + 8));
+        box.write(type.getBytes(US_ASCII));
+        box.write(content.toByteArray());
+        return box.toByteArray();
+    }
+
+    private static byte[] ints(final int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static File writeFile(final byte[]... boxes) throws IOException {
+        File file = File.createTempFile("audio", ".m4a");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] box : boxes) {
+                out.write(box);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.media.thumbnail;
+
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.common.MimeType;
+import net.holmes.core.test.TestConfigurationDao;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static net.holmes.core.common.ConfigurationParameter.THUMBNAIL_CACHE_MAX_SIZE_MB;
+import static net.holmes.core.common.ConfigurationParameter.THUMBNAIL_ENABLE;
+import static org.junit.Assert.*;
+
+public class ThumbnailManagerImplTest {
+    private static final MimeType MIME_TYPE_JPEG = MimeType.valueOf("image/jpeg");
+
+    @Test
+    public void testIsThumbnailSupported() throws IOException {
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), getDataDir());
+        assertTrue(thumbnailManager.isThumbnailSupported(MIME_TYPE_JPEG));
+        assertTrue(thumbnailManager.isThumbnailSupported(MimeType.valueOf("image/png")));
+        assertTrue(thumbnailManager.isThumbnailSupported(MimeType.valueOf("audio/mpeg")));
+        assertTrue(thumbnailManager.isThumbnailSupported(MimeType.valueOf("video/mp4")));
+        assertFalse(thumbnailManager.isThumbnailSupported(MimeType.valueOf("video/x-msvideo")));
+        assertFalse(thumbnailManager.isThumbnailSupported(null));
+    }
+
+    @Test
+    public void testIsThumbnailSupportedDisabled() throws IOException {
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        configurationDao.setParameter(THUMBNAIL_ENABLE, false);
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(configurationDao, getDataDir());
+        assertFalse(thumbnailManager.isThumbnailSupported(MIME_TYPE_JPEG));
+        assertNull(thumbnailManager.getThumbnail(newContentNode(writeImage(640, 480), MIME_TYPE_JPEG)));
+    }
+
+    @Test
+    public void testGetThumbnail() throws Exception {
+        File image = writeImage(640, 480);
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), getDataDir());
+
+        // Thumbnail is generated in background
+        File thumbnail = waitForThumbnail(thumbnailManager, image, MIME_TYPE_JPEG);
+        assertNotNull(thumbnail);
+        BufferedImage thumbnailImage = ImageIO.read(thumbnail);
+        assertEquals(160, thumbnailImage.getWidth());
+        assertEquals(120, thumbnailImage.getHeight());
+
+        // Thumbnail is now served from cache
+        assertEquals(thumbnail, thumbnailManager.getThumbnail(newContentNode(image, MIME_TYPE_JPEG)));
+        assertEquals(thumbnail, thumbnailManager.getThumbnail(image, MIME_TYPE_JPEG, image.length(), image.lastModified()));
+    }
+
+    @Test
+    public void testGetThumbnailModifiedFile() throws Exception {
+        File image = writeImage(640, 480);
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), getDataDir());
+
+        File thumbnail = waitForThumbnail(thumbnailManager, image, MIME_TYPE_JPEG);
+        assertNotNull(thumbnail);
+
+        // Thumbnail key is built from node size and modification date
+        assertNull(thumbnailManager.getThumbnail(image, MIME_TYPE_JPEG, image.length() + 1, image.lastModified()));
+        File modifiedThumbnail = waitForThumbnail(thumbnailManager, image, MIME_TYPE_JPEG, image.length() + 1);
+        assertNotNull(modifiedThumbnail);
+        assertNotEquals(thumbnail, modifiedThumbnail);
+    }
+
+    @Test
+    public void testGetThumbnailAfterRestart() throws Exception {
+        File image = writeImage(640, 480);
+        String dataDir = getDataDir();
+        File thumbnail = waitForThumbnail(new ThumbnailManagerImpl(new TestConfigurationDao(), dataDir), image, MIME_TYPE_JPEG);
+        assertNotNull(thumbnail);
+
+        // Thumbnails generated before restart are found again without being generated
+        File image2 = writeImage(320, 240);
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), dataDir);
+        assertNull(thumbnailManager.getThumbnail(newContentNode(image, MIME_TYPE_JPEG)));
+        assertEquals(thumbnail, waitForThumbnail(thumbnailManager, image, MIME_TYPE_JPEG));
+
+        // Thumbnails are also known once cache is cleaned up
+        File thumbnail2 = waitForThumbnail(new ThumbnailManagerImpl(new TestConfigurationDao(), dataDir), image2, MIME_TYPE_JPEG);
+        assertNotNull(thumbnail2);
+        thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), dataDir);
+        thumbnailManager.cleanUpCache();
+        assertEquals(thumbnail, thumbnailManager.getThumbnail(newContentNode(image, MIME_TYPE_JPEG)));
+        assertEquals(thumbnail2, thumbnailManager.getThumbnail(newContentNode(image2, MIME_TYPE_JPEG)));
+    }
+
+    @Test
+    public void testGetThumbnailSmallImage() throws Exception {
+        File image = writeImage(100, 50);
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), getDataDir());
+
+        File thumbnail = waitForThumbnail(thumbnailManager, image, MIME_TYPE_JPEG);
+        assertNotNull(thumbnail);
+        BufferedImage thumbnailImage = ImageIO.read(thumbnail);
+        assertEquals(100, thumbnailImage.getWidth());
+        assertEquals(50, thumbnailImage.getHeight());
+    }
+
+    @Test
+    public void testGetThumbnailNoImage() throws Exception {
+        File file = File.createTempFile("audio", ".mp3");
+        file.deleteOnExit();
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), getDataDir());
+
+        assertNull(waitForThumbnail(thumbnailManager, file, MimeType.valueOf("audio/mpeg")));
+    }
+
+    @Test
+    public void testCleanUpCache() throws Exception {
+        File image = writeImage(640, 480);
+        ConfigurationDao configurationDao = new TestConfigurationDao();
+        configurationDao.setParameter(THUMBNAIL_CACHE_MAX_SIZE_MB, 0);
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(configurationDao, getDataDir());
+
+        File thumbnail = waitForThumbnail(thumbnailManager, image, MIME_TYPE_JPEG);
+        assertNotNull(thumbnail);
+        thumbnailManager.cleanUpCache();
+        assertFalse(thumbnail.exists());
+
+        // Removed thumbnail is not served anymore
+        assertNull(thumbnailManager.getThumbnail(newContentNode(image, MIME_TYPE_JPEG)));
+    }
+
+    @Test
+    public void testCleanUpCacheEmpty() throws IOException {
+        ThumbnailManager thumbnailManager = new ThumbnailManagerImpl(new TestConfigurationDao(), getDataDir());
+        thumbnailManager.cleanUpCache();
+    }
+
+    private static File waitForThumbnail(final ThumbnailManager thumbnailManager, final File file, final MimeType mimeType) throws InterruptedException {
+        return waitForThumbnail(thumbnailManager, file, mimeType, file.length());
+    }
+
+    private static File waitForThumbnail(final ThumbnailManager thumbnailManager, final File file, final MimeType mimeType, final long size)
+            throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            File thumbnail = thumbnailManager.getThumbnail(file, mimeType, size, file.lastModified());
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+
+    private static ContentNode newContentNode(final File file, final MimeType mimeType) {
+        return new ContentNode("id", "parentId", file.getName(), file, mimeType);
+    }
+
+    private static String getDataDir() throws IOException {
+        File dataDir = Files.createTempDirectory("holmes").toFile();
+        dataDir.deleteOnExit();
+        return dataDir.getAbsolutePath();
+    }
+
+    private static File writeImage(final int width, final int height) throws IOException {
+        File file = File.createTempFile("image", ".jpg");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpeg", out);
+        }
+        return file;
+    }
+}
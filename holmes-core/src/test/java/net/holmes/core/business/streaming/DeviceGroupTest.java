@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DeviceGroupTest {
+
+    @Test
+    public void testStartWhenAllPrepared() {
+        DeviceGroup group = new DeviceGroup(Arrays.asList("device1", "device2"));
+        assertFalse(group.isStarted());
+        assertFalse(group.prepared("device1"));
+        assertFalse(group.prepared("unknown"));
+        assertTrue(group.prepared("device2"));
+        assertTrue(group.isStarted());
+        // Group is started once
+        assertFalse(group.prepared("device1"));
+        assertEquals(Arrays.asList("device1", "device2"), group.getDeviceIds());
+    }
+
+    @Test
+    public void testStartWhenLastUnpreparedRemoved() {
+        DeviceGroup group = new DeviceGroup(Arrays.asList("device1", "device2", "device3"));
+        assertFalse(group.prepared("device1"));
+        assertFalse(group.remove("unknown"));
+        assertFalse(group.remove("device1"));
+        assertFalse(group.prepared("device2"));
+        assertTrue(group.remove("device3"));
+        assertTrue(group.isStarted());
+        assertEquals(Arrays.asList("device2"), group.getDeviceIds());
+        assertFalse(group.remove("device2"));
+        assertTrue(group.getDeviceIds().isEmpty());
+    }
+
+    @Test
+    public void testNoCorrectionBeforeStart() {
+        DeviceGroup group = new DeviceGroup(Arrays.asList("device1", "device2"));
+        group.prepared("device1");
+        assertNull(group.statusReceived("device1", 10L, 0L));
+        assertNull(group.statusReceived("device2", 100L, 0L));
+    }
+
+    @Test
+    public void testNoCorrectionInSync() {
+        DeviceGroup group = startedGroup("device1", "device2");
+        assertNull(group.statusReceived("device1", 10L, 0L));
+        assertNull(group.statusReceived("device1", null, 0L));
+        // Position of device1 is predicted to 15s
+        assertNull(group.statusReceived("device2", 16L, 5000L));
+        assertNull(group.statusReceived("device1", 17L, 7000L));
+    }
+
+    @Test
+    public void testCorrectDrift() {
+        DeviceGroup group = startedGroup("device1", "device2", "device3");
+        assertNull(group.statusReceived("device1", 10L, 0L));
+        assertNull(group.statusReceived("device2", 11L, 0L));
+        // Median of other devices at 2s
+        assertEquals(Long.valueOf(13L), group.statusReceived("device3", 20L, 2000L));
+        // Seeked device is not corrected again before delay
+        assertNull(group.statusReceived("device3", 30L, 3000L));
+        assertEquals(Long.valueOf(24L), group.statusReceived("device3", 30L, 13000L));
+    }
+
+    @Test
+    public void testNoCorrectionForRemovedDevice() {
+        DeviceGroup group = startedGroup("device1", "device2");
+        assertNull(group.statusReceived("device1", 10L, 0L));
+        group.remove("device1");
+        assertNull(group.statusReceived("device2", 50L, 0L));
+        assertNull(group.statusReceived("device1", 50L, 0L));
+    }
+
+    private DeviceGroup startedGroup(String... deviceIds) {
+        DeviceGroup group = new DeviceGroup(Arrays.asList(deviceIds));
+        for (String deviceId : deviceIds) {
+            group.prepared(deviceId);
+        }
+        assertTrue(group.isStarted());
+        return group;
+    }
+}
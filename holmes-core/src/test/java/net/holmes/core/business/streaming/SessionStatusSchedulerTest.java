@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming;
+
+import net.holmes.core.business.streaming.SessionStatusScheduler.PollResult;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.holmes.core.business.streaming.SessionStatusScheduler.PollResult.*;
+import static org.junit.Assert.*;
+
+public class SessionStatusSchedulerTest {
+    private static final long MIN_DELAY = 20L;
+    private static final long MAX_DELAY = 160L;
+
+    @Test
+    public void testPollingDisabled() {
+        CountingPoller poller = new CountingPoller(REQUESTED);
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, 0, poller);
+        scheduler.start("deviceId");
+        assertNull(scheduler.getDelay("deviceId"));
+    }
+
+    @Test
+    public void testBackOffWhenPositionAdvances() throws InterruptedException {
+        final AtomicReference<SessionStatusScheduler> schedulerRef = new AtomicReference<>();
+        CountingPoller poller = new CountingPoller(REQUESTED) {
+            @Override
+            public PollResult poll(String deviceId) {
+                super.poll(deviceId);
+                // Position does not change within a second
+                schedulerRef.get().statusReceived(deviceId, 10L, 1000L);
+                return REQUESTED;
+            }
+        };
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, MAX_DELAY, poller);
+        schedulerRef.set(scheduler);
+        scheduler.start("deviceId");
+        assertEquals(Long.valueOf(MIN_DELAY), scheduler.getDelay("deviceId"));
+
+        awaitDelay(scheduler, MAX_DELAY);
+        assertTrue(poller.count.get() >= 4);
+        scheduler.stop("deviceId");
+        assertNull(scheduler.getDelay("deviceId"));
+    }
+
+    @Test
+    public void testPollFastWhenPositionJumps() throws InterruptedException {
+        final AtomicReference<SessionStatusScheduler> schedulerRef = new AtomicReference<>();
+        CountingPoller poller = new CountingPoller(REQUESTED) {
+            @Override
+            public PollResult poll(String deviceId) {
+                // Position jumps ahead at each poll
+                schedulerRef.get().statusReceived(deviceId, 100L * super.count.incrementAndGet(), 100000L);
+                return REQUESTED;
+            }
+        };
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, MAX_DELAY, poller);
+        schedulerRef.set(scheduler);
+        scheduler.start("deviceId");
+        awaitCount(poller, 5);
+        assertEquals(Long.valueOf(MIN_DELAY), scheduler.getDelay("deviceId"));
+        scheduler.stop("deviceId");
+    }
+
+    @Test
+    public void testPollFastNearEnd() throws InterruptedException {
+        final AtomicReference<SessionStatusScheduler> schedulerRef = new AtomicReference<>();
+        CountingPoller poller = new CountingPoller(REQUESTED) {
+            @Override
+            public PollResult poll(String deviceId) {
+                super.poll(deviceId);
+                // End of content is reached
+                schedulerRef.get().statusReceived(deviceId, 100L, 100L);
+                return REQUESTED;
+            }
+        };
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, MAX_DELAY, poller);
+        schedulerRef.set(scheduler);
+        scheduler.start("deviceId");
+        awaitCount(poller, 5);
+        assertEquals(Long.valueOf(MIN_DELAY), scheduler.getDelay("deviceId"));
+        scheduler.stop("deviceId");
+    }
+
+    @Test
+    public void testOneRequestInFlight() throws InterruptedException {
+        // Status is never received: next request is sent after request timeout only
+        CountingPoller poller = new CountingPoller(REQUESTED);
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, MAX_DELAY, poller);
+        scheduler.start("deviceId");
+        awaitCount(poller, 1);
+        Thread.sleep(MAX_DELAY);
+        assertEquals(1, poller.count.get());
+
+        // Late status restarts polling, failures back off
+        scheduler.statusFailed("deviceId");
+        assertEquals(Long.valueOf(2 * MIN_DELAY), scheduler.getDelay("deviceId"));
+        awaitCount(poller, 2);
+        scheduler.stop("deviceId");
+    }
+
+    @Test
+    public void testStopWhenNotPlaying() throws InterruptedException {
+        CountingPoller poller = new CountingPoller(NOT_PLAYING);
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, MAX_DELAY, poller);
+        scheduler.start("deviceId");
+        awaitCount(poller, 1);
+        for (int i = 0; i < 100 && scheduler.getDelay("deviceId") != null; i++) {
+            Thread.sleep(10);
+        }
+        assertNull(scheduler.getDelay("deviceId"));
+        Thread.sleep(2 * MAX_DELAY);
+        assertEquals(1, poller.count.get());
+    }
+
+    @Test
+    public void testPollResumesWhenStatusIsNotPushedAnymore() throws InterruptedException {
+        // Device pushes its status, then its subscription ends during playback
+        final AtomicBoolean pushed = new AtomicBoolean(true);
+        final AtomicInteger requests = new AtomicInteger();
+        CountingPoller poller = new CountingPoller(REQUESTED) {
+            @Override
+            public PollResult poll(String deviceId) {
+                super.poll(deviceId);
+                if (pushed.get()) {
+                    return PUSHED;
+                }
+                requests.incrementAndGet();
+                return REQUESTED;
+            }
+        };
+        SessionStatusScheduler scheduler = new SessionStatusScheduler(MIN_DELAY, MAX_DELAY, poller);
+        scheduler.start("deviceId");
+        awaitCount(poller, 2);
+        assertEquals(Long.valueOf(MAX_DELAY), scheduler.getDelay("deviceId"));
+        assertEquals(0, requests.get());
+
+        // Session stays scheduled, status is requested again once it is not pushed anymore
+        pushed.set(false);
+        for (int i = 0; i < 200 && requests.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, requests.get());
+        scheduler.stop("deviceId");
+    }
+
+    private void awaitDelay(final SessionStatusScheduler scheduler, final long delay) throws InterruptedException {
+        for (int i = 0; i < 200 && !Long.valueOf(delay).equals(scheduler.getDelay("deviceId")); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Long.valueOf(delay), scheduler.getDelay("deviceId"));
+    }
+
+    private void awaitCount(final CountingPoller poller, final int count) throws InterruptedException {
+        for (int i = 0; i < 200 && poller.count.get() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(poller.count.get() >= count);
+    }
+
+    /**
+     * Counts status requests.
+     */
+    private static class CountingPoller implements SessionStatusScheduler.StatusPoller {
+        private final AtomicInteger count = new AtomicInteger();
+        private final PollResult result;
+
+        CountingPoller(final PollResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public PollResult poll(String deviceId) {
+            count.incrementAndGet();
+            return result;
+        }
+    }
+}
@@ -26,20 +26,28 @@ import net.holmes.core.business.streaming.device.DeviceDao;
 import net.holmes.core.business.streaming.device.DeviceStreamer;
 import net.holmes.core.business.streaming.device.UnknownDeviceException;
 import net.holmes.core.business.streaming.event.StreamingEvent;
+import net.holmes.core.business.streaming.session.QueuedContent;
 import net.holmes.core.business.streaming.session.SessionDao;
+import net.holmes.core.business.streaming.session.StreamingSession;
 import net.holmes.core.business.streaming.session.UnknownSessionException;
 import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
 import net.holmes.core.common.MimeType;
+import org.easymock.IAnswer;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.*;
 import static net.holmes.core.business.streaming.session.SessionStatus.*;
 import static net.holmes.core.common.ConfigurationParameter.STREAMING_STATUS_UPDATE_DELAY_SECONDS;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class StreamingManagerImplTest {
 
@@ -131,13 +139,13 @@ public class StreamingManagerImplTest {
         DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
 
-        expect(deviceDao.findDevices("hostAddress")).andReturn(null);
+        expect(deviceDao.findDevices(InetAddress.getLoopbackAddress())).andReturn(null);
         expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
 
         replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
 
         StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
-        streamingManager.findDevices("hostAddress");
+        streamingManager.findDevices(InetAddress.getLoopbackAddress());
 
         verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
     }
@@ -309,6 +317,8 @@ public class StreamingManagerImplTest {
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new UpnpDevice("id", "name", null, null, null));
+        sessionDao.clearNextContents("deviceId");
+        expectLastCall();
         upnpDeviceStreamer.stop(isA(UpnpDevice.class));
         expectLastCall();
         expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
@@ -331,6 +341,8 @@ public class StreamingManagerImplTest {
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
 
         expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null));
+        sessionDao.clearNextContents("deviceId");
+        expectLastCall();
         airplayDeviceStreamer.stop(isA(AirplayDevice.class));
         expectLastCall();
         expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
@@ -555,6 +567,7 @@ public class StreamingManagerImplTest {
         expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
         sessionDao.updateSessionStatus("deviceId", PLAYING);
         expectLastCall();
+        expect(sessionDao.getNextContent("deviceId")).andReturn(null);
 
         replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
 
@@ -593,6 +606,7 @@ public class StreamingManagerImplTest {
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
 
         expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(sessionDao.nextContent("deviceId")).andReturn(null);
         sessionDao.updateSessionStatus("deviceId", WAITING);
         expectLastCall();
 
@@ -644,6 +658,265 @@ public class StreamingManagerImplTest {
         verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHandleStopStreamingEventWithNextContent() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(sessionDao.nextContent("deviceId")).andReturn(new QueuedContent("nextUrl", node));
+        expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null));
+        airplayDeviceStreamer.play(isA(AirplayDevice.class), eq("nextUrl"), eq(node));
+        expectLastCall();
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.handleStreamingEvent(new StreamingEvent(STOP, "deviceId", 0l, 0l));
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHandleNextStreamingEvent() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+        UpnpDevice device = new UpnpDevice("id", "name", null, null, null);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(sessionDao.nextContent("deviceId")).andReturn(new QueuedContent("url2", node));
+        sessionDao.updateSessionStatus("deviceId", PLAYING);
+        expectLastCall();
+        expect(sessionDao.getNextContent("deviceId")).andReturn(new QueuedContent("url3", node));
+        expect(deviceDao.getDevice("deviceId")).andReturn(device);
+        expect(upnpDeviceStreamer.isNextContentSupported(device)).andReturn(true);
+        upnpDeviceStreamer.setNextContent(device, "url3", node);
+        expectLastCall();
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.handleStreamingEvent(new StreamingEvent(NEXT, "deviceId", null, null));
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEnqueueOnPlayingSession() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+        AirplayDevice device = new AirplayDevice("id", "name", null, 0, null);
+        StreamingSession session = new StreamingSession("name", "url");
+        session.setStatus(PLAYING);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(deviceDao.getDevice("deviceId")).andReturn(device).atLeastOnce();
+        expect(sessionDao.getSession("deviceId")).andReturn(session);
+        expect(sessionDao.addNextContent(eq("deviceId"), isA(QueuedContent.class))).andReturn(true);
+        expect(sessionDao.getNextContent("deviceId")).andReturn(new QueuedContent("nextUrl", node));
+        expect(airplayDeviceStreamer.isNextContentSupported(device)).andReturn(false);
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.enqueue("deviceId", "nextUrl", node);
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEnqueueOnWaitingSession() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(deviceDao.getDevice("deviceId")).andReturn(new AirplayDevice("id", "name", null, 0, null)).atLeastOnce();
+        expect(sessionDao.getSession("deviceId")).andThrow(new UnknownSessionException("deviceId"));
+        expect(node.getName()).andReturn("name");
+        sessionDao.initSession("deviceId", "url", "name");
+        expectLastCall();
+        airplayDeviceStreamer.play(isA(AirplayDevice.class), eq("url"), eq(node));
+        expectLastCall();
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.enqueue("deviceId", "url", node);
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPlayGroup() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(deviceDao.getDevice("id1")).andReturn(new AirplayDevice("id1", "name1", null, 0, null)).atLeastOnce();
+        expect(deviceDao.getDevice("id2")).andReturn(new AirplayDevice("id2", "name2", null, 0, null)).atLeastOnce();
+        expect(node.getName()).andReturn("name").atLeastOnce();
+        sessionDao.initSession("id1", "url", "name");
+        expectLastCall();
+        sessionDao.initSession("id2", "url", "name");
+        expectLastCall();
+        airplayDeviceStreamer.prepare(isA(AirplayDevice.class), eq("url"), eq(node));
+        expectLastCall().times(2);
+        // Group is started once content is prepared on both devices
+        airplayDeviceStreamer.start(isA(AirplayDevice.class));
+        expectLastCall().times(2);
+        sessionDao.updateSessionPosition("id1", 10L, 100L);
+        expectLastCall();
+        sessionDao.updateSessionPosition("id2", 30L, 100L);
+        expectLastCall();
+        // Drifting device is seeked to the position of the other one
+        airplayDeviceStreamer.seek(isA(AirplayDevice.class), eq(10L));
+        expectLastCall();
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.playGroup(Arrays.asList("id1", "id2"), "url", node);
+        streamingManager.handleStreamingEvent(new StreamingEvent(PREPARE, "id1", null, null));
+        streamingManager.handleStreamingEvent(new StreamingEvent(PREPARE, "id2", null, null));
+        streamingManager.handleStreamingEvent(new StreamingEvent(STATUS, "id1", 100L, 10L));
+        streamingManager.handleStreamingEvent(new StreamingEvent(STATUS, "id2", 100L, 30L));
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPlayGroupPollsPushedStatus() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+        StreamingSession session = new StreamingSession("name", "url");
+        session.setStatus(PLAYING);
+        final CountDownLatch statusLatch = new CountDownLatch(1);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(1).atLeastOnce();
+        expect(deviceDao.getDevice("id1")).andReturn(new AirplayDevice("id1", "name1", null, 0, null)).atLeastOnce();
+        expect(deviceDao.getDevice("id2")).andReturn(new AirplayDevice("id2", "name2", null, 0, null)).atLeastOnce();
+        expect(node.getName()).andReturn("name").atLeastOnce();
+        sessionDao.initSession(isA(String.class), eq("url"), eq("name"));
+        expectLastCall().times(2);
+        sessionDao.updateSessionStatus("id1", PLAYING);
+        expectLastCall();
+        expect(sessionDao.getSession("id1")).andReturn(session).anyTimes();
+        expect(sessionDao.getNextContent("id1")).andReturn(null);
+        airplayDeviceStreamer.prepare(isA(AirplayDevice.class), eq("url"), eq(node));
+        expectLastCall().times(2);
+        airplayDeviceStreamer.start(isA(AirplayDevice.class));
+        expectLastCall().times(2);
+        expect(airplayDeviceStreamer.isStatusPushed(isA(AirplayDevice.class))).andReturn(true).anyTimes();
+        // Status is requested although it is pushed by device, as group member position is needed
+        airplayDeviceStreamer.updateStatus(isA(AirplayDevice.class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() {
+                statusLatch.countDown();
+                return null;
+            }
+        }).atLeastOnce();
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.playGroup(Arrays.asList("id1", "id2"), "url", node);
+        streamingManager.handleStreamingEvent(new StreamingEvent(PREPARE, "id1", null, null));
+        streamingManager.handleStreamingEvent(new StreamingEvent(PREPARE, "id2", null, null));
+        streamingManager.handleStreamingEvent(new StreamingEvent(PLAY, "id1", null, null));
+        assertTrue(statusLatch.await(10, SECONDS));
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPlayGroupWithPrepareFailure() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(deviceDao.getDevice("id1")).andReturn(new AirplayDevice("id1", "name1", null, 0, null)).atLeastOnce();
+        expect(deviceDao.getDevice("id2")).andReturn(new AirplayDevice("id2", "name2", null, 0, null)).atLeastOnce();
+        expect(node.getName()).andReturn("name").atLeastOnce();
+        sessionDao.initSession("id1", "url", "name");
+        expectLastCall();
+        sessionDao.initSession("id2", "url", "name");
+        expectLastCall();
+        airplayDeviceStreamer.prepare(isA(AirplayDevice.class), eq("url"), eq(node));
+        expectLastCall().times(2);
+        // Only prepared device is started
+        airplayDeviceStreamer.start(isA(AirplayDevice.class));
+        expectLastCall().once();
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        streamingManager.playGroup(Arrays.asList("id1", "id2"), "url", node);
+        streamingManager.handleStreamingEvent(new StreamingEvent(PREPARE, "id1", null, null));
+        streamingManager.handleStreamingEvent(new StreamingEvent(PREPARE, "id2", "errorMessage"));
+
+        verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+    }
+
+    @Test(expected = UnknownDeviceException.class)
+    public void testPlayGroupUnknownDevice() throws Exception {
+        DeviceDao deviceDao = createMock(DeviceDao.class);
+        SessionDao sessionDao = createMock(SessionDao.class);
+        DeviceStreamer upnpDeviceStreamer = createMock(DeviceStreamer.class);
+        DeviceStreamer airplayDeviceStreamer = createMock(DeviceStreamer.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        AbstractNode node = createMock(AbstractNode.class);
+
+        expect(configurationDao.getParameter(STREAMING_STATUS_UPDATE_DELAY_SECONDS)).andReturn(0).atLeastOnce();
+        expect(deviceDao.getDevice("id1")).andReturn(new AirplayDevice("id1", "name1", null, 0, null));
+        expect(deviceDao.getDevice("id2")).andThrow(new UnknownDeviceException("id2"));
+
+        replay(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+
+        StreamingManagerImpl streamingManager = new StreamingManagerImpl(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer);
+        try {
+            streamingManager.playGroup(Arrays.asList("id1", "id2"), "url", node);
+        } finally {
+            // Nothing is played when a device is unknown
+            verify(configurationDao, deviceDao, sessionDao, upnpDeviceStreamer, airplayDeviceStreamer, node);
+        }
+    }
+
     private class FakeDevice extends Device {
         /**
          * Instantiates a new device
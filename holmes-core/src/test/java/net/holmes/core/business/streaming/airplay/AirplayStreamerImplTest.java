@@ -17,6 +17,7 @@
 
 package net.holmes.core.business.streaming.airplay;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.eventbus.EventBus;
 import net.holmes.core.business.media.model.AbstractNode;
@@ -27,6 +28,7 @@ import net.holmes.core.business.streaming.event.StreamingEvent;
 import org.easymock.Capture;
 import org.junit.Test;
 
+import java.util.List;
 import java.util.Map;
 
 import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.*;
@@ -273,6 +275,173 @@ public class AirplayStreamerImplTest {
         verify(eventBus, device);
     }
 
+    @Test
+    public void testPrepareSuccess() {
+        EventBus eventBus = createMock(EventBus.class);
+        final List<String> requests = Lists.newArrayList();
+        ControlPoint controlPoint = new ControlPoint() {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void execute(AirplayDevice device, AirplayCommand command) {
+                assertNotNull(command.getRequest());
+                requests.add(command.getRequest());
+                command.success(Maps.<String, String>newHashMap());
+            }
+        };
+        AirplayDevice device = createMock(AirplayDevice.class);
+        AbstractNode node = createMock(AbstractNode.class);
+        Capture<StreamingEvent> captureStreamingEvent = new Capture<>();
+        eventBus.post(capture(captureStreamingEvent));
+        expectLastCall().atLeastOnce();
+
+        expect(device.getId()).andReturn("id");
+
+        replay(eventBus, device, node);
+        AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
+        streamer.prepare(device, "ContentUrl", node);
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(0).contains(" /play "));
+        assertTrue(requests.get(1).contains(" /rate?"));
+        assertEquals(PREPARE, captureStreamingEvent.getValue().getType());
+        assertEquals("id", captureStreamingEvent.getValue().getDeviceId());
+        assertTrue(captureStreamingEvent.getValue().isSuccess());
+        verify(eventBus, device, node);
+    }
+
+    @Test
+    public void testPreparePipelinesPause() {
+        EventBus eventBus = createMock(EventBus.class);
+        final List<AirplayCommand> commands = Lists.newArrayList();
+        ControlPoint controlPoint = new ControlPoint() {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void execute(AirplayDevice device, AirplayCommand command) {
+                commands.add(command);
+            }
+        };
+        AirplayDevice device = createMock(AirplayDevice.class);
+        AbstractNode node = createMock(AbstractNode.class);
+        Capture<StreamingEvent> captureStreamingEvent = new Capture<>();
+        eventBus.post(capture(captureStreamingEvent));
+        expectLastCall();
+
+        expect(device.getId()).andReturn("id");
+
+        replay(eventBus, device, node);
+        AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
+        streamer.prepare(device, "ContentUrl", node);
+
+        // Pause is sent without waiting for play response
+        assertEquals(2, commands.size());
+        assertTrue(commands.get(0).getRequest().contains(" /play "));
+        assertTrue(commands.get(1).getRequest().contains(" /rate?"));
+
+        // Prepare command completes on pause response
+        commands.get(0).success(Maps.<String, String>newHashMap());
+        assertFalse(captureStreamingEvent.hasCaptured());
+        commands.get(1).success(Maps.<String, String>newHashMap());
+        assertEquals(PREPARE, captureStreamingEvent.getValue().getType());
+        assertTrue(captureStreamingEvent.getValue().isSuccess());
+        verify(eventBus, device, node);
+    }
+
+    @Test
+    public void testPreparePlayFailure() {
+        EventBus eventBus = createMock(EventBus.class);
+        final List<AirplayCommand> commands = Lists.newArrayList();
+        ControlPoint controlPoint = new ControlPoint() {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void execute(AirplayDevice device, AirplayCommand command) {
+                commands.add(command);
+            }
+        };
+        AirplayDevice device = createMock(AirplayDevice.class);
+        AbstractNode node = createMock(AbstractNode.class);
+        Capture<StreamingEvent> captureStreamingEvent = new Capture<>();
+        eventBus.post(capture(captureStreamingEvent));
+        expectLastCall();
+
+        expect(device.getId()).andReturn("id");
+
+        replay(eventBus, device, node);
+        AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
+        streamer.prepare(device, "ContentUrl", node);
+        assertEquals(2, commands.size());
+
+        // Play failure completes prepare command, pause response is ignored
+        commands.get(0).failure("error");
+        commands.get(1).success(Maps.<String, String>newHashMap());
+        assertEquals(PREPARE, captureStreamingEvent.getValue().getType());
+        assertFalse(captureStreamingEvent.getValue().isSuccess());
+        verify(eventBus, device, node);
+    }
+
+    @Test
+    public void testStartSuccess() {
+        EventBus eventBus = createMock(EventBus.class);
+        ControlPoint controlPoint = new ControlPoint() {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void execute(AirplayDevice device, AirplayCommand command) {
+                assertNotNull(command.getRequest());
+                command.success(Maps.<String, String>newHashMap());
+            }
+        };
+        AirplayDevice device = createMock(AirplayDevice.class);
+        Capture<StreamingEvent> captureStreamingEvent = new Capture<>();
+        eventBus.post(capture(captureStreamingEvent));
+        expectLastCall().atLeastOnce();
+
+        expect(device.getId()).andReturn("id");
+
+        replay(eventBus, device);
+        AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
+        streamer.start(device);
+        assertEquals(PLAY, captureStreamingEvent.getValue().getType());
+        assertEquals("id", captureStreamingEvent.getValue().getDeviceId());
+        assertTrue(captureStreamingEvent.getValue().isSuccess());
+        verify(eventBus, device);
+    }
+
+    @Test
+    public void testSeekFailure() {
+        EventBus eventBus = createMock(EventBus.class);
+        ControlPoint controlPoint = new ControlPoint() {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void execute(AirplayDevice device, AirplayCommand command) {
+                assertNotNull(command.getRequest());
+                command.failure("errorMessage");
+            }
+        };
+        AirplayDevice device = createMock(AirplayDevice.class);
+        Capture<StreamingEvent> captureStreamingEvent = new Capture<>();
+        eventBus.post(capture(captureStreamingEvent));
+        expectLastCall().atLeastOnce();
+
+        expect(device.getId()).andReturn("id");
+
+        replay(eventBus, device);
+        AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
+        streamer.seek(device, 10L);
+        assertEquals(SEEK, captureStreamingEvent.getValue().getType());
+        assertEquals("id", captureStreamingEvent.getValue().getDeviceId());
+        assertFalse(captureStreamingEvent.getValue().isSuccess());
+        assertEquals("errorMessage", captureStreamingEvent.getValue().getErrorMessage());
+        verify(eventBus, device);
+    }
+
     @Test
     public void testUpdateStatusSuccessEmptyParameters() {
         EventBus eventBus = createMock(EventBus.class);
@@ -287,6 +456,7 @@ public class AirplayStreamerImplTest {
             }
         };
         AirplayDevice device = createMock(AirplayDevice.class);
+        expect(device.getId()).andReturn("id");
 
         replay(eventBus, device);
         AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
@@ -308,6 +478,7 @@ public class AirplayStreamerImplTest {
             }
         };
         AirplayDevice device = createMock(AirplayDevice.class);
+        expect(device.getId()).andReturn("id");
 
         replay(eventBus, device);
         AirplayStreamerImpl streamer = new AirplayStreamerImpl(eventBus, controlPoint);
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.airplay.controlpoint;
+
+import com.google.common.collect.Sets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.holmes.core.business.streaming.airplay.command.PlayStatusCommand;
+import net.holmes.core.business.streaming.airplay.command.StopCommand;
+import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
+import net.holmes.core.business.streaming.device.CommandFailureHandler;
+import net.holmes.core.business.streaming.device.DeviceDao;
+import net.holmes.core.business.streaming.device.DeviceDaoImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+public class NettyControlPointTest {
+    private HttpServer server;
+    private Set<InetSocketAddress> remoteAddresses;
+    private AirplayDevice device;
+    private DeviceDao deviceDao;
+
+    @Before
+    public void setUp() throws IOException {
+        remoteAddresses = Sets.newConcurrentHashSet();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/scrub", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                remoteAddresses.add(exchange.getRemoteAddress());
+                byte[] content = "duration: 83.124794\nposition: 14.467000".getBytes();
+                exchange.getResponseHeaders().add("Content-Type", "text/parameters");
+                exchange.sendResponseHeaders(200, content.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(content);
+                }
+            }
+        });
+        server.createContext("/stop", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                remoteAddresses.add(exchange.getRemoteAddress());
+                exchange.getResponseHeaders().add("Connection", "close");
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        device = new AirplayDevice("id", "name", InetAddress.getLoopbackAddress(), server.getAddress().getPort(), null);
+        deviceDao = new DeviceDaoImpl();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testExecutePipelinedCommands() throws InterruptedException {
+        NettyControlPoint controlPoint = new NettyControlPoint(deviceDao);
+        int commandCount = 5;
+        final CountDownLatch latch = new CountDownLatch(commandCount);
+        final AtomicReference<Map<String, String>> result = new AtomicReference<>();
+        final AtomicReference<String> error = new AtomicReference<>();
+        for (int i = 0; i < commandCount; i++) {
+            controlPoint.execute(device, new PlayStatusCommand(new CommandFailureHandler() {
+                @Override
+                public void handle(String errorMessage) {
+                    error.set(errorMessage);
+                    latch.countDown();
+                }
+            }) {
+                @Override
+                public void success(Map<String, String> contentParameters) {
+                    result.set(contentParameters);
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, SECONDS));
+        assertNull(error.get());
+        assertEquals("83.124794", result.get().get("duration"));
+        assertEquals("14.467000", result.get().get("position"));
+        assertEquals(1, remoteAddresses.size());
+    }
+
+    @Test
+    public void testExecuteReconnectAfterClose() throws InterruptedException {
+        NettyControlPoint controlPoint = new NettyControlPoint(deviceDao);
+        final AtomicReference<String> error = new AtomicReference<>();
+        final CountDownLatch stopLatch = new CountDownLatch(1);
+        controlPoint.execute(device, new StopCommand(new CommandFailureHandler() {
+            @Override
+            public void handle(String errorMessage) {
+                error.set(errorMessage);
+                stopLatch.countDown();
+            }
+        }) {
+            @Override
+            public void success(Map<String, String> contentParameters) {
+                stopLatch.countDown();
+            }
+        });
+        assertTrue(stopLatch.await(10, SECONDS));
+        assertEquals("Not Found", error.get());
+
+        final CountDownLatch statusLatch = new CountDownLatch(1);
+        final AtomicReference<Map<String, String>> result = new AtomicReference<>();
+        // Wait for the server to close the connection
+        Thread.sleep(200);
+        controlPoint.execute(device, new PlayStatusCommand(new CommandFailureHandler() {
+            @Override
+            public void handle(String errorMessage) {
+                statusLatch.countDown();
+            }
+        }) {
+            @Override
+            public void success(Map<String, String> contentParameters) {
+                result.set(contentParameters);
+                statusLatch.countDown();
+            }
+        });
+        assertTrue(statusLatch.await(10, SECONDS));
+        assertNotNull(result.get());
+        assertEquals(2, remoteAddresses.size());
+    }
+
+    @Test
+    public void testDeviceRemovedClosesChannel() throws InterruptedException {
+        NettyControlPoint controlPoint = new NettyControlPoint(deviceDao);
+        deviceDao.addDevice(device);
+        assertNotNull(executeStatus(controlPoint));
+        assertEquals(1, remoteAddresses.size());
+
+        // Channel is closed on device removal, a new channel is opened if device comes back
+        assertTrue(deviceDao.removeDevice(device.getId()));
+        deviceDao.addDevice(device);
+        assertNotNull(executeStatus(controlPoint));
+        assertEquals(2, remoteAddresses.size());
+    }
+
+    @Test
+    public void testExecuteConnectionRefused() throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AirplayDevice unreachableDevice = new AirplayDevice("id", "name", InetAddress.getLoopbackAddress(), port, null);
+        NettyControlPoint controlPoint = new NettyControlPoint(deviceDao);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> error = new AtomicReference<>();
+        controlPoint.execute(unreachableDevice, new StopCommand(new CommandFailureHandler() {
+            @Override
+            public void handle(String errorMessage) {
+                error.set(errorMessage);
+                latch.countDown();
+            }
+        }) {
+            @Override
+            public void success(Map<String, String> contentParameters) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, SECONDS));
+        assertNotNull(error.get());
+    }
+
+    private Map<String, String> executeStatus(final NettyControlPoint controlPoint) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Map<String, String>> result = new AtomicReference<>();
+        controlPoint.execute(device, new PlayStatusCommand(new CommandFailureHandler() {
+            @Override
+            public void handle(String errorMessage) {
+                latch.countDown();
+            }
+        }) {
+            @Override
+            public void success(Map<String, String> contentParameters) {
+                result.set(contentParameters);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, SECONDS));
+        return result.get();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.device;
+
+import com.google.common.collect.Lists;
+import net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.business.streaming.event.StreamingEvent.StreamingEventType.*;
+import static org.junit.Assert.*;
+
+public class DeviceCommandQueueTest {
+
+    @Test
+    public void testSynchronousCommands() {
+        DeviceCommandQueue queue = new DeviceCommandQueue();
+        List<String> executed = Lists.newArrayList();
+        queue.submit(new TestCommand(PLAY, executed, true));
+        queue.submit(new TestCommand(STATUS, executed, true));
+        queue.submit(new TestCommand(STOP, executed, true));
+
+        assertEquals(Lists.newArrayList("PLAY", "STATUS", "STOP"), executed);
+        assertEquals(0, queue.size("id"));
+    }
+
+    @Test
+    public void testCommandsExecutedOneAtATime() throws InterruptedException {
+        DeviceCommandQueue queue = new DeviceCommandQueue();
+        List<String> executed = Collections.synchronizedList(Lists.<String>newArrayList());
+        TestCommand play = new TestCommand(PLAY, executed, false);
+        TestCommand pause = new TestCommand(PAUSE, executed, false);
+        queue.submit(play);
+        queue.submit(pause);
+
+        assertEquals(Lists.newArrayList("PLAY"), executed);
+        assertEquals(2, queue.size("id"));
+
+        play.complete();
+        assertTrue(pause.executed.await(5, SECONDS));
+        assertEquals(Lists.newArrayList("PLAY", "PAUSE"), executed);
+        pause.complete();
+    }
+
+    @Test
+    public void testStatusCommandsCoalesced() throws InterruptedException {
+        DeviceCommandQueue queue = new DeviceCommandQueue();
+        List<String> executed = Collections.synchronizedList(Lists.<String>newArrayList());
+        TestCommand play = new TestCommand(PLAY, executed, false);
+        TestCommand status = new TestCommand(STATUS, executed, true);
+        queue.submit(play);
+        queue.submit(status);
+        queue.submit(new TestCommand(STATUS, executed, true));
+        queue.submit(new TestCommand(STATUS, executed, true));
+
+        assertEquals(2, queue.size("id"));
+        play.complete();
+        assertTrue(status.executed.await(5, SECONDS));
+        assertEquals(Lists.newArrayList("PLAY", "STATUS"), executed);
+    }
+
+    @Test
+    public void testStaleStatusCommandsDropped() throws InterruptedException {
+        DeviceCommandQueue queue = new DeviceCommandQueue();
+        List<String> executed = Collections.synchronizedList(Lists.<String>newArrayList());
+        TestCommand play = new TestCommand(PLAY, executed, false);
+        queue.submit(play);
+        queue.submit(new TestCommand(STATUS, executed, true));
+        TestCommand stop = new TestCommand(STOP, executed, true);
+        queue.submit(stop);
+
+        assertEquals(2, queue.size("id"));
+        play.complete();
+        assertTrue(stop.executed.await(5, SECONDS));
+        assertEquals(Lists.newArrayList("PLAY", "STOP"), executed);
+    }
+
+    @Test
+    public void testCommandTimeout() throws InterruptedException {
+        DeviceCommandQueue queue = new DeviceCommandQueue();
+        List<String> executed = Collections.synchronizedList(Lists.<String>newArrayList());
+        TestCommand play = new TestCommand(PLAY, executed, false) {
+            @Override
+            public long getTimeoutMillis() {
+                return 100L;
+            }
+        };
+        TestCommand stop = new TestCommand(STOP, executed, true);
+        queue.submit(play);
+        queue.submit(stop);
+
+        assertTrue(stop.executed.await(5, SECONDS));
+        assertEquals("Command timeout", play.errorMessage);
+        assertEquals(Lists.newArrayList("PLAY", "STOP"), executed);
+        // Late completion is ignored
+        assertFalse(play.complete());
+    }
+
+    @Test
+    public void testCommandFailure() {
+        DeviceCommandQueue queue = new DeviceCommandQueue();
+        List<String> executed = Lists.newArrayList();
+        TestCommand play = new TestCommand(PLAY, executed, false) {
+            @Override
+            public void execute() {
+                super.execute();
+                getFailureHandler().handle("errorMessage");
+            }
+        };
+        queue.submit(play);
+        queue.submit(new TestCommand(STOP, executed, true));
+
+        assertEquals("errorMessage", play.errorMessage);
+        assertEquals(Lists.newArrayList("PLAY", "STOP"), executed);
+    }
+
+    private static class TestCommand extends DeviceCommand {
+        private final List<String> executedCommands;
+        private final boolean synchronous;
+        private final CountDownLatch executed = new CountDownLatch(1);
+        private volatile String errorMessage;
+
+        TestCommand(final StreamingEventType type, final List<String> executedCommands, final boolean synchronous) {
+            super(type, "id");
+            this.executedCommands = executedCommands;
+            this.synchronous = synchronous;
+        }
+
+        @Override
+        public void execute() {
+            executedCommands.add(getType().name());
+            executed.countDown();
+            if (synchronous) {
+                complete();
+            }
+        }
+
+        @Override
+        protected void failed(final String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+    }
+}
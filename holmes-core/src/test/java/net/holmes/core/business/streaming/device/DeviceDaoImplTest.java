@@ -20,6 +20,7 @@ package net.holmes.core.business.streaming.device;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Collection;
 
 import static org.easymock.EasyMock.*;
@@ -32,6 +33,7 @@ public class DeviceDaoImplTest {
         Device device = createMock(Device.class);
 
         expect(device.getId()).andReturn("deviceId");
+        expect(device.getAddress()).andReturn(InetAddress.getLoopbackAddress());
 
         replay(device);
 
@@ -48,6 +50,7 @@ public class DeviceDaoImplTest {
         Device device = createMock(Device.class);
 
         expect(device.getId()).andReturn("deviceId");
+        expect(device.getAddress()).andReturn(InetAddress.getLoopbackAddress());
         device.close();
         expectLastCall();
 
@@ -83,24 +86,115 @@ public class DeviceDaoImplTest {
     }
 
     @Test
-    public void testFindDevice() {
+    public void testFindDevice() throws UnknownHostException {
+        Device device1 = createMock(Device.class);
+        Device device2 = createMock(Device.class);
+        Device device3 = createMock(Device.class);
+
+        expect(device1.getId()).andReturn("deviceId1");
+        expect(device1.getAddress()).andReturn(InetAddress.getByName("192.168.1.10"));
+        expect(device2.getId()).andReturn("deviceId2");
+        expect(device2.getAddress()).andReturn(InetAddress.getByName("192.168.1.10"));
+        expect(device3.getId()).andReturn("deviceId3");
+        expect(device3.getAddress()).andReturn(InetAddress.getByName("192.168.1.11"));
+        device2.close();
+        expectLastCall();
+
+        replay(device1, device2, device3);
+
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        deviceDao.addDevice(device1);
+        deviceDao.addDevice(device2);
+        deviceDao.addDevice(device3);
+
+        Collection<Device> devices = deviceDao.findDevices(InetAddress.getByName("192.168.1.10"));
+        assertEquals(2, devices.size());
+        assertTrue(devices.contains(device1));
+        assertTrue(devices.contains(device2));
+
+        deviceDao.removeDevice("deviceId2");
+        // Previous result is a snapshot, not modified by removal
+        assertEquals(2, devices.size());
+        assertEquals(1, deviceDao.findDevices(InetAddress.getByName("192.168.1.10")).size());
+        assertEquals(1, deviceDao.findDevices(InetAddress.getByName("192.168.1.11")).size());
+        assertEquals(0, deviceDao.findDevices(InetAddress.getByName("192.168.1.12")).size());
+
+        verify(device1, device2, device3);
+    }
+
+    @Test
+    public void testReplaceDevice() throws UnknownDeviceException, UnknownHostException {
+        Device device1 = createMock(Device.class);
+        Device device2 = createMock(Device.class);
+
+        expect(device1.getId()).andReturn("deviceId");
+        expect(device1.getAddress()).andReturn(InetAddress.getByName("192.168.1.10"));
+        expect(device2.getId()).andReturn("deviceId");
+        expect(device2.getAddress()).andReturn(InetAddress.getByName("192.168.1.11"));
+
+        replay(device1, device2);
+
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        deviceDao.addDevice(device1);
+        deviceDao.addDevice(device2);
+
+        assertEquals(1, deviceDao.getDevices().size());
+        assertEquals(device2, deviceDao.getDevice("deviceId"));
+        assertEquals(0, deviceDao.findDevices(InetAddress.getByName("192.168.1.10")).size());
+        assertEquals(1, deviceDao.findDevices(InetAddress.getByName("192.168.1.11")).size());
+
+        verify(device1, device2);
+    }
+
+    @Test
+    public void testDeviceListener() {
+        Device device = createMock(Device.class);
+        DeviceListener listener = createMock(DeviceListener.class);
+        DeviceListener failingListener = createMock(DeviceListener.class);
+
+        expect(device.getId()).andReturn("deviceId");
+        expect(device.getAddress()).andReturn(InetAddress.getLoopbackAddress());
+        device.close();
+        expectLastCall();
+        failingListener.deviceAdded(device);
+        expectLastCall().andThrow(new IllegalStateException("failure"));
+        listener.deviceAdded(device);
+        expectLastCall();
+        failingListener.deviceRemoved(device);
+        expectLastCall();
+        listener.deviceRemoved(device);
+        expectLastCall();
+
+        replay(device, listener, failingListener);
+
+        DeviceDaoImpl deviceDao = new DeviceDaoImpl();
+        deviceDao.addDeviceListener(failingListener);
+        deviceDao.addDeviceListener(listener);
+        deviceDao.addDevice(device);
+        deviceDao.removeDevice("deviceId");
+
+        verify(device, listener, failingListener);
+    }
+
+    @Test
+    public void testGetDevicesSnapshot() {
         Device device = createMock(Device.class);
-        InetAddress address = createMock(InetAddress.class);
 
         expect(device.getId()).andReturn("deviceId");
-        expect(device.getAddress()).andReturn(address);
-        expect(address.getHostAddress()).andReturn("localhost");
+        expect(device.getAddress()).andReturn(null);
+        device.close();
+        expectLastCall();
 
-        replay(device, address);
+        replay(device);
 
         DeviceDaoImpl deviceDao = new DeviceDaoImpl();
         deviceDao.addDevice(device);
-        Collection<Device> devices = deviceDao.findDevices("localhost");
+        Collection<Device> devices = deviceDao.getDevices();
+        deviceDao.removeDevice("deviceId");
 
         assertEquals(1, devices.size());
+        assertEquals(0, deviceDao.getDevices().size());
 
-        verify(device, address);
+        verify(device);
     }
 }
-
-
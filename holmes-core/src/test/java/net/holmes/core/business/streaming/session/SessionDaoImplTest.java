@@ -17,6 +17,7 @@
 
 package net.holmes.core.business.streaming.session;
 
+import net.holmes.core.business.media.model.FolderNode;
 import org.junit.Test;
 
 import java.util.Map;
@@ -127,4 +128,57 @@ public class SessionDaoImplTest {
         assertTrue(session.getStatus() == WAITING);
     }
 
+
+    @Test
+    public void testPredictedPosition() throws UnknownSessionException, InterruptedException {
+        SessionDaoImpl sessionDao = new SessionDaoImpl();
+        sessionDao.initSession("deviceId", "contentUrl", "contentName");
+        sessionDao.updateSessionPosition("deviceId", 10l, 100l);
+        StreamingSession session = sessionDao.getSession("deviceId");
+        assertTrue(session.getPredictedPosition() == 10l);
+
+        // Position advances while content is playing, by elapsed seconds whatever the scheduling delay
+        long startTime = System.currentTimeMillis();
+        sessionDao.updateSessionStatus("deviceId", PLAYING);
+        Thread.sleep(1100);
+        long predictedPosition = session.getPredictedPosition();
+        long maxPosition = 10l + (System.currentTimeMillis() - startTime) / 1000;
+        assertTrue(predictedPosition >= 11l && predictedPosition <= maxPosition);
+        assertTrue(session.getPosition() == 10l);
+
+        // Position is frozen when playback stops
+        sessionDao.updateSessionStatus("deviceId", WAITING);
+        long frozenPosition = session.getPosition();
+        maxPosition = 10l + (System.currentTimeMillis() - startTime) / 1000;
+        assertTrue(frozenPosition >= predictedPosition && frozenPosition <= maxPosition);
+        assertTrue(session.getPredictedPosition() == frozenPosition);
+    }
+
+    @Test
+    public void testNextContent() throws UnknownSessionException {
+        SessionDaoImpl sessionDao = new SessionDaoImpl();
+        sessionDao.initSession("deviceId", "contentUrl", "contentName");
+        sessionDao.updateSessionPosition("deviceId", 10l, 100l);
+        assertNull(sessionDao.getNextContent("deviceId"));
+
+        assertTrue(sessionDao.addNextContent("deviceId", new QueuedContent("contentUrl2", new FolderNode("id2", "parentId", "contentName2"))));
+        assertFalse(sessionDao.addNextContent("deviceId", new QueuedContent("contentUrl3", new FolderNode("id3", "parentId", "contentName3"))));
+        assertEquals("contentUrl2", sessionDao.getNextContent("deviceId").getContentUrl());
+
+        // Next content becomes current content
+        QueuedContent content = sessionDao.nextContent("deviceId");
+        StreamingSession session = sessionDao.getSession("deviceId");
+        assertEquals("contentUrl2", content.getContentUrl());
+        assertEquals("contentUrl2", session.getContentUrl());
+        assertEquals("contentName2", session.getContentName());
+        assertTrue(session.getPosition() == 0l);
+        assertTrue(session.getDuration() == 0l);
+        assertEquals(1, session.getNextContentCount());
+
+        // Clear queued contents
+        sessionDao.clearNextContents("deviceId");
+        assertNull(sessionDao.nextContent("deviceId"));
+        assertEquals("contentUrl2", session.getContentUrl());
+        sessionDao.clearNextContents("unknownDeviceId");
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.upnp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContentLoadTrackerTest {
+
+    @Test
+    public void testNextOnSubscribedDevice() {
+        ContentLoadTracker tracker = new ContentLoadTracker(60000L);
+        assertFalse(tracker.isLoading("deviceId"));
+
+        // Next content is played: Stop sent while loading it is not an end of content
+        tracker.loadStarted("deviceId");
+        assertTrue(tracker.isLoading("deviceId"));
+
+        // Stopped state pushed after SetAVTransportURI may be received once Play succeeded
+        tracker.loadEnded("deviceId");
+        assertTrue(tracker.isLoading("deviceId"));
+
+        // Device reports playback: next stopped state is a real end of content
+        tracker.reset("deviceId");
+        assertFalse(tracker.isLoading("deviceId"));
+        assertFalse(tracker.isLoading("otherDeviceId"));
+    }
+
+    @Test
+    public void testSettleDelayExpired() throws InterruptedException {
+        ContentLoadTracker tracker = new ContentLoadTracker(0L);
+        tracker.loadStarted("deviceId");
+        assertTrue(tracker.isLoading("deviceId"));
+        tracker.loadEnded("deviceId");
+        Thread.sleep(5L);
+        assertFalse(tracker.isLoading("deviceId"));
+    }
+
+    @Test
+    public void testLoadEndedWithoutLoad() {
+        ContentLoadTracker tracker = new ContentLoadTracker(60000L);
+        tracker.loadEnded("deviceId");
+        assertFalse(tracker.isLoading("deviceId"));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.business.streaming.upnp.command;
+
+import com.google.common.collect.Maps;
+import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
+import org.fourthline.cling.model.gena.GENASubscription;
+import org.fourthline.cling.model.message.UpnpResponse;
+import org.fourthline.cling.model.meta.StateVariable;
+import org.fourthline.cling.model.meta.StateVariableTypeDetails;
+import org.fourthline.cling.model.state.StateVariableValue;
+import org.fourthline.cling.model.types.Datatype;
+import org.fourthline.cling.support.model.TransportState;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class LastChangeSubscriptionTest {
+    private static final String LAST_CHANGE_EVENT = "<Event xmlns=\"urn:schemas-upnp-org:metadata-1-0/AVT/\">"
+            + "<InstanceID val=\"0\">"
+            + "<TransportState val=\"PLAYING\"/>"
+            + "<CurrentTrackURI val=\"http://localhost/next\"/>"
+            + "</InstanceID>"
+            + "</Event>";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventReceived() throws Exception {
+        GENASubscription subscription = createMock(GENASubscription.class);
+        Map<String, StateVariableValue> values = Maps.newHashMap();
+        values.put("LastChange", newStringValue("LastChange", LAST_CHANGE_EVENT));
+        expect(subscription.getCurrentValues()).andReturn(values).atLeastOnce();
+
+        replay(subscription);
+        RecordingSubscription lastChangeSubscription = new RecordingSubscription();
+        lastChangeSubscription.eventReceived(subscription);
+        assertEquals(TransportState.PLAYING, lastChangeSubscription.transportState);
+        assertEquals("http://localhost/next", lastChangeSubscription.trackUri);
+        verify(subscription);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventReceivedWithoutLastChange() throws Exception {
+        GENASubscription subscription = createMock(GENASubscription.class);
+        Map<String, StateVariableValue> values = Maps.newHashMap();
+        expect(subscription.getCurrentValues()).andReturn(values).atLeastOnce();
+
+        replay(subscription);
+        RecordingSubscription lastChangeSubscription = new RecordingSubscription();
+        lastChangeSubscription.eventReceived(subscription);
+        assertNull(lastChangeSubscription.transportState);
+        assertNull(lastChangeSubscription.trackUri);
+        verify(subscription);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventReceivedInvalidLastChange() throws Exception {
+        GENASubscription subscription = createMock(GENASubscription.class);
+        Map<String, StateVariableValue> values = Maps.newHashMap();
+        values.put("LastChange", newStringValue("LastChange", "<Event>"));
+        expect(subscription.getCurrentValues()).andReturn(values).atLeastOnce();
+
+        replay(subscription);
+        RecordingSubscription lastChangeSubscription = new RecordingSubscription();
+        lastChangeSubscription.eventReceived(subscription);
+        assertNull(lastChangeSubscription.transportState);
+        assertNull(lastChangeSubscription.trackUri);
+        verify(subscription);
+    }
+
+    @Test
+    public void testFailedRejected() {
+        RecordingSubscription lastChangeSubscription = new RecordingSubscription();
+        lastChangeSubscription.established(null);
+        assertTrue(lastChangeSubscription.isEstablished());
+        lastChangeSubscription.failed(null, new UpnpResponse(412, "Precondition Failed"), null, "errorMessage");
+        assertFalse(lastChangeSubscription.isEstablished());
+        assertEquals("errorMessage", lastChangeSubscription.errorMessage);
+        assertEquals(Boolean.TRUE, lastChangeSubscription.rejected);
+    }
+
+    @Test
+    public void testFailedTransient() {
+        RecordingSubscription lastChangeSubscription = new RecordingSubscription();
+        lastChangeSubscription.failed(null, null, new IOException("timeout"), "errorMessage");
+        assertFalse(lastChangeSubscription.isEstablished());
+        assertEquals("errorMessage", lastChangeSubscription.errorMessage);
+        assertEquals(Boolean.FALSE, lastChangeSubscription.rejected);
+    }
+
+    private static StateVariableValue newStringValue(final String name, final String value) {
+        return new StateVariableValue(new StateVariable(name, new StateVariableTypeDetails(Datatype.Builtin.STRING.getDatatype())), value);
+    }
+
+    /**
+     * Records subscription callbacks.
+     */
+    private static class RecordingSubscription extends LastChangeSubscription {
+        private TransportState transportState;
+        private String trackUri;
+        private String errorMessage;
+        private Boolean rejected;
+
+        RecordingSubscription() {
+            super(new UpnpDevice("id", "name", null, null, null));
+        }
+
+        @Override
+        public void received(TransportState transportState) {
+            this.transportState = transportState;
+        }
+
+        @Override
+        public void trackChanged(String trackUri) {
+            this.trackUri = trackUri;
+        }
+
+        @Override
+        public void failed(String errorMessage, boolean rejected) {
+            this.errorMessage = errorMessage;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void ended() {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.common;
+
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+
+import static net.holmes.core.common.DlnaUtils.*;
+import static org.junit.Assert.assertEquals;
+
+public class DlnaUtilsTest {
+
+    @Test
+    public void testPrivateConstructor() throws Exception {
+        Constructor<DlnaUtils> cnt = DlnaUtils.class.getDeclaredConstructor();
+        cnt.setAccessible(true);
+        cnt.newInstance();
+    }
+
+    @Test
+    public void testGetContentFeatures() {
+        assertEquals("DLNA.ORG_OP=11;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000", getContentFeatures(MimeType.valueOf("video/mp4"), true));
+        assertEquals("DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=01700000000000000000000000000000", getContentFeatures(MimeType.valueOf("audio/mpeg"), false));
+        assertEquals("DLNA.ORG_OP=01;DLNA.ORG_CI=0;DLNA.ORG_FLAGS=00F00000000000000000000000000000", getContentFeatures(MimeType.valueOf("image/jpeg"), false));
+    }
+
+    @Test
+    public void testGetTransferMode() {
+        assertEquals(TRANSFER_MODE_STREAMING, getTransferMode(MimeType.valueOf("video/mp4"), null));
+        assertEquals(TRANSFER_MODE_INTERACTIVE, getTransferMode(MimeType.valueOf("image/jpeg"), null));
+        assertEquals(TRANSFER_MODE_BACKGROUND, getTransferMode(MimeType.valueOf("video/mp4"), "background"));
+        assertEquals(TRANSFER_MODE_STREAMING, getTransferMode(MimeType.valueOf("video/mp4"), "bad"));
+    }
+
+    @Test
+    public void testParseTimeSeekRangeStart() {
+        assertEquals(10500L, parseTimeSeekRangeStart("npt=10.5-"));
+        assertEquals(90000L, parseTimeSeekRangeStart("npt=0:01:30.000-0:02:00"));
+        assertEquals(3723004L, parseTimeSeekRangeStart(" NPT = 1:02:03.004 - "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseTimeSeekRangeStartInvalid() {
+        parseTimeSeekRangeStart("bytes=10-");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseNptTimeInvalid() {
+        parseNptTime("1:2:3:4");
+    }
+
+    @Test
+    public void testFormatNptTime() {
+        assertEquals("0:00:00.000", formatNptTime(0));
+        assertEquals("1:02:03.004", formatNptTime(3723004));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.media.model.FolderNode;
+import net.holmes.core.common.MimeType;
+import net.holmes.core.common.event.ConfigurationEvent;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static net.holmes.core.common.event.ConfigurationEvent.EventType.DELETE_FOLDER;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpContentResolverTest {
+
+    @Test
+    public void testResolve() throws IOException {
+        File file = File.createTempFile("video", ".avi");
+        file.deleteOnExit();
+        MediaManager mediaManager = createMock(MediaManager.class);
+
+        expect(mediaManager.getNode("id")).andReturn(new ContentNode("id", "parentId", "name", file, MimeType.valueOf("video/x-msvideo"))).once();
+
+        replay(mediaManager);
+        HttpContentResolver contentResolver = new HttpContentResolver(mediaManager);
+        ResolvedContent content = contentResolver.resolve("id");
+        assertNotNull(content);
+        assertEquals(file.getAbsoluteFile(), content.getFile());
+        assertEquals(MimeType.valueOf("video/x-msvideo"), content.getMimeType());
+        assertEquals(file.length(), content.getSize());
+        assertEquals(file.lastModified(), content.getLastModified());
+        assertNotNull(content.toString());
+
+        // Second resolution is served from cache
+        assertSame(content, contentResolver.resolve("id"));
+        verify(mediaManager);
+    }
+
+    @Test
+    public void testResolveNotContent() {
+        MediaManager mediaManager = createMock(MediaManager.class);
+
+        expect(mediaManager.getNode("folderId")).andReturn(new FolderNode("folderId", "parentId", "name", new File("folder"))).once();
+        expect(mediaManager.getNode("unknownId")).andReturn(null).once();
+
+        replay(mediaManager);
+        HttpContentResolver contentResolver = new HttpContentResolver(mediaManager);
+        assertNull(contentResolver.resolve("folderId"));
+        assertNull(contentResolver.resolve("unknownId"));
+        verify(mediaManager);
+    }
+
+    @Test
+    public void testHandleConfigEvent() throws IOException {
+        File file = File.createTempFile("video", ".avi");
+        file.deleteOnExit();
+        MediaManager mediaManager = createMock(MediaManager.class);
+
+        expect(mediaManager.getNode("id")).andReturn(new ContentNode("id", "parentId", "name", file, MimeType.valueOf("video/x-msvideo"))).times(2);
+
+        replay(mediaManager);
+        HttpContentResolver contentResolver = new HttpContentResolver(mediaManager);
+        assertNotNull(contentResolver.resolve("id"));
+        contentResolver.handleConfigEvent(new ConfigurationEvent(DELETE_FOLDER));
+        assertNotNull(contentResolver.resolve("id"));
+        verify(mediaManager);
+    }
+}
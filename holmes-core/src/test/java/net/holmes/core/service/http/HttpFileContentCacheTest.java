@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.test.TestConfigurationDao;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_MEMORY_CACHE_SIZE_KB;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpFileContentCacheTest {
+
+    @Test
+    public void testGetContent() throws IOException {
+        File file = writeFile("subtitle content");
+        HttpFileContentCache fileContentCache = new HttpFileContentCache(new TestConfigurationDao());
+
+        byte[] content = fileContentCache.getContent(file, file.length(), file.lastModified());
+        assertArrayEquals("subtitle content".getBytes(), content);
+        assertSame(content, fileContentCache.getContent(file, file.length(), file.lastModified()));
+    }
+
+    @Test
+    public void testGetContentModifiedFile() throws IOException {
+        File file = writeFile("subtitle content");
+        HttpFileContentCache fileContentCache = new HttpFileContentCache(new TestConfigurationDao());
+
+        assertNull(fileContentCache.getContent(file, file.length() + 1, file.lastModified()));
+    }
+
+    @Test
+    public void testGetContentTooLarge() throws IOException {
+        File file = writeFile("subtitle content");
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+
+        expect(configurationDao.getParameter(HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB)).andReturn(0);
+        expect(configurationDao.getParameter(HTTP_SERVER_MEMORY_CACHE_SIZE_KB)).andReturn(1024);
+
+        replay(configurationDao);
+        HttpFileContentCache fileContentCache = new HttpFileContentCache(configurationDao);
+        assertNull(fileContentCache.getContent(file, file.length(), file.lastModified()));
+        verify(configurationDao);
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetContentMissingFile() throws IOException {
+        HttpFileContentCache fileContentCache = new HttpFileContentCache(new TestConfigurationDao());
+        fileContentCache.getContent(new File("/missing/subtitle.srt"), 10, 0);
+    }
+
+    private File writeFile(String content) throws IOException {
+        File file = File.createTempFile("subtitle", ".srt");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+}
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import net.holmes.core.business.media.MediaManager;
 import net.holmes.core.business.media.model.ContentNode;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
 import net.holmes.core.business.mimetype.MimeTypeManager;
 import net.holmes.core.common.MimeType;
 import org.junit.Test;
@@ -30,10 +31,12 @@ import java.io.File;
 import java.util.List;
 
 import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
 import static io.netty.handler.codec.http.HttpMethod.POST;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class HttpFileRequestDecoderTest {
 
@@ -43,14 +46,15 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
         expect(request.getUri()).andReturn("/index.html").atLeastOnce();
         expect(mimeTypeManager.getMimeType("/index.html")).andReturn(MimeType.valueOf("text/html")).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0).getClass(), HttpFileRequest.class);
@@ -58,7 +62,7 @@ public class HttpFileRequestDecoderTest {
         assertNotNull(fileRequest.getFile());
         assertNotNull(fileRequest.getMimeType());
         assertNotNull(fileRequest.getHttpRequest());
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 
     @Test
@@ -67,18 +71,19 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
         expect(request.getUri()).andReturn("/").atLeastOnce();
         expect(mimeTypeManager.getMimeType("/index.html")).andReturn(MimeType.valueOf("text/html")).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0).getClass(), HttpFileRequest.class);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 
     @Test
@@ -87,6 +92,7 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
@@ -94,12 +100,12 @@ public class HttpFileRequestDecoderTest {
         expect(request.retain()).andReturn(request).atLeastOnce();
         expect(mimeTypeManager.getMimeType("/index.html1")).andReturn(null).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 
     @Test
@@ -108,17 +114,18 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(POST).atLeastOnce();
         expect(request.retain()).andReturn(request).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 
     @Test
@@ -127,14 +134,15 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
         expect(request.getUri()).andReturn("/content?id=1234").atLeastOnce();
         expect(mediaManager.getNode("1234")).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"))).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0).getClass(), HttpFileRequest.class);
@@ -142,7 +150,28 @@ public class HttpFileRequestDecoderTest {
         assertNotNull(fileRequest.getFile());
         assertNotNull(fileRequest.getMimeType());
         assertNotNull(fileRequest.getHttpRequest());
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+    }
+
+    @Test
+    public void testDecodeContentFileHeadRequest() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.getMethod()).andReturn(HEAD).atLeastOnce();
+        expect(request.getUri()).andReturn("/content?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("video/x-msvideo"))).atLeastOnce();
+
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        decoder.decode(context, request, out);
+        assertEquals(out.size(), 1);
+        assertEquals(out.get(0).getClass(), HttpFileRequest.class);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 
     @Test
@@ -151,6 +180,7 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
@@ -158,12 +188,12 @@ public class HttpFileRequestDecoderTest {
         expect(request.retain()).andReturn(request).atLeastOnce();
         expect(mediaManager.getNode("")).andReturn(null).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 
     @Test
@@ -172,6 +202,7 @@ public class HttpFileRequestDecoderTest {
         ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
         MediaManager mediaManager = createMock(MediaManager.class);
         MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         List<Object> out = Lists.newArrayList();
 
         expect(request.getMethod()).andReturn(GET).atLeastOnce();
@@ -179,11 +210,60 @@ public class HttpFileRequestDecoderTest {
         expect(request.retain()).andReturn(request).atLeastOnce();
         expect(mimeTypeManager.getMimeType("/content")).andReturn(null).atLeastOnce();
 
-        replay(context, request, mediaManager, mimeTypeManager);
-        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(mediaManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        decoder.decode(context, request, out);
+        assertEquals(out.size(), 1);
+        assertEquals(out.get(0), request);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+    }
+
+    @Test
+    public void testDecodeThumbnail() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/thumbnail?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("audio/mpeg"))).atLeastOnce();
+        expect(thumbnailManager.getThumbnail(new File("file").getAbsoluteFile(), MimeType.valueOf("audio/mpeg"), 0L, 0L)).andReturn(new File("thumbnail.jpg")).atLeastOnce();
+
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
+        decoder.decode(context, request, out);
+        assertEquals(out.size(), 1);
+        assertEquals(out.get(0).getClass(), HttpFileRequest.class);
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
+        assertEquals(new File("thumbnail.jpg"), fileRequest.getFile());
+        assertEquals(MimeType.valueOf("image/jpeg"), fileRequest.getMimeType());
+        assertTrue(fileRequest.isStaticFile());
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+    }
+
+    @Test
+    public void testDecodeThumbnailNotAvailable() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        MimeTypeManager mimeTypeManager = createMock(MimeTypeManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/thumbnail?id=1234").atLeastOnce();
+        expect(request.retain()).andReturn(request).atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new ContentNode("id", "parentId", "name", new File("file"), MimeType.valueOf("audio/mpeg"))).atLeastOnce();
+        expect(thumbnailManager.getThumbnail(new File("file").getAbsoluteFile(), MimeType.valueOf("audio/mpeg"), 0L, 0L)).andReturn(null).atLeastOnce();
+
+        replay(context, request, mediaManager, thumbnailManager, mimeTypeManager);
+        HttpFileRequestDecoder decoder = new HttpFileRequestDecoder(new HttpContentResolver(mediaManager), thumbnailManager, mimeTypeManager, System.getProperty("java.io.tmpdir"));
         decoder.decode(context, request, out);
         assertEquals(out.size(), 1);
         assertEquals(out.get(0), request);
-        verify(context, request, mediaManager, mimeTypeManager);
+        verify(context, request, mediaManager, thumbnailManager, mimeTypeManager);
     }
 }
@@ -17,26 +17,41 @@
 
 package net.holmes.core.service.http;
 
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.FileRegion;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.seek.SeekIndex;
+import net.holmes.core.business.media.seek.SeekIndexManager;
+import net.holmes.core.business.media.seek.SeekIndexManagerImpl;
 import net.holmes.core.common.MimeType;
+import net.holmes.core.test.TestConfigurationDao;
+import org.easymock.Capture;
 import org.junit.Test;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import static io.netty.handler.codec.http.HttpHeaders.Names.*;
 import static io.netty.handler.codec.http.HttpHeaders.Values.CLOSE;
-import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
-import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_CACHE_SECOND;
+import static io.netty.util.CharsetUtil.UTF_8;
+import static net.holmes.core.common.ConfigurationParameter.*;
+import static net.holmes.core.common.DlnaUtils.*;
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
 
 public class HttpFileRequestHandlerTest {
 
@@ -54,16 +69,17 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
         expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), false);
 
         replay(context, httpRequest, channel, configurationDao);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationDao);
     }
@@ -82,16 +98,17 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(0);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
         expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
 
         replay(context, httpRequest, channel, configurationDao);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationDao);
     }
@@ -108,10 +125,11 @@ public class HttpFileRequestHandlerTest {
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File("invalidFile"), MimeType.valueOf("text/html"), false);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
 
         replay(context, httpRequest, configurationDao);
         try {
-            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
             handler.channelRead0(context, request);
         } finally {
             verify(context, httpRequest, configurationDao);
@@ -137,16 +155,17 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
         expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), false);
 
         replay(context, httpRequest, channel, configurationDao);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationDao);
     }
@@ -165,13 +184,14 @@ public class HttpFileRequestHandlerTest {
         FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
 
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
 
         replay(context, httpRequest, configurationDao);
         try {
-            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
             handler.channelRead0(context, request);
         } finally {
             verify(context, httpRequest, configurationDao);
@@ -192,13 +212,14 @@ public class HttpFileRequestHandlerTest {
         FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
 
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
 
         replay(context, httpRequest, configurationDao);
         try {
-            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
             handler.channelRead0(context, request);
         } finally {
             verify(context, httpRequest, configurationDao);
@@ -220,19 +241,315 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
         expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
-        expect(context.write(isA(ChunkedFile.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
 
         HttpFileRequest request = new HttpFileRequest(httpRequest, new File(indexHtml.getAbsolutePath()), MimeType.valueOf("text/html"), true);
 
         replay(context, httpRequest, channel, configurationDao);
-        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
         handler.channelRead0(context, request);
         verify(context, httpRequest, channel, configurationDao);
     }
 
+    @Test
+    public void testFileRequestHandlerMemoryCache() throws Exception {
+        File indexHtml = File.createTempFile("index", ".html");
+        FileWriter fw = new FileWriter(indexHtml);
+        BufferedWriter bw = new BufferedWriter(fw);
+        bw.write("some content in index.html");
+        bw.close();
+        indexHtml.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(RANGE, "bytes=5-");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<LastHttpContent> contentCapture = new Capture<>();
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).once();
+        expect(context.writeAndFlush(capture(contentCapture))).andReturn(new DefaultChannelPromise(channel)).once();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, indexHtml, MimeType.valueOf("text/html"), true);
+
+        replay(context, httpRequest, channel, configurationDao);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao()));
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationDao);
+
+        assertEquals("content in index.html", contentCapture.getValue().content().toString(UTF_8));
+    }
+
+    @Test
+    public void testFileRequestHandlerZeroCopy() throws Exception {
+        testFileRequestHandlerLargeFile(1024, FileRegion.class);
+    }
+
+    @Test
+    public void testFileRequestHandlerChunked() throws Exception {
+        testFileRequestHandlerLargeFile(0, ChunkedFile.class);
+    }
+
+    @Test
+    public void testFileRequestHandlerProxyDownload() throws Exception {
+        File part = File.createTempFile("proxy", ".part");
+        part.deleteOnExit();
+        Files.write(part.toPath(), new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9});
+        HttpProxyDownload download = new HttpProxyDownload("http://localhost/content", part.toPath());
+        download.start(10);
+        download.progress(4);
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        SeekIndexManager seekIndexManager = createMock(SeekIndexManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        ChannelPipeline pipeline = createMock(ChannelPipeline.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpProxyChunkedInput> contentCapture = new Capture<>();
+        MimeType mimeType = MimeType.valueOf("audio/mpeg");
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(context.pipeline()).andReturn(pipeline).atLeastOnce();
+        expect(pipeline.get(ChunkedWriteHandler.class)).andReturn(new ChunkedWriteHandler()).atLeastOnce();
+        expect(context.alloc()).andReturn(UnpooledByteBufAllocator.DEFAULT).atLeastOnce();
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).once();
+        expect(context.write(capture(contentCapture))).andReturn(new DefaultChannelPromise(channel)).once();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).once();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, download, mimeType);
+
+        replay(context, pipeline, httpRequest, channel, configurationDao, seekIndexManager);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, seekIndexManager, new HttpFileContentCache(new TestConfigurationDao()));
+        handler.channelRead0(context, request);
+
+        // Downloaded content is read, then input waits for more content
+        HttpProxyChunkedInput input = contentCapture.getValue();
+        assertEquals(4, input.readChunk(context).readableBytes());
+        assertNull(input.readChunk(context));
+        assertFalse(input.isEndOfInput());
+        download.progress(10);
+        assertEquals(6, input.readChunk(context).readableBytes());
+        assertTrue(input.isEndOfInput());
+        input.close();
+        verify(context, pipeline, httpRequest, channel, configurationDao, seekIndexManager);
+    }
+
+    private void testFileRequestHandlerLargeFile(int zeroCopyMaxSizeMb, Class<?> expectedContentClass) throws Exception {
+        File video = File.createTempFile("video", ".avi");
+        FileWriter fw = new FileWriter(video);
+        BufferedWriter bw = new BufferedWriter(fw);
+        bw.write("some content in video.avi");
+        bw.close();
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        SeekIndexManager seekIndexManager = createMock(SeekIndexManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        MimeType mimeType = MimeType.valueOf("video/avi");
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(zeroCopyMaxSizeMb);
+        expect(configurationDao.getParameter(HTTP_SERVER_MEMORY_CACHE_FILE_MAX_SIZE_KB)).andReturn(0);
+        expect(configurationDao.getParameter(HTTP_SERVER_MEMORY_CACHE_SIZE_KB)).andReturn(0);
+        expect(seekIndexManager.isTimeSeekSupported(mimeType)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(context.write(isA(HttpResponse.class))).andReturn(new DefaultChannelPromise(channel)).once();
+        expect(context.write(isA(expectedContentClass))).andReturn(new DefaultChannelPromise(channel)).once();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).once();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, video, mimeType, false);
+
+        replay(context, httpRequest, channel, configurationDao, seekIndexManager);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, seekIndexManager, new HttpFileContentCache(configurationDao));
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationDao, seekIndexManager);
+    }
+
+    @Test
+    public void testFileRequestHandlerDlnaHeaders() throws Exception {
+        File video = File.createTempFile("video", ".mp4");
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(HEADER_GET_CONTENT_FEATURES, "1");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        SeekIndexManager seekIndexManager = createMock(SeekIndexManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> responseCapture = new Capture<>();
+        MimeType mimeType = MimeType.valueOf("video/mp4");
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
+        expect(seekIndexManager.isTimeSeekSupported(mimeType)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(context.write(and(isA(HttpResponse.class), capture(responseCapture)))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, video, mimeType, false);
+
+        replay(context, httpRequest, channel, configurationDao, seekIndexManager);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, seekIndexManager, new HttpFileContentCache(new TestConfigurationDao()));
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationDao, seekIndexManager);
+
+        HttpHeaders responseHeaders = responseCapture.getValue().headers();
+        assertEquals(TRANSFER_MODE_STREAMING, responseHeaders.get(HEADER_TRANSFER_MODE));
+        assertEquals(getContentFeatures(mimeType, true), responseHeaders.get(HEADER_CONTENT_FEATURES));
+    }
+
+    @Test
+    public void testFileRequestHandlerTimeSeek() throws Exception {
+        File video = File.createTempFile("video", ".ts");
+        FileWriter fw = new FileWriter(video);
+        BufferedWriter bw = new BufferedWriter(fw);
+        bw.write("some content in video.ts");
+        bw.close();
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(HEADER_TIME_SEEK_RANGE, "npt=0:00:10.000-");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        SeekIndexManager seekIndexManager = createMock(SeekIndexManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> responseCapture = new Capture<>();
+        MimeType mimeType = MimeType.valueOf("video/MP2T");
+        SeekIndex seekIndex = new SeekIndex(new long[]{0, 20000}, new long[]{0, 20}, 20000, true, 1);
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
+        expect(seekIndexManager.getSeekIndex(video, mimeType)).andReturn(seekIndex);
+        expect(seekIndexManager.isTimeSeekSupported(mimeType)).andReturn(true);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(context.write(and(isA(HttpResponse.class), capture(responseCapture)))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, video, mimeType, false);
+
+        replay(context, httpRequest, channel, configurationDao, seekIndexManager);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, seekIndexManager, new HttpFileContentCache(new TestConfigurationDao()));
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationDao, seekIndexManager);
+
+        HttpResponse response = responseCapture.getValue();
+        assertEquals(OK, response.getStatus());
+        assertEquals("npt=0:00:10.000-0:00:20.000/0:00:20.000 bytes=10-23/24", response.headers().get(HEADER_TIME_SEEK_RANGE));
+        assertEquals("14", response.headers().get(CONTENT_LENGTH));
+    }
+
+    @Test
+    public void testFileRequestHandlerHeadRequest() throws Exception {
+        File video = File.createTempFile("video", ".avi");
+        FileWriter fw = new FileWriter(video);
+        BufferedWriter bw = new BufferedWriter(fw);
+        bw.write("some content in video.avi");
+        bw.close();
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        SeekIndexManager seekIndexManager = createMock(SeekIndexManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> responseCapture = new Capture<>();
+        MimeType mimeType = MimeType.valueOf("video/avi");
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
+        expect(seekIndexManager.isTimeSeekSupported(mimeType)).andReturn(false);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getProtocolVersion()).andReturn(HTTP_1_1).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(HEAD).atLeastOnce();
+        expect(context.write(and(isA(HttpResponse.class), capture(responseCapture)))).andReturn(new DefaultChannelPromise(channel)).once();
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, video, mimeType, false);
+
+        replay(context, httpRequest, channel, configurationDao, seekIndexManager);
+        HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, seekIndexManager, new HttpFileContentCache(new TestConfigurationDao()));
+        handler.channelRead0(context, request);
+        verify(context, httpRequest, channel, configurationDao, seekIndexManager);
+
+        HttpHeaders responseHeaders = responseCapture.getValue().headers();
+        assertEquals("25", responseHeaders.get(CONTENT_LENGTH));
+        assertEquals("video/avi", responseHeaders.get(CONTENT_TYPE));
+        assertEquals(getContentFeatures(mimeType, false), responseHeaders.get(HEADER_CONTENT_FEATURES));
+    }
+
+    @Test
+    public void testFileRequestHandlerTimeSeekNotSupported() throws Exception {
+        File video = File.createTempFile("video", ".avi");
+        video.deleteOnExit();
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add(HOST, "localhost");
+        headers.add(HEADER_TIME_SEEK_RANGE, "npt=10-");
+
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        SeekIndexManager seekIndexManager = createMock(SeekIndexManager.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        MimeType mimeType = MimeType.valueOf("video/avi");
+
+        expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
+        expect(seekIndexManager.getSeekIndex(video, mimeType)).andReturn(null);
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+
+        HttpFileRequest request = new HttpFileRequest(httpRequest, video, mimeType, false);
+
+        replay(context, httpRequest, configurationDao, seekIndexManager);
+        try {
+            HttpFileRequestHandler handler = new HttpFileRequestHandler(configurationDao, seekIndexManager, new HttpFileContentCache(new TestConfigurationDao()));
+            handler.channelRead0(context, request);
+            fail();
+        } catch (HttpFileRequestException e) {
+            assertEquals(NOT_ACCEPTABLE, e.getStatus());
+        } finally {
+            verify(context, httpRequest, configurationDao, seekIndexManager);
+        }
+    }
+
     @Test
     public void testExceptionCaughtHttpRequestException() throws Exception {
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
@@ -240,11 +557,12 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(context.channel()).andReturn(channel).atLeastOnce();
         expect(channel.isActive()).andReturn(true).atLeastOnce();
         expect(channel.writeAndFlush(isA(Object.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         replay(context, channel, configurationDao);
-        new HttpFileRequestHandler(configurationDao).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
+        new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao())).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
         verify(context, channel, configurationDao);
     }
 
@@ -255,11 +573,12 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(context.channel()).andReturn(channel).atLeastOnce();
         expect(channel.isActive()).andReturn(true).atLeastOnce();
         expect(channel.writeAndFlush(isA(Object.class))).andReturn(new DefaultChannelPromise(channel)).atLeastOnce();
         replay(context, channel, configurationDao);
-        new HttpFileRequestHandler(configurationDao).exceptionCaught(context, new IOException());
+        new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao())).exceptionCaught(context, new IOException());
         verify(context, channel, configurationDao);
     }
 
@@ -270,10 +589,11 @@ public class HttpFileRequestHandlerTest {
         Channel channel = createMock(Channel.class);
 
         expect(configurationDao.getParameter(HTTP_SERVER_CACHE_SECOND)).andReturn(60);
+        expect(configurationDao.getParameter(HTTP_SERVER_ZERO_COPY_FILE_MAX_SIZE_MB)).andReturn(1024);
         expect(context.channel()).andReturn(channel).atLeastOnce();
         expect(channel.isActive()).andReturn(false).atLeastOnce();
         replay(context, channel, configurationDao);
-        new HttpFileRequestHandler(configurationDao).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
+        new HttpFileRequestHandler(configurationDao, new SeekIndexManagerImpl(), new HttpFileContentCache(new TestConfigurationDao())).exceptionCaught(context, new HttpFileRequestException("message", NOT_FOUND));
         verify(context, channel, configurationDao);
     }
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.hash.Hashing;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_ENABLE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpProxyCacheTest {
+    private static final int CONTENT_LENGTH = 200000;
+
+    @Test
+    public void testProxyDisabled() throws IOException {
+        ConfigurationDao configurationDao = createConfigurationDao(false, 1);
+        replay(configurationDao);
+        HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, getDataDir());
+        assertFalse(proxyCache.isEnabled());
+        assertNull(proxyCache.getDownload("http://localhost/content"));
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        HttpServer server = startServer();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/content";
+        ConfigurationDao configurationDao = createConfigurationDao(true, 1);
+        replay(configurationDao);
+        try {
+            HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, getDataDir());
+            HttpProxyDownload download = proxyCache.getDownload(url);
+            assertNotNull(download);
+            assertTrue(download.awaitLength(10000));
+            assertEquals(CONTENT_LENGTH, download.getLength());
+            awaitCompletion(download);
+            assertTrue(Arrays.equals(getContent(), Files.readAllBytes(download.getFile())));
+            assertEquals(CONTENT_LENGTH, proxyCache.getCacheSize());
+
+            // Content is now served from cache
+            HttpProxyDownload cachedDownload = proxyCache.getDownload(url);
+            assertNotNull(cachedDownload);
+            assertTrue(cachedDownload.isCompleted());
+            assertEquals(download.getFile(), cachedDownload.getFile());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testDownloadUnknownLength() throws Exception {
+        HttpServer server = startServer();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/stream";
+        ConfigurationDao configurationDao = createConfigurationDao(true, 1);
+        replay(configurationDao);
+        try {
+            HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, getDataDir());
+            HttpProxyDownload download = proxyCache.getDownload(url);
+            assertFalse(download.awaitLength(10000));
+            assertTrue(download.isStarted());
+            assertTrue(download.isFailed());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testDownloadNotFound() throws Exception {
+        HttpServer server = startServer();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/unknown";
+        ConfigurationDao configurationDao = createConfigurationDao(true, 1);
+        replay(configurationDao);
+        try {
+            HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, getDataDir());
+            HttpProxyDownload download = proxyCache.getDownload(url);
+            assertFalse(download.awaitLength(10000));
+            assertFalse(download.hasLength());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testStartListener() throws Exception {
+        HttpServer server = startServer();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/content";
+        ConfigurationDao configurationDao = createConfigurationDao(true, 1);
+        replay(configurationDao);
+        try {
+            HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, getDataDir());
+            HttpProxyDownload download = proxyCache.getDownload(url);
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            download.addStartListener(new Runnable() {
+                @Override
+                public void run() {
+                    startLatch.countDown();
+                }
+            });
+            assertTrue(startLatch.await(10, SECONDS));
+            assertTrue(download.hasLength());
+
+            // Listener is run right away once download is started
+            final AtomicInteger runs = new AtomicInteger();
+            download.addStartListener(new Runnable() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            });
+            assertEquals(1, runs.get());
+            awaitCompletion(download);
+            assertEquals(1, runs.get());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        HttpServer server = startServer();
+        String url1 = "http://localhost:" + server.getAddress().getPort() + "/content?1";
+        String url2 = "http://localhost:" + server.getAddress().getPort() + "/content?2";
+        ConfigurationDao configurationDao = createConfigurationDao(true, 0);
+        replay(configurationDao);
+        try {
+            HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, getDataDir());
+            HttpProxyDownload download1 = proxyCache.getDownload(url1);
+            awaitCompletion(download1);
+            HttpProxyDownload download2 = proxyCache.getDownload(url2);
+            awaitCompletion(download2);
+
+            // Least recently used content is removed
+            assertFalse(Files.exists(download1.getFile()));
+            assertTrue(Files.exists(download2.getFile()));
+            assertEquals(CONTENT_LENGTH, proxyCache.getCacheSize());
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testExistingCache() throws IOException {
+        String dataDir = getDataDir();
+        String url = "http://localhost:1/content";
+        Path proxyDir = Files.createDirectories(Paths.get(dataDir, "proxy"));
+        Path cachedFile = proxyDir.resolve(Hashing.sha1().hashString(url, UTF_8).toString() + ".cache");
+        Path partFile = proxyDir.resolve("incomplete.part");
+        Files.write(cachedFile, getContent());
+        Files.write(partFile, getContent());
+
+        ConfigurationDao configurationDao = createConfigurationDao(true, 1);
+        replay(configurationDao);
+        HttpProxyCache proxyCache = new HttpProxyCache(configurationDao, dataDir);
+        HttpProxyDownload download = proxyCache.getDownload(url);
+        assertNotNull(download);
+        assertTrue(download.isCompleted());
+        assertEquals(CONTENT_LENGTH, download.getLength());
+        assertEquals(CONTENT_LENGTH, proxyCache.getCacheSize());
+        assertFalse(Files.exists(partFile));
+        verify(configurationDao);
+    }
+
+    private ConfigurationDao createConfigurationDao(final boolean enabled, final int cacheMaxSizeMb) {
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE)).andReturn(enabled);
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB)).andReturn(cacheMaxSizeMb);
+        return configurationDao;
+    }
+
+    private void awaitCompletion(final HttpProxyDownload download) throws InterruptedException {
+        for (int i = 0; i < 100 && !download.isCompleted(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(download.isCompleted());
+    }
+
+    private String getDataDir() throws IOException {
+        return Files.createTempDirectory("holmes").toString();
+    }
+
+    private HttpServer startServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new ContentHandler());
+        server.start();
+        return server;
+    }
+
+    private static byte[] getContent() {
+        byte[] content = new byte[CONTENT_LENGTH];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    /**
+     * Serves test content with its length, a stream without length or not found.
+     */
+    private static class ContentHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            if ("/content".equals(path)) {
+                exchange.sendResponseHeaders(200, CONTENT_LENGTH);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(getContent());
+                }
+            } else if ("/stream".equals(path)) {
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(getContent());
+                }
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+        }
+    }
+}
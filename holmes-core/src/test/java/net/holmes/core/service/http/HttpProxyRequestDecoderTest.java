@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.RawUrlNode;
+import net.holmes.core.common.MimeType;
+import org.easymock.Capture;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.LOCATION;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpResponseStatus.FOUND;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_PODCAST_ENTRY;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_ENABLE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpProxyRequestDecoderTest {
+
+    @Test
+    public void testDecodeProxyDisabled() throws IOException {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(false);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.retain()).andReturn(request).atLeastOnce();
+
+        replay(context, request, mediaManager, configurationDao);
+        HttpProxyRequestDecoder decoder = new HttpProxyRequestDecoder(mediaManager, new HttpProxyCache(configurationDao, getDataDir()));
+        decoder.decode(context, request, out);
+        assertEquals(1, out.size());
+        assertEquals(request, out.get(0));
+        verify(context, request, mediaManager, configurationDao);
+    }
+
+    @Test
+    public void testDecodeCachedContent() throws IOException {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        List<Object> out = Lists.newArrayList();
+
+        // Put content in proxy cache
+        String url = "http://localhost:1/content";
+        String dataDir = getDataDir();
+        Path proxyDir = Files.createDirectories(Paths.get(dataDir, "proxy"));
+        Files.write(proxyDir.resolve(Hashing.sha1().hashString(url, UTF_8).toString() + ".cache"), new byte[]{1, 2, 3});
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/proxy?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new RawUrlNode(TYPE_PODCAST_ENTRY, "1234", "parentId", "name", MimeType.valueOf("audio/mpeg"), url, null));
+
+        replay(context, request, mediaManager, configurationDao);
+        HttpProxyRequestDecoder decoder = new HttpProxyRequestDecoder(mediaManager, new HttpProxyCache(configurationDao, dataDir));
+        decoder.decode(context, request, out);
+        assertEquals(1, out.size());
+        assertEquals(HttpFileRequest.class, out.get(0).getClass());
+        HttpFileRequest fileRequest = (HttpFileRequest) out.get(0);
+        assertEquals(Long.valueOf(3), fileRequest.getFileLength());
+        assertEquals(MimeType.valueOf("audio/mpeg"), fileRequest.getMimeType());
+        assertNull(fileRequest.getDownload());
+        verify(context, request, mediaManager, configurationDao);
+    }
+
+    @Test
+    public void testDecodeRedirect() throws Exception {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        Channel channel = createMock(Channel.class);
+        ChannelConfig channelConfig = createMock(ChannelConfig.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        Capture<FullHttpResponse> response = new Capture<>();
+        final CountDownLatch responseLatch = new CountDownLatch(1);
+        final DefaultChannelPromise promise = new DefaultChannelPromise(channel);
+        List<Object> out = Lists.newArrayList();
+        EventExecutorGroup executorGroup = new DefaultEventExecutorGroup(1);
+
+        String url = "http://localhost:1/content";
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/proxy?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new RawUrlNode(TYPE_PODCAST_ENTRY, "1234", "parentId", "name", MimeType.valueOf("audio/mpeg"), url, null));
+        expect(context.channel()).andReturn(channel).atLeastOnce();
+        expect(context.executor()).andReturn(executorGroup.next()).anyTimes();
+        expect(channel.config()).andReturn(channelConfig).anyTimes();
+        expect(channelConfig.setAutoRead(false)).andReturn(channelConfig).anyTimes();
+        expect(channelConfig.setAutoRead(true)).andReturn(channelConfig).anyTimes();
+        expect(channel.writeAndFlush(capture(response))).andAnswer(new IAnswer<ChannelFuture>() {
+            @Override
+            public ChannelFuture answer() throws Throwable {
+                responseLatch.countDown();
+                return promise;
+            }
+        });
+
+        replay(context, channel, channelConfig, request, mediaManager, configurationDao);
+        try {
+            HttpProxyRequestDecoder decoder = new HttpProxyRequestDecoder(mediaManager, new HttpProxyCache(configurationDao, getDataDir()));
+            decoder.decode(context, request, out);
+            assertTrue(out.isEmpty());
+
+            // Client is redirected once download failed, whether before or while waiting for it to start
+            assertTrue(responseLatch.await(10, SECONDS));
+            assertEquals(FOUND, response.getValue().getStatus());
+            assertEquals(url, response.getValue().headers().get(LOCATION));
+            verify(context, channel, channelConfig, request, mediaManager, configurationDao);
+        } finally {
+            executorGroup.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testDecodePendingDownload() throws Exception {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        Channel channel = createMock(Channel.class);
+        ChannelConfig channelConfig = createMock(ChannelConfig.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        Capture<Object> fileRequest = new Capture<>();
+        final CountDownLatch fileRequestLatch = new CountDownLatch(1);
+        final ChannelHandlerContext contextRef = context;
+        List<Object> out = Lists.newArrayList();
+        EventExecutorGroup executorGroup = new DefaultEventExecutorGroup(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/content", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 3);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(new byte[]{1, 2, 3});
+                }
+            }
+        });
+        server.start();
+
+        String url = "http://localhost:" + server.getAddress().getPort() + "/content";
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/proxy?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new RawUrlNode(TYPE_PODCAST_ENTRY, "1234", "parentId", "name", MimeType.valueOf("audio/mpeg"), url, null));
+        expect(context.channel()).andReturn(channel).atLeastOnce();
+        expect(context.executor()).andReturn(executorGroup.next()).atLeastOnce();
+        expect(channel.config()).andReturn(channelConfig).atLeastOnce();
+        expect(channelConfig.setAutoRead(false)).andReturn(channelConfig);
+        expect(channelConfig.setAutoRead(true)).andReturn(channelConfig);
+        expect(context.fireChannelRead(capture(fileRequest))).andAnswer(new IAnswer<ChannelHandlerContext>() {
+            @Override
+            public ChannelHandlerContext answer() throws Throwable {
+                fileRequestLatch.countDown();
+                return contextRef;
+            }
+        });
+
+        replay(context, channel, channelConfig, request, mediaManager, configurationDao);
+        try {
+            HttpProxyRequestDecoder decoder = new HttpProxyRequestDecoder(mediaManager, new HttpProxyCache(configurationDao, getDataDir()));
+            decoder.decode(context, request, out);
+            assertTrue(out.isEmpty());
+
+            // File request is forwarded once download is started
+            assertTrue(fileRequestLatch.await(10, SECONDS));
+            assertEquals(HttpFileRequest.class, fileRequest.getValue().getClass());
+            assertEquals(MimeType.valueOf("audio/mpeg"), ((HttpFileRequest) fileRequest.getValue()).getMimeType());
+            verify(context, channel, channelConfig, request, mediaManager, configurationDao);
+        } finally {
+            server.stop(0);
+            executorGroup.shutdownGracefully();
+        }
+    }
+
+    private ConfigurationDao createConfigurationDao(final boolean enabled) {
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE)).andReturn(enabled);
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_CACHE_MAX_SIZE_MB)).andReturn(1);
+        return configurationDao;
+    }
+
+    private String getDataDir() throws IOException {
+        return Files.createTempDirectory("holmes").toString();
+    }
+}
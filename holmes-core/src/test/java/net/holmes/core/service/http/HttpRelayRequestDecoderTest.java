@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.google.common.collect.Lists;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.model.RawUrlNode;
+import net.holmes.core.common.MimeType;
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_ICECAST_ENTRY;
+import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_PODCAST_ENTRY;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_BUFFER_KB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_ENABLE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+
+public class HttpRelayRequestDecoderTest {
+
+    @Test
+    public void testDecodeRelayDisabled() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(false);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.retain()).andReturn(request).atLeastOnce();
+
+        replay(context, request, mediaManager, configurationDao);
+        HttpRelayRequestDecoder decoder = new HttpRelayRequestDecoder(mediaManager, new HttpStreamRelayManager(configurationDao));
+        decoder.decode(context, request, out);
+        assertEquals(1, out.size());
+        assertEquals(request, out.get(0));
+        verify(context, request, mediaManager, configurationDao);
+    }
+
+    @Test
+    public void testDecodeRelayRequest() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/relay?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new RawUrlNode(TYPE_ICECAST_ENTRY, "1234", "parentId", "name", MimeType.valueOf("audio/mpeg"), "http://localhost/live", null));
+
+        replay(context, request, mediaManager, configurationDao);
+        HttpRelayRequestDecoder decoder = new HttpRelayRequestDecoder(mediaManager, new HttpStreamRelayManager(configurationDao));
+        decoder.decode(context, request, out);
+        assertEquals(1, out.size());
+        assertEquals(HttpRelayRequest.class, out.get(0).getClass());
+        HttpRelayRequest relayRequest = (HttpRelayRequest) out.get(0);
+        assertEquals(request, relayRequest.getHttpRequest());
+        assertEquals("http://localhost/live", relayRequest.getUrl());
+        assertEquals(MimeType.valueOf("audio/mpeg"), relayRequest.getMimeType());
+        verify(context, request, mediaManager, configurationDao);
+    }
+
+    @Test
+    public void testDecodeUnknownNode() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/relay?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(null);
+        expect(request.retain()).andReturn(request).atLeastOnce();
+
+        replay(context, request, mediaManager, configurationDao);
+        HttpRelayRequestDecoder decoder = new HttpRelayRequestDecoder(mediaManager, new HttpStreamRelayManager(configurationDao));
+        decoder.decode(context, request, out);
+        assertEquals(1, out.size());
+        assertEquals(request, out.get(0));
+        verify(context, request, mediaManager, configurationDao);
+    }
+
+    @Test
+    public void testDecodePodcastEntry() {
+        FullHttpRequest request = createMock(FullHttpRequest.class);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        MediaManager mediaManager = createMock(MediaManager.class);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        List<Object> out = Lists.newArrayList();
+
+        expect(request.getMethod()).andReturn(GET).atLeastOnce();
+        expect(request.getUri()).andReturn("/relay?id=1234").atLeastOnce();
+        expect(mediaManager.getNode("1234")).andReturn(new RawUrlNode(TYPE_PODCAST_ENTRY, "1234", "parentId", "name", MimeType.valueOf("audio/mpeg"), "http://localhost/episode.mp3", null));
+        expect(request.retain()).andReturn(request).atLeastOnce();
+
+        replay(context, request, mediaManager, configurationDao);
+        HttpRelayRequestDecoder decoder = new HttpRelayRequestDecoder(mediaManager, new HttpStreamRelayManager(configurationDao));
+        decoder.decode(context, request, out);
+        assertEquals(1, out.size());
+        assertEquals(request, out.get(0));
+        verify(context, request, mediaManager, configurationDao);
+    }
+
+    private ConfigurationDao createConfigurationDao(final boolean enabled) {
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_ENABLE)).andReturn(enabled);
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_BUFFER_KB)).andReturn(64);
+        return configurationDao;
+    }
+}
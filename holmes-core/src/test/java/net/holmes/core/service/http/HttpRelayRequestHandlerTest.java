@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.common.MimeType;
+import org.easymock.Capture;
+import org.junit.Test;
+
+import static io.netty.handler.codec.http.HttpHeaders.Names.*;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.HEAD;
+import static io.netty.handler.codec.http.HttpResponseStatus.FOUND;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_BUFFER_KB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_ENABLE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+
+public class HttpRelayRequestHandlerTest {
+
+    @Test
+    public void testHeadRequest() {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.add("Icy-MetaData", "1");
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        Channel channel = createMock(Channel.class);
+        Capture<HttpResponse> response = new Capture<>();
+
+        expect(httpRequest.headers()).andReturn(headers).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(HEAD).atLeastOnce();
+        expect(context.write(capture(response))).andReturn(new DefaultChannelPromise(channel));
+        expect(context.writeAndFlush(isA(LastHttpContent.class))).andReturn(new DefaultChannelPromise(channel));
+
+        replay(context, httpRequest, channel, configurationDao);
+        HttpStreamRelayManager relayManager = new HttpStreamRelayManager(configurationDao);
+        HttpRelayRequestHandler handler = new HttpRelayRequestHandler(relayManager);
+        handler.channelRead0(context, new HttpRelayRequest(httpRequest, "http://localhost/live", MimeType.valueOf("audio/mpeg")));
+
+        // HEAD request is answered without connecting to remote stream
+        assertEquals(0, relayManager.getRelayCount());
+        assertEquals(OK, response.getValue().getStatus());
+        assertEquals("audio/mpeg", response.getValue().headers().get(CONTENT_TYPE));
+        assertEquals(HttpHeaders.Values.CLOSE, response.getValue().headers().get(CONNECTION));
+        assertEquals(String.valueOf(HttpRelayChunkedInput.ICY_METADATA_INTERVAL), response.getValue().headers().get("icy-metaint"));
+        verify(context, httpRequest, channel, configurationDao);
+    }
+
+    @Test
+    public void testRedirectRelayDisabled() {
+        ConfigurationDao configurationDao = createConfigurationDao(false);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        FullHttpRequest httpRequest = createMock(FullHttpRequest.class);
+        ChannelPipeline pipeline = createMock(ChannelPipeline.class);
+        Channel channel = createMock(Channel.class);
+        Capture<FullHttpResponse> response = new Capture<>();
+
+        expect(httpRequest.headers()).andReturn(new DefaultHttpHeaders()).atLeastOnce();
+        expect(httpRequest.getMethod()).andReturn(GET).atLeastOnce();
+        expect(context.pipeline()).andReturn(pipeline);
+        expect(pipeline.get(ChunkedWriteHandler.class)).andReturn(new ChunkedWriteHandler());
+        expect(context.channel()).andReturn(channel);
+        expect(channel.writeAndFlush(capture(response))).andReturn(new DefaultChannelPromise(channel));
+
+        replay(context, httpRequest, pipeline, channel, configurationDao);
+        HttpRelayRequestHandler handler = new HttpRelayRequestHandler(new HttpStreamRelayManager(configurationDao));
+        handler.channelRead0(context, new HttpRelayRequest(httpRequest, "http://localhost/live", MimeType.valueOf("audio/mpeg")));
+        assertEquals(FOUND, response.getValue().getStatus());
+        assertEquals("http://localhost/live", response.getValue().headers().get(LOCATION));
+        verify(context, httpRequest, pipeline, channel, configurationDao);
+    }
+
+    private ConfigurationDao createConfigurationDao(final boolean enabled) {
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_ENABLE)).andReturn(enabled);
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_BUFFER_KB)).andReturn(64);
+        return configurationDao;
+    }
+}
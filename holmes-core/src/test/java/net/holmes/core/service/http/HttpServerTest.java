@@ -24,8 +24,11 @@ import com.google.inject.Key;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import org.junit.Test;
 
-import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PORT;
+import java.util.Map;
+
+import static net.holmes.core.common.ConfigurationParameter.*;
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
 
 public class HttpServerTest {
 
@@ -36,11 +39,39 @@ public class HttpServerTest {
         HttpServer httpServer = new HttpServer(injector, configurationDao);
 
         expect(configurationDao.getParameter(HTTP_SERVER_PORT)).andReturn(8080).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_WORKER_THREADS)).andReturn(0).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_STREAMING_THREADS)).andReturn(2).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_BACKEND_THREADS)).andReturn(2).atLeastOnce();
+        expect(injector.getBindings()).andReturn(Maps.<Key<?>, Binding<?>>newHashMap()).atLeastOnce();
+
+        replay(injector, configurationDao);
+        httpServer.start();
+        httpServer.stop();
+        verify(injector, configurationDao);
+    }
+
+    @Test
+    public void testGetPendingTasks() {
+        Injector injector = createMock(Injector.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        HttpServer httpServer = new HttpServer(injector, configurationDao);
+
+        expect(configurationDao.getParameter(HTTP_SERVER_PORT)).andReturn(8080).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_WORKER_THREADS)).andReturn(1).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_STREAMING_THREADS)).andReturn(1).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_BACKEND_THREADS)).andReturn(1).atLeastOnce();
         expect(injector.getBindings()).andReturn(Maps.<Key<?>, Binding<?>>newHashMap()).atLeastOnce();
 
         replay(injector, configurationDao);
+        assertTrue(httpServer.getPendingTasks().isEmpty());
         httpServer.start();
+        Map<String, Integer> pendingTasks = httpServer.getPendingTasks();
         httpServer.stop();
         verify(injector, configurationDao);
+
+        assertEquals(3, pendingTasks.size());
+        assertNotNull(pendingTasks.get("worker"));
+        assertNotNull(pendingTasks.get("streaming"));
+        assertNotNull(pendingTasks.get("backend"));
     }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import net.holmes.core.business.configuration.ConfigurationDao;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_BUFFER_KB;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_ENABLE;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class HttpStreamRelayManagerTest {
+    private static final int METADATA_INTERVAL = 1000;
+    private static final int BLOCK_COUNT = 20;
+    private static final byte[] METADATA = "StreamTitle='a';".getBytes(US_ASCII);
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Test
+    public void testRelayDisabled() {
+        ConfigurationDao configurationDao = createConfigurationDao(false);
+        replay(configurationDao);
+        HttpStreamRelayManager relayManager = new HttpStreamRelayManager(configurationDao);
+        assertFalse(relayManager.isEnabled());
+        assertNull(relayManager.subscribe("http://localhost/live", NO_OP));
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testRelayNotFound() throws Exception {
+        LiveHandler handler = new LiveHandler();
+        HttpServer server = startServer(handler);
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        replay(configurationDao);
+        try {
+            HttpStreamRelayManager relayManager = new HttpStreamRelayManager(configurationDao);
+            HttpStreamRelay relay = relayManager.subscribe("http://localhost:" + server.getAddress().getPort() + "/unknown", NO_OP);
+            assertNotNull(relay);
+
+            // Start listeners are notified when relay fails to start
+            final CountDownLatch started = new CountDownLatch(1);
+            relay.addStartListener(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                }
+            });
+            assertTrue(started.await(10, SECONDS));
+            assertTrue(relay.isStarted());
+            assertTrue(relay.isStopped());
+            assertFalse(relay.awaitStart(0));
+            awaitRelayCount(relayManager, 0);
+        } finally {
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testRelaySharedUpstream() throws Exception {
+        LiveHandler handler = new LiveHandler();
+        HttpServer server = startServer(handler);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/live";
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        replay(configurationDao);
+        try {
+            HttpStreamRelayManager relayManager = new HttpStreamRelayManager(configurationDao);
+            Runnable subscriber1 = new CountingSubscriber();
+            Runnable subscriber2 = new CountingSubscriber();
+            HttpStreamRelay relay1 = relayManager.subscribe(url, subscriber1);
+            HttpStreamRelay relay2 = relayManager.subscribe(url, subscriber2);
+
+            // Both subscribers share a single upstream connection
+            assertNotNull(relay1);
+            assertSame(relay1, relay2);
+            assertTrue(relay1.awaitStart(10000));
+            assertTrue(relay1.isStarted());
+            assertEquals(2, relay1.getSubscriberCount());
+            assertEquals(1, relayManager.getRelayCount());
+            assertEquals(1, handler.connections.get());
+            assertEquals("audio/mpeg", relay1.getContentType());
+            assertEquals("Test radio", relay1.getName());
+
+            // ICY metadata are removed from relayed content
+            awaitPosition(relay1, METADATA_INTERVAL * BLOCK_COUNT);
+            byte[] relayed = new byte[METADATA_INTERVAL * BLOCK_COUNT];
+            assertEquals(relayed.length, relay1.read(0, relayed, 0, relayed.length));
+            assertTrue(Arrays.equals(getAudio(), relayed));
+            assertTrue(Arrays.equals(METADATA, relay1.getMetadata()));
+            assertEquals(0, relay1.read(relayed.length, relayed, 0, relayed.length));
+
+            // Relay is stopped when last subscriber leaves
+            relay1.unsubscribe(subscriber1);
+            assertFalse(relay1.isStopped());
+            relay1.unsubscribe(subscriber2);
+            assertTrue(relay1.isStopped());
+            awaitRelayCount(relayManager, 0);
+            assertFalse(relay1.subscribe(subscriber1));
+        } finally {
+            handler.release.countDown();
+            server.stop(0);
+        }
+        verify(configurationDao);
+    }
+
+    @Test
+    public void testRelayChunkedInput() throws Exception {
+        LiveHandler handler = new LiveHandler();
+        HttpServer server = startServer(handler);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/live";
+        ConfigurationDao configurationDao = createConfigurationDao(true);
+        ChannelHandlerContext context = createMock(ChannelHandlerContext.class);
+        expect(context.alloc()).andReturn(UnpooledByteBufAllocator.DEFAULT).anyTimes();
+        replay(configurationDao, context);
+        try {
+            HttpStreamRelayManager relayManager = new HttpStreamRelayManager(configurationDao);
+            CountingSubscriber subscriber = new CountingSubscriber();
+            HttpStreamRelay relay = relayManager.subscribe(url, subscriber);
+            assertNotNull(relay);
+            awaitPosition(relay, METADATA_INTERVAL * BLOCK_COUNT);
+            assertTrue(subscriber.count.get() > 0);
+
+            // New subscriber joins relay with late join buffer
+            long joinPosition = relay.getJoinPosition();
+            assertTrue(joinPosition > 0);
+            HttpRelayChunkedInput input = new HttpRelayChunkedInput(relay, subscriber, true, 4096);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            ByteBuf chunk;
+            while ((chunk = input.readChunk(context)) != null) {
+                byte[] bytes = new byte[chunk.readableBytes()];
+                chunk.readBytes(bytes);
+                content.write(bytes);
+                chunk.release();
+            }
+            assertFalse(input.isEndOfInput());
+
+            // Current metadata are inserted in relayed content
+            int metadataOffset = HttpRelayChunkedInput.ICY_METADATA_INTERVAL;
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(getAudio(), (int) joinPosition, metadataOffset);
+            expected.write(METADATA.length / 16);
+            expected.write(METADATA);
+            expected.write(getAudio(), (int) joinPosition + metadataOffset, METADATA_INTERVAL * BLOCK_COUNT - (int) joinPosition - metadataOffset);
+            assertTrue(Arrays.equals(expected.toByteArray(), content.toByteArray()));
+
+            // Closing input stops relay
+            input.close();
+            assertTrue(relay.isStopped());
+            assertTrue(input.isEndOfInput());
+        } finally {
+            handler.release.countDown();
+            server.stop(0);
+        }
+        verify(configurationDao, context);
+    }
+
+    private ConfigurationDao createConfigurationDao(final boolean enabled) {
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_ENABLE)).andReturn(enabled);
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_BUFFER_KB)).andReturn(64);
+        return configurationDao;
+    }
+
+    private void awaitPosition(final HttpStreamRelay relay, final long position) throws InterruptedException {
+        for (int i = 0; i < 100 && relay.getPosition() < position; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(position, relay.getPosition());
+    }
+
+    private void awaitRelayCount(final HttpStreamRelayManager relayManager, final int count) throws InterruptedException {
+        for (int i = 0; i < 100 && relayManager.getRelayCount() != count; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(count, relayManager.getRelayCount());
+    }
+
+    private HttpServer startServer(final HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", handler);
+        server.start();
+        return server;
+    }
+
+    private static byte[] getAudio() {
+        byte[] audio = new byte[METADATA_INTERVAL * BLOCK_COUNT];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) (i % 251);
+        }
+        return audio;
+    }
+
+    /**
+     * Counts relay notifications.
+     */
+    private static class CountingSubscriber implements Runnable {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Serves a live stream with ICY metadata, then holds connection open until released.
+     */
+    private static class LiveHandler implements HttpHandler {
+        private final AtomicInteger connections = new AtomicInteger();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"/live".equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            connections.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "audio/mpeg");
+            exchange.getResponseHeaders().set("icy-name", "Test radio");
+            exchange.getResponseHeaders().set("icy-metaint", String.valueOf(METADATA_INTERVAL));
+            exchange.sendResponseHeaders(200, 0);
+            byte[] audio = getAudio();
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < BLOCK_COUNT; i++) {
+                    out.write(audio, i * METADATA_INTERVAL, METADATA_INTERVAL);
+                    if (i == 0) {
+                        out.write(METADATA.length / 16);
+                        out.write(METADATA);
+                    } else {
+                        out.write(0);
+                    }
+                }
+                out.flush();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException ignored) {
+                // Relay disconnected
+            }
+            exchange.close();
+        }
+    }
+}
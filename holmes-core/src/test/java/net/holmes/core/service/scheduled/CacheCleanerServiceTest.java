@@ -20,6 +20,7 @@ package net.holmes.core.service.scheduled;
 
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.MediaManager;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
 import org.junit.Test;
 
 import java.util.concurrent.TimeoutException;
@@ -34,15 +35,18 @@ public class CacheCleanerServiceTest {
     @Test
     public void testCacheCleanerService() {
         MediaManager mediaManager = createMock(MediaManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
 
         expect(configurationDao.getParameter(CACHE_CLEAN_DELAY_MINUTES)).andReturn(1);
         mediaManager.cleanUpCache();
         expectLastCall();
+        thumbnailManager.cleanUpCache();
+        expectLastCall();
 
-        replay(mediaManager, configurationDao);
+        replay(mediaManager, thumbnailManager, configurationDao);
 
-        CacheCleanerServiceTester service = new CacheCleanerServiceTester(mediaManager, configurationDao);
+        CacheCleanerServiceTester service = new CacheCleanerServiceTester(mediaManager, thumbnailManager, configurationDao);
 
         try {
             service.startAsync();
@@ -51,7 +55,7 @@ public class CacheCleanerServiceTest {
         } catch (TimeoutException e) {
             fail(e.getMessage());
         } finally {
-            verify(mediaManager, configurationDao);
+            verify(mediaManager, thumbnailManager, configurationDao);
             if (service.isRunning()) {
                 service.stopAsync();
                 service.awaitTerminated();
@@ -62,13 +66,14 @@ public class CacheCleanerServiceTest {
     @Test(expected = IllegalStateException.class)
     public void testCacheCleanerServiceNoDelay() {
         MediaManager mediaManager = createMock(MediaManager.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
         ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
 
         expect(configurationDao.getParameter(CACHE_CLEAN_DELAY_MINUTES)).andReturn(0);
 
-        replay(mediaManager, configurationDao);
+        replay(mediaManager, thumbnailManager, configurationDao);
 
-        CacheCleanerServiceTester service = new CacheCleanerServiceTester(mediaManager, configurationDao);
+        CacheCleanerServiceTester service = new CacheCleanerServiceTester(mediaManager, thumbnailManager, configurationDao);
 
         try {
             service.startAsync();
@@ -76,7 +81,7 @@ public class CacheCleanerServiceTest {
         } catch (TimeoutException e) {
             fail(e.getMessage());
         } finally {
-            verify(mediaManager, configurationDao);
+            verify(mediaManager, thumbnailManager, configurationDao);
             if (service.isRunning()) {
                 service.stopAsync();
                 service.awaitTerminated();
@@ -86,8 +91,8 @@ public class CacheCleanerServiceTest {
 
     private class CacheCleanerServiceTester extends CacheCleanerService {
 
-        public CacheCleanerServiceTester(final MediaManager mediaManager, final ConfigurationDao configurationDao) {
-            super(mediaManager, configurationDao);
+        public CacheCleanerServiceTester(final MediaManager mediaManager, final ThumbnailManager thumbnailManager, final ConfigurationDao configurationDao) {
+            super(mediaManager, thumbnailManager, configurationDao);
         }
 
         public void run() {
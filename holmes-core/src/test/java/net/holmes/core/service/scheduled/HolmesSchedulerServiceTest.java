@@ -26,9 +26,10 @@ public class HolmesSchedulerServiceTest {
     public void testHolmesSchedulerService() {
         AbstractScheduledService cacheCleanerService = new AbstractScheduledServiceTester();
         AbstractScheduledService icecastDownloadService = new AbstractScheduledServiceTester();
+        AbstractScheduledService podcastRefreshService = new AbstractScheduledServiceTester();
         AbstractScheduledService releaseCheckService = new AbstractScheduledServiceTester();
 
-        HolmesSchedulerService service = new HolmesSchedulerService(cacheCleanerService, icecastDownloadService, releaseCheckService);
+        HolmesSchedulerService service = new HolmesSchedulerService(cacheCleanerService, icecastDownloadService, podcastRefreshService, releaseCheckService);
         try {
             service.start();
         } finally {
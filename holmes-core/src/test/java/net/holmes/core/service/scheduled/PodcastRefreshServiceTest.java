@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012-2014  Cedric Cheneau
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.holmes.core.service.scheduled;
+
+import net.holmes.core.business.configuration.ConfigurationDao;
+import net.holmes.core.business.media.dao.podcast.PodcastDao;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.holmes.core.common.ConfigurationParameter.PODCAST_CACHE_EXPIRE_HOURS;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.fail;
+
+public class PodcastRefreshServiceTest {
+
+    @Test
+    public void testPodcastRefreshService() {
+        PodcastDao podcastDao = createMock(PodcastDao.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+
+        expect(configurationDao.getParameter(PODCAST_CACHE_EXPIRE_HOURS)).andReturn(1);
+        podcastDao.refreshPodcasts();
+        expectLastCall().atLeastOnce();
+
+        replay(podcastDao, configurationDao);
+
+        PodcastRefreshServiceTester service = new PodcastRefreshServiceTester(podcastDao, configurationDao);
+
+        try {
+            service.startAsync();
+            service.awaitRunning(10, SECONDS);
+            service.run();
+        } catch (TimeoutException e) {
+            fail(e.getMessage());
+        } finally {
+            verify(podcastDao, configurationDao);
+            if (service.isRunning()) {
+                service.stopAsync();
+                service.awaitTerminated();
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPodcastRefreshServiceNoDelay() {
+        PodcastDao podcastDao = createMock(PodcastDao.class);
+        ConfigurationDao configurationDao = createMock(ConfigurationDao.class);
+
+        expect(configurationDao.getParameter(PODCAST_CACHE_EXPIRE_HOURS)).andReturn(0);
+
+        replay(podcastDao, configurationDao);
+
+        PodcastRefreshServiceTester service = new PodcastRefreshServiceTester(podcastDao, configurationDao);
+
+        try {
+            service.startAsync();
+            service.awaitRunning(10, SECONDS);
+        } catch (TimeoutException e) {
+            fail(e.getMessage());
+        } finally {
+            verify(podcastDao, configurationDao);
+            if (service.isRunning()) {
+                service.stopAsync();
+                service.awaitTerminated();
+            }
+        }
+    }
+
+    private class PodcastRefreshServiceTester extends PodcastRefreshService {
+
+        public PodcastRefreshServiceTester(final PodcastDao podcastDao, final ConfigurationDao configurationDao) {
+            super(podcastDao, configurationDao);
+        }
+
+        public void run() {
+            runOneIteration();
+        }
+    }
+}
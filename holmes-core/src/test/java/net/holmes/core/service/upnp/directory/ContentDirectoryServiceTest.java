@@ -21,7 +21,9 @@ import com.google.common.collect.Lists;
 import net.holmes.core.business.configuration.ConfigurationDao;
 import net.holmes.core.business.media.MediaManager;
 import net.holmes.core.business.media.MediaSearchRequest;
+import net.holmes.core.business.media.metadata.MetadataManager;
 import net.holmes.core.business.media.model.*;
+import net.holmes.core.business.media.thumbnail.ThumbnailManager;
 import net.holmes.core.business.streaming.StreamingManager;
 import net.holmes.core.business.streaming.airplay.device.AirplayDevice;
 import net.holmes.core.business.streaming.upnp.device.UpnpDevice;
@@ -44,8 +46,11 @@ import java.util.List;
 import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_ICECAST_ENTRY;
 import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_PODCAST_ENTRY;
 import static net.holmes.core.business.media.model.RootNode.VIDEO;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_PROXY_ENABLE;
+import static net.holmes.core.common.ConfigurationParameter.HTTP_SERVER_RELAY_ENABLE;
 import static net.holmes.core.common.ConfigurationParameter.PODCAST_PREPEND_ENTRY_NAME;
 import static net.holmes.core.common.ConfigurationParameter.UPNP_ADD_SUBTITLE;
+import static net.holmes.core.common.MimeType.MIME_TYPE_SUBTITLE;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertNotNull;
 
@@ -87,13 +92,11 @@ public class ContentDirectoryServiceTest {
 
         expect(remoteClientInfo.getConnection()).andReturn(connection);
         expect(remoteClientInfo.getRemoteAddress()).andReturn(inetAddress);
-        expect(inetAddress.getHostAddress()).andReturn("localhost");
-        expect(streamingManager.findDevices(eq("localhost"))).andReturn(Lists.newArrayList(upnpDevice, airplayDevice));
+        expect(streamingManager.findDevices(eq(inetAddress))).andReturn(Lists.newArrayList(upnpDevice, airplayDevice));
         expect(upnpDevice.getSupportedMimeTypes()).andReturn(Lists.newArrayList("video/avi"));
         expect(mediaManager.getNode(eq("0"))).andReturn(new FolderNode("0", "-1", "root"));
         List<AbstractNode> rootChildren = Lists.<AbstractNode>newArrayList(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.name()));
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(rootChildren);
-        expect(configurationDao.getParameter(UPNP_ADD_SUBTITLE)).andReturn(true);
 
         replay(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, upnpDevice, airplayDevice, configurationDao);
 
@@ -121,13 +124,11 @@ public class ContentDirectoryServiceTest {
 
         expect(remoteClientInfo.getConnection()).andReturn(connection);
         expect(remoteClientInfo.getRemoteAddress()).andReturn(inetAddress);
-        expect(inetAddress.getHostAddress()).andReturn("localhost");
-        expect(streamingManager.findDevices(eq("localhost"))).andReturn(Lists.newArrayList(upnpDevice, airplayDevice));
+        expect(streamingManager.findDevices(eq(inetAddress))).andReturn(Lists.newArrayList(upnpDevice, airplayDevice));
         expect(upnpDevice.getSupportedMimeTypes()).andReturn(Lists.newArrayList("video/avi"));
         expect(mediaManager.getNode(eq("0"))).andReturn(new FolderNode("0", "-1", "root"));
         List<AbstractNode> rootChildren = Lists.<AbstractNode>newArrayList(new FolderNode(VIDEO.getId(), VIDEO.getParentId(), VIDEO.name()));
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(rootChildren);
-        expect(configurationDao.getParameter(UPNP_ADD_SUBTITLE)).andReturn(false);
 
         replay(mediaManager, streamingManager, remoteClientInfo, connection, inetAddress, upnpDevice, airplayDevice, configurationDao);
 
@@ -215,16 +216,24 @@ public class ContentDirectoryServiceTest {
         MediaManager mediaManager = createMock(MediaManager.class);
         StreamingManager streamingManager = createMock(StreamingManager.class);
         RemoteClientInfo remoteClientInfo = createMock(RemoteClientInfo.class);
+        ThumbnailManager thumbnailManager = createMock(ThumbnailManager.class);
+        MetadataManager metadataManager = createMock(MetadataManager.class);
 
         ContentDirectoryService contentDirectoryService = new ContentDirectoryService();
         contentDirectoryService.setConfigurationDao(configurationDao);
         contentDirectoryService.setMediaManager(mediaManager);
         contentDirectoryService.setStreamingManager(streamingManager);
+        contentDirectoryService.setThumbnailManager(thumbnailManager);
+        contentDirectoryService.setMetadataManager(metadataManager);
 
         expect(remoteClientInfo.getConnection()).andReturn(null);
         expect(mediaManager.getNode(eq("0"))).andReturn(new FolderNode("0", "-1", "root"));
-        expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("url");
+        expect(mediaManager.getNodeUrl(isA(AbstractNode.class))).andReturn("url").times(2);
+        expect(configurationDao.getParameter(UPNP_ADD_SUBTITLE)).andReturn(true);
         expect(configurationDao.getParameter(PODCAST_PREPEND_ENTRY_NAME)).andReturn(true).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE)).andReturn(false).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_RELAY_ENABLE)).andReturn(true).atLeastOnce();
+        expect(mediaManager.getNodeRelayUrl(isA(AbstractNode.class))).andReturn("relayUrl").atLeastOnce();
 
         List<AbstractNode> children = Lists.newArrayList();
         children.add(new RawUrlNode(TYPE_PODCAST_ENTRY, "id1", "parentId", "name", MimeType.valueOf("video/avi"), "url", "duration"));
@@ -233,19 +242,24 @@ public class ContentDirectoryServiceTest {
         children.add(new PodcastNode("id4", "parentId", "name", "url"));
         File file = File.createTempFile(testName.getMethodName(), "avi");
         file.deleteOnExit();
-        children.add(new ContentNode("id5", "parentId", "name", file, MimeType.valueOf("video/avi")));
+        ContentNode contentNode = new ContentNode("id5", "parentId", "name", file, MimeType.valueOf("video/avi"));
+        contentNode.addSubtitle(new ContentNode("id8", "id5", "name", file, MIME_TYPE_SUBTITLE));
+        children.add(contentNode);
+        expect(thumbnailManager.getThumbnail(contentNode)).andReturn(file);
+        expect(mediaManager.getNodeThumbnailUrl(isA(AbstractNode.class))).andReturn("thumbnailUrl");
+        expect(metadataManager.getMetadata(isA(ContentNode.class))).andReturn(null);
         AbstractNode dummyNode = createMock(AbstractNode.class);
         children.add(dummyNode);
         children.add(new RawUrlNode(TYPE_PODCAST_ENTRY, "id6", "parentId", "name", MimeType.valueOf("video/avi"), "url", "duration"));
         children.add(new RawUrlNode(TYPE_PODCAST_ENTRY, "id7", "parentId", "name", MimeType.valueOf("video/avi"), "url", "duration"));
         expect(mediaManager.searchChildNodes(isA(MediaSearchRequest.class))).andReturn(children).atLeastOnce();
 
-        replay(mediaManager, streamingManager, remoteClientInfo, dummyNode, configurationDao);
+        replay(mediaManager, streamingManager, remoteClientInfo, dummyNode, configurationDao, thumbnailManager, metadataManager);
 
         BrowseResult result = contentDirectoryService.browse("0", BrowseFlag.DIRECT_CHILDREN, "", 0, 6, SortCriterion.valueOf("+name"), remoteClientInfo);
         assertNotNull(result);
 
-        verify(mediaManager, streamingManager, remoteClientInfo, dummyNode, configurationDao);
+        verify(mediaManager, streamingManager, remoteClientInfo, dummyNode, configurationDao, thumbnailManager, metadataManager);
     }
 
     @Test
@@ -263,6 +277,7 @@ public class ContentDirectoryServiceTest {
         expect(remoteClientInfo.getConnection()).andReturn(null);
         expect(mediaManager.getNode(eq("0"))).andReturn(new FolderNode("0", "-1", "root"));
         expect(configurationDao.getParameter(PODCAST_PREPEND_ENTRY_NAME)).andReturn(true).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE)).andReturn(false).atLeastOnce();
 
         MimeType mimeType = MimeType.valueOf("video/avi");
         List<AbstractNode> children = Lists.newArrayList();
@@ -294,6 +309,8 @@ public class ContentDirectoryServiceTest {
         expect(remoteClientInfo.getConnection()).andReturn(null);
         expect(mediaManager.getNode(eq("0"))).andReturn(new FolderNode("0", "-1", "root"));
         expect(configurationDao.getParameter(PODCAST_PREPEND_ENTRY_NAME)).andReturn(false).atLeastOnce();
+        expect(configurationDao.getParameter(HTTP_SERVER_PROXY_ENABLE)).andReturn(true).atLeastOnce();
+        expect(mediaManager.getNodeProxyUrl(isA(AbstractNode.class))).andReturn("proxyUrl").atLeastOnce();
 
         List<AbstractNode> children = Lists.newArrayList();
         children.add(new RawUrlNode(TYPE_PODCAST_ENTRY, "id1", "parentId", "name", MimeType.valueOf("video/avi"), "url", "duration"));
@@ -17,18 +17,23 @@
 
 package net.holmes.core.service.upnp.directory;
 
+import net.holmes.core.business.media.metadata.MediaMetadata;
 import net.holmes.core.business.media.model.ContentNode;
 import net.holmes.core.business.media.model.FolderNode;
 import net.holmes.core.business.media.model.RawUrlNode;
 import net.holmes.core.common.MimeType;
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
 import org.fourthline.cling.support.contentdirectory.DIDLParser;
+import org.fourthline.cling.support.model.DIDLObject.Property.SEC;
+import org.fourthline.cling.support.model.DIDLObject.Property.UPNP;
+import org.fourthline.cling.support.model.Res;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 
 import static net.holmes.core.business.media.model.AbstractNode.NodeType.TYPE_PODCAST_ENTRY;
 import static org.junit.Assert.*;
@@ -60,6 +65,61 @@ public class DirectoryBrowseResultTest {
         assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
     }
 
+    @Test
+    public void testAddAudioItemWithThumbnail() throws IOException, ContentDirectoryException {
+        File file = File.createTempFile(testName.getMethodName(), "mp3");
+        file.deleteOnExit();
+        MimeType mimeType = MimeType.valueOf("audio/mpeg");
+        ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
+
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        directoryBrowseResult.addItem("1", node, "http://google.com", "http://google.com/thumbnail", null, Collections.<String>emptyList());
+        assertEquals(directoryBrowseResult.getItemCount(), 1);
+        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertEquals(directoryBrowseResult.getDidl().getItems().get(0).getResources().size(), 2);
+        assertNotNull(directoryBrowseResult.getDidl().getItems().get(0).getFirstProperty(UPNP.ALBUM_ART_URI.class));
+    }
+
+    @Test
+    public void testAddVideoItemWithMetadata() throws IOException, ContentDirectoryException {
+        File file = File.createTempFile(testName.getMethodName(), "mkv");
+        file.deleteOnExit();
+        MimeType mimeType = MimeType.valueOf("video/x-matroska");
+        ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
+        MediaMetadata metadata = new MediaMetadata();
+        metadata.setDuration(5025000L);
+        metadata.setBitrate(250000L);
+        metadata.setResolution(1280, 720);
+        metadata.setSampleFrequency(48000L);
+        metadata.setAudioChannels(2L);
+
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        directoryBrowseResult.addItem("1", node, "http://google.com", null, metadata, Collections.<String>emptyList());
+        assertEquals(directoryBrowseResult.getItemCount(), 1);
+        Res res = directoryBrowseResult.getDidl().getItems().get(0).getFirstResource();
+        assertEquals("1:23:45.000", res.getDuration());
+        assertEquals(Long.valueOf(250000L), res.getBitrate());
+        assertEquals("1280x720", res.getResolution());
+        assertEquals(Long.valueOf(48000L), res.getSampleFrequency());
+        assertEquals(Long.valueOf(2L), res.getNrAudioChannels());
+        assertNull(res.getBitsPerSample());
+    }
+
+    @Test
+    public void testAddVideoItemWithSubtitle() throws IOException, ContentDirectoryException {
+        File file = File.createTempFile(testName.getMethodName(), "avi");
+        file.deleteOnExit();
+        MimeType mimeType = MimeType.valueOf("video/x-msvideo");
+        ContentNode node = new ContentNode("id", "1", "name", file, mimeType);
+
+        DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
+        directoryBrowseResult.addItem("1", node, "http://google.com", null, null, Collections.singletonList("http://google.com/subtitle"));
+        assertEquals(directoryBrowseResult.getItemCount(), 1);
+        assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
+        assertEquals(directoryBrowseResult.getDidl().getItems().get(0).getResources().size(), 2);
+        assertNotNull(directoryBrowseResult.getDidl().getItems().get(0).getFirstProperty(SEC.CAPTIONINFOEX.class));
+    }
+
     @Test
     public void testAddAudioItem() throws IOException, ContentDirectoryException {
         File file = File.createTempFile(testName.getMethodName(), "avi");
@@ -165,7 +225,7 @@ public class DirectoryBrowseResultTest {
         MimeType mimeType = MimeType.valueOf("video/x-msvideo");
         RawUrlNode node = new RawUrlNode(TYPE_PODCAST_ENTRY, "id", "parentId", "name", mimeType, "url", "duration");
         DirectoryBrowseResult directoryBrowseResult = new DirectoryBrowseResult(0, 1);
-        directoryBrowseResult.addUrlItem("1", node, "name");
+        directoryBrowseResult.addUrlItem("1", node, "name", node.getUrl());
         assertEquals(directoryBrowseResult.getItemCount(), 1);
         assertEquals(directoryBrowseResult.getDidl().getCount(), 1);
     }